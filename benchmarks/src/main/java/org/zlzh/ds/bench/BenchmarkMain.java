@@ -0,0 +1,29 @@
+/*
+ * File: BenchmarkMain.java
+ */
+package org.zlzh.ds.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar.  Accepts the usual JMH command line
+ * (benchmark regexps, -p size=..., -f, -wi, ...) and always attaches the
+ * GC profiler, so every run reports allocation rates (gc.alloc.rate.norm)
+ * next to the throughput and sample-time percentiles.
+ */
+public final class BenchmarkMain {
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
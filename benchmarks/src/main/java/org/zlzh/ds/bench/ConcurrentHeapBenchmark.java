@@ -0,0 +1,122 @@
+/*
+ * File: ConcurrentHeapBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zlzh.ds.ConcurrentIntervalHeap;
+import org.zlzh.ds.IntervalHeap;
+
+/**
+ * Shared double-ended priority queues under contention.  Every thread
+ * inserts a random key and then removes from the min or max end, so the
+ * queue stays at its initial size.  The striped ConcurrentIntervalHeap is
+ * compared against a single IntervalHeap behind one lock; run with
+ * different thread counts (-t) to see how each scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Threads(4)
+public class ConcurrentHeapBenchmark {
+    /**
+     * The queues being compared.
+     */
+    public enum Impl {
+        STRIPED {
+            @Override
+            Queue create() {
+                final ConcurrentIntervalHeap<Integer> heap = new ConcurrentIntervalHeap<Integer>();
+                return new Queue() {
+                    @Override
+                    void add(Integer key) {
+                        heap.add(key);
+                    }
+
+                    @Override
+                    Integer dequeue(boolean fromMin) {
+                        return fromMin ? heap.pollMin() : heap.pollMax();
+                    }
+                };
+            }
+        },
+        LOCKED {
+            @Override
+            Queue create() {
+                final IntervalHeap<Integer> heap = new IntervalHeap<Integer>();
+                return new Queue() {
+                    @Override
+                    synchronized void add(Integer key) {
+                        heap.add(key);
+                    }
+
+                    @Override
+                    synchronized Integer dequeue(boolean fromMin) {
+                        if (heap.isEmpty())
+                            return null;
+                        return fromMin ? heap.dequeueMin() : heap.dequeueMax();
+                    }
+                };
+            }
+        };
+
+        abstract Queue create();
+    }
+
+    /**
+     * The operations the benchmark needs from either queue.
+     */
+    abstract static class Queue {
+        abstract void add(Integer key);
+
+        abstract Integer dequeue(boolean fromMin);
+    }
+
+    @Param({ "1000", "1000000" })
+    int size;
+
+    @Param({ "STRIPED", "LOCKED" })
+    Impl impl;
+
+    private Queue queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = impl.create();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; ++i)
+            queue.add(random.nextInt());
+    }
+
+    @Benchmark
+    public Integer minCycle() {
+        queue.add(ThreadLocalRandom.current().nextInt());
+        return queue.dequeue(true);
+    }
+
+    @Benchmark
+    public Integer mixedCycle() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt();
+        queue.add(key);
+        return queue.dequeue((key & 1) == 0);
+    }
+}
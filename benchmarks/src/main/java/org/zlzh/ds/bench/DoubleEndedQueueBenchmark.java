@@ -0,0 +1,100 @@
+/*
+ * File: DoubleEndedQueueBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zlzh.ds.DoubleEndedPriorityQueue;
+
+/**
+ * The DoubleEndedPriorityQueue implementations head to head, through the
+ * interface, over several key sequences.  As in HeapBenchmark each queue is
+ * pre-filled and kept at its size: every invocation inserts one key and
+ * removes one.  The fill and build benchmarks measure insertion alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class DoubleEndedQueueBenchmark {
+    @Param({ "1000", "1000000" })
+    int size;
+
+    @Param({ "INTERVAL_HEAP", "MIN_MAX_HEAP", "SYMMETRIC_MIN_MAX_HEAP" })
+    Heaps impl;
+
+    @Param({ "RANDOM", "ASCENDING", "DESCENDING", "FEW_DISTINCT" })
+    Elements.KeyOrder keys;
+
+    private Integer[] pool;
+    private int cursor;
+    private DoubleEndedPriorityQueue<Integer> queue;
+
+    @Setup(Level.Trial)
+    public void setUpKeys() {
+        pool = Elements.keys(keys, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = impl.create();
+        for (int i = 0; i < size; ++i)
+            queue.add(next());
+    }
+
+    private Integer next() {
+        return pool[cursor++ & (pool.length - 1)];
+    }
+
+    @Benchmark
+    public Integer minCycle() {
+        queue.add(next());
+        return queue.dequeueMin();
+    }
+
+    @Benchmark
+    public Integer maxCycle() {
+        queue.add(next());
+        return queue.dequeueMax();
+    }
+
+    @Benchmark
+    public Integer mixedCycle() {
+        queue.add(next());
+        return (cursor & 1) == 0 ? queue.dequeueMin() : queue.dequeueMax();
+    }
+
+    /**
+     * Peeking at both ends, which the min-max heap pays a comparison for.
+     */
+    @Benchmark
+    public int peekBoth() {
+        return queue.min() ^ queue.max();
+    }
+
+    /**
+     * Building a queue of the full size from empty.
+     */
+    @Benchmark
+    public DoubleEndedPriorityQueue<Integer> fill() {
+        DoubleEndedPriorityQueue<Integer> result = impl.create();
+        for (int i = 0; i < size; ++i)
+            result.add(pool[i & (pool.length - 1)]);
+        return result;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * File: Elements.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.Random;
+
+/**
+ * Shared fixtures for the benchmarks: pools of pre-allocated elements of the
+ * various element types, and index sequences for the access patterns.  All
+ * of them are created during setup so that the measured code only allocates
+ * what the structure under test allocates.
+ */
+public final class Elements {
+    /* Pools are cycled rather than sized to the structure so that the
+     * 10^7 and 10^8 runs do not spend their heap on the elements themselves.
+     */
+    static final int POOL_SIZE = 1 << 16;
+
+    /* Access patterns replay a fixed window of indices. */
+    static final int PATTERN_SIZE = 1 << 16;
+
+    /** The element types the collection benchmarks are parameterized over. */
+    public enum Type {
+        INTEGER, LONG, STRING
+    }
+
+    /** The key sequences the priority queue benchmarks are parameterized over. */
+    public enum KeyOrder {
+        /** Uniformly random keys. */
+        RANDOM,
+
+        /** Increasing keys, as from timestamps. */
+        ASCENDING,
+
+        /** Decreasing keys. */
+        DESCENDING,
+
+        /** Random keys drawn from only 16 values, so most compare equal. */
+        FEW_DISTINCT
+    }
+
+    /** The index sequences the random-access benchmarks are parameterized over. */
+    public enum Pattern {
+        SEQUENTIAL, RANDOM, STRIDED, TAIL
+    }
+
+    private Elements() {
+    }
+
+    /**
+     * Returns a pool of distinct elements of the requested type.
+     *
+     * @param type The element type.
+     * @param seed Seed for the random contents.
+     * @return POOL_SIZE elements.
+     */
+    static Object[] pool(Type type, long seed) {
+        Random random = new Random(seed);
+        Object[] result = new Object[POOL_SIZE];
+        for (int i = 0; i < result.length; ++i) {
+            switch (type) {
+            case INTEGER:
+                result[i] = Integer.valueOf(random.nextInt());
+                break;
+            case LONG:
+                result[i] = Long.valueOf(random.nextLong());
+                break;
+            default:
+                result[i] = "e" + Long.toHexString(random.nextLong());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a pool of random Integer keys, used by the heap benchmarks.
+     *
+     * @param seed Seed for the random contents.
+     * @return POOL_SIZE keys.
+     */
+    static Integer[] keys(long seed) {
+        Random random = new Random(seed);
+        Integer[] result = new Integer[POOL_SIZE];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = Integer.valueOf(random.nextInt());
+        return result;
+    }
+
+    /**
+     * Returns a pool of Integer keys in the requested order, used by the
+     * double-ended priority queue benchmarks.
+     *
+     * @param order The key sequence.
+     * @param seed Seed for the random contents.
+     * @return POOL_SIZE keys.
+     */
+    static Integer[] keys(KeyOrder order, long seed) {
+        Random random = new Random(seed);
+        Integer[] result = new Integer[POOL_SIZE];
+        for (int i = 0; i < result.length; ++i) {
+            switch (order) {
+            case RANDOM:
+                result[i] = Integer.valueOf(random.nextInt());
+                break;
+            case ASCENDING:
+                result[i] = Integer.valueOf(i);
+                break;
+            case DESCENDING:
+                result[i] = Integer.valueOf(-i);
+                break;
+            default:
+                result[i] = Integer.valueOf(random.nextInt(16));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns PATTERN_SIZE indices into a structure of the given size,
+     * following the requested access pattern.
+     *
+     * @param pattern The access pattern.
+     * @param size The number of elements in the structure.
+     * @param seed Seed for the random pattern.
+     * @return The index sequence.
+     */
+    static int[] indices(Pattern pattern, int size, long seed) {
+        Random random = new Random(seed);
+        int[] result = new int[PATTERN_SIZE];
+        for (int i = 0; i < result.length; ++i) {
+            switch (pattern) {
+            case SEQUENTIAL:
+                result[i] = i % size;
+                break;
+            case RANDOM:
+                result[i] = random.nextInt(size);
+                break;
+            case STRIDED:
+                /* One cache line of references per step. */
+                result[i] = (int) ((i * 16L) % size);
+                break;
+            default:
+                /* The most recently appended quarter of the structure. */
+                result[i] = size - 1 - random.nextInt(Math.max(1, size / 4));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * File: ExtendibleArrayDispatchBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * get() and set() on a default (deamortized) ExtendibleArray, in a JVM
+ * that has or has not also used the other growth policies.  Every fork of
+ * ListAccessBenchmark sees a single policy, so there the calls into the
+ * storage always look monomorphic; in an application that mixes policies
+ * they may not.  With polluted set, setup first runs every policy through
+ * get(), set() and size() so that their profiles record all of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ExtendibleArrayDispatchBenchmark {
+    @Param({ "100000" })
+    int size;
+
+    @Param({ "false", "true" })
+    boolean polluted;
+
+    @Param({ "SEQUENTIAL", "RANDOM" })
+    Elements.Pattern pattern;
+
+    private Object[] pool;
+    private List<Object> list;
+    private int[] indices;
+    private int cursor;
+    /* What the polluting loop read, kept so that the JIT cannot drop it. */
+    private long pollutionSum;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Elements.pool(Elements.Type.INTEGER, 42);
+        indices = Elements.indices(pattern, size, 7);
+        if (polluted) {
+            Lists[] policies = { Lists.EXTENDIBLE_ARRAY_AMORTIZED, Lists.EXTENDIBLE_ARRAY_CHUNKED, Lists.EXTENDIBLE_ARRAY };
+            long sum = 0;
+            for (Lists policy : policies) {
+                List<Object> other = (List<Object>) policy.filled(size, pool);
+                for (int i = 0; i < 200000; ++i) {
+                    int index = indices[i & (indices.length - 1)];
+                    sum += other.get(index).hashCode() + other.size();
+                    other.set(index, pool[i & (pool.length - 1)]);
+                }
+            }
+            pollutionSum = sum;
+        }
+        list = (List<Object>) Lists.EXTENDIBLE_ARRAY.filled(size, pool);
+    }
+
+    @Benchmark
+    public Object get() {
+        return list.get(indices[cursor++ & (indices.length - 1)]);
+    }
+
+    @Benchmark
+    public Object set() {
+        int i = cursor++ & (indices.length - 1);
+        return list.set(indices[i], pool[i]);
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * File: HeapBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zlzh.ds.BoundedIntervalHeap;
+import org.zlzh.ds.IntervalHeap;
+import org.zlzh.ds.LongIntervalHeap;
+import org.zlzh.ds.MinMaxHeap;
+
+/**
+ * Priority queue benchmarks.  Every queue is pre-filled to the requested
+ * size and then kept there: each invocation inserts one key and removes one,
+ * so the numbers describe steady-state cost at that size.  PriorityQueue is
+ * single-ended and only takes part in the min-side cycle.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class HeapBenchmark {
+    @State(Scope.Thread)
+    public static class Sizes {
+        @Param({ "1000", "100000", "10000000" })
+        int size;
+
+        Integer[] keys;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUpKeys() {
+            keys = Elements.keys(42);
+        }
+
+        Integer next() {
+            return keys[cursor++ & (keys.length - 1)];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class IntervalHeapState extends Sizes {
+        IntervalHeap<Integer> heap;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            heap = new IntervalHeap<Integer>();
+            for (int i = 0; i < size; ++i)
+                heap.add(next());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LongIntervalHeapState extends Sizes {
+        LongIntervalHeap heap;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            heap = new LongIntervalHeap(true);
+            for (int i = 0; i < size; ++i)
+                heap.add(next(), i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MinMaxHeapState extends Sizes {
+        MinMaxHeap<Integer> heap;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            heap = new MinMaxHeap<Integer>();
+            for (int i = 0; i < size; ++i)
+                heap.add(next());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BoundedState extends Sizes {
+        BoundedIntervalHeap<Integer> heap;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            heap = new BoundedIntervalHeap<Integer>(size, BoundedIntervalHeap.Mode.LARGEST);
+            for (int i = 0; i < size; ++i)
+                heap.offer(next());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SnapshotState extends Sizes {
+        List<Integer> snapshot;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Integer[] elems = new Integer[size];
+            for (int i = 0; i < size; ++i)
+                elems[i] = next();
+            snapshot = Arrays.asList(elems);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PriorityQueueState extends Sizes {
+        PriorityQueue<Integer> queue;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            queue = new PriorityQueue<Integer>();
+            for (int i = 0; i < size; ++i)
+                queue.add(next());
+        }
+    }
+
+    @Benchmark
+    public Integer intervalHeapMinCycle(IntervalHeapState s) {
+        s.heap.add(s.next());
+        return s.heap.dequeueMin();
+    }
+
+    @Benchmark
+    public Integer intervalHeapMixedCycle(IntervalHeapState s) {
+        s.heap.add(s.next());
+        return (s.cursor & 1) == 0 ? s.heap.dequeueMin() : s.heap.dequeueMax();
+    }
+
+    @Benchmark
+    public long longIntervalHeapMinCycle(LongIntervalHeapState s) {
+        s.heap.add(s.next(), s.cursor);
+        return s.heap.minPayload() + s.heap.dequeueMin();
+    }
+
+    @Benchmark
+    public long longIntervalHeapMixedCycle(LongIntervalHeapState s) {
+        s.heap.add(s.next(), s.cursor);
+        if ((s.cursor & 1) == 0)
+            return s.heap.minPayload() + s.heap.dequeueMin();
+        return s.heap.maxPayload() + s.heap.dequeueMax();
+    }
+
+    @Benchmark
+    public Integer minMaxHeapMinCycle(MinMaxHeapState s) {
+        s.heap.add(s.next());
+        return s.heap.dequeueMin();
+    }
+
+    @Benchmark
+    public Integer minMaxHeapMixedCycle(MinMaxHeapState s) {
+        s.heap.add(s.next());
+        return (s.cursor & 1) == 0 ? s.heap.dequeueMin() : s.heap.dequeueMax();
+    }
+
+    /**
+     * Keeping the largest size keys of a stream by hand: a key no larger
+     * than the minimum is dropped, any other is added and the minimum
+     * evicted.  This is the check offer() makes, with a separate add() and
+     * dequeueMin() in place of its fused replaceMin().
+     */
+    @Benchmark
+    public boolean intervalHeapTopKByHand(IntervalHeapState s) {
+        Integer key = s.next();
+        if (key.compareTo(s.heap.min()) <= 0)
+            return false;
+        s.heap.add(key);
+        s.heap.dequeueMin();
+        return true;
+    }
+
+    /**
+     * Keeping the largest size keys of a stream with the fused offer().
+     */
+    @Benchmark
+    public boolean boundedIntervalHeapTopK(BoundedState s) {
+        return s.heap.offer(s.next());
+    }
+
+    /**
+     * Rebuilding a heap from a snapshot, one add() at a time.
+     */
+    @Benchmark
+    public IntervalHeap<Integer> intervalHeapBuildByAdd(SnapshotState s) {
+        IntervalHeap<Integer> heap = new IntervalHeap<Integer>();
+        for (Integer key : s.snapshot)
+            heap.add(key);
+        return heap;
+    }
+
+    /**
+     * Rebuilding a heap from a snapshot with the bottom-up constructor.
+     */
+    @Benchmark
+    public IntervalHeap<Integer> intervalHeapBuildByHeapify(SnapshotState s) {
+        return new IntervalHeap<Integer>(s.snapshot);
+    }
+
+    /**
+     * Taking the smaller half of a fresh heap with one dequeueMin() per key.
+     * The build is included, and shared with the batch version below.
+     */
+    @Benchmark
+    public Integer[] intervalHeapHalfByLoop(SnapshotState s) {
+        IntervalHeap<Integer> heap = new IntervalHeap<Integer>(s.snapshot);
+        Integer[] half = new Integer[s.size / 2];
+        for (int i = 0; i < half.length; ++i)
+            half[i] = heap.dequeueMin();
+        return half;
+    }
+
+    /**
+     * Taking the smaller half of a fresh heap with one batch dequeueMin().
+     */
+    @Benchmark
+    public Integer[] intervalHeapHalfByBatch(SnapshotState s) {
+        IntervalHeap<Integer> heap = new IntervalHeap<Integer>(s.snapshot);
+        Integer[] half = new Integer[s.size / 2];
+        heap.dequeueMin(half.length, half, 0);
+        return half;
+    }
+
+    /**
+     * Merging two heaps built from the halves of a snapshot by dequeuing
+     * from one and adding to the other.  The builds are included, and
+     * shared with the meld version below.
+     */
+    @Benchmark
+    public IntervalHeap<Integer> intervalHeapMergeByReinsert(SnapshotState s) {
+        IntervalHeap<Integer> one = new IntervalHeap<Integer>(s.snapshot.subList(0, s.size / 2));
+        IntervalHeap<Integer> two = new IntervalHeap<Integer>(s.snapshot.subList(s.size / 2, s.size));
+        while (!two.isEmpty())
+            one.add(two.dequeueMin());
+        return one;
+    }
+
+    /**
+     * Merging the same two heaps with meld().
+     */
+    @Benchmark
+    public IntervalHeap<Integer> intervalHeapMeld(SnapshotState s) {
+        IntervalHeap<Integer> one = new IntervalHeap<Integer>(s.snapshot.subList(0, s.size / 2));
+        IntervalHeap<Integer> two = new IntervalHeap<Integer>(s.snapshot.subList(s.size / 2, s.size));
+        one.meld(two);
+        return one;
+    }
+
+    @Benchmark
+    public Integer priorityQueueMinCycle(PriorityQueueState s) {
+        s.queue.add(s.next());
+        return s.queue.poll();
+    }
+}
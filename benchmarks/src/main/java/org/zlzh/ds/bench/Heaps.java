@@ -0,0 +1,42 @@
+/*
+ * File: Heaps.java
+ */
+package org.zlzh.ds.bench;
+
+import org.zlzh.ds.DoubleEndedPriorityQueue;
+import org.zlzh.ds.IntervalHeap;
+import org.zlzh.ds.MinMaxHeap;
+import org.zlzh.ds.SymmetricMinMaxHeap;
+
+/**
+ * Factory for the double-ended priority queues compared by
+ * {@link DoubleEndedQueueBenchmark}.  The enum constant names double as the
+ * JMH parameter values.
+ */
+public enum Heaps {
+    INTERVAL_HEAP {
+        @Override
+        DoubleEndedPriorityQueue<Integer> create() {
+            return new IntervalHeap<Integer>();
+        }
+    },
+    MIN_MAX_HEAP {
+        @Override
+        DoubleEndedPriorityQueue<Integer> create() {
+            return new MinMaxHeap<Integer>();
+        }
+    },
+    SYMMETRIC_MIN_MAX_HEAP {
+        @Override
+        DoubleEndedPriorityQueue<Integer> create() {
+            return new SymmetricMinMaxHeap<Integer>();
+        }
+    };
+
+    /**
+     * Creates an empty instance of the implementation.
+     *
+     * @return A new, empty queue.
+     */
+    abstract DoubleEndedPriorityQueue<Integer> create();
+}
@@ -0,0 +1,61 @@
+/*
+ * File: LinkedListDepthFirstIterator.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.zlzh.ds.tree.TraversalIterator;
+import org.zlzh.ds.tree.Tree;
+
+/**
+ * The depth-first iterator as it was before it moved to an ArrayDeque,
+ * kept as the baseline in {@link TraversalIteratorBenchmark}.  Every
+ * pending node costs a LinkedList entry, and addAll(0, ...) copies the
+ * child list through toArray() at every step.
+ *
+ * @param E The type of data stored in the tree.
+ */
+final class LinkedListDepthFirstIterator<E> implements TraversalIterator<E> {
+    private final LinkedList<Tree<E>> queue;
+    private Tree<E> lastNode;
+
+    LinkedListDepthFirstIterator(Tree<E> node) {
+        this.queue = new LinkedList<Tree<E>>();
+        queue.add(node);
+    }
+
+    public boolean hasNext() {
+        return (queue.size() > 0);
+    }
+
+    public Tree<E> next() {
+        if (!hasNext())
+            throw new NoSuchElementException("no more nodes!");
+        Tree<E> result = queue.removeFirst();
+        final List<Tree<E>> children = result.getChildren();
+        if (children != null)
+            queue.addAll(0, children);
+        lastNode = result;
+        return result;
+    }
+
+    public void remove() {
+        if (lastNode != null) {
+            lastNode.prune(true, true);
+            skip();
+        }
+    }
+
+    public void skip() {
+        if (lastNode != null) {
+            final List<Tree<E>> children = lastNode.getChildren();
+            if (children != null) {
+                for (@SuppressWarnings("unused") Tree<E> child : children)
+                    queue.removeFirst();
+            }
+        }
+    }
+}
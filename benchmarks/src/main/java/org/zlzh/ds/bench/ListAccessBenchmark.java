@@ -0,0 +1,80 @@
+/*
+ * File: ListAccessBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Read benchmarks for the random-access sequences: single get/set calls
+ * following one of the access patterns, and a full scan through the
+ * iterator.  ArrayDeque has no positional access and only takes part in
+ * the append benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ListAccessBenchmark {
+    @Param({ "1000", "100000", "10000000" })
+    int size;
+
+    @Param({ "EXTENDIBLE_ARRAY", "EXTENDIBLE_ARRAY_AMORTIZED", "EXTENDIBLE_ARRAY_CHUNKED", "SEGMENTED_ARRAY", "VLIST", "ARRAY_LIST" })
+    Lists impl;
+
+    @Param({ "INTEGER", "STRING" })
+    Elements.Type type;
+
+    @Param({ "SEQUENTIAL", "RANDOM", "STRIDED", "TAIL" })
+    Elements.Pattern pattern;
+
+    private Object[] pool;
+    private List<Object> list;
+    private int[] indices;
+    private int cursor;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        pool = Elements.pool(type, 42);
+        list = (List<Object>) impl.filled(size, pool);
+        indices = Elements.indices(pattern, size, 7);
+    }
+
+    @Benchmark
+    public Object get() {
+        return list.get(indices[cursor++ & (indices.length - 1)]);
+    }
+
+    @Benchmark
+    public Object set() {
+        int i = cursor++ & (indices.length - 1);
+        return list.set(indices[i], pool[i]);
+    }
+
+    /**
+     * A full in-order scan through the iterator.
+     */
+    @Benchmark
+    public void scan(Blackhole bh) {
+        for (Object o : list)
+            bh.consume(o);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * File: ListAppendBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Growth benchmarks: how fast each sequence reaches a given size when fed one
+ * element at a time, and what a single append costs once the structure is
+ * large.  The latter is where ExtendibleArray's incremental copy is supposed
+ * to pay off, so look at the high percentiles of {@link #appendOne} rather
+ * than at the mean.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ListAppendBenchmark {
+    @Param({ "1000", "100000", "10000000" })
+    int size;
+
+    @Param({ "EXTENDIBLE_ARRAY", "EXTENDIBLE_ARRAY_AMORTIZED", "EXTENDIBLE_ARRAY_CHUNKED", "SEGMENTED_ARRAY", "VLIST", "ARRAY_LIST", "ARRAY_DEQUE" })
+    Lists impl;
+
+    @Param({ "INTEGER", "STRING" })
+    Elements.Type type;
+
+    private Object[] pool;
+    private ArrayList<Object> source;
+    private Collection<Object> grown;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUpPool() {
+        pool = Elements.pool(type, 42);
+        source = (ArrayList<Object>) Lists.ARRAY_LIST.filled(size, pool);
+    }
+
+    /* A fresh, full structure per iteration so that appendOne keeps
+     * measuring appends near the requested size.
+     */
+    @Setup(Level.Iteration)
+    public void setUpStructure() {
+        grown = impl.filled(size, pool);
+        cursor = 0;
+    }
+
+    /**
+     * Builds a structure of the requested size from scratch.
+     */
+    @Benchmark
+    public Collection<Object> fill() {
+        return impl.filled(size, pool);
+    }
+
+    /**
+     * Builds a structure of the requested size with a single addAll.
+     */
+    @Benchmark
+    public Collection<Object> bulkFill() {
+        Collection<Object> result = impl.create();
+        result.addAll(source);
+        return result;
+    }
+
+    /**
+     * Appends one more element to a structure that already holds at least
+     * the requested number of elements.
+     */
+    @Benchmark
+    public boolean appendOne() {
+        return grown.add(pool[cursor++ & (pool.length - 1)]);
+    }
+}
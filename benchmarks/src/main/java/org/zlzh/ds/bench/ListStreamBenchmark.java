@@ -0,0 +1,78 @@
+/*
+ * File: ListStreamBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Bulk traversal benchmarks: forEach over the raw arrays, and sequential
+ * and parallel streams driven by each list's spliterator.  The parallel
+ * score against the sequential one shows how well the splits balance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ListStreamBenchmark {
+    @Param({ "100000", "10000000" })
+    int size;
+
+    @Param({ "EXTENDIBLE_ARRAY", "EXTENDIBLE_ARRAY_AMORTIZED", "EXTENDIBLE_ARRAY_CHUNKED", "VLIST", "ARRAY_LIST" })
+    Lists impl;
+
+    private List<Object> list;
+
+    /* A cheap per-element computation for the streams to reduce. */
+    private static final ToLongFunction<Object> HASH = new ToLongFunction<Object>() {
+        @Override
+        public long applyAsLong(Object o) {
+            return o.hashCode();
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = (List<Object>) impl.filled(size, Elements.pool(Elements.Type.INTEGER, 42));
+    }
+
+    @Benchmark
+    public void forEach(final Blackhole bh) {
+        list.forEach(new Consumer<Object>() {
+            @Override
+            public void accept(Object o) {
+                bh.consume(o);
+            }
+        });
+    }
+
+    @Benchmark
+    public long sequentialSum() {
+        return list.stream().mapToLong(HASH).sum();
+    }
+
+    @Benchmark
+    public long parallelSum() {
+        return list.parallelStream().mapToLong(HASH).sum();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * File: Lists.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.zlzh.ds.ExtendibleArray;
+import org.zlzh.ds.SegmentedArray;
+import org.zlzh.ds.VList;
+
+/**
+ * Factory for the sequence implementations compared by the list benchmarks.
+ * The enum constant names double as the JMH parameter values.
+ */
+public enum Lists {
+    EXTENDIBLE_ARRAY {
+        @Override
+        Collection<Object> create() {
+            return new ExtendibleArray<Object>();
+        }
+    },
+    EXTENDIBLE_ARRAY_AMORTIZED {
+        @Override
+        Collection<Object> create() {
+            return new ExtendibleArray<Object>(ExtendibleArray.GrowthPolicy.AMORTIZED);
+        }
+    },
+    EXTENDIBLE_ARRAY_CHUNKED {
+        @Override
+        Collection<Object> create() {
+            return new ExtendibleArray<Object>(ExtendibleArray.GrowthPolicy.CHUNKED);
+        }
+    },
+    SEGMENTED_ARRAY {
+        @Override
+        Collection<Object> create() {
+            return new SegmentedArray<Object>();
+        }
+    },
+    VLIST {
+        @Override
+        Collection<Object> create() {
+            return new VList<Object>();
+        }
+    },
+    ARRAY_LIST {
+        @Override
+        Collection<Object> create() {
+            return new ArrayList<Object>();
+        }
+    },
+    ARRAY_DEQUE {
+        @Override
+        Collection<Object> create() {
+            return new ArrayDeque<Object>();
+        }
+    };
+
+    /**
+     * Creates an empty instance of the implementation.
+     *
+     * @return A new, empty collection.
+     */
+    abstract Collection<Object> create();
+
+    /**
+     * Creates an instance of the implementation holding size elements taken
+     * cyclically from the pool.
+     *
+     * @param size The number of elements to add.
+     * @param pool The elements to add.
+     * @return The filled collection.
+     */
+    Collection<Object> filled(int size, Object[] pool) {
+        Collection<Object> result = create();
+        for (int i = 0; i < size; ++i)
+            result.add(pool[i & (pool.length - 1)]);
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * File: TraversalIteratorBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zlzh.ds.tree.BreadthFirstIterator;
+import org.zlzh.ds.tree.DepthFirstIterator;
+import org.zlzh.ds.tree.TraversalIterator;
+import org.zlzh.ds.tree.Tree;
+
+/**
+ * The ArrayDeque-based Tree iterators against the LinkedList versions they
+ * replaced, over complete k-ary trees.  Run with -prof gc: the
+ * gc.alloc.rate.norm column shows the per-traversal allocation, which is
+ * the point of the change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class TraversalIteratorBenchmark {
+    /**
+     * The iterators being compared.
+     */
+    public enum Impl {
+        ARRAY_DEQUE_BFS {
+            @Override
+            TraversalIterator<Integer> create(Tree<Integer> tree) {
+                return new BreadthFirstIterator<Integer>(tree);
+            }
+        },
+        LINKED_LIST_BFS {
+            @Override
+            TraversalIterator<Integer> create(Tree<Integer> tree) {
+                return new LinkedListBreadthFirstIterator<Integer>(tree);
+            }
+        },
+        ARRAY_DEQUE_DFS {
+            @Override
+            TraversalIterator<Integer> create(Tree<Integer> tree) {
+                return new DepthFirstIterator<Integer>(tree);
+            }
+        },
+        LINKED_LIST_DFS {
+            @Override
+            TraversalIterator<Integer> create(Tree<Integer> tree) {
+                return new LinkedListDepthFirstIterator<Integer>(tree);
+            }
+        };
+
+        abstract TraversalIterator<Integer> create(Tree<Integer> tree);
+    }
+
+    @Param({ "1000", "1000000" })
+    int size;
+
+    @Param({ "2", "16" })
+    int fanOut;
+
+    @Param({ "ARRAY_DEQUE_BFS", "LINKED_LIST_BFS", "ARRAY_DEQUE_DFS", "LINKED_LIST_DFS" })
+    Impl impl;
+
+    private Tree<Integer> tree;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Setup(Level.Trial)
+    public void setUp() {
+        Tree<Integer>[] nodes = new Tree[size];
+        for (int i = 0; i < size; ++i) {
+            nodes[i] = new Tree<Integer>(Integer.valueOf(i));
+            if (i > 0)
+                nodes[(i - 1) / fanOut].addChild(nodes[i]);
+        }
+        tree = nodes[0];
+    }
+
+    @Benchmark
+    public void traverse(Blackhole bh) {
+        for (TraversalIterator<Integer> it = impl.create(tree); it.hasNext();)
+            bh.consume(it.next());
+    }
+
+    /**
+     * A traversal that skips every subtree rooted at a multiple of 3.
+     */
+    @Benchmark
+    public void traverseWithSkips(Blackhole bh) {
+        for (TraversalIterator<Integer> it = impl.create(tree); it.hasNext();) {
+            Tree<Integer> node = it.next();
+            if (node.getData() % 3 == 0)
+                it.skip();
+            bh.consume(node);
+        }
+    }
+}
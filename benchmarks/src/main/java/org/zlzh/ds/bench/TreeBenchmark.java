@@ -0,0 +1,217 @@
+/*
+ * File: TreeBenchmark.java
+ */
+package org.zlzh.ds.bench;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zlzh.ds.tree.BTNode;
+import org.zlzh.ds.tree.BinaryTree;
+import org.zlzh.ds.tree.CompactTree;
+import org.zlzh.ds.tree.IBTreeVisit;
+import org.zlzh.ds.tree.ParallelTraversal;
+import org.zlzh.ds.tree.Tree;
+
+/**
+ * Traversal and query benchmarks for Tree and BinaryTree.  Trees are complete
+ * k-ary trees, so the fan-out parameter decides between tall and narrow
+ * (2) and shallow and wide (16) shapes.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class TreeBenchmark {
+    @State(Scope.Benchmark)
+    public static class Trees {
+        @Param({ "1000", "100000", "10000000" })
+        int size;
+
+        @Param({ "2", "16" })
+        int fanOut;
+
+        Tree<Integer> tree;
+        CompactTree<Integer> compactTree;
+        BinaryTree<Integer> binaryTree;
+        ParallelTraversal parallel = new ParallelTraversal();
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @Setup(Level.Trial)
+        public void setUp() {
+            Tree<Integer>[] nodes = new Tree[size];
+            for (int i = 0; i < size; ++i) {
+                nodes[i] = new Tree<Integer>(Integer.valueOf(i));
+                if (i > 0)
+                    nodes[(i - 1) / fanOut].addChild(nodes[i]);
+            }
+            tree = nodes[0];
+            compactTree = CompactTree.fromTree(tree);
+
+            BTNode<Integer>[] bt = new BTNode[size];
+            for (int i = 0; i < size; ++i) {
+                bt[i] = new BTNode<Integer>(Integer.valueOf(i));
+                if (i > 0) {
+                    if ((i & 1) == 1)
+                        bt[(i - 1) / 2].setLeft(bt[i]);
+                    else
+                        bt[(i - 1) / 2].setRight(bt[i]);
+                }
+            }
+            binaryTree = new BinaryTree<Integer>(bt[0]);
+        }
+    }
+
+    /**
+     * The same tree shape, with cached metadata enabled.
+     */
+    @State(Scope.Benchmark)
+    public static class TreesWithMetadata {
+        @Param({ "1000", "100000", "10000000" })
+        int size;
+
+        @Param({ "2", "16" })
+        int fanOut;
+
+        Tree<Integer> tree;
+        Tree<Integer> lastNode;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Trees plain = new Trees();
+            plain.size = size;
+            plain.fanOut = fanOut;
+            plain.setUp();
+            tree = plain.tree;
+            tree.enableMetadata();
+            lastNode = tree;
+            while (lastNode.hasChildren())
+                lastNode = lastNode.getChildren().get(lastNode.numChildren() - 1);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Order {
+        @Param({ "BREADTH_FIRST", "DEPTH_FIRST", "REVERSE_BREADTH_FIRST", "REVERSE_DEPTH_FIRST" })
+        Tree.Traversal traversal;
+    }
+
+    @Benchmark
+    public void traverse(Trees t, Order o, Blackhole bh) {
+        for (Iterator<Tree<Integer>> it = t.tree.iterator(o.traversal); it.hasNext();)
+            bh.consume(it.next());
+    }
+
+    /**
+     * Time to first element: creating the iterator and taking one node.
+     */
+    @Benchmark
+    public Tree<Integer> firstNode(Trees t, Order o) {
+        return t.tree.iterator(o.traversal).next();
+    }
+
+    /**
+     * The same traversal over the int arrays of a CompactTree.
+     */
+    @Benchmark
+    public void compactTraverse(Trees t, Order o, Blackhole bh) {
+        for (CompactTree.NodeIterator it = t.compactTree.iterator(o.traversal); it.hasNext();)
+            bh.consume(it.nextInt());
+    }
+
+    @Benchmark
+    public int maxDepth(Trees t) {
+        return t.tree.maxDepth();
+    }
+
+    @Benchmark
+    public int numLeaves(Trees t) {
+        return t.tree.numLeaves();
+    }
+
+    @Benchmark
+    public int maxDepthWithMetadata(TreesWithMetadata t) {
+        return t.tree.maxDepth();
+    }
+
+    @Benchmark
+    public int numLeavesWithMetadata(TreesWithMetadata t) {
+        return t.tree.numLeaves();
+    }
+
+    /**
+     * The upkeep of the metadata: a leaf added below the deepest node and
+     * pruned again, which walks the path to the root twice.
+     */
+    @Benchmark
+    public int addAndPruneLeafWithMetadata(TreesWithMetadata t) {
+        Tree<Integer> leaf = t.lastNode.addChild(Integer.valueOf(-1));
+        int height = t.tree.maxDepth();
+        leaf.prune(true, true);
+        return height;
+    }
+
+    @Benchmark
+    public List<Tree<Integer>> gatherLeaves(Trees t) {
+        return t.tree.gatherLeaves();
+    }
+
+    /**
+     * The same queries on the common fork/join pool.
+     */
+    @Benchmark
+    public int parallelMaxDepth(Trees t) {
+        return t.parallel.maxDepth(t.tree);
+    }
+
+    @Benchmark
+    public List<Tree<Integer>> parallelGatherLeaves(Trees t) {
+        return t.parallel.gatherLeaves(t.tree);
+    }
+
+    @Benchmark
+    public long parallelStreamLeaves(Trees t) {
+        return t.tree.parallelStream().filter(new Predicate<Tree<Integer>>() {
+            public boolean test(Tree<Integer> node) {
+                return !node.hasChildren();
+            }
+        }).count();
+    }
+
+    @Benchmark
+    public int[] compactGatherLeaves(Trees t) {
+        return t.compactTree.gatherLeaves();
+    }
+
+    @Benchmark
+    public void binaryTreePreIterator(Trees t, Blackhole bh) {
+        for (Iterator<Integer> it = t.binaryTree.preIterator(); it.hasNext();)
+            bh.consume(it.next());
+    }
+
+    @Benchmark
+    public void binaryTreePreorderVisit(Trees t, final Blackhole bh) {
+        t.binaryTree.setTreeVisitor(new IBTreeVisit<Integer>() {
+            public void visit(BTNode<Integer> node) {
+                bh.consume(node);
+            }
+        });
+        t.binaryTree.preorder();
+    }
+}
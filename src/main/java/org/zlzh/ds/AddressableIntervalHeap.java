@@ -0,0 +1,424 @@
+/*
+ * File: AddressableIntervalHeap.java
+ */
+package org.zlzh.ds;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/*********************************************************
+ * An interval heap whose entries can be changed or removed after
+ * they are inserted.  Each call to add() returns a Handle naming
+ * the new entry.  The handle can later be passed to updateKey() to
+ * give the entry a new key, or to remove() to take it out of the
+ * heap, in O(log n) time.
+ *
+ * The layout is the flat one of IntervalHeap: node i keeps its low
+ * endpoint in slot 2i and its high endpoint in slot 2i + 1.  Here
+ * the slots hold the handles themselves, and every handle records
+ * the slot it is in, so that an entry can be found without a
+ * search.  All the sifting routines of IntervalHeap carry over;
+ * they just keep those positions up to date as they swap.
+ *
+ * Changing or removing an entry in the middle of the heap can
+ * break the ordering in either direction, against the node's own
+ * pair, against its ancestors or against its descendants.  fix()
+ * repairs all of these at once.  Each direction costs at most one
+ * sift, so the repair takes O(log n) time.
+ *
+ * @param T The type of keys being stored.
+ */
+public final class AddressableIntervalHeap<T extends Comparable<T>> {
+    /**
+     * A reference to one entry of an AddressableIntervalHeap.  A handle
+     * stays valid until its entry leaves the heap, whether through
+     * remove(), a dequeue or clear().
+     *
+     * @param T The type of keys being stored.
+     */
+    public static final class Handle<T> {
+        private T key;
+
+        /* The heap holding the entry and its slot there.  The heap is
+         * null once the entry has left it.
+         */
+        private AddressableIntervalHeap<?> heap;
+        private int slot;
+
+        private Handle(T key, AddressableIntervalHeap<?> heap, int slot) {
+            this.key = key;
+            this.heap = heap;
+            this.slot = slot;
+        }
+
+        /**
+         * Returns the current key of the entry.
+         *
+         * @return The current key of the entry.
+         */
+        public T getKey() {
+            return key;
+        }
+
+        /**
+         * Returns whether the entry is still in its heap.
+         *
+         * @return Whether the entry is still in its heap.
+         */
+        public boolean isInHeap() {
+            return heap != null;
+        }
+    }
+
+    /* A Comparator for comparing keys in the heap. */
+    private final Comparator<? super T> comparator;
+
+    /* The handles, laid out as in IntervalHeap. */
+    private Handle<T>[] elems = newArray(16);
+
+    /* A cache of the number of elements in the heap. */
+    private int numElems = 0;
+
+    /**
+     * Constructs a new AddressableIntervalHeap that is initially empty
+     * and orders its keys by their natural ordering.
+     */
+    public AddressableIntervalHeap() {
+        this(new Comparator<T>() {
+            @Override
+            public int compare(T one, T two) {
+                return one.compareTo(two);
+            }
+        });
+    }
+
+    /**
+     * Constructs a new AddressableIntervalHeap that is initially empty
+     * and uses the specified comparator.
+     *
+     * @param comparator The comparator to use in the heap ordering.
+     */
+    public AddressableIntervalHeap(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return The number of elements in the heap.
+     */
+    public int size() {
+        return numElems;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     *
+     * @return Whether the heap is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Inserts a new key into the heap.
+     *
+     * @param key The key to insert.
+     * @return A handle to the new entry.
+     * @throws NullPointerException If key is null.
+     */
+    public Handle<T> add(T key) {
+        if (key == null)
+            throw new NullPointerException("AddressableIntervalHeap does not store null values.");
+
+        if (numElems == elems.length)
+            elems = Arrays.copyOf(elems, newCapacity(numElems + 1));
+
+        Handle<T> handle = new Handle<T>(key, this, numElems);
+        elems[numElems++] = handle;
+        fix(handle.slot);
+        return handle;
+    }
+
+    /**
+     * Returns (but does not remove) the minimum key of the heap.
+     *
+     * @return The minimum key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T min() {
+        return minHandle().key;
+    }
+
+    /**
+     * Returns (but does not remove) the maximum key of the heap.
+     *
+     * @return The maximum key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T max() {
+        return maxHandle().key;
+    }
+
+    /**
+     * Returns the handle of the entry with the minimum key.
+     *
+     * @return The handle of the minimum entry.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public Handle<T> minHandle() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return elems[0];
+    }
+
+    /**
+     * Returns the handle of the entry with the maximum key.
+     *
+     * @return The handle of the maximum entry.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public Handle<T> maxHandle() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return elems[maxSlotOf(0)];
+    }
+
+    /**
+     * Removes and returns the minimum key of the heap.  Its handle is no
+     * longer valid afterwards.
+     *
+     * @return The smallest key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T dequeueMin() {
+        Handle<T> handle = minHandle();
+        remove(handle);
+        return handle.key;
+    }
+
+    /**
+     * Removes and returns the maximum key of the heap.  Its handle is no
+     * longer valid afterwards.
+     *
+     * @return The largest key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T dequeueMax() {
+        Handle<T> handle = maxHandle();
+        remove(handle);
+        return handle.key;
+    }
+
+    /**
+     * Gives an entry a new key, moving it to its place in the heap.  The
+     * key may be smaller or larger than the old one.
+     *
+     * @param handle The handle of the entry to change.
+     * @param key The new key.
+     * @throws NullPointerException If key is null.
+     * @throws IllegalArgumentException If the handle is not in this heap.
+     */
+    public void updateKey(Handle<T> handle, T key) {
+        checkHandle(handle);
+        if (key == null)
+            throw new NullPointerException("AddressableIntervalHeap does not store null values.");
+
+        handle.key = key;
+        fix(handle.slot);
+    }
+
+    /**
+     * Removes an entry from the heap.  The handle is no longer valid
+     * afterwards.
+     *
+     * @param handle The handle of the entry to remove.
+     * @throws IllegalArgumentException If the handle is not in this heap.
+     */
+    public void remove(Handle<T> handle) {
+        checkHandle(handle);
+
+        /* Move the last entry into the vacated slot and repair around it. */
+        int slot = handle.slot;
+        int last = --numElems;
+        if (slot != last) {
+            elems[slot] = elems[last];
+            elems[slot].slot = slot;
+        }
+        elems[last] = null; // Place nice with the GC
+        handle.heap = null;
+
+        if (slot != last)
+            fix(slot);
+    }
+
+    /**
+     * Removes every entry.  All outstanding handles become invalid.
+     */
+    public void clear() {
+        for (int i = 0; i < numElems; ++i) {
+            elems[i].heap = null;
+            elems[i] = null;
+        }
+        numElems = 0;
+    }
+
+    /**
+     * Throws an IllegalArgumentException unless the handle names an entry
+     * currently in this heap.
+     */
+    private void checkHandle(Handle<T> handle) {
+        if (handle.heap != this)
+            throw new IllegalArgumentException("Handle is not in this heap.");
+    }
+
+    /**
+     * Restores the heap order around a slot whose entry may be out of
+     * place in any direction.  The node's own endpoints are ordered first.
+     * Then the low endpoint is bubbled up the min-heap if it is below its
+     * parent's low endpoint, or down otherwise, and the largest endpoint
+     * likewise through the max-heap.  Only one entry of the node changed,
+     * so each check moves at most one entry along one path.
+     *
+     * @param slot The slot whose entry changed.
+     */
+    private void fix(int slot) {
+        int node = slot / 2;
+        int low = 2 * node;
+        if (low + 1 < numElems && compare(low, low + 1) > 0)
+            swap(low, low + 1);
+
+        if (node > 0 && compare(low, 2 * parentOf(node)) < 0)
+            minHeapInsert(low);
+        else
+            minHeapBubbleDown(low);
+
+        int high = maxSlotOf(node);
+        if (node > 0 && compare(high, 2 * parentOf(node) + 1) > 0)
+            maxHeapInsert(high);
+        else if (high % 2 == 1)
+            maxHeapBubbleDown(high);
+    }
+
+    /**
+     * Bubbles the entry in the given low slot up the min-heap.
+     */
+    private void minHeapInsert(int slot) {
+        while (slot >= 2) {
+            int parentSlot = 2 * parentOf(slot / 2);
+            if (compare(slot, parentSlot) >= 0) break;
+            swap(slot, parentSlot);
+            slot = parentSlot;
+        }
+    }
+
+    /**
+     * Bubbles the entry in the given high slot (or the low slot of the
+     * singleton at the end) up the max-heap.
+     */
+    private void maxHeapInsert(int slot) {
+        while (slot >= 2) {
+            int parentSlot = 2 * parentOf(slot / 2) + 1;
+            if (compare(slot, parentSlot) < 0) break;
+            swap(slot, parentSlot);
+            slot = parentSlot;
+        }
+    }
+
+    /**
+     * Restores the min-heap below a low slot, as in IntervalHeap.
+     */
+    private void minHeapBubbleDown(int slot) {
+        while (true) {
+            int child = 2 * (2 * (slot / 2) + 1);
+            if (child >= numElems)
+                break;
+            if (child + 2 < numElems && compare(child + 2, child) < 0)
+                child += 2;
+            if (compare(slot, child) < 0)
+                break;
+
+            swap(slot, child);
+            if (child + 1 < numElems && compare(child, child + 1) > 0)
+                swap(child, child + 1);
+            slot = child;
+        }
+    }
+
+    /**
+     * Restores the max-heap below a high slot, as in IntervalHeap.
+     */
+    private void maxHeapBubbleDown(int slot) {
+        while (true) {
+            int left = 2 * (slot / 2) + 1;
+            if (2 * left >= numElems)
+                break;
+            int child = maxSlotOf(left);
+            if (2 * (left + 1) < numElems) {
+                int other = maxSlotOf(left + 1);
+                if (compare(other, child) > 0)
+                    child = other;
+            }
+            if (compare(child, slot) < 0)
+                break;
+
+            swap(slot, child);
+            if (child % 2 == 0)
+                break;
+            if (compare(child - 1, child) > 0)
+                swap(child - 1, child);
+            slot = child;
+        }
+    }
+
+    /**
+     * Returns the parent of the given node, which must not be the root.
+     */
+    private static int parentOf(int node) {
+        return (node - 1) / 2;
+    }
+
+    /**
+     * Returns the slot holding the largest endpoint of the given node.
+     */
+    private int maxSlotOf(int node) {
+        return Math.min(2 * node + 1, numElems - 1);
+    }
+
+    /**
+     * Compares the keys in two slots.
+     */
+    private int compare(int one, int two) {
+        return comparator.compare(elems[one].key, elems[two].key);
+    }
+
+    /**
+     * Exchanges the entries in two slots, updating their positions.
+     */
+    private void swap(int one, int two) {
+        Handle<T> temp = elems[one];
+        elems[one] = elems[two];
+        elems[two] = temp;
+        elems[one].slot = one;
+        elems[two].slot = two;
+    }
+
+    /**
+     * Returns a capacity at least twice the current one and at least
+     * minCapacity.
+     */
+    private int newCapacity(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError("AddressableIntervalHeap cannot hold more than Integer.MAX_VALUE elements.");
+        return (int) Math.max(minCapacity, Math.min(Integer.MAX_VALUE - 8, 2L * elems.length));
+    }
+
+    /**
+     * Creates an array of handles.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <T> Handle<T>[] newArray(int length) {
+        return (Handle<T>[]) new Handle[length];
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * File: BoundedIntervalHeap.java
+ */
+package org.zlzh.ds;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/*********************************************************
+ * A fixed-capacity selection of elements from a stream, built on an
+ * IntervalHeap.  Elements are offered one at a time.  Until the
+ * capacity is reached they are all kept.  After that, every offer
+ * evicts one element, chosen by the mode:
+ *
+ *   LARGEST  keeps the K largest elements seen, evicting the minimum.
+ *   SMALLEST keeps the K smallest elements seen, evicting the maximum.
+ *   MIDDLE   keeps a band from the middle of the stream, evicting the
+ *            minimum and the maximum in turn, so that about as many
+ *            elements are trimmed from each side.
+ *
+ * LARGEST and SMALLEST are exact.  MIDDLE is exact for the trimmed
+ * mean of a stream whose extremes arrive evenly; in general it only
+ * approximates the middle band, since an element trimmed early can
+ * no longer be recalled if later elements shift the median.  Use it
+ * for trimmed means and rough percentiles, not exact order
+ * statistics.
+ *
+ * Because both ends of the heap are available in O(1), offer()
+ * decides whether a new element would be evicted at once by
+ * comparing it against min() or max(), and rejects it without
+ * touching the heap.  An accepted element replaces the evicted one
+ * with replaceMin() or replaceMax(), a single bubble-down, rather
+ * than an add() followed by a dequeue.
+ *
+ * @param T The type of elements being stored.
+ */
+public final class BoundedIntervalHeap<T extends Comparable<T>> {
+    /**
+     * Which elements a BoundedIntervalHeap keeps once it is full.
+     */
+    public enum Mode {
+        /** Keep the largest elements, evicting the minimum. */
+        LARGEST,
+
+        /** Keep the smallest elements, evicting the maximum. */
+        SMALLEST,
+
+        /** Keep a middle band, evicting the minimum and maximum in turn. */
+        MIDDLE
+    }
+
+    private final IntervalHeap<T> heap;
+    private final Comparator<? super T> comparator;
+    private final int capacity;
+    private final Mode mode;
+
+    /* The number of elements evicted or rejected from each end. */
+    private long trimmedLow = 0;
+    private long trimmedHigh = 0;
+
+    /**
+     * Constructs a new, empty BoundedIntervalHeap using the natural
+     * ordering of the elements.
+     *
+     * @param capacity The maximum number of elements to keep.
+     * @param mode Which elements to keep once full.
+     * @throws IllegalArgumentException If capacity is not positive.
+     */
+    public BoundedIntervalHeap(int capacity, Mode mode) {
+        this(capacity, mode, new Comparator<T>() {
+            @Override
+            public int compare(T one, T two) {
+                return one.compareTo(two);
+            }
+        });
+    }
+
+    /**
+     * Constructs a new, empty BoundedIntervalHeap using the specified
+     * comparator.
+     *
+     * @param capacity The maximum number of elements to keep.
+     * @param mode Which elements to keep once full.
+     * @param comparator The comparator to use in the heap ordering.
+     * @throws IllegalArgumentException If capacity is not positive.
+     * @throws NullPointerException If mode is null.
+     */
+    public BoundedIntervalHeap(int capacity, Mode mode, Comparator<? super T> comparator) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        if (mode == null)
+            throw new NullPointerException("Mode must not be null.");
+
+        this.heap = new IntervalHeap<T>(comparator);
+        this.comparator = comparator;
+        this.capacity = capacity;
+        this.mode = mode;
+    }
+
+    /**
+     * Offers an element.  If the heap is not yet full, the element is
+     * kept.  Otherwise the element that the mode evicts is dropped, which
+     * may be the new element itself; in that case the heap is not touched.
+     *
+     * @param elem The element to offer.
+     * @return Whether elem was kept.
+     * @throws NullPointerException If elem is null.
+     */
+    public boolean offer(T elem) {
+        if (elem == null)
+            throw new NullPointerException("BoundedIntervalHeap does not store null values.");
+
+        if (heap.size() < capacity) {
+            heap.add(elem);
+            return true;
+        }
+
+        /* Full: evict from the low end or the high end.  An element that
+         * is no better than the one it would displace is itself the one
+         * to go.
+         */
+        if (evictsLow()) {
+            ++trimmedLow;
+            if (comparator.compare(elem, heap.min()) <= 0)
+                return false;
+            heap.replaceMin(elem);
+        } else {
+            ++trimmedHigh;
+            if (comparator.compare(elem, heap.max()) >= 0)
+                return false;
+            heap.replaceMax(elem);
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the next eviction comes from the low end.
+     */
+    private boolean evictsLow() {
+        switch (mode) {
+        case LARGEST:
+            return true;
+        case SMALLEST:
+            return false;
+        default:
+            return trimmedLow <= trimmedHigh;
+        }
+    }
+
+    /**
+     * Returns (but does not remove) the smallest element kept.
+     *
+     * @return The smallest element kept.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T min() {
+        return heap.min();
+    }
+
+    /**
+     * Returns (but does not remove) the largest element kept.
+     *
+     * @return The largest element kept.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T max() {
+        return heap.max();
+    }
+
+    /**
+     * Removes and returns the smallest element kept.  This frees a place;
+     * it does not count as trimming.
+     *
+     * @return The smallest element kept.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T dequeueMin() {
+        return heap.dequeueMin();
+    }
+
+    /**
+     * Removes and returns the largest element kept.  This frees a place;
+     * it does not count as trimming.
+     *
+     * @return The largest element kept.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public T dequeueMax() {
+        return heap.dequeueMax();
+    }
+
+    /**
+     * Returns the number of elements kept.
+     *
+     * @return The number of elements kept.
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Returns whether no elements are kept.
+     *
+     * @return Whether no elements are kept.
+     */
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Returns the maximum number of elements kept.
+     *
+     * @return The capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns which elements this heap keeps once full.
+     *
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns how many elements have been dropped from the low end, either
+     * evicted or rejected on offer.
+     *
+     * @return The number of elements trimmed from below.
+     */
+    public long trimmedLow() {
+        return trimmedLow;
+    }
+
+    /**
+     * Returns how many elements have been dropped from the high end,
+     * either evicted or rejected on offer.
+     *
+     * @return The number of elements trimmed from above.
+     */
+    public long trimmedHigh() {
+        return trimmedHigh;
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * File: ConcurrentIntervalHeap.java
+ */
+package org.zlzh.ds;
+
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*********************************************************
+ * A thread-safe double-ended priority queue built as a relaxed
+ * multi-queue of IntervalHeaps.
+ *
+ * The elements are spread over several stripes, each an ordinary
+ * IntervalHeap guarded by its own lock.  An insertion goes to a
+ * random stripe.  A removal from either end looks at two random
+ * stripes, reading their current minimum (or maximum) from a
+ * volatile cache without locking, and dequeues from the better of
+ * the two.  With many more stripes than threads contending at any
+ * moment, threads rarely wait on the same lock, so throughput grows
+ * with the number of cores instead of being serialized on one heap.
+ *
+ * The price is that removals are relaxed: dequeueMin() returns an
+ * element that is among the smallest in the queue with high
+ * probability, but not necessarily the smallest, and likewise for
+ * dequeueMax().  The expected rank of the element returned is
+ * proportional to the number of stripes.  Single-threaded code
+ * that needs exact answers should use IntervalHeap.
+ *
+ * Each stripe counts its elements not yet claimed by a removal.  A
+ * removal first claims an element of the stripe it picked by
+ * decrementing that count, which guarantees that the element is
+ * waiting there, and then takes the stripe's lock to dequeue it.
+ * Since the element cannot go missing, the removal just waits for
+ * the lock instead of retrying elsewhere, and there is no shared
+ * counter for every thread to update.  A removal that finds every
+ * count at zero checks again that no stripe gained an element in
+ * the meantime before it reports the queue empty.  Threads blocked
+ * in takeMin(), takeMax() or a timed poll wait on a condition that
+ * insertions signal only while someone is waiting.
+ *
+ * @param T The type of elements being stored.
+ */
+public final class ConcurrentIntervalHeap<T extends Comparable<T>> {
+    /**
+     * One stripe: an IntervalHeap, its lock, and a cache of its two
+     * endpoints that other threads can read without locking.
+     *
+     * @param T The type of elements being stored.
+     */
+    private static final class Stripe<T extends Comparable<T>> {
+        /* One insertion, in the layout of state. */
+        public static final long ADDED = (1L << 32) + 1;
+
+        public final ReentrantLock lock = new ReentrantLock();
+        public final IntervalHeap<T> heap;
+
+        /* The number of elements not yet claimed by a removal in the low
+         * 32 bits, and the number of insertions, wrapping around, in the
+         * high 32 bits.  A removal that saw the count at zero can tell from
+         * the whole value whether an element has arrived since.
+         */
+        public final AtomicLong state = new AtomicLong();
+
+        /* The endpoints of the heap as of the last change, or null if the
+         * heap was empty.  Written only under the lock.
+         */
+        public volatile T min;
+        public volatile T max;
+
+        public Stripe(Comparator<? super T> comparator) {
+            heap = new IntervalHeap<T>(comparator);
+        }
+
+        /**
+         * Republishes the endpoints after a change.  Must be called with
+         * the lock held.
+         */
+        public void refresh() {
+            if (heap.isEmpty()) {
+                min = null;
+                max = null;
+            } else {
+                min = heap.min();
+                max = heap.max();
+            }
+        }
+
+        /**
+         * Returns the number of elements not yet claimed.
+         */
+        public int unclaimed() {
+            return (int) state.get();
+        }
+
+        /**
+         * Claims one element of the heap for the calling removal, if any is
+         * left unclaimed.
+         *
+         * @return Whether an element was claimed.
+         */
+        public boolean tryClaim() {
+            while (true) {
+                long current = state.get();
+                if ((int) current == 0)
+                    return false;
+                if (state.compareAndSet(current, current - 1))
+                    return true;
+            }
+        }
+    }
+
+    /* A Comparator for comparing elements in the heap. */
+    private final Comparator<? super T> comparator;
+
+    private final Stripe<T>[] stripes;
+
+    /* Where removals wait for an element when every stripe is empty, and
+     * how many are waiting.  The count is only changed under the lock.
+     */
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition nonEmpty = waitLock.newCondition();
+    private volatile int waiters = 0;
+
+    /**
+     * Constructs a new, empty ConcurrentIntervalHeap with four stripes per
+     * available processor, using the natural ordering of the elements.
+     */
+    public ConcurrentIntervalHeap() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new, empty ConcurrentIntervalHeap with the given number
+     * of stripes, using the natural ordering of the elements.
+     *
+     * @param numStripes The number of stripes.
+     * @throws IllegalArgumentException If numStripes is less than two.
+     */
+    public ConcurrentIntervalHeap(int numStripes) {
+        this(numStripes, new Comparator<T>() {
+            @Override
+            public int compare(T one, T two) {
+                return one.compareTo(two);
+            }
+        });
+    }
+
+    /**
+     * Constructs a new, empty ConcurrentIntervalHeap with the given number
+     * of stripes, using the specified comparator.  More stripes mean less
+     * contention and looser ordering.
+     *
+     * @param numStripes The number of stripes.
+     * @param comparator The comparator to use in the heap ordering.
+     * @throws IllegalArgumentException If numStripes is less than two.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ConcurrentIntervalHeap(int numStripes, Comparator<? super T> comparator) {
+        if (numStripes < 2)
+            throw new IllegalArgumentException("Need at least two stripes: " + numStripes);
+
+        this.comparator = comparator;
+        stripes = (Stripe<T>[]) new Stripe[numStripes];
+        for (int i = 0; i < numStripes; ++i)
+            stripes[i] = new Stripe<T>(comparator);
+    }
+
+    /**
+     * Inserts an element into a random stripe.  If that stripe is busy,
+     * another is tried, so an insertion only blocks when every stripe it
+     * tries is locked.
+     *
+     * @param elem The element to insert.
+     * @throws NullPointerException If elem is null.
+     */
+    public void add(T elem) {
+        if (elem == null)
+            throw new NullPointerException("ConcurrentIntervalHeap does not store null values.");
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Stripe<T> stripe = stripes[random.nextInt(stripes.length)];
+        for (int tries = 1; !stripe.lock.tryLock(); ++tries) {
+            if (tries == stripes.length) {
+                stripe.lock.lock();
+                break;
+            }
+            stripe = stripes[random.nextInt(stripes.length)];
+        }
+
+        try {
+            stripe.heap.add(elem);
+            stripe.refresh();
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        /* Only now may a removal claim the element. */
+        stripe.state.addAndGet(Stripe.ADDED);
+        if (waiters > 0) {
+            waitLock.lock();
+            try {
+                nonEmpty.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns a small element, or returns null if the queue is
+     * empty.  Never blocks waiting for an element.
+     *
+     * @return A small element, or null if there is none.
+     */
+    public T pollMin() {
+        return removeClaimed(claim(true), true);
+    }
+
+    /**
+     * Removes and returns a large element, or returns null if the queue is
+     * empty.  Never blocks waiting for an element.
+     *
+     * @return A large element, or null if there is none.
+     */
+    public T pollMax() {
+        return removeClaimed(claim(false), false);
+    }
+
+    /**
+     * Removes and returns a small element, waiting up to the given time for
+     * one to arrive.
+     *
+     * @param timeout How long to wait.
+     * @param unit The unit of timeout.
+     * @return A small element, or null if none arrived in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public T pollMin(long timeout, TimeUnit unit) throws InterruptedException {
+        return removeClaimed(awaitClaim(true, true, unit.toNanos(timeout)), true);
+    }
+
+    /**
+     * Removes and returns a large element, waiting up to the given time for
+     * one to arrive.
+     *
+     * @param timeout How long to wait.
+     * @param unit The unit of timeout.
+     * @return A large element, or null if none arrived in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public T pollMax(long timeout, TimeUnit unit) throws InterruptedException {
+        return removeClaimed(awaitClaim(false, true, unit.toNanos(timeout)), false);
+    }
+
+    /**
+     * Removes and returns a small element, waiting for one to arrive if
+     * the queue is empty.
+     *
+     * @return A small element.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public T takeMin() throws InterruptedException {
+        return removeClaimed(awaitClaim(true, false, 0L), true);
+    }
+
+    /**
+     * Removes and returns a large element, waiting for one to arrive if
+     * the queue is empty.
+     *
+     * @return A large element.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public T takeMax() throws InterruptedException {
+        return removeClaimed(awaitClaim(false, false, 0L), false);
+    }
+
+    /**
+     * Removes and returns a small element, as IntervalHeap.dequeueMin()
+     * does for the smallest one.
+     *
+     * @return A small element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    public T dequeueMin() {
+        T result = pollMin();
+        if (result == null)
+            throw new NoSuchElementException("Empty heap.");
+        return result;
+    }
+
+    /**
+     * Removes and returns a large element, as IntervalHeap.dequeueMax()
+     * does for the largest one.
+     *
+     * @return A large element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    public T dequeueMax() {
+        T result = pollMax();
+        if (result == null)
+            throw new NoSuchElementException("Empty heap.");
+        return result;
+    }
+
+    /**
+     * Returns (but does not remove) the smallest element, read from the
+     * stripes' caches.  The result is exact when no other thread is
+     * changing the queue.
+     *
+     * @return The smallest element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    public T min() {
+        return peek(true);
+    }
+
+    /**
+     * Returns (but does not remove) the largest element, read from the
+     * stripes' caches.  The result is exact when no other thread is
+     * changing the queue.
+     *
+     * @return The largest element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    public T max() {
+        return peek(false);
+    }
+
+    /**
+     * Returns the number of elements not yet claimed by a removal.  The
+     * stripes are counted one after another, so the result is exact only
+     * when no other thread is changing the queue.
+     *
+     * @return The number of elements in the queue.
+     */
+    public int size() {
+        long result = 0;
+        for (Stripe<T> stripe : stripes)
+            result += stripe.unclaimed();
+        return (int) Math.min(result, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns whether the queue is empty.
+     *
+     * @return Whether the queue is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Dequeues from the given end of a stripe in which the caller has
+     * claimed an element.  The claim guarantees the heap is not empty, so
+     * this only ever waits for the stripe's lock, which is held for one
+     * heap operation at a time.
+     *
+     * @param stripe The stripe claimed from, or null for none.
+     * @param fromMin Whether to remove from the min end.
+     * @return The element removed, or null if stripe is null.
+     */
+    private T removeClaimed(Stripe<T> stripe, boolean fromMin) {
+        if (stripe == null)
+            return null;
+        stripe.lock.lock();
+        try {
+            T result = fromMin ? stripe.heap.dequeueMin() : stripe.heap.dequeueMax();
+            stripe.refresh();
+            return result;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Claims an element to remove from the given end: from the better of
+     * two random stripes by their cached endpoints if it has one left
+     * unclaimed, else from the other, else from the first stripe after a
+     * random start that has one.  Returns null only if every stripe was
+     * seen empty, and seen again unchanged, so that the queue was empty at
+     * some moment during the call.
+     *
+     * @param fromMin Whether the removal is from the min end.
+     * @return The stripe claimed from, or null if the queue is empty.
+     */
+    private Stripe<T> claim(boolean fromMin) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Stripe<T> one = stripes[random.nextInt(stripes.length)];
+        Stripe<T> two = stripes[random.nextInt(stripes.length)];
+        T first = fromMin ? one.min : one.max;
+        T second = fromMin ? two.min : two.max;
+        if (first == null || second != null && (fromMin ? comparator.compare(second, first) < 0
+                                                        : comparator.compare(second, first) > 0)) {
+            Stripe<T> temp = one;
+            one = two;
+            two = temp;
+        }
+        if (one.tryClaim())
+            return one;
+        if (two.tryClaim())
+            return two;
+
+        int start = random.nextInt(stripes.length);
+        while (true) {
+            long seen = 0;
+            boolean changed = false;
+            for (int i = 0; i < stripes.length; ++i) {
+                Stripe<T> stripe = stripes[(start + i) % stripes.length];
+                if (stripe.tryClaim())
+                    return stripe;
+                long value = stripe.state.get();
+                if ((int) value != 0)
+                    changed = true;
+                seen += value;
+            }
+            if (changed)
+                continue;
+
+            /* Every count was zero when read.  A stripe's state can only
+             * change after that through an insertion, which raises it, so if
+             * the states add up as before, they were all zero at once just
+             * now.
+             */
+            long now = 0;
+            for (Stripe<T> stripe : stripes)
+                now += stripe.state.get();
+            if (now == seen)
+                return null;
+        }
+    }
+
+    /**
+     * Claims an element to remove from the given end, waiting for one to
+     * arrive if the queue is empty.
+     *
+     * @param fromMin Whether the removal is from the min end.
+     * @param timed Whether to give up after nanos.
+     * @param nanos How long to wait, if timed.
+     * @return The stripe claimed from, or null if the wait timed out.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private Stripe<T> awaitClaim(boolean fromMin, boolean timed, long nanos) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        Stripe<T> stripe = claim(fromMin);
+        if (stripe != null)
+            return stripe;
+
+        /* Announce the wait before looking again, so that an insertion
+         * either is seen here or sees the waiter and signals.
+         */
+        waitLock.lockInterruptibly();
+        try {
+            ++waiters;
+            try {
+                while ((stripe = claim(fromMin)) == null) {
+                    if (!timed)
+                        nonEmpty.await();
+                    else if (nanos <= 0L)
+                        return null;
+                    else
+                        nanos = nonEmpty.awaitNanos(nanos);
+                }
+                return stripe;
+            } finally {
+                --waiters;
+            }
+        } finally {
+            waitLock.unlock();
+        }
+    }
+
+    /**
+     * Scans the cached endpoints of every stripe for the best one.
+     */
+    private T peek(boolean fromMin) {
+        T best = null;
+        for (Stripe<T> stripe : stripes) {
+            T candidate = fromMin ? stripe.min : stripe.max;
+            if (candidate == null)
+                continue;
+            if (best == null) {
+                best = candidate;
+                continue;
+            }
+            int cmp = comparator.compare(candidate, best);
+            if (fromMin ? cmp < 0 : cmp > 0)
+                best = candidate;
+        }
+        if (best == null)
+            throw new NoSuchElementException("Empty heap.");
+        return best;
+    }
+}
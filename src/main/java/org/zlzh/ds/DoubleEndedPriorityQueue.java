@@ -0,0 +1,80 @@
+/*
+ * File: DoubleEndedPriorityQueue.java
+ */
+package org.zlzh.ds;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue that gives access to both its smallest and its largest
+ * element.  Implementations differ in how they lay out the elements and so
+ * in their constant factors; code written against this interface can
+ * switch between them freely.
+ *
+ *   IntervalHeap         pairs of endpoints, a min-heap and a max-heap
+ *                        superimposed in one array.
+ *   MinMaxHeap           one element per node, alternating min and max
+ *                        levels.
+ *   SymmetricMinMaxHeap  one element per node under an empty root, left
+ *                        subtrees holding lower bounds and right subtrees
+ *                        upper bounds.
+ *
+ * None of them store null elements.
+ *
+ * @param T The type of elements being stored.
+ */
+public interface DoubleEndedPriorityQueue<T> {
+    /**
+     * Inserts an element.
+     *
+     * @param elem The element to insert.
+     * @throws NullPointerException If elem is null.
+     */
+    void add(T elem);
+
+    /**
+     * Returns (but does not remove) the smallest element.
+     *
+     * @return The smallest element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    T min();
+
+    /**
+     * Returns (but does not remove) the largest element.
+     *
+     * @return The largest element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    T max();
+
+    /**
+     * Removes and returns the smallest element.
+     *
+     * @return The smallest element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    T dequeueMin();
+
+    /**
+     * Removes and returns the largest element.
+     *
+     * @return The largest element.
+     * @throws NoSuchElementException If the queue is empty.
+     */
+    T dequeueMax();
+
+    /**
+     * Returns the number of elements in the queue.
+     *
+     * @return The number of elements in the queue.
+     */
+    int size();
+
+    /**
+     * Returns whether the queue is empty.
+     *
+     * @return Whether the queue is empty.
+     */
+    boolean isEmpty();
+}
@@ -5,6 +5,11 @@
 package org.zlzh.ds;
 
 import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /************************************************************************
  *<pre>
@@ -107,81 +112,989 @@ import java.util.AbstractList;
  * holding null.  This means that our array will carry around a
  * dummy null element the whole time, but the total overhead only
  * ends up being O(1).
+ *
+ * This scheme buys its latency guarantee with memory and with a branch
+ * in every lookup, which is not always the right trade.  The growth
+ * policy can therefore be chosen at construction time: DEAMORTIZED is
+ * the scheme above and the default, AMORTIZED is plain ArrayList-style
+ * doubling, and CHUNKED never copies at all.  See GrowthPolicy for the
+ * details, and overhead() for the memory each one is holding on to.
  * </pre>
  */
 public final class ExtendibleArray<T> extends AbstractList<T> {
-    /* Initially, the old array is null and the new array is a singleton
-     * that holds null.
+    /**
+     * The ways an ExtendibleArray can grow.  All of them support the same
+     * operations with the same results; they differ in how the cost of
+     * growing is spread out and in how much memory is held on to.
      */
-    T[] mOld = null;
-    @SuppressWarnings("unchecked")
-	T[] mNew = (T[]) new Object[1];
+    public enum GrowthPolicy {
+        /**
+         * A single array that is copied into one twice its size whenever it
+         * fills up, as in ArrayList.  Lookups are a single array read, but
+         * the add that triggers a copy takes O(n) time.  Up to half of the
+         * array is unused, and during a copy both arrays are alive.
+         */
+        AMORTIZED,
 
-    /* The shadow and end pointers need to point to the next write location
-     * and the spot right before the last element that was pulled up.
-     * This is shown here:
-     *
-     *         [X]
-     *        ^   ^
-     *        |   |
-     *   shadow   end
+        /**
+         * The old/new array scheme described above.  Every operation at the
+         * end of the list is worst-case O(1), at the cost of a branch on
+         * every lookup and of keeping the old array alive: about two unused
+         * slots per element right after a reallocation, one per element
+         * once the migration has finished.
+         */
+        DEAMORTIZED,
+
+        /**
+         * A fixed directory of chunks, where chunk k holds 2^k elements.
+         * Chunks are allocated as the list grows and are never copied, so
+         * growth causes no copying and no memory spikes at all.  Lookups
+         * find the chunk with a leading-zero count.  Up to half of the
+         * slots (those of the last chunk) are unused.
+         */
+        CHUNKED
+    }
+
+    /**
+     * The storage behind an ExtendibleArray.  Each growth policy has its own
+     * implementation.  Indices are checked by ExtendibleArray before they
+     * get here.
      *
-     * This means that mShadow is -1 and mEnd is +1.  On the very first
-     * insert, this will get converted to
+     * @param T The type of elements being stored.
+     */
+    private static abstract class Buffer<T> {
+        public abstract void add(T elem);
+        public abstract void addAll(T[] elems, int offset, int length);
+        public abstract T get(int index);
+        public abstract int size();
+        public abstract T set(int index, T value);
+        public abstract T remove(int index);
+        public abstract void add(int index, T elem);
+
+        /**
+         * Returns the number of slots allocated beyond those holding
+         * elements.
+         */
+        public abstract long overhead();
+
+        /**
+         * Returns a spliterator over the elements that splits along the
+         * buffer's own array boundaries.
+         */
+        public abstract Spliterator<T> spliterator();
+    }
+
+    /**
+     * The deamortized buffer, as described at the top of this file.
      *
-     *       [ ]
-     *       [X] [*]
-     *     ^         ^
-     *     |         |
-     *   shadow     end
+     * @param T The type of elements being stored.
+     */
+    private static final class ShadowBuffer<T> extends Buffer<T> {
+        /* Initially, the old array is null and the new array is a singleton
+         * that holds null.
+         */
+        private T[] mOld = null;
+        @SuppressWarnings("unchecked")
+        private T[] mNew = (T[]) new Object[1];
+
+        /* The shadow and end pointers need to point to the next write location
+         * and the spot right before the last element that was pulled up.
+         * This is shown here:
+         *
+         *         [X]
+         *        ^   ^
+         *        |   |
+         *   shadow   end
+         *
+         * This means that mShadow is -1 and mEnd is +1.  On the very first
+         * insert, this will get converted to
+         *
+         *       [ ]
+         *       [X] [*]
+         *     ^         ^
+         *     |         |
+         *   shadow     end
+         *
+         * And from here things can proceed as usual.
+         */
+        private int mShadow = -1;
+        private int mEnd = +1;
+
+        /**
+         * Adds a new element to the ExtendibleArray, possibly allocating a new
+         * array if necessary.
+         *
+         * @param elem The element to add.
+         */
+        @SuppressWarnings("unchecked")
+        @Override
+        public void add(T elem) {
+            /* First, check whether we need to do a reallocation.  This is true
+             * if the end pointer is past the end of the new array.
+             */
+            if (mEnd == mNew.length) {
+                /* Drop the old buffer.  The new buffer becomes the old
+                 * buffer and a fresh buffer is made.
+                 */
+                mOld = mNew;
+                mNew = (T[]) new Object[mNew.length * 2];
+
+                /* The end position stays put, since it's telling us where the
+                 * next write location is.  The shadow pointer now is right
+                 * before the end pointer.
+                 */
+                mShadow = mEnd - 1;
+            }
+
+            /* Write the element in its proper place. */
+            mNew[mEnd] = elem;
+
+            /* Pull from the old array into the new, then null out the old spot
+             * to place nicely with the garbage collector.
+             */
+            mNew[mShadow] = mOld[mShadow];
+
+            /* Move the two pointers outward. */
+            ++mEnd; --mShadow;
+        }
+
+        /**
+         * Appends length elements of the array, starting at offset.
+         * <p>
+         * The shape of the structure depends only on its size: the new array
+         * is the smallest power of two that can hold mEnd slots, and mShadow
+         * sits as far below the midpoint as mEnd sits above it.  So rather than
+         * replaying add() once per element, we compute the final mEnd and
+         * mShadow up front, finish any pending migration with a single
+         * arraycopy, and copy the batch straight into its final slots.
+         *
+         * @param elems The array holding the elements to add.
+         * @param offset The index in elems of the first element to add.
+         * @param length The number of elements to add.
+         */
+        @SuppressWarnings("unchecked")
+        @Override
+        public void addAll(T[] elems, int offset, int length) {
+            if (length == 0)
+                return;
+
+            /* Work out where the pointers end up. */
+            int end = mEnd + length;
+            if (end < 0 || end > (1 << 30))
+                throw new OutOfMemoryError("ExtendibleArray cannot grow to " + (end - 1L) + " elements.");
+            int capacity = Integer.highestOneBit(end - 1) << 1;
+            int shadow = capacity - 1 - end;
+
+            if (capacity == mNew.length) {
+                /* No reallocation.  The old elements in (shadow, mShadow] would
+                 * have been pulled up by the adds we are skipping, so pull them
+                 * up in one go, then drop the batch in after them.
+                 */
+                if (mShadow > shadow) {
+                    System.arraycopy(mOld, shadow + 1, mNew, shadow + 1, mShadow - shadow);
+                    Arrays.fill(mOld, shadow + 1, mShadow + 1, null);
+                }
+                System.arraycopy(elems, offset, mNew, mEnd, length);
+            } else {
+                /* Reallocation.  First finish the pending migration so that
+                 * mNew holds every slot in [0, mEnd).  Then lay out the slots of
+                 * the grown structure: [0, shadow] in the old array and
+                 * (shadow, end) in the new one.  If we grew by exactly one
+                 * doubling, the current new array becomes the old array, as it
+                 * would have in add().
+                 */
+                if (mShadow >= 0)
+                    System.arraycopy(mOld, 0, mNew, 0, mShadow + 1);
+
+                T[] flat = mNew;
+                T[] newOld = capacity / 2 == flat.length ? flat : (T[]) new Object[capacity / 2];
+                T[] newNew = (T[]) new Object[capacity];
+                place(flat, mEnd, elems, offset, newOld, 0, shadow + 1);
+                place(flat, mEnd, elems, offset, newNew, shadow + 1, end);
+
+                /* Clear the slots that just moved up to play nice with the GC. */
+                if (newOld == flat && mEnd > shadow + 1)
+                    Arrays.fill(flat, shadow + 1, mEnd, null);
+
+                mOld = newOld;
+                mNew = newNew;
+            }
+
+            mShadow = shadow;
+            mEnd = end;
+        }
+
+        /**
+         * Utility function for the bulk append.  Copies slots [from, to) of the
+         * sequence formed by flat[0, flatEnd) followed by the batch in elems
+         * into the same slots of dst.
+         */
+        private static void place(Object[] flat, int flatEnd, Object[] elems, int offset,
+                                  Object[] dst, int from, int to) {
+            /* Slots below split come from flat, the rest from the batch. */
+            int split = Math.min(Math.max(from, flatEnd), to);
+            if (split > from)
+                System.arraycopy(flat, from, dst, from, split - from);
+            if (to > split)
+                System.arraycopy(elems, offset + (split - flatEnd), dst, split, to - split);
+        }
+
+        /**
+         * Returns the element in the ExtendibleArray at the specified position.
+         *
+         * @param index The index to query.
+         * @return The element at that index.
+         */
+        @Override
+        public T get(int index) {
+            /* Now, there are two places we might need to look.  If index is
+             * at or below the shadow point, we read from the old array.
+             * Otherwise, read from the new array.  However, we have to be
+             * careful, because the raw index is not the true index into the
+             * structure because of the dummy element, so we bump the user
+             * index by one first.
+             */
+            return (index + 1 <= mShadow) ? mOld[index + 1] : mNew[index + 1];
+        }
+
+        /**
+         * Returns the size of the ExtendibleArray.
+         *
+         * @return The size of the ExtendibleArray.
+         */
+        @Override
+        public int size() {
+            /* The size of the array is marked by the mEnd pointer.  However,
+             * because of the dummy element, we need to subtract one from that
+             * value.
+             */
+            return mEnd - 1;
+        }
+
+        /**
+         * Sets the value of the element at the particular index to be the
+         * client-specified value.
+         *
+         * @param index The index of the element to set.
+         * @param value The new value to write.
+         * @return The value of that element before the write.
+         */
+        @Override
+        public T set(int index, T value) {
+            /* Cache the old value. */
+            T originalValue = get(index);
+
+            /* Write to the appropriate array. */
+            if (index + 1 <= mShadow)
+                mOld[index + 1] = value;
+            else
+                mNew[index + 1] = value;
+
+            /* Return the old value. */
+            return originalValue;
+        }
+
+        /**
+         * Removes the element in the specified position from the list.
+         *
+         * @param index The index of the element to remove.
+         * @return The value of the removed element.
+         */
+        @SuppressWarnings("unchecked")
+        @Override
+        public T remove(int index) {
+            /* Grab the value of the element we're removing. */
+            T result = get(index);
+
+            /* Removing an element from the array is tricky because we have to
+             * maintain the invariant that there are an even number of elements
+             * in the new array and that they are in the central elements.
+             * There are two cases we need to consider.
+             * 
+             * 1. The element to remove is in the new array.  We need to remove
+             *    two elements from this array, one that actually got deleted
+             *    and one that needs to be moved back to the old array.  We'll
+             *    do a standard shuffle-down algorithm to cover up the element
+             *    that was deleted, then we'll move the oldest element down.
+             * 2. The element to remove is in the old array.  We need to move
+             *    two elements from the new array down into the old one.  To
+             *    do this, we'll do the standard array shuffle-down algorithm
+             *    on the old array, then will copy the first two elements of
+             *    the new array into the old.  Finally, we shuffle the remaining
+             *    elements of the new array down one spot.
+             *
+             * After doing this step, we'll need to determine whether or not
+             * to do a rebalance by tossing out the new list and swapping the
+             * old list forward.
+             */
+            if (index + 1 > mShadow) { // In the new array
+                /* Scoot the elements past this element down on top of the
+                 * element itself.  The number of elements to copy is given
+                 * by the number of elements between mEnd - 1 (the last element)
+                 * and index + 1 (the element to delete)
+                 */
+                System.arraycopy(mNew, index + 2, mNew, index + 1,
+                                 (mEnd - 1) - (index + 1));
+
+                /* Move the element before the shadow down. */
+                mOld[mShadow + 1] = mNew[mShadow + 1];
+
+                /* To be nice to the garbage collector, clear the endpoints. */
+                mNew[mEnd - 1] = null;
+                mNew[mShadow + 1] = null;
+
+                /* Pull the shadow and endpoint closer together. */
+                ++mShadow; --mEnd;
+            } else { // In old array
+                /* Shuffle down the elements in the old array to cover the
+                 * element that was removed.  The math is similar to above.
+                 */
+                System.arraycopy(mOld, index + 2, mOld, index + 1,
+                                 mShadow - (index + 1));
+
+                /* Move the last two elements of the new array into the old one.
+                 * Recall that mShadow points to the last unshadowed element in
+                 * the old array, and so we'll copy from one spot past there
+                 * in the new array.
+                 */
+                for (int i = 0; i < 2; ++i) {
+                    mOld[mShadow + i] = mNew[mShadow + 1 + i];
+                    mNew[mShadow + 1 + i] = null; // Place nice with the GC
+                }
+
+                /* The new shadow point is one step past where it once was,
+                 * since we just pulled two elements down, but lost an
+                 * old element.
+                 */
+                ++mShadow;
+
+                /* Shuffle the elements of the new array down one position.
+                 * The beginning position is one past the shadow, as it always
+                 * is.
+                 */
+                System.arraycopy(mNew, mShadow + 2, mNew, mShadow + 1,
+                                 mEnd - mShadow - 1);
+
+                /* Clear the element that just got moved. */
+                mNew[mEnd - 1] = null;
+
+                /* Back up the end position, since we just lost an element. */
+                --mEnd;
+            }
+
+            /* Finally, see if we just emptied the new array.  This happens if
+             * the end pointer is one step past the shadow pointer.
+             */
+            if (mEnd == mShadow + 1) {
+                /* Drop the new array and promote the old array to new. */
+                mNew = mOld;
+
+                /* Make a blank array for new elements. */
+                mOld = (T[]) new Object[mNew.length / 2];
+
+                /* Move the end and shadow pointers off the ends of the array. */
+                mShadow = -1;
+                mEnd = mNew.length;
+            }
+
+            return result;
+        }
+
+        /**
+         * Adds the specfied element to the ExtendibleArray at the specified
+         * position, increasing the size by one.
+         *
+         * @param index The index before which to insert.
+         * @param elem The value of the element to insert.
+         */
+        @Override
+        public void add(int index, T elem) {
+            /* Begin by throwing the element on the end, which will do all of the
+             * tricky balancing work.
+             */
+            add(elem);
+
+            /* Now, we need to put the element in its proper position.  This 
+             * requires us to check whether the element is in the new or old
+             * array.  If it's in the new array, we just scoot everything
+             * down and put it in its proper place.  Otherwise, we have to
+             * scoot the whole new array down a spot, then push the old array
+             * elements over, then drop the new element in.
+             */
+            if (index + 1 > mShadow) { // New array
+                /* The number of elements to copy is the number of old elements
+                 * at or after the insert point, which is given by
+                 * (mEnd - 1) - (index + 1), since the last old element is at
+                 * mEnd - 2.
+                 */
+                System.arraycopy(mNew, index + 1,
+                                 mNew, index + 2,
+                                 (mEnd - 1) - (index + 1));
+                mNew[index + 1] = elem;
+            } else { // Old array
+                /* Shuffle all the new elements down one spot. */
+                System.arraycopy(mNew, mShadow + 1,
+                                 mNew, mShadow + 2,
+                                 (mEnd - 1) - (mShadow + 1));
+
+                /* Shuffle all the old elements down one spot. */
+                System.arraycopy(mOld, index + 1,
+                                 mOld, index + 2,
+                                 (mShadow - (index + 1)) + 1);
+
+                /* Drop the element in its place. */
+                mOld[index + 1] = elem;
+
+                /* Promote last element of the list.  It will be at position
+                 * shadow + 1, since we just pushed past the end of the shadow.
+                 */
+                mNew[mShadow + 1] = mOld[mShadow + 1];
+                mOld[mShadow + 1] = null;
+            }
+        }
+
+        @Override
+        public long overhead() {
+            /* Both arrays count, minus the slots holding elements.  The
+             * dummy slot is overhead too.
+             */
+            return mNew.length + (mOld == null ? 0 : mOld.length) - size();
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return new ShadowSpliterator<T>(mOld, mNew, mShadow, 0, size());
+        }
+
+        /**
+         * A spliterator over the indices [mIndex, mFence).  Indices below
+         * mShadow are read from the old array and the rest from the new
+         * one, both shifted by one for the dummy slot.
+         */
+        private static final class ShadowSpliterator<T> implements Spliterator<T> {
+            private final T[] mOld;
+            private final T[] mNew;
+            private final int mShadow;
+            private int mIndex;
+            private final int mFence;
+
+            public ShadowSpliterator(T[] oldElems, T[] newElems, int shadow, int index, int fence) {
+                mOld = oldElems;
+                mNew = newElems;
+                mShadow = shadow;
+                mIndex = index;
+                mFence = fence;
+            }
+
+            /**
+             * Splits at the boundary between the old and new arrays if it
+             * falls inside the range, so that each half reads one array;
+             * otherwise splits at the middle.
+             */
+            @Override
+            public Spliterator<T> trySplit() {
+                int lo = mIndex;
+                int hi = mFence;
+                if (hi - lo < 2)
+                    return null;
+
+                int mid = (lo < mShadow && mShadow < hi) ? mShadow : (lo + hi) >>> 1;
+                mIndex = mid;
+                return new ShadowSpliterator<T>(mOld, mNew, mShadow, lo, mid);
+            }
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (action == null)
+                    throw new NullPointerException();
+                if (mIndex >= mFence)
+                    return false;
+
+                T elem = (mIndex < mShadow) ? mOld[mIndex + 1] : mNew[mIndex + 1];
+                ++mIndex;
+                action.accept(elem);
+                return true;
+            }
+
+            @Override
+            public void forEachRemaining(Consumer<? super T> action) {
+                if (action == null)
+                    throw new NullPointerException();
+
+                int index = mIndex;
+                int split = Math.min(Math.max(mShadow, index), mFence);
+                mIndex = mFence;
+                for (; index < split; ++index)
+                    action.accept(mOld[index + 1]);
+                for (; index < mFence; ++index)
+                    action.accept(mNew[index + 1]);
+            }
+
+            @Override
+            public long estimateSize() {
+                return mFence - mIndex;
+            }
+
+            @Override
+            public int characteristics() {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+            }
+        }
+    }
+
+    /**
+     * The amortized buffer: a single array that doubles when full.
      *
-     * And from here things can proceed as usual.
+     * @param T The type of elements being stored.
      */
-    int mShadow = -1;
-    int mEnd = +1;
+    private static final class DoublingBuffer<T> extends Buffer<T> {
+        /* The elements, in order, followed by unused slots. */
+        @SuppressWarnings("unchecked")
+        private T[] mElems = (T[]) new Object[8];
+        private int mSize = 0;
+
+        @Override
+        public void add(T elem) {
+            if (mSize == mElems.length)
+                grow(mSize + 1);
+            mElems[mSize++] = elem;
+        }
+
+        @Override
+        public void addAll(T[] elems, int offset, int length) {
+            if (mSize + length > mElems.length)
+                grow(mSize + length);
+            System.arraycopy(elems, offset, mElems, mSize, length);
+            mSize += length;
+        }
+
+        @Override
+        public T get(int index) {
+            return mElems[index];
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public T set(int index, T value) {
+            T result = mElems[index];
+            mElems[index] = value;
+            return result;
+        }
+
+        @Override
+        public T remove(int index) {
+            T result = mElems[index];
+            System.arraycopy(mElems, index + 1, mElems, index, mSize - index - 1);
+            mElems[--mSize] = null; // Place nice with the GC
+            return result;
+        }
+
+        @Override
+        public void add(int index, T elem) {
+            if (mSize == mElems.length)
+                grow(mSize + 1);
+            System.arraycopy(mElems, index, mElems, index + 1, mSize - index);
+            mElems[index] = elem;
+            ++mSize;
+        }
+
+        @Override
+        public long overhead() {
+            return mElems.length - mSize;
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return Spliterators.spliterator(mElems, 0, mSize, Spliterator.ORDERED);
+        }
+
+        /**
+         * Copies the elements into an array at least twice as large and
+         * able to hold minCapacity elements.
+         */
+        private void grow(int minCapacity) {
+            if (minCapacity < 0)
+                throw new OutOfMemoryError("ExtendibleArray cannot grow past Integer.MAX_VALUE elements.");
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) minCapacity, 2L * mElems.length));
+            if (capacity < minCapacity)
+                capacity = minCapacity;
+            mElems = Arrays.copyOf(mElems, capacity);
+        }
+    }
 
     /**
-     * Adds a new element to the ExtendibleArray, possibly allocating a new
-     * array if necessary.
+     * The chunked buffer.  Chunk k holds the 2^k elements at indices
+     * [2^k - 1, 2^(k+1) - 1), so the chunk of an index is the position of
+     * the highest set bit of index + 1.  31 chunks cover every int index.
+     * <p>
+     * At most one chunk past the one receiving the next add is kept
+     * allocated when the list shrinks, so that alternating adds and
+     * removes at a chunk boundary do not keep reallocating it.
      *
-     * @param elem The element to add.
-     * @return true
+     * @param T The type of elements being stored.
      */
-    @SuppressWarnings("unchecked")
-	@Override 
-    public boolean add(T elem) {
-        /* First, check whether we need to do a reallocation.  This is true
-         * if the end pointer is past the end of the new array.
+    private static final class ChunkedBuffer<T> extends Buffer<T> {
+        private final Object[][] mChunks = new Object[31][];
+        private int mSize = 0;
+
+        /* The number of slots in allocated chunks. */
+        private long mAllocated = 0;
+
+        /**
+         * Returns the chunk holding the given index.
          */
-        if (mEnd == mNew.length) {
-            /* Drop the old buffer.  The new buffer becomes the old
-             * buffer and a fresh buffer is made.
+        private static int chunkOf(int index) {
+            return 31 - Integer.numberOfLeadingZeros(index + 1);
+        }
+
+        /**
+         * Returns the index of the first element of the given chunk.
+         */
+        private static int startOf(int chunk) {
+            return (1 << chunk) - 1;
+        }
+
+        /**
+         * Returns the given chunk, allocating it if need be.
+         */
+        private Object[] chunk(int chunk) {
+            Object[] result = mChunks[chunk];
+            if (result == null) {
+                result = mChunks[chunk] = new Object[1 << chunk];
+                mAllocated += result.length;
+            }
+            return result;
+        }
+
+        @Override
+        public void add(T elem) {
+            int chunk = chunkOf(mSize);
+            chunk(chunk)[mSize - startOf(chunk)] = elem;
+            ++mSize;
+        }
+
+        @Override
+        public void addAll(T[] elems, int offset, int length) {
+            /* Fill chunk by chunk. */
+            while (length > 0) {
+                int chunk = chunkOf(mSize);
+                int slot = mSize - startOf(chunk);
+                int count = Math.min(length, (1 << chunk) - slot);
+                System.arraycopy(elems, offset, chunk(chunk), slot, count);
+                mSize += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T get(int index) {
+            int chunk = chunkOf(index);
+            return (T) mChunks[chunk][index - startOf(chunk)];
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public T set(int index, T value) {
+            int chunk = chunkOf(index);
+            T result = get(index);
+            mChunks[chunk][index - startOf(chunk)] = value;
+            return result;
+        }
+
+        @Override
+        public T remove(int index) {
+            T result = get(index);
+
+            /* Shuffle everything after index down one slot, chunk by chunk,
+             * pulling the first element of each following chunk down into
+             * the last slot of the one before it.
              */
-            mOld = mNew;
-            mNew = (T[]) new Object[mNew.length * 2];
+            int chunk = chunkOf(index);
+            int slot = index - startOf(chunk);
+            while (true) {
+                Object[] elems = mChunks[chunk];
+                int used = Math.min(mSize - startOf(chunk), elems.length);
+                System.arraycopy(elems, slot + 1, elems, slot, used - slot - 1);
+                if (startOf(chunk) + used == mSize) {
+                    elems[used - 1] = null; // Place nice with the GC
+                    break;
+                }
+                elems[elems.length - 1] = mChunks[chunk + 1][0];
+                ++chunk;
+                slot = 0;
+            }
+            --mSize;
+
+            /* Drop the spare chunk two past the next write position. */
+            int spare = chunkOf(mSize) + 2;
+            if (spare < mChunks.length && mChunks[spare] != null) {
+                mAllocated -= mChunks[spare].length;
+                mChunks[spare] = null;
+            }
+            return result;
+        }
 
-            /* The end position stays put, since it's telling us where the
-             * next write location is.  The shadow pointer now is right
-             * before the end pointer.
+        @Override
+        public void add(int index, T elem) {
+            /* Make room for one more element, then shuffle [index, size)
+             * up one slot, starting from the last chunk so that each chunk
+             * can hand its last element to the one after it.
              */
-            mShadow = mEnd - 1;
+            chunk(chunkOf(mSize));
+            ++mSize;
+
+            int chunk = chunkOf(mSize - 1);
+            while (true) {
+                Object[] elems = mChunks[chunk];
+                int start = startOf(chunk);
+                int from = Math.max(index, start);
+                int to = Math.min(mSize - 1, start + elems.length);
+                if (to == start + elems.length) {
+                    mChunks[chunk + 1][0] = elems[elems.length - 1];
+                    --to;
+                }
+                if (to > from)
+                    System.arraycopy(elems, from - start, elems, from - start + 1, to - from);
+                if (from == index)
+                    break;
+                --chunk;
+            }
+            set(index, elem);
         }
 
-        /* Write the element in its proper place. */
-        mNew[mEnd] = elem;
+        @Override
+        public long overhead() {
+            return mAllocated - mSize + mChunks.length;
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return new ChunkedSpliterator<T>(mChunks, 0, mSize);
+        }
 
-        /* Pull from the old array into the new, then null out the old spot
-         * to place nicely with the garbage collector.
+        /**
+         * A spliterator over the indices [mIndex, mFence) of the chunks.
          */
-        mNew[mShadow] = mOld[mShadow];
+        private static final class ChunkedSpliterator<T> implements Spliterator<T> {
+            private final Object[][] mChunks;
+            private int mIndex;
+            private final int mFence;
+
+            public ChunkedSpliterator(Object[][] chunks, int index, int fence) {
+                mChunks = chunks;
+                mIndex = index;
+                mFence = fence;
+            }
+
+            /**
+             * Splits at the start of the last chunk the range touches, if
+             * the range spans more than one chunk.  Each chunk is as large
+             * as all the ones before it, so this roughly halves a range
+             * that starts at the front.  Within one chunk, splits at the
+             * middle.
+             */
+            @Override
+            public Spliterator<T> trySplit() {
+                int lo = mIndex;
+                int hi = mFence;
+                if (hi - lo < 2)
+                    return null;
+
+                int mid = startOf(chunkOf(hi - 1));
+                if (mid <= lo)
+                    mid = (lo + hi) >>> 1;
+
+                mIndex = mid;
+                return new ChunkedSpliterator<T>(mChunks, lo, mid);
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (action == null)
+                    throw new NullPointerException();
+                if (mIndex >= mFence)
+                    return false;
+
+                int chunk = chunkOf(mIndex);
+                T elem = (T) mChunks[chunk][mIndex - startOf(chunk)];
+                ++mIndex;
+                action.accept(elem);
+                return true;
+            }
 
-        /* Move the two pointers outward. */
-        ++mEnd; --mShadow;
+            @SuppressWarnings("unchecked")
+            @Override
+            public void forEachRemaining(Consumer<? super T> action) {
+                if (action == null)
+                    throw new NullPointerException();
+
+                int index = mIndex;
+                mIndex = mFence;
+                while (index < mFence) {
+                    int chunk = chunkOf(index);
+                    Object[] elems = mChunks[chunk];
+                    int from = index - startOf(chunk);
+                    int to = Math.min(elems.length, mFence - startOf(chunk));
+                    for (int i = from; i < to; ++i)
+                        action.accept((T) elems[i]);
+                    index += to - from;
+                }
+            }
+
+            @Override
+            public long estimateSize() {
+                return mFence - mIndex;
+            }
+
+            @Override
+            public int characteristics() {
+                return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+            }
+        }
+    }
+
+    /* The storage, which implements the growth policy. */
+    private final Buffer<T> mBuffer;
+    private final GrowthPolicy mPolicy;
+
+    /* The same storage when it is the default ShadowBuffer, and null
+     * otherwise.  get(), set() and size() call it directly.  ShadowBuffer is
+     * final, so those calls are bound statically and inlined, while a call
+     * through mBuffer becomes a virtual dispatch once the program has used
+     * more than one growth policy.
+     */
+    private final ShadowBuffer<T> mShadowBuffer;
+
+    /**
+     * Constructs a new, empty ExtendibleArray that grows by the deamortized
+     * scheme described above.
+     */
+    public ExtendibleArray() {
+        this(GrowthPolicy.DEAMORTIZED);
+    }
+
+    /**
+     * Constructs a new, empty ExtendibleArray that grows according to the
+     * specified policy.
+     *
+     * @param policy The growth policy to use.
+     * @throws NullPointerException If policy is null.
+     */
+    public ExtendibleArray(GrowthPolicy policy) {
+        ShadowBuffer<T> shadowBuffer = null;
+        switch (policy) {
+        case AMORTIZED:
+            mBuffer = new DoublingBuffer<T>();
+            break;
+        case CHUNKED:
+            mBuffer = new ChunkedBuffer<T>();
+            break;
+        default:
+            shadowBuffer = new ShadowBuffer<T>();
+            mBuffer = shadowBuffer;
+        }
+        mShadowBuffer = shadowBuffer;
+        mPolicy = policy;
+    }
+
+    /**
+     * Returns the growth policy of this ExtendibleArray.
+     *
+     * @return The growth policy of this ExtendibleArray.
+     */
+    public GrowthPolicy getGrowthPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * Returns the memory overhead of this ExtendibleArray, as the number of
+     * element slots it has allocated beyond those holding its elements.
+     * This includes unused capacity, the old array kept by the deamortized
+     * policy and the chunk directory of the chunked policy.  Multiply by
+     * the reference size of the JVM to get bytes.
+     *
+     * @return The number of allocated slots not holding an element.
+     */
+    public long overhead() {
+        return mBuffer.overhead();
+    }
+
+    /**
+     * Adds a new element to the ExtendibleArray, possibly allocating a new
+     * array if necessary.
+     *
+     * @param elem The element to add.
+     * @return true
+     */
+    @Override
+    public boolean add(T elem) {
+        mBuffer.add(elem);
 
         /* By contract, must return true. */
         return true;
     }
 
+    /**
+     * Appends every element of the collection, in the order returned by its
+     * iterator.  This takes time linear in the number of elements added
+     * (plus at most one reallocation), rather than going through add() once
+     * per element.
+     *
+     * @param elems The elements to add.
+     * @return Whether the ExtendibleArray changed.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean addAll(Collection<? extends T> elems) {
+        Object[] toAdd = elems.toArray();
+        mBuffer.addAll((T[]) toAdd, 0, toAdd.length);
+        return toAdd.length != 0;
+    }
+
+    /**
+     * Inserts every element of the collection at the specified position.
+     * Appending at the end takes the bulk path of addAll(Collection);
+     * other positions shift elements as add(int, T) does.
+     *
+     * @param index The index before which to insert.
+     * @param elems The elements to insert.
+     * @return Whether the ExtendibleArray changed.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public boolean addAll(int index, Collection<? extends T> elems) {
+        if (index == size())
+            return addAll(elems);
+        return super.addAll(index, elems);
+    }
+
+    /**
+     * Appends length elements of the array, starting at offset, without
+     * going through add() once per element.
+     *
+     * @param elems The array holding the elements to add.
+     * @param offset The index in elems of the first element to add.
+     * @param length The number of elements to add.
+     * @throws IndexOutOfBoundsException If offset or length is invalid.
+     */
+    public void addAll(T[] elems, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > elems.length - length)
+            throw new IndexOutOfBoundsException("Offset " + offset + ", length " + length
+                                                + ", array length " + elems.length);
+        mBuffer.addAll(elems, offset, length);
+    }
+
     /**
      * Returns the element in the ExtendibleArray at the specified position,
      * throwing an IndexOutOfBoundsException if there is no element at that
@@ -193,18 +1106,27 @@ public final class ExtendibleArray<T> extends AbstractList<T> {
      */
     @Override
     public T get(int index) {
+        /* Take the direct path for the default storage; see mShadowBuffer. */
+        ShadowBuffer<T> shadowBuffer = mShadowBuffer;
+        if (shadowBuffer != null) {
+            if (index < 0 || index >= shadowBuffer.size())
+                throw outOfBounds(index);
+            return shadowBuffer.get(index);
+        }
+
         /* Check that the index is valid. */
-        if (index < 0 || index >= size())
-            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
-
-        /* Now, there are two places we might need to look.  If index is
-         * at or below the shadow point, we read from the old array.
-         * Otherwise, read from the new array.  However, we have to be
-         * careful, because the raw index is not the true index into the
-         * structure because of the dummy element, so we bump the user
-         * index by one first.
-         */
-        return (index + 1 <= mShadow) ? mOld[index + 1] : mNew[index + 1];
+        if (index < 0 || index >= mBuffer.size())
+            throw outOfBounds(index);
+
+        return mBuffer.get(index);
+    }
+
+    /**
+     * Builds the exception thrown for an invalid index, out of line so that
+     * the accessors stay small enough to inline.
+     */
+    private IndexOutOfBoundsException outOfBounds(int index) {
+        return new IndexOutOfBoundsException("Index " + index + ", size " + size());
     }
 
     /**
@@ -214,11 +1136,7 @@ public final class ExtendibleArray<T> extends AbstractList<T> {
      */
     @Override
     public int size() {
-        /* The size of the array is marked by the mEnd pointer.  However,
-         * because of the dummy element, we need to subtract one from that
-         * value.
-         */
-        return mEnd - 1;
+        return mShadowBuffer != null ? mShadowBuffer.size() : mBuffer.size();
     }
 
     /**
@@ -231,21 +1149,20 @@ public final class ExtendibleArray<T> extends AbstractList<T> {
      * @return The value of that element before the write.
      * @throws IndexOutOfBoundsException If the index is invalid.
      */
-    @Override public
-    T set(int index, T value) {
-        /* Cache the old value.  This call to get also checks that the index
-         * is in bounds.
-         */
-        T originalValue = get(index);
+    @Override
+    public T set(int index, T value) {
+        /* Take the direct path for the default storage; see mShadowBuffer. */
+        ShadowBuffer<T> shadowBuffer = mShadowBuffer;
+        if (shadowBuffer != null) {
+            if (index < 0 || index >= shadowBuffer.size())
+                throw outOfBounds(index);
+            return shadowBuffer.set(index, value);
+        }
 
-        /* Write to the appropriate array. */
-        if (index + 1 <= mShadow)
-            mOld[index + 1] = value;
-        else
-            mNew[index + 1] = value;
+        if (index < 0 || index >= mBuffer.size())
+            throw outOfBounds(index);
 
-        /* Return the old value. */
-        return originalValue;
+        return mBuffer.set(index, value);
     }
 
     /**
@@ -256,106 +1173,12 @@ public final class ExtendibleArray<T> extends AbstractList<T> {
      * @return The value of the removed element.
      * @throws IndexOutOfBoundsException If the index is invalid.
      */
-    @SuppressWarnings("unchecked")
-	@Override public
-    T remove(int index) {
-        /* Grab the value of the element we're removing; this also verifies
-         * the index.
-         */
-        T result = get(index);
-
-        /* Removing an element from the array is tricky because we have to
-         * maintain the invariant that there are an even number of elements
-         * in the new array and that they are in the central elements.
-         * There are two cases we need to consider.
-         * 
-         * 1. The element to remove is in the new array.  We need to remove
-         *    two elements from this array, one that actually got deleted
-         *    and one that needs to be moved back to the old array.  We'll
-         *    do a standard shuffle-down algorithm to cover up the element
-         *    that was deleted, then we'll move the oldest element down.
-         * 2. The element to remove is in the old array.  We need to move
-         *    two elements from the new array down into the old one.  To
-         *    do this, we'll do the standard array shuffle-down algorithm
-         *    on the old array, then will copy the first two elements of
-         *    the new array into the old.  Finally, we shuffle the remaining
-         *    elements of the new array down one spot.
-         *
-         * After doing this step, we'll need to determine whether or not
-         * to do a rebalance by tossing out the new list and swapping the
-         * old list forward.
-         */
-        if (index + 1 > mShadow) { // In the new array
-            /* Scoot the elements past this element down on top of the
-             * element itself.  The number of elements to copy is given
-             * by the number of elements between mEnd - 1 (the last element)
-             * and index + 1 (the element to delete)
-             */
-            System.arraycopy(mNew, index + 2, mNew, index + 1,
-                             (mEnd - 1) - (index + 1));
-
-            /* Move the element before the shadow down. */
-            mOld[mShadow + 1] = mNew[mShadow + 1];
-
-            /* To be nice to the garbage collector, clear the endpoints. */
-            mNew[mEnd - 1] = null;
-            mNew[mShadow + 1] = null;
-
-            /* Pull the shadow and endpoint closer together. */
-            ++mShadow; --mEnd;
-        } else { // In old array
-            /* Shuffle down the elements in the old array to cover the
-             * element that was removed.  The math is similar to above.
-             */
-            System.arraycopy(mOld, index + 2, mOld, index + 1,
-                             mShadow - (index + 1));
-
-            /* Move the last two elements of the new array into the old one.
-             * Recall that mShadow points to the last unshadowed element in
-             * the old array, and so we'll copy from one spot past there
-             * in the new array.
-             */
-            for (int i = 0; i < 2; ++i) {
-                mOld[mShadow + i] = mNew[mShadow + 1 + i];
-                mNew[mShadow + 1 + i] = null; // Place nice with the GC
-            }
-
-            /* The new shadow point is one step past where it once was,
-             * since we just pulled two elements down, but lost an
-             * old element.
-             */
-            ++mShadow;
-
-            /* Shuffle the elements of the new array down one position.
-             * The beginning position is one past the shadow, as it always
-             * is.
-             */
-            System.arraycopy(mNew, mShadow + 2, mNew, mShadow + 1,
-                             mEnd - mShadow - 1);
-
-            /* Clear the element that just got moved. */
-            mNew[mEnd - 1] = null;
-
-            /* Back up the end position, since we just lost an element. */
-            --mEnd;
-        }
-
-        /* Finally, see if we just emptied the new array.  This happens if
-         * the end pointer is one step past the shadow pointer.
-         */
-        if (mEnd == mShadow + 1) {
-            /* Drop the new array and promote the old array to new. */
-            mNew = mOld;
-
-            /* Make a blank array for new elements. */
-            mOld = (T[]) new Object[mNew.length / 2];
-
-            /* Move the end and shadow pointers off the ends of the array. */
-            mShadow = -1;
-            mEnd = mNew.length;
-        }
+    @Override
+    public T remove(int index) {
+        if (index < 0 || index >= size())
+            throw outOfBounds(index);
 
-        return result;
+        return mBuffer.remove(index);
     }
 
     /**
@@ -370,48 +1193,36 @@ public final class ExtendibleArray<T> extends AbstractList<T> {
     public void add(int index, T elem) {
         /* Bounds-check. */
         if (index < 0 || index > size())
-            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            throw outOfBounds(index);
 
-        /* Begin by throwing the element on the end, which will do all of the
-         * tricky balancing work.
-         */
-        add(elem);
-
-        /* Now, we need to put the element in its proper position.  This 
-         * requires us to check whether the element is in the new or old
-         * array.  If it's in the new array, we just scoot everything
-         * down and put it in its proper place.  Otherwise, we have to
-         * scoot the whole new array down a spot, then push the old array
-         * elements over, then drop the new element in.
-         */
-        if (index + 1 > mShadow) { // New array
-            /* The number of elements to copy is the number of old elements
-             * after the insert point, which is given by 
-             * (mEnd - 2) - (index + 1)
-             */
-            System.arraycopy(mNew, index + 1,
-                             mNew, index + 2,
-                             (mEnd - 2) - (index + 1));
-            mNew[index + 1] = elem;
-        } else { // Old array
-            /* Shuffle all the new elements down one spot. */
-            System.arraycopy(mNew, mShadow + 1,
-                             mNew, mShadow + 2,
-                             (mEnd - 2) - (mShadow + 1));
-
-            /* Shuffle all the old elements down one spot. */
-            System.arraycopy(mOld, index + 1,
-                             mOld, index + 2,
-                             (mShadow - (index + 1)) + 1);
-
-            /* Drop the element in its place. */
-            mOld[index + 1] = elem;
-
-            /* Promote last element of the list.  It will be at position
-             * shadow + 1, since we just pushed past the end of the shadow.
-             */
-            mNew[mShadow + 1] = mOld[mShadow + 1];
-            mOld[mShadow + 1] = null;
-        }
+        mBuffer.add(index, elem);
+    }
+
+    /**
+     * Performs the action on every element in order, reading the backing
+     * arrays directly rather than calling get() for each index.
+     *
+     * @param action The action to perform.
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        mBuffer.spliterator().forEachRemaining(action);
+    }
+
+    /**
+     * Returns a spliterator over the elements.  It is sized, its splits
+     * have exact sizes, and it splits where the storage does: at the
+     * boundary between the old and new arrays for the deamortized policy
+     * and at chunk boundaries for the chunked one, so that parallel
+     * streams hand each thread contiguous arrays.
+     * <p>
+     * The spliterator does not detect modification of the list while it
+     * is in use.
+     *
+     * @return A spliterator over the elements.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return mBuffer.spliterator();
     }
 }
@@ -5,10 +5,18 @@
 package org.zlzh.ds;
 
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.List;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /*********************************************************
  * A class representing an interval heap of a particular set of values.
@@ -23,11 +31,26 @@ import java.util.NoSuchElementException;
  * inserting into either the min-heap or max-heap
  * appropriate for the inserted element.
  *
+ *
+ *  The nodes are stored flattened into a single array, with the
+ *  low endpoint of node i in slot 2i and the high endpoint in
+ *  slot 2i + 1.  The children of node i are nodes 2i + 1 and
+ *  2i + 2.  Since only the last node can be a singleton, the
+ *  elements occupy exactly the first size() slots, and no node
+ *  objects are ever allocated.
+ *
+ *  The heap can be inspected without being changed.  iterator(),
+ *  spliterator() and toArray() read the flat array directly in
+ *  O(n), in no particular order.  sortedIterator() and
+ *  descendingIterator() produce the elements in order lazily, at
+ *  O(log k) per element for the k-th one.  All iterators are
+ *  fail-fast.
+ *
  *  A good reference on interval heaps can be found at
  *  @see  http://www.cise.ufl.edu/~sahni/dsaaj/enrich/c13/double.htm
  *  @param T The type of elements being stored.
  */
-public final class IntervalHeap<T extends Comparable<T>> {
+public final class IntervalHeap<T extends Comparable<T>> implements DoubleEndedPriorityQueue<T>, Iterable<T> {
     /* A Comparator for comparing elements in the heap. */
     private final Comparator<? super T> comparator;
 
@@ -40,42 +63,37 @@ public final class IntervalHeap<T extends Comparable<T>> {
 		public int compare(T one, T two) {
             return one.compareTo(two);
         }
-    }
 
-    /**
-     * Each node in the interval heap stores two points defining the
-     * range.  In some cases, one of these points may not exist.  If
-     * this happens, we will represent it by storing the element in
-     * the 'low' slot and having 'high' be null.
-     *
-     * @param T The type of elements being stored.
-     */
-    private static final class Node<T> {
-        public T low;  // Low endpoint
-        public T high; // High endpoint
-
-        /**
-         * Creates a new Node with the specified initial values.
-         *
-         * @param low The low value for the node.
-         * @param high The high value for the node.
+        /* All instances impose the same ordering, which lets meld() tell
+         * that two heaps built with the default constructor agree.
          */
-        public Node(T low, T high) {
-            this.low = low;
-            this.high = high;
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DefaultComparator;
+        }
+
+        @Override
+        public int hashCode() {
+            return DefaultComparator.class.hashCode();
         }
-    };
+    }
 
     /* We represent the interval heap using a compressed heap
      * implementation that lays out the tree in sequential
-     * memory.  Each element is one-indexed, meaning that we
-     * have a dummy cell in the front.
+     * memory.  Node i keeps its low endpoint in slot 2i and its
+     * high endpoint in slot 2i + 1; a singleton last node has
+     * only the low slot.  The array grows by doubling.
      */
-    private final List<Node<T>> elems = new ArrayList<Node<T>>();
+    private Object[] elems = new Object[16];
 
     /* A cache of the number of elements in the heap. */
     private int numElems = 0;
 
+    /* The number of changes made to the heap, so that iterators can
+     * detect concurrent modification.
+     */
+    private int modCount = 0;
+
     /**
      * Constructs a new IntervalHeap that is initially empty.
      */
@@ -93,11 +111,32 @@ public final class IntervalHeap<T extends Comparable<T>> {
     public IntervalHeap(Comparator<? super T> comparator) {
         /* Cache the comparator for future use. */
         this.comparator = comparator;
+    }
 
-        /* Add a dummy cell to the elements list to make all our
-         * arithmetic 1-indexed.
-         */
-        elems.add(new Node<T>(null, null));
+    /**
+     * Constructs a new IntervalHeap holding the elements of the given
+     * collection.  The heap is built bottom-up in O(n) time rather than
+     * by n separate insertions.
+     *
+     * @param elems The elements to store.
+     * @throws NullPointerException If any element is null.
+     */
+    public IntervalHeap(Collection<? extends T> elems) {
+        this(elems, new DefaultComparator<T>());
+    }
+
+    /**
+     * Constructs a new IntervalHeap holding the elements of the given
+     * collection and using the specified comparator.  The heap is built
+     * bottom-up in O(n) time rather than by n separate insertions.
+     *
+     * @param elems The elements to store.
+     * @param comparator The comparator to use in the heap ordering.
+     * @throws NullPointerException If any element is null.
+     */
+    public IntervalHeap(Collection<? extends T> elems, Comparator<? super T> comparator) {
+        this(comparator);
+        addAll(elems);
     }
     
     /**
@@ -105,6 +144,7 @@ public final class IntervalHeap<T extends Comparable<T>> {
      *
      * @return The number of elements in the IntervalHeap.
      */
+    @Override
     public int size() {
         return numElems;
     }
@@ -114,6 +154,7 @@ public final class IntervalHeap<T extends Comparable<T>> {
      *
      * @return Whether the IntervalHeap is empty.
      */
+    @Override
     public boolean isEmpty() {
         return size() == 0;
     }
@@ -125,6 +166,7 @@ public final class IntervalHeap<T extends Comparable<T>> {
      * @param elem The element to insert.
      * @throws NullPointerException If elem is null.
      */
+    @Override
     public void add(T elem) {
         /* Inserting into an IntervalHeap works by inserting into
          * the last node (if possible), or adding a new singleton node
@@ -135,122 +177,201 @@ public final class IntervalHeap<T extends Comparable<T>> {
         if (elem == null)
             throw new NullPointerException("IntervalHeap does not store null values.");
 
-        /* Determine whether the node should go in its own node, or in the unused space
-         * in the singleton node at the end.
-         */
-        if (size() % 2 == 0) // New node
-            elems.add(new Node<T>(elem, null));
-        else { // Unused space
-            Node<T> currNode = elems.get(elems.size() - 1); // Last node in the tree
+        ++modCount;
+        if (numElems == elems.length)
+            grow(numElems + 1);
 
-            /* Determine whether the value goes in the low or high slot based
-             * on how it compares to the singleton.
-             */
-            if (comparator.compare(currNode.low, elem) > 0) { // Goes in low slot
-                /* Move the singleton to the high slot. */
-                currNode.high = currNode.low;
-                currNode.low = elem;
-            } else // Goes in high slot
-                currNode.high = elem;
+        /* The new element goes in the first free slot.  If that is the
+         * high slot of a singleton, make sure the pair is ordered.
+         */
+        int slot = numElems++;
+        elems[slot] = elem;
+        if (slot % 2 == 1 && comparator.compare(elem(slot - 1), elem) > 0) {
+            swap(slot - 1, slot);
+            --slot;
         }
 
-        /* Bump the element count to ensure we track size correctly. */
-        ++numElems;
-        
         /* Determine whether to do a min-heap or max-heap insert.  However, we can
          * only decide this if there's a parent node, since otherwise there's nothing
          * to compare against.
          */
-        if (size() <= 2)
+        if (slot < 2)
             return;
-        
+
         /* If the node is less than the low element of its parent, do a min-heap
-         * insert since it can't exceed the parent's upper-bound.
+         * insert since it can't exceed the parent's upper-bound.  The element
+         * is then necessarily in the low slot of its node.
          */
-        Node<T> parent = elems.get((elems.size() - 1) / 2);
-        if (comparator.compare(parent.low, elem) > 0)
-            minHeapInsert();
+        int parent = parentOf(slot / 2);
+        if (comparator.compare(elem(2 * parent), elem) > 0)
+            minHeapInsert(slot);
         /* Otherwise, if it's bigger than the high element of its parent, do a
          * max-heap insert since it can't be lower than the parent's
-         * lower-bound.
+         * lower-bound.  The element is then the larger one of its node.
          */
-        else if (comparator.compare(parent.high, elem) < 0)
-            maxHeapInsert();
+        else if (comparator.compare(elem(2 * parent + 1), elem) < 0)
+            maxHeapInsert(maxSlotOf(slot / 2));
         /* Otherwise, the node is in the right place. */
     }
 
     /**
-     * Utility function to perform a min-heap insert.  This function
-     * assumes that the element to bubble up is in the final slot of
-     * the tree.
+     * Inserts every element of the collection into the IntervalHeap.  If
+     * the collection is at least as large as the heap, the elements are
+     * appended and the whole heap is rebuilt bottom-up, which takes O(n)
+     * time; otherwise they are inserted one at a time, which takes
+     * O(k log n).  Either way the result is a valid interval heap.
+     *
+     * @param newElems The elements to insert.
+     * @throws NullPointerException If any element is null, in which case
+     *         the heap is left unchanged.
      */
-    private void minHeapInsert() {
-        int index = elems.size() - 1;
-        Node<T> currNode = elems.get(index);
+    public void addAll(Collection<? extends T> newElems) {
+        /* Snapshot the elements and check them all before touching the heap. */
+        Object[] toAdd = newElems.toArray();
+        for (Object elem : toAdd)
+            if (elem == null)
+                throw new NullPointerException("IntervalHeap does not store null values.");
 
-        /* Keep bubbling up until we hit the root or are in the right place. */
-        while (index > 1) {
-            /* Look up the parent. */
-            int parentIndex = index / 2;
-            Node<T> parentNode = elems.get(parentIndex);
+        append(toAdd, toAdd.length);
+    }
 
-            /* If we're above the lower bound, we're done. */
-            if (comparator.compare(currNode.low, parentNode.low) >= 0) break;
+    /**
+     * Moves every element of another heap into this one, leaving the other
+     * heap empty.  This is much faster than dequeuing from one heap and
+     * adding to the other.  The smaller heap is merged into the larger: if
+     * both heaps use the same ordering, the larger one's array is adopted
+     * as it stands.  The smaller side is then either inserted one element
+     * at a time or, if it is as large as the other, appended and the whole
+     * array rebuilt bottom-up.  The cost is O(n + m) in the worst case and
+     * O(min(n, m)) on average.
+     *
+     * @param other The heap to empty into this one.
+     * @throws IllegalArgumentException If other is this heap.
+     */
+    public void meld(IntervalHeap<? extends T> other) {
+        if (other == this)
+            throw new IllegalArgumentException("Cannot meld a heap with itself.");
 
-            /* Otherwise, swap with the parent and repeat. */
-            T temp = currNode.low;
-            currNode.low = parentNode.low;
-            parentNode.low = temp;
+        Object[] batch = other.elems;
+        int count = other.numElems;
+        if (count > numElems && comparator.equals(other.comparator)) {
+            /* Keep the larger array, already in heap order, and merge ours
+             * into it instead.
+             */
+            batch = elems;
+            count = numElems;
+            elems = other.elems;
+            numElems = other.numElems;
+        }
+
+        other.elems = new Object[16];
+        other.numElems = 0;
+        ++other.modCount;
 
-            /* Update the index and position to reflect the change. */
-            index = parentIndex;
-            currNode = parentNode;
+        ++modCount;
+        append(batch, count);
+    }
+
+    /**
+     * Moves the elements of another heap whose ranks lie in the given
+     * range into this one.  Ranks count from zero in ascending order under
+     * the other heap's ordering, so meld(other, 0, k) takes its k smallest
+     * elements and meld(other, other.size() - k, other.size()) its k
+     * largest.  Ties are broken arbitrarily.  The range is found with a
+     * quickselect and both heaps are then restored, in O(n + m) expected
+     * time overall; ranges at either end use the batch dequeues instead.
+     *
+     * @param other The heap to take elements from.
+     * @param fromRank The rank of the first element to move, inclusive.
+     * @param toRank The rank of the last element to move, exclusive.
+     * @throws IllegalArgumentException If other is this heap.
+     * @throws IndexOutOfBoundsException If the range is not within
+     *         [0, other.size()] or fromRank exceeds toRank.
+     */
+    public void meld(IntervalHeap<? extends T> other, int fromRank, int toRank) {
+        if (other == this)
+            throw new IllegalArgumentException("Cannot meld a heap with itself.");
+        if (fromRank < 0 || toRank > other.numElems || fromRank > toRank)
+            throw new IndexOutOfBoundsException("Rank range [" + fromRank + ", " + toRank
+                                                + ") out of bounds for size " + other.numElems);
+
+        if (fromRank == 0 && toRank == other.numElems) {
+            meld(other);
+            return;
         }
+
+        Object[] batch = other.removeRanks(fromRank, toRank);
+        append(batch, batch.length);
     }
 
     /**
-     * Utility function to perform a max-heap insert.  This function
-     * is a bit more complex than the previous one because we need to
-     * handle the case where the node is a singleton.
+     * Removes and returns the elements whose ranks lie in [from, to), in no
+     * particular order.
      */
-    private void maxHeapInsert() {
-        int index = elems.size() - 1;
-        Node<T> currNode = elems.get(index);
+    private Object[] removeRanks(int from, int to) {
+        int n = numElems;
+        Object[] batch = new Object[to - from];
+        if (from == 0) {
+            extract(to, true, batch, 0);
+            return batch;
+        }
+        if (to == n) {
+            extract(n - from, false, batch, 0);
+            return batch;
+        }
 
-        /* Keep bubbling up until we hit the root or are in the right place. */
-        while (index > 1) {
-            /* Look up the parent. */
-            int parentIndex = index / 2;
-            Node<T> parentNode = elems.get(parentIndex);
+        /* Isolate the range in the middle of the array, close the gap and
+         * rebuild what is left.
+         */
+        select(0, n, from);
+        select(from, n, to);
+        System.arraycopy(elems, from, batch, 0, batch.length);
+        System.arraycopy(elems, to, elems, from, n - to);
+        Arrays.fill(elems, n - batch.length, n, null); // Place nice with the GC
+        numElems = n - batch.length;
+        heapify();
+        return batch;
+    }
 
-            /* Tricky edge case!  If this is the very last node and a singleton, we want
-             * to compare the low field of the node rather than the high field.
-             */
-            if (currNode.high == null) { // Singleton
-                /* If we're below the upper bound, we're done. */
-                if (comparator.compare(currNode.low, parentNode.high) < 0) break;
-                
-                /* Otherwise, swap with the parent and repeat. */
-                T temp = currNode.low;
-                currNode.low = parentNode.high;
-                parentNode.high = temp;
-                
-                /* Update the index and position to reflect the change. */
-                index = parentIndex;
-                currNode = parentNode;
-            } else { // Doubleton 
-                /* If we're below the lower bound, we're done. */
-                if (comparator.compare(currNode.high, parentNode.high) < 0) break;
-                
-                /* Otherwise, swap with the parent and repeat. */
-                T temp = currNode.high;
-                currNode.high = parentNode.high;
-                parentNode.high = temp;
-                
-                /* Update the index and position to reflect the change. */
-                index = parentIndex;
-                currNode = parentNode;
-            }
+    /**
+     * Adds the first count elements of the array, none of them null.  A few
+     * insertions into a big heap are cheaper one at a time, at O(1) each on
+     * average; a batch at least as large as the heap is appended and the
+     * whole heap rebuilt bottom-up in O(n) time instead.
+     */
+    @SuppressWarnings("unchecked")
+    private void append(Object[] batch, int count) {
+        if (count < numElems) {
+            for (int i = 0; i < count; ++i)
+                add((T) batch[i]);
+            return;
+        }
+
+        if (numElems + count > elems.length)
+            grow(numElems + count);
+        System.arraycopy(batch, 0, elems, numElems, count);
+        numElems += count;
+        heapify();
+    }
+
+    /**
+     * Rebuilds the heap order over every slot in O(n) time.  Nodes are
+     * processed from the last one up to the root, so that both subtrees of
+     * a node are already interval heaps when it is reached.  Each node's
+     * endpoints are put in order, and then its low endpoint is bubbled down
+     * the min-heap and its high endpoint down the max-heap, exactly as
+     * after a dequeue.
+     */
+    private void heapify() {
+        ++modCount;
+        for (int node = (numElems - 1) / 2; node >= 0; --node) {
+            int low = 2 * node;
+            if (low + 1 < numElems && comparator.compare(elem(low), elem(low + 1)) > 0)
+                swap(low, low + 1);
+
+            minHeapBubbleDown(low);
+            if (low + 1 < numElems)
+                maxHeapBubbleDown(low + 1);
         }
     }
 
@@ -261,13 +382,14 @@ public final class IntervalHeap<T extends Comparable<T>> {
      * @return The minimum element of the heap.
      * @throws NoSuchElementException If the heap is empty.
      */
+    @Override
     public T min() {
         /* Check whether we're empty. */
         if (isEmpty())
             throw new NoSuchElementException("Empty heap.");
 
-        /* The minimum element is always in the 'low' slot of the topmost node. */
-        return elems.get(1).low; // Array is one-indexed
+        /* The minimum element is always in the low slot of the root. */
+        return elem(0);
     }
 
     /**
@@ -277,18 +399,16 @@ public final class IntervalHeap<T extends Comparable<T>> {
      * @return The maximum element of the heap.
      * @throws NoSuchElementException If the heap is empty.
      */
+    @Override
     public T max() {
         /* Check whether we're empty. */
         if (isEmpty())
             throw new NoSuchElementException("Empty heap.");
 
-        /* There are two cases:
-         * 1. If there is exactly one element in the heap, then it would be in the
-         *    "low" slot of the heap node.
-         * 2. Otherwise, the max element is in the "high" slot of the topmost
-         *    node.
+        /* The maximum is in the high slot of the root, or in the low slot
+         * if the root is a singleton.
          */
-        return size() == 1? elems.get(1).low : elems.get(1).high; // Array is one-indexed.
+        return elem(maxSlotOf(0));
     }
 
     /**
@@ -298,82 +418,17 @@ public final class IntervalHeap<T extends Comparable<T>> {
      * @return The smallest element of the heap.
      * @throws NoSuchElementException If the heap is empty.
      */
+    @Override
     public T dequeueMin() {
         /* Cache the value to return; this also checks for an empty heap. */
         T toReturn = min();
+        ++modCount;
 
-        /* If this is a singleton heap, throw out the last node.  We're done. */
-        if (size() == 1) {
-            elems.remove(1);
-            --numElems;
-            return toReturn;
-        }
-
-        /* Move the min element from the last node to fill the
-         * place of the element we just removed.  This might
-         * empty the last node, in which case we remove it.
-         */
-        Node<T> lastNode = elems.get(elems.size() - 1);
-        elems.get(1).low = lastNode.low;
-
-        /* Odd number of elements; remove the last node. */
-        if (size() % 2 == 1)
-            elems.remove(elems.size() - 1);
-        /* Otherwise, scoot the high element down to the
-         * low slot.
-         */
-        else {
-            lastNode.low = lastNode.high;
-            lastNode.high = null;
-        }
-        --numElems;
-
-        /* Continously do a bubble-down, at each point ensuring that the
-         * endpoints of the current node are correct.
+        /* Move the last element into the root's low slot, then restore the
+         * min-heap below it.
          */
-        int index = 1;
-        Node<T> currNode = elems.get(index);
-
-        while (true) {
-            /* If we have no children, we're done. */
-            if (index * 2 >= elems.size())
-                break;
-           
-            /* Otherwise, we either have one child or two children.  Check which case we're in. */
-            int childToCompareTo; // Which child we'll end up testing
-
-            /* If we have two children, compare the two and store the smaller one. */
-            if (index * 2 + 1 < elems.size())
-                childToCompareTo = (comparator.compare(elems.get(index * 2).low, elems.get(2 * index + 1).low) < 0? index * 2 : index * 2 + 1);
-            /* Otherwise, only compare to the one child we have. */
-            else
-                childToCompareTo = index * 2;
-
-            /* If we are smaller than the child, we're done. */
-            Node<T> child = elems.get(childToCompareTo);
-            if (comparator.compare(currNode.low, child.low) < 0)
-                break;
-
-            /* Otherwise, swap down and continue. */
-            T temp = child.low;
-            child.low = currNode.low;
-            currNode.low = temp;
-
-            /* Check that the child's endpoints are ordered correctly.  When doing
-             * so, check that the high field isn't null, since if we hit the very
-             * last node we don't want to compare against null.
-             */
-            if (child.high != null && comparator.compare(child.low, child.high) > 0) {
-                /* Swap the two. */
-                temp = child.low;
-                child.low = child.high;
-                child.high = temp;
-            }
-
-            /* Update position and node. */
-            index = childToCompareTo;
-            currNode = child;
-        }
+        if (removeLastInto(0))
+            minHeapBubbleDown(0);
 
         /* All done!  Return the proper value. */
         return toReturn;
@@ -386,104 +441,712 @@ public final class IntervalHeap<T extends Comparable<T>> {
      * @return The largest element of the heap.
      * @throws NoSuchElementException If the heap is empty.
      */
+    @Override
     public T dequeueMax() {
         /* Cache the value to return; this also checks for an empty
          * heap.
          */
         T toReturn = max();
+        ++modCount;
 
-        /* If this is a singleton heap, throw out the node and return. */
-        if (size() == 1) {
-            elems.remove(1);
-            --numElems;
-            return toReturn;
-        }
+        /* Move the last element into the root's max slot, then restore the
+         * max-heap below it.
+         */
+        if (removeLastInto(maxSlotOf(0)))
+            maxHeapBubbleDown(1);
+
+        /* All done!  Return the proper value. */
+        return toReturn;
+    }
+
+    /**
+     * Replaces the minimum element of the heap with a new element and
+     * returns the old minimum.  This has the effect of a dequeueMin()
+     * followed by an add(), but restores the heap with a single
+     * bubble-down instead of two separate operations.
+     *
+     * @param elem The element to insert.
+     * @return The smallest element of the heap before the call.
+     * @throws NoSuchElementException If the heap is empty.
+     * @throws NullPointerException If elem is null.
+     */
+    public T replaceMin(T elem) {
+        if (elem == null)
+            throw new NullPointerException("IntervalHeap does not store null values.");
+        T toReturn = min();
+        ++modCount;
 
-        /* Move the max element from the last node to fill the
-         * place of the element we just removed.  The logic
-         * here is a bit tricky because the max element in that
-         * node might actually be in the low slot if there are
-         * an odd number of elements in the heap.
+        /* The new element goes in the root's low slot.  If it is larger
+         * than the root's high endpoint, it is the new maximum: it takes
+         * the high slot instead, and the old maximum moves down to the low
+         * slot and is bubbled down the min-heap from there.
          */
-        Node<T> lastNode = elems.get(elems.size() - 1);
-        if (size() % 2 == 1) {
-            /* Grab from the low field and throw the last node away. */
-            elems.get(1).high = lastNode.low;
-            elems.remove(elems.size() - 1);
+        elems[0] = elem;
+        if (numElems > 1 && comparator.compare(elem, elem(1)) > 0)
+            swap(0, 1);
+        minHeapBubbleDown(0);
+
+        return toReturn;
+    }
+
+    /**
+     * Replaces the maximum element of the heap with a new element and
+     * returns the old maximum.  This has the effect of a dequeueMax()
+     * followed by an add(), but restores the heap with a single
+     * bubble-down instead of two separate operations.
+     *
+     * @param elem The element to insert.
+     * @return The largest element of the heap before the call.
+     * @throws NoSuchElementException If the heap is empty.
+     * @throws NullPointerException If elem is null.
+     */
+    public T replaceMax(T elem) {
+        if (elem == null)
+            throw new NullPointerException("IntervalHeap does not store null values.");
+        T toReturn = max();
+        ++modCount;
+
+        /* Symmetric to replaceMin: a new element below the root's low
+         * endpoint becomes the minimum, and the old minimum is bubbled down
+         * the max-heap instead.
+         */
+        elems[maxSlotOf(0)] = elem;
+        if (numElems > 1) {
+            if (comparator.compare(elem, elem(0)) < 0)
+                swap(0, 1);
+            maxHeapBubbleDown(1);
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Removes the k smallest elements of the heap (or all of them, if there
+     * are fewer) and adds them to the collection in ascending order.
+     *
+     * @param k The number of elements to remove.
+     * @param dest The collection to add them to.
+     * @return The number of elements removed.
+     * @throws IllegalArgumentException If k is negative.
+     */
+    public int dequeueMin(int k, Collection<? super T> dest) {
+        return extractInto(k, true, dest);
+    }
+
+    /**
+     * Removes the k largest elements of the heap (or all of them, if there
+     * are fewer) and adds them to the collection in descending order.
+     *
+     * @param k The number of elements to remove.
+     * @param dest The collection to add them to.
+     * @return The number of elements removed.
+     * @throws IllegalArgumentException If k is negative.
+     */
+    public int dequeueMax(int k, Collection<? super T> dest) {
+        return extractInto(k, false, dest);
+    }
+
+    /**
+     * Removes the k smallest elements of the heap (or all of them, if there
+     * are fewer) and stores them in ascending order in the array, starting
+     * at offset.
+     *
+     * @param k The number of elements to remove.
+     * @param dest The array to store them in.
+     * @param offset The index in dest of the first element removed.
+     * @return The number of elements removed.
+     * @throws IllegalArgumentException If k is negative.
+     * @throws IndexOutOfBoundsException If the elements do not fit in dest.
+     */
+    public int dequeueMin(int k, T[] dest, int offset) {
+        return extract(k, true, dest, offset);
+    }
+
+    /**
+     * Removes the k largest elements of the heap (or all of them, if there
+     * are fewer) and stores them in descending order in the array, starting
+     * at offset.
+     *
+     * @param k The number of elements to remove.
+     * @param dest The array to store them in.
+     * @param offset The index in dest of the first element removed.
+     * @return The number of elements removed.
+     * @throws IllegalArgumentException If k is negative.
+     * @throws IndexOutOfBoundsException If the elements do not fit in dest.
+     */
+    public int dequeueMax(int k, T[] dest, int offset) {
+        return extract(k, false, dest, offset);
+    }
+
+    /**
+     * Removes every element of the heap and adds them to the collection in
+     * ascending order.  This sorts the array in place, in O(n log n) time
+     * but with far fewer comparisons than n separate dequeues.
+     *
+     * @param dest The collection to add them to.
+     * @return The number of elements removed.
+     */
+    public int drainTo(Collection<? super T> dest) {
+        return extractInto(numElems, true, dest);
+    }
+
+    /**
+     * Returns an iterator over the elements of the heap in no particular
+     * order.  It reads the underlying array directly, so a full pass takes
+     * O(n) time and does not disturb the heap.  The iterator is fail-fast:
+     * if the heap is changed while it is in use, it throws a
+     * ConcurrentModificationException.
+     *
+     * @return An iterator over the elements of the heap.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new SlotIterator();
+    }
+
+    /**
+     * Returns an iterator over the elements of the heap in ascending order,
+     * without changing the heap.  The elements are produced lazily: the
+     * iterator keeps a frontier of candidate slots, and reading the first k
+     * elements takes O(k log k) time, so it is cheap to stop early.  The
+     * iterator is fail-fast.
+     *
+     * @return An iterator over the elements of the heap, smallest first.
+     */
+    public Iterator<T> sortedIterator() {
+        return new SortedIterator(true);
+    }
+
+    /**
+     * Returns an iterator over the elements of the heap in descending
+     * order, without changing the heap.  It works as sortedIterator() does,
+     * walking down the max-heap instead.  The iterator is fail-fast.
+     *
+     * @return An iterator over the elements of the heap, largest first.
+     */
+    public Iterator<T> descendingIterator() {
+        return new SortedIterator(false);
+    }
+
+    /**
+     * Performs the action for every element of the heap, in no particular
+     * order.
+     *
+     * @param action The action to perform.
+     * @throws ConcurrentModificationException If the action changes the heap.
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        int expectedModCount = modCount;
+        int size = numElems;
+        for (int i = 0; i < size && modCount == expectedModCount; ++i)
+            action.accept(elem(i));
+        if (modCount != expectedModCount)
+            throw new ConcurrentModificationException();
+    }
+
+    /**
+     * Returns a spliterator over the elements of the heap in no particular
+     * order.  It splits the underlying array into halves, so parallel
+     * streams divide the work evenly.  The spliterator is fail-fast.
+     *
+     * @return A spliterator over the elements of the heap.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new SlotSpliterator(0, numElems, modCount);
+    }
+
+    /**
+     * Returns a sequential stream over the elements of the heap in no
+     * particular order.
+     *
+     * @return A stream over the elements of the heap.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream over the elements of the heap in no
+     * particular order.
+     *
+     * @return A parallel stream over the elements of the heap.
+     */
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Returns an array holding the elements of the heap in no particular
+     * order.  This is a single array copy.
+     *
+     * @return An array holding the elements of the heap.
+     */
+    public Object[] toArray() {
+        return Arrays.copyOf(elems, numElems);
+    }
+
+    /**
+     * Returns an array holding the elements of the heap in no particular
+     * order, following the contract of Collection.toArray(Object[]): the
+     * given array is used if it is large enough, and the slot after the
+     * last element is set to null.
+     *
+     * @param dest The array to fill, if it is large enough.
+     * @return An array holding the elements of the heap.
+     * @throws ArrayStoreException If an element cannot be stored in dest.
+     */
+    @SuppressWarnings("unchecked")
+    public <E> E[] toArray(E[] dest) {
+        if (dest.length < numElems)
+            return (E[]) Arrays.copyOf(elems, numElems, dest.getClass());
+
+        System.arraycopy(elems, 0, dest, 0, numElems);
+        if (dest.length > numElems)
+            dest[numElems] = null;
+        return dest;
+    }
+
+    /**
+     * Returns an array holding the elements of the heap in ascending order,
+     * without changing the heap.  The copy is sorted with
+     * Arrays.parallelSort, which spreads large arrays over the common
+     * fork/join pool.
+     *
+     * @return An array holding the elements of the heap, smallest first.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Object[] toSortedArray() {
+        Object[] result = toArray();
+        Arrays.parallelSort(result, (Comparator) comparator);
+        return result;
+    }
+
+    /**
+     * Extracts up to k elements from one end into a collection.
+     */
+    @SuppressWarnings("unchecked")
+    private int extractInto(int k, boolean fromMin, Collection<? super T> dest) {
+        Object[] batch = new Object[Math.min(Math.max(k, 0), numElems)];
+        int count = extract(k, fromMin, batch, 0);
+        for (int i = 0; i < count; ++i)
+            dest.add((T) batch[i]);
+        return count;
+    }
+
+    /**
+     * Extracts up to k elements from one end into an array, smallest first
+     * from the min end and largest first from the max end.
+     * <p>
+     * Each dequeue costs a bubble-down of about 2 log n comparisons.  When
+     * k is large enough that k dequeues would cost more than rebuilding,
+     * the batch is instead found all at once: a quickselect moves the k
+     * elements to one end of the array in O(n) expected time, they are
+     * sorted in O(k log k), and the rest of the array is heapified in O(n).
+     */
+    private int extract(int k, boolean fromMin, Object[] dest, int offset) {
+        if (k < 0)
+            throw new IllegalArgumentException("Cannot remove a negative number of elements: " + k);
+        k = Math.min(k, numElems);
+        if (offset < 0 || offset > dest.length - k)
+            throw new IndexOutOfBoundsException("Offset " + offset + ", count " + k
+                                                + ", array length " + dest.length);
+
+        int n = numElems;
+        long siftCost = (long) k * (32 - Integer.numberOfLeadingZeros(n));
+        if (k < n && siftCost <= 2L * n) {
+            for (int i = 0; i < k; ++i)
+                dest[offset + i] = fromMin ? dequeueMin() : dequeueMax();
+            return k;
+        }
+
+        if (fromMin) {
+            /* Gather the k smallest at the front, sort them, and close the gap. */
+            if (k < n)
+                select(0, n, k - 1);
+            sortSlots(0, k);
+            System.arraycopy(elems, 0, dest, offset, k);
+            System.arraycopy(elems, k, elems, 0, n - k);
         } else {
-            /* Grab from the high field, then clear it. */
-            elems.get(1).high = lastNode.high;
-            lastNode.high = null;
+            /* Gather the k largest at the back and hand them out in reverse. */
+            if (k < n)
+                select(0, n, n - k);
+            sortSlots(n - k, n);
+            for (int i = 0; i < k; ++i)
+                dest[offset + i] = elems[n - 1 - i];
         }
-        --numElems;
 
-        /* Continously do a bubble-down, at each point ensuring that the
-         * endpoints of the current node are correct.
-         */
-        int index = 1;
-        Node<T> currNode = elems.get(index);
+        Arrays.fill(elems, n - k, n, null); // Place nice with the GC
+        numElems = n - k;
+        heapify();
+        return k;
+    }
 
+    /**
+     * Rearranges the slots [lo, hi) so that slot k holds the element that
+     * would be there if the range were sorted, with no larger element
+     * before it and no smaller one after.  This is quickselect with a
+     * random pivot and a three-way partition, so runs of equal elements do
+     * not degrade it.
+     */
+    private void select(int lo, int hi, int k) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (hi - lo > 1) {
+            T pivot = elem(lo + random.nextInt(hi - lo));
+
+            /* Partition into [lo, lt) < pivot, [lt, gt) == pivot, [gt, hi) > pivot. */
+            int lt = lo;
+            int gt = hi;
+            for (int i = lo; i < gt; ) {
+                int cmp = comparator.compare(elem(i), pivot);
+                if (cmp < 0)
+                    swap(lt++, i++);
+                else if (cmp > 0)
+                    swap(i, --gt);
+                else
+                    ++i;
+            }
+
+            if (k < lt)
+                hi = lt;
+            else if (k >= gt)
+                lo = gt;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Sorts the slots [from, to) in ascending order.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void sortSlots(int from, int to) {
+        Arrays.sort(elems, from, to, (Comparator) comparator);
+    }
+
+    /**
+     * Overwrites the given slot with the element in the last slot and
+     * shrinks the heap by one.
+     *
+     * @param slot The slot to overwrite.
+     * @return Whether the slot still holds an element, that is, whether it
+     *         was not itself the last slot.
+     */
+    private boolean removeLastInto(int slot) {
+        int last = --numElems;
+        elems[slot] = elems[last];
+        elems[last] = null; // Place nice with the GC
+        return slot != last;
+    }
+
+    /**
+     * Utility function to perform a min-heap insert.  The element to bubble
+     * up is in the given slot, which is the low slot of its node.
+     *
+     * @param slot The slot holding the element to bubble up.
+     * @return The slot where the element ended up.
+     */
+    private int minHeapInsert(int slot) {
+        /* Keep bubbling up until we hit the root or are in the right place. */
+        while (slot >= 2) {
+            /* Look up the parent's low slot. */
+            int parentSlot = 2 * parentOf(slot / 2);
+
+            /* If we're above the lower bound, we're done. */
+            if (comparator.compare(elem(slot), elem(parentSlot)) >= 0) break;
+
+            /* Otherwise, swap with the parent and repeat. */
+            swap(slot, parentSlot);
+            slot = parentSlot;
+        }
+        return slot;
+    }
+
+    /**
+     * Utility function to perform a max-heap insert.  The element to bubble
+     * up is in the given slot, which is the high slot of its node, or the
+     * low slot if the node is the singleton at the end.
+     *
+     * @param slot The slot holding the element to bubble up.
+     * @return The slot where the element ended up.
+     */
+    private int maxHeapInsert(int slot) {
+        /* Keep bubbling up until we hit the root or are in the right place. */
+        while (slot >= 2) {
+            /* Look up the parent's high slot. */
+            int parentSlot = 2 * parentOf(slot / 2) + 1;
+
+            /* If we're below the upper bound, we're done. */
+            if (comparator.compare(elem(slot), elem(parentSlot)) < 0) break;
+
+            /* Otherwise, swap with the parent and repeat. */
+            swap(slot, parentSlot);
+            slot = parentSlot;
+        }
+        return slot;
+    }
+
+    /**
+     * Utility function to restore the min-heap below a low slot whose
+     * element may be too large.  The element is swapped down with the
+     * smaller of the children's low endpoints, and whenever it lands in a
+     * node, that node's endpoints are put back in order.
+     *
+     * @param slot The low slot holding the element to bubble down.
+     */
+    private void minHeapBubbleDown(int slot) {
         while (true) {
             /* If we have no children, we're done. */
-            if (index * 2 >= elems.size())
+            int child = 2 * (2 * (slot / 2) + 1);
+            if (child >= numElems)
                 break;
-           
-            /* Otherwise, we either have one child or two children.  Check which case we're in. */
-            int childToCompareTo; // Which child we'll end up testing
-
-            /* If we have two children, compare the two and store the smaller one. */
-            if (index * 2 + 1 < elems.size()) {
-                /* Tricky case - if the second child is the very last node and there are an odd number
-                 * of elements, compare the low of the last node and the high of the other child.
-                 * Otherwise, compare their high fields.
-                 */
-                if (size() % 2 == 1 && index * 2 + 1 == elems.size() - 1)
-                    childToCompareTo = (comparator.compare(elems.get(index * 2).high, elems.get(2 * index + 1).low) > 0? index * 2 : index * 2 + 1);
-                else
-                    childToCompareTo = (comparator.compare(elems.get(index * 2).high, elems.get(2 * index + 1).high) > 0? index * 2 : index * 2 + 1);
+
+            /* If we have two children, compare the two and take the smaller one. */
+            if (child + 2 < numElems && comparator.compare(elem(child + 2), elem(child)) < 0)
+                child += 2;
+
+            /* If we are smaller than the child, we're done. */
+            if (comparator.compare(elem(slot), elem(child)) < 0)
+                break;
+
+            /* Otherwise, swap down and continue. */
+            swap(slot, child);
+
+            /* Check that the child's endpoints are ordered correctly, unless
+             * the child is the singleton at the end.
+             */
+            if (child + 1 < numElems && comparator.compare(elem(child), elem(child + 1)) > 0)
+                swap(child, child + 1);
+
+            slot = child;
+        }
+    }
+
+    /**
+     * Utility function to restore the max-heap below a high slot whose
+     * element may be too small.  The element is swapped down with the
+     * larger of the children's high endpoints (the low endpoint, for the
+     * singleton at the end), and whenever it lands in a node, that node's
+     * endpoints are put back in order.
+     *
+     * @param slot The high slot holding the element to bubble down.
+     */
+    private void maxHeapBubbleDown(int slot) {
+        while (true) {
+            /* If we have no children, we're done. */
+            int left = 2 * (slot / 2) + 1;
+            if (2 * left >= numElems)
+                break;
+
+            /* If we have two children, compare the two and take the larger one. */
+            int child = maxSlotOf(left);
+            if (2 * (left + 1) < numElems) {
+                int other = maxSlotOf(left + 1);
+                if (comparator.compare(elem(other), elem(child)) > 0)
+                    child = other;
             }
-            /* Otherwise, only compare to the one child we have. */
-            else
-                childToCompareTo = index * 2;
 
-            /* Determine our relation to the child.  If the child is the odd case, make sure not
-             * to read its high field!
+            /* If we are bigger than the child, we're done. */
+            if (comparator.compare(elem(child), elem(slot)) < 0)
+                break;
+
+            /* Otherwise, swap down.  If the child is the singleton at the end,
+             * there is nothing below it; otherwise make sure its endpoints
+             * are still ordered.
              */
-            Node<T> child = elems.get(childToCompareTo);
-            if (child.high == null) {
-                /* See if we're done, and swap if we're not. */
-                if (comparator.compare(child.low, currNode.high) < 0)
-                    break;
-
-                /* Swap the element down. */
-                T temp = child.low;
-                child.low = currNode.high;
-                currNode.high = temp;
-            } 
-            /* Not in the edge case, so just check if this node is bigger than its biggest child. */
-            else {
-                if (comparator.compare(child.high, currNode.high) < 0)
-                    break;
-
-                /* Otherwise, swap down to the child node */
-                T temp = child.high;
-                child.high = currNode.high;
-                currNode.high = temp;
-
-                /* Finally, if the child's nodes are out of order, fix them. */
-                if (comparator.compare(child.low, child.high) > 0) {
-                    temp = child.high;
-                    child.high = child.low;
-                    child.low = temp;
+            swap(slot, child);
+            if (child % 2 == 0)
+                break;
+            if (comparator.compare(elem(child - 1), elem(child)) > 0)
+                swap(child - 1, child);
+
+            slot = child;
+        }
+    }
+
+    /**
+     * Returns the parent of the given node, which must not be the root.
+     */
+    private static int parentOf(int node) {
+        return (node - 1) / 2;
+    }
+
+    /**
+     * Returns the slot holding the largest endpoint of the given node: its
+     * high slot, or its low slot if it is the singleton at the end.
+     */
+    private int maxSlotOf(int node) {
+        return Math.min(2 * node + 1, numElems - 1);
+    }
+
+    /**
+     * Returns the element in the given slot.
+     */
+    @SuppressWarnings("unchecked")
+    private T elem(int slot) {
+        return (T) elems[slot];
+    }
+
+    /**
+     * Exchanges the elements in two slots.
+     */
+    private void swap(int one, int two) {
+        Object temp = elems[one];
+        elems[one] = elems[two];
+        elems[two] = temp;
+    }
+
+    /**
+     * Grows the array to hold at least minCapacity elements, at least
+     * doubling it.
+     */
+    private void grow(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError("IntervalHeap cannot hold more than Integer.MAX_VALUE elements.");
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) minCapacity, 2L * elems.length));
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+        elems = Arrays.copyOf(elems, capacity);
+    }
+
+    /**
+     * An iterator over the slots in array order.
+     */
+    private final class SlotIterator implements Iterator<T> {
+        private int next = 0;
+        private final int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < numElems;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("No more elements.");
+            return elem(next++);
+        }
+    }
+
+    /**
+     * A lazy walk over the heap in sorted order.  Every element other than
+     * the minimum has a predecessor no larger than itself: a high slot's is
+     * the low slot of its node, and a low slot's is the low slot of its
+     * parent.  Together these edges form a tree rooted at slot 0, so the
+     * walk is a best-first search of it.  The frontier holds the slots
+     * whose predecessors have been produced; the smallest of them is always
+     * the next element.  The descending walk is the mirror image, rooted at
+     * the maximum and following the max-heap.
+     */
+    private final class SortedIterator implements Iterator<T> {
+        private final boolean ascending;
+        private final PriorityQueue<Integer> frontier;
+        private final int expectedModCount = modCount;
+
+        public SortedIterator(boolean ascending) {
+            this.ascending = ascending;
+            this.frontier = new PriorityQueue<Integer>(16, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer one, Integer two) {
+                    int cmp = comparator.compare(elem(one), elem(two));
+                    return SortedIterator.this.ascending ? cmp : -cmp;
                 }
+            });
+
+            if (numElems > 0)
+                frontier.add(ascending ? 0 : maxSlotOf(0));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !frontier.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException("No more elements.");
+
+            int slot = frontier.poll();
+            int node = slot / 2;
+            if (ascending && slot % 2 == 0) {
+                /* A low endpoint unlocks its high endpoint and the low
+                 * endpoints of its children.
+                 */
+                if (slot + 1 < numElems)
+                    frontier.add(slot + 1);
+                for (int child = 2 * node + 1; child <= 2 * node + 2; ++child)
+                    if (2 * child < numElems)
+                        frontier.add(2 * child);
+            } else if (!ascending && slot % 2 == 1) {
+                /* A high endpoint unlocks its low endpoint and the largest
+                 * endpoints of its children.
+                 */
+                frontier.add(slot - 1);
+                for (int child = 2 * node + 1; child <= 2 * node + 2; ++child)
+                    if (2 * child < numElems)
+                        frontier.add(maxSlotOf(child));
             }
+            return elem(slot);
+        }
+    }
+
+    /**
+     * A spliterator over a range of slots, split in halves.
+     */
+    private final class SlotSpliterator implements Spliterator<T> {
+        private int index;
+        private final int fence;
+        private final int expectedModCount;
 
-            /* Update position and node. */
-            index = childToCompareTo;
-            currNode = child;
+        public SlotSpliterator(int index, int fence, int expectedModCount) {
+            this.index = index;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
         }
 
-        /* All done!  Return the proper value. */
-        return toReturn;
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= fence)
+                return false;
+            action.accept(elem(index++));
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (; index < fence; ++index)
+                action.accept(elem(index));
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index)
+                return null;
+            SlotSpliterator prefix = new SlotSpliterator(index, mid, expectedModCount);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.NONNULL;
+        }
     }
 }
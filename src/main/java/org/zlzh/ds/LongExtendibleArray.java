@@ -0,0 +1,256 @@
+/*
+ * File: LongExtendibleArray.java
+ */
+package org.zlzh.ds;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/************************************************************************
+ *<pre>
+ * A growable array of long values with the same worst-case O(1) add,
+ * get, set and remove-from-end guarantees as ExtendibleArray.  See the
+ * comment at the top of ExtendibleArray for a description of the
+ * old/new buffer scheme; this class is a line-for-line port of it onto
+ * long[] buffers, so that no value is ever boxed and an add never
+ * allocates except when the new buffer is created.
+ *
+ * The only difference is that there is nothing to clear for the garbage
+ * collector, so vacated slots are simply left as they are.
+ *
+ * A boxing List view is available through asList() for code that needs
+ * to interoperate with the collections framework.
+ * </pre>
+ */
+public final class LongExtendibleArray {
+    /* Initially, the old array is null and the new array is a singleton
+     * that holds the dummy element.  The pointers follow ExtendibleArray.
+     */
+    long[] mOld = null;
+    long[] mNew = new long[1];
+    int mShadow = -1;
+    int mEnd = +1;
+
+    /**
+     * Appends a value to the end of the array, possibly allocating a new
+     * buffer if necessary.
+     *
+     * @param value The value to add.
+     */
+    public void add(long value) {
+        /* Reallocate if the end pointer is past the end of the new array. */
+        if (mEnd == mNew.length) {
+            mOld = mNew;
+            mNew = new long[mNew.length * 2];
+            mShadow = mEnd - 1;
+        }
+
+        /* Write the value, then pull one value up from the old array. */
+        mNew[mEnd] = value;
+        mNew[mShadow] = mOld[mShadow];
+
+        /* Move the two pointers outward. */
+        ++mEnd; --mShadow;
+    }
+
+    /**
+     * Returns the value at the specified position.
+     *
+     * @param index The index to query.
+     * @return The value at that index.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+
+        /* Values at or below the shadow point live in the old array. */
+        return (index + 1 <= mShadow) ? mOld[index + 1] : mNew[index + 1];
+    }
+
+    /**
+     * Returns the number of values in the array.
+     *
+     * @return The number of values in the array.
+     */
+    public int size() {
+        return mEnd - 1;
+    }
+
+    /**
+     * Returns whether the array is empty.
+     *
+     * @return Whether the array is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Overwrites the value at the specified position.
+     *
+     * @param index The index of the value to set.
+     * @param value The new value to write.
+     * @return The value at that position before the write.
+     * @throws IndexOutOfBoundsException If the index is invalid.
+     */
+    public long set(int index, long value) {
+        long originalValue = get(index);
+
+        if (index + 1 <= mShadow)
+            mOld[index + 1] = value;
+        else
+            mNew[index + 1] = value;
+
+        return originalValue;
+    }
+
+    /**
+     * Removes the value at the specified position, shifting the values
+     * after it down by one.
+     *
+     * @param index The index of the value to remove.
+     * @return The removed value.
+     * @throws IndexOutOfBoundsException If the index is invalid.
+     */
+    public long remove(int index) {
+        long result = get(index);
+
+        /* Same two cases as ExtendibleArray.remove: the value is either in
+         * the new array or in the old one, and in both cases two values
+         * end up moving back down into the old array.
+         */
+        if (index + 1 > mShadow) { // In the new array
+            System.arraycopy(mNew, index + 2, mNew, index + 1,
+                             (mEnd - 1) - (index + 1));
+            mOld[mShadow + 1] = mNew[mShadow + 1];
+            ++mShadow; --mEnd;
+        } else { // In old array
+            System.arraycopy(mOld, index + 2, mOld, index + 1,
+                             mShadow - (index + 1));
+            mOld[mShadow] = mNew[mShadow + 1];
+            mOld[mShadow + 1] = mNew[mShadow + 2];
+            ++mShadow;
+            System.arraycopy(mNew, mShadow + 2, mNew, mShadow + 1,
+                             mEnd - mShadow - 1);
+            --mEnd;
+        }
+
+        /* If the new array just emptied, promote the old array. */
+        if (mEnd == mShadow + 1) {
+            mNew = mOld;
+            mOld = new long[mNew.length / 2];
+            mShadow = -1;
+            mEnd = mNew.length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Inserts a value at the specified position, shifting the values at
+     * and after it up by one.
+     *
+     * @param index The index before which to insert.
+     * @param value The value to insert.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    public void add(int index, long value) {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+
+        /* Append to do the balancing work, then move the value into place. */
+        add(value);
+
+        if (index + 1 > mShadow) { // New array
+            System.arraycopy(mNew, index + 1,
+                             mNew, index + 2,
+                             (mEnd - 1) - (index + 1));
+            mNew[index + 1] = value;
+        } else { // Old array
+            System.arraycopy(mNew, mShadow + 1,
+                             mNew, mShadow + 2,
+                             (mEnd - 1) - (mShadow + 1));
+            System.arraycopy(mOld, index + 1,
+                             mOld, index + 2,
+                             (mShadow - (index + 1)) + 1);
+            mOld[index + 1] = value;
+            mNew[mShadow + 1] = mOld[mShadow + 1];
+        }
+    }
+
+    /**
+     * Removes every value, dropping both buffers.
+     */
+    public void clear() {
+        mOld = null;
+        mNew = new long[1];
+        mShadow = -1;
+        mEnd = +1;
+    }
+
+    /**
+     * Returns the values in order in a freshly allocated array.
+     *
+     * @return An array holding the values of this array.
+     */
+    public long[] toArray() {
+        long[] result = new long[size()];
+
+        /* The old array holds the prefix up to the shadow point, the new
+         * array everything after it.  Skip the dummy slot in both.
+         */
+        int fromOld = Math.max(0, mShadow);
+        if (fromOld > 0)
+            System.arraycopy(mOld, 1, result, 0, fromOld);
+        System.arraycopy(mNew, fromOld + 1, result, fromOld, result.length - fromOld);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Returns a List view of this array.  The view boxes on every access
+     * and writes through to this array; it is meant for interoperability,
+     * not for hot paths.
+     *
+     * @return A modifiable List view of this array.
+     */
+    public List<Long> asList() {
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return LongExtendibleArray.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return LongExtendibleArray.this.size();
+            }
+
+            @Override
+            public Long set(int index, Long value) {
+                return LongExtendibleArray.this.set(index, value.longValue());
+            }
+
+            @Override
+            public void add(int index, Long value) {
+                LongExtendibleArray.this.add(index, value.longValue());
+            }
+
+            @Override
+            public Long remove(int index) {
+                return LongExtendibleArray.this.remove(index);
+            }
+
+            @Override
+            public void clear() {
+                LongExtendibleArray.this.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * File: LongIntervalHeap.java
+ */
+package org.zlzh.ds;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/*********************************************************
+ * An interval heap of long keys.  This is IntervalHeap with the
+ * keys held in a long[] and compared with the primitive operators,
+ * so that no key is ever boxed and no comparator is ever called.
+ * See IntervalHeap for a description of the structure and of the
+ * flattened layout, which this class shares: the low endpoint of
+ * node i is in slot 2i and the high endpoint in slot 2i + 1.
+ *
+ * Each key can optionally carry a long payload, such as an index
+ * into a table of tasks or a packed identifier.  Payloads live in a
+ * second array that is permuted along with the keys, and are read
+ * back with minPayload() and maxPayload() before dequeuing.  Heaps
+ * constructed without payloads do not allocate that array at all.
+ *
+ * Apart from the occasional doubling of the arrays, no operation
+ * allocates.
+ */
+public final class LongIntervalHeap {
+    /* The keys, laid out as in IntervalHeap, and the payloads in the
+     * same slots (or null if this heap has none).
+     */
+    private long[] keys = new long[16];
+    private long[] payloads;
+
+    /* A cache of the number of elements in the heap. */
+    private int numElems = 0;
+
+    /**
+     * Constructs a new LongIntervalHeap without payloads.
+     */
+    public LongIntervalHeap() {
+        this(false);
+    }
+
+    /**
+     * Constructs a new LongIntervalHeap, with or without a payload
+     * per key.
+     *
+     * @param withPayloads Whether each key carries a long payload.
+     */
+    public LongIntervalHeap(boolean withPayloads) {
+        if (withPayloads)
+            payloads = new long[keys.length];
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     *
+     * @return The number of elements in the heap.
+     */
+    public int size() {
+        return numElems;
+    }
+
+    /**
+     * Returns whether the heap is empty.
+     *
+     * @return Whether the heap is empty.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns whether the keys of this heap carry payloads.
+     *
+     * @return Whether the keys of this heap carry payloads.
+     */
+    public boolean hasPayloads() {
+        return payloads != null;
+    }
+
+    /**
+     * Removes every element.  The arrays are kept for reuse.
+     */
+    public void clear() {
+        numElems = 0;
+    }
+
+    /**
+     * Inserts a key into the heap.  If the heap carries payloads, the
+     * key's payload is zero.
+     *
+     * @param key The key to insert.
+     */
+    public void add(long key) {
+        add(key, 0);
+    }
+
+    /**
+     * Inserts a key and its payload into the heap.
+     *
+     * @param key The key to insert.
+     * @param payload The payload to carry along with the key.
+     * @throws IllegalStateException If the heap was constructed without
+     *         payloads and payload is not zero.
+     */
+    public void add(long key, long payload) {
+        if (payloads == null && payload != 0)
+            throw new IllegalStateException("LongIntervalHeap was constructed without payloads.");
+
+        if (numElems == keys.length)
+            grow(numElems + 1);
+
+        /* The new key goes in the first free slot.  If that is the high
+         * slot of a singleton, make sure the pair is ordered.
+         */
+        int slot = numElems++;
+        keys[slot] = key;
+        if (payloads != null)
+            payloads[slot] = payload;
+        if (slot % 2 == 1 && keys[slot - 1] > key) {
+            swap(slot - 1, slot);
+            --slot;
+        }
+
+        /* With a parent, sift up whichever half of the heap the key
+         * violates, as in IntervalHeap.add.
+         */
+        if (slot < 2)
+            return;
+
+        int parent = (slot / 2 - 1) / 2;
+        if (keys[2 * parent] > key)
+            minHeapInsert(slot);
+        else if (keys[2 * parent + 1] < key)
+            maxHeapInsert(maxSlotOf(slot / 2));
+    }
+
+    /**
+     * Returns (but does not remove) the minimum key of the heap.
+     *
+     * @return The minimum key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public long min() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return keys[0];
+    }
+
+    /**
+     * Returns (but does not remove) the maximum key of the heap.
+     *
+     * @return The maximum key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public long max() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return keys[maxSlotOf(0)];
+    }
+
+    /**
+     * Returns the payload of the minimum key.
+     *
+     * @return The payload of the minimum key.
+     * @throws NoSuchElementException If the heap is empty.
+     * @throws IllegalStateException If the heap has no payloads.
+     */
+    public long minPayload() {
+        min();
+        return payload(0);
+    }
+
+    /**
+     * Returns the payload of the maximum key.
+     *
+     * @return The payload of the maximum key.
+     * @throws NoSuchElementException If the heap is empty.
+     * @throws IllegalStateException If the heap has no payloads.
+     */
+    public long maxPayload() {
+        max();
+        return payload(maxSlotOf(0));
+    }
+
+    /**
+     * Removes and returns the minimum key of the heap.  Read its payload
+     * with minPayload() first if it is needed.
+     *
+     * @return The smallest key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public long dequeueMin() {
+        long toReturn = min();
+        if (removeLastInto(0))
+            minHeapBubbleDown(0);
+        return toReturn;
+    }
+
+    /**
+     * Removes and returns the maximum key of the heap.  Read its payload
+     * with maxPayload() first if it is needed.
+     *
+     * @return The largest key of the heap.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    public long dequeueMax() {
+        long toReturn = max();
+        if (removeLastInto(maxSlotOf(0)))
+            maxHeapBubbleDown(1);
+        return toReturn;
+    }
+
+    /**
+     * Returns the payload in the given slot.
+     */
+    private long payload(int slot) {
+        if (payloads == null)
+            throw new IllegalStateException("LongIntervalHeap was constructed without payloads.");
+        return payloads[slot];
+    }
+
+    /**
+     * Overwrites the given slot with the last element and shrinks the
+     * heap by one.  Returns whether the slot still holds an element.
+     */
+    private boolean removeLastInto(int slot) {
+        int last = --numElems;
+        keys[slot] = keys[last];
+        if (payloads != null)
+            payloads[slot] = payloads[last];
+        return slot != last;
+    }
+
+    /**
+     * Bubbles the key in the given low slot up the min-heap.
+     */
+    private void minHeapInsert(int slot) {
+        while (slot >= 2) {
+            int parentSlot = 2 * ((slot / 2 - 1) / 2);
+            if (keys[slot] >= keys[parentSlot]) break;
+            swap(slot, parentSlot);
+            slot = parentSlot;
+        }
+    }
+
+    /**
+     * Bubbles the key in the given high slot (or the low slot of the
+     * singleton at the end) up the max-heap.
+     */
+    private void maxHeapInsert(int slot) {
+        while (slot >= 2) {
+            int parentSlot = 2 * ((slot / 2 - 1) / 2) + 1;
+            if (keys[slot] < keys[parentSlot]) break;
+            swap(slot, parentSlot);
+            slot = parentSlot;
+        }
+    }
+
+    /**
+     * Restores the min-heap below a low slot, as in IntervalHeap.
+     */
+    private void minHeapBubbleDown(int slot) {
+        while (true) {
+            int child = 2 * (2 * (slot / 2) + 1);
+            if (child >= numElems)
+                break;
+            if (child + 2 < numElems && keys[child + 2] < keys[child])
+                child += 2;
+            if (keys[slot] < keys[child])
+                break;
+
+            swap(slot, child);
+            if (child + 1 < numElems && keys[child] > keys[child + 1])
+                swap(child, child + 1);
+            slot = child;
+        }
+    }
+
+    /**
+     * Restores the max-heap below a high slot, as in IntervalHeap.
+     */
+    private void maxHeapBubbleDown(int slot) {
+        while (true) {
+            int left = 2 * (slot / 2) + 1;
+            if (2 * left >= numElems)
+                break;
+            int child = maxSlotOf(left);
+            if (2 * (left + 1) < numElems) {
+                int other = maxSlotOf(left + 1);
+                if (keys[other] > keys[child])
+                    child = other;
+            }
+            if (keys[child] < keys[slot])
+                break;
+
+            swap(slot, child);
+            if (child % 2 == 0)
+                break;
+            if (keys[child - 1] > keys[child])
+                swap(child - 1, child);
+            slot = child;
+        }
+    }
+
+    /**
+     * Returns the slot holding the largest key of the given node.
+     */
+    private int maxSlotOf(int node) {
+        return Math.min(2 * node + 1, numElems - 1);
+    }
+
+    /**
+     * Exchanges the keys, and payloads if any, in two slots.
+     */
+    private void swap(int one, int two) {
+        long key = keys[one];
+        keys[one] = keys[two];
+        keys[two] = key;
+
+        if (payloads != null) {
+            long payload = payloads[one];
+            payloads[one] = payloads[two];
+            payloads[two] = payload;
+        }
+    }
+
+    /**
+     * Grows the arrays to hold at least minCapacity elements, at least
+     * doubling them.
+     */
+    private void grow(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError("LongIntervalHeap cannot hold more than Integer.MAX_VALUE elements.");
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) minCapacity, 2L * keys.length));
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+        keys = Arrays.copyOf(keys, capacity);
+        if (payloads != null)
+            payloads = Arrays.copyOf(payloads, capacity);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * File: MinMaxHeap.java
+ */
+package org.zlzh.ds;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/*********************************************************
+ * A double-ended priority queue implemented as a min-max heap
+ * (Atkinson, Sack, Santoro and Strothotte, 1986).
+ *
+ * The elements form a complete binary tree laid out in an array
+ * in the usual way, one element per node, with the children of
+ * slot i in slots 2i + 1 and 2i + 2.  The levels alternate: an
+ * element on an even level (the root is level 0) is no larger
+ * than any of its descendants, and one on an odd level is no
+ * smaller.  The minimum is therefore the root and the maximum is
+ * the larger of the root's children.
+ *
+ * An element is inserted at the end and bubbled up along the
+ * grandparents on its own kind of level.  A removal moves the
+ * last element into the hole and trickles it down, at each step
+ * looking at up to four grandchildren for the extreme one.  Both
+ * take O(log n) time, with more comparisons per level than an
+ * IntervalHeap but half as many levels to cross per element.
+ *
+ * @param T The type of elements being stored.
+ */
+public final class MinMaxHeap<T extends Comparable<T>> implements DoubleEndedPriorityQueue<T> {
+    /* A Comparator for comparing elements in the heap. */
+    private final Comparator<? super T> comparator;
+
+    /* The elements, in level order. */
+    private Object[] elems = new Object[16];
+
+    /* A cache of the number of elements in the heap. */
+    private int numElems = 0;
+
+    /**
+     * Constructs a new MinMaxHeap that is initially empty and orders its
+     * elements by their natural ordering.
+     */
+    public MinMaxHeap() {
+        this(new Comparator<T>() {
+            @Override
+            public int compare(T one, T two) {
+                return one.compareTo(two);
+            }
+        });
+    }
+
+    /**
+     * Constructs a new MinMaxHeap that is initially empty and uses the
+     * specified comparator.
+     *
+     * @param comparator The comparator to use in the heap ordering.
+     */
+    public MinMaxHeap(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    @Override
+    public int size() {
+        return numElems;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numElems == 0;
+    }
+
+    @Override
+    public void add(T elem) {
+        if (elem == null)
+            throw new NullPointerException("MinMaxHeap does not store null values.");
+
+        if (numElems == elems.length)
+            grow(numElems + 1);
+        elems[numElems] = elem;
+        bubbleUp(numElems++);
+    }
+
+    @Override
+    public T min() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return elem(0);
+    }
+
+    @Override
+    public T max() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return elem(maxIndex());
+    }
+
+    @Override
+    public T dequeueMin() {
+        T result = min();
+        removeAt(0);
+        return result;
+    }
+
+    @Override
+    public T dequeueMax() {
+        T result = max();
+        removeAt(maxIndex());
+        return result;
+    }
+
+    /**
+     * Returns the slot of the maximum, which the heap must not be empty
+     * for: the root if it is alone, otherwise the larger of its children.
+     */
+    private int maxIndex() {
+        if (numElems <= 2)
+            return numElems - 1;
+        return less(1, 2) ? 2 : 1;
+    }
+
+    /**
+     * Fills the given slot with the last element and trickles it down.
+     */
+    private void removeAt(int index) {
+        --numElems;
+        elems[index] = elems[numElems];
+        elems[numElems] = null; // Place nice with the GC
+        if (index < numElems)
+            trickleDown(index);
+    }
+
+    /**
+     * Returns whether the given slot is on a min level.
+     */
+    private static boolean isMinLevel(int index) {
+        return ((31 - Integer.numberOfLeadingZeros(index + 1)) & 1) == 0;
+    }
+
+    /**
+     * Moves a new element at the given slot up to its place.  It is first
+     * compared against its parent, which is on the other kind of level, to
+     * decide which of the two chains of grandparents it belongs in.
+     */
+    private void bubbleUp(int index) {
+        if (index == 0)
+            return;
+
+        int parent = (index - 1) / 2;
+        if (isMinLevel(index)) {
+            if (less(parent, index)) {
+                swap(index, parent);
+                bubbleUpMax(parent);
+            } else
+                bubbleUpMin(index);
+        } else {
+            if (less(index, parent)) {
+                swap(index, parent);
+                bubbleUpMin(parent);
+            } else
+                bubbleUpMax(index);
+        }
+    }
+
+    /**
+     * Bubbles the element at a min-level slot up the chain of min-level
+     * grandparents.
+     */
+    private void bubbleUpMin(int index) {
+        while (index > 2) {
+            int grandparent = ((index - 1) / 2 - 1) / 2;
+            if (!less(index, grandparent))
+                break;
+            swap(index, grandparent);
+            index = grandparent;
+        }
+    }
+
+    /**
+     * Bubbles the element at a max-level slot up the chain of max-level
+     * grandparents.
+     */
+    private void bubbleUpMax(int index) {
+        while (index > 2) {
+            int grandparent = ((index - 1) / 2 - 1) / 2;
+            if (!less(grandparent, index))
+                break;
+            swap(index, grandparent);
+            index = grandparent;
+        }
+    }
+
+    /**
+     * Restores the heap below a slot whose element may be out of place.
+     */
+    private void trickleDown(int index) {
+        boolean minLevel = isMinLevel(index);
+        while (true) {
+            /* Find the extreme among the children and grandchildren. */
+            int first = 2 * index + 1;
+            if (first >= numElems)
+                return;
+            int best = first;
+            int last = Math.min(first + 1, numElems - 1);
+            for (int i = first + 1; i <= last; ++i)
+                if (minLevel ? less(i, best) : less(best, i))
+                    best = i;
+            int firstGrand = 4 * index + 3;
+            int lastGrand = Math.min(firstGrand + 3, numElems - 1);
+            for (int i = firstGrand; i <= lastGrand; ++i)
+                if (minLevel ? less(i, best) : less(best, i))
+                    best = i;
+
+            if (!(minLevel ? less(best, index) : less(index, best)))
+                return;
+            swap(best, index);
+
+            /* A child has no grandchildren below us; nothing left to fix. */
+            if (best <= last)
+                return;
+
+            /* Grandchild: its parent sits on the opposite kind of level. */
+            int parent = (best - 1) / 2;
+            if (minLevel ? less(parent, best) : less(best, parent))
+                swap(best, parent);
+            index = best;
+        }
+    }
+
+    /**
+     * Returns the element in the given slot.
+     */
+    @SuppressWarnings("unchecked")
+    private T elem(int index) {
+        return (T) elems[index];
+    }
+
+    /**
+     * Returns whether the element in slot i is smaller than the one in
+     * slot j.
+     */
+    private boolean less(int i, int j) {
+        return comparator.compare(elem(i), elem(j)) < 0;
+    }
+
+    /**
+     * Exchanges the elements in two slots.
+     */
+    private void swap(int i, int j) {
+        Object temp = elems[i];
+        elems[i] = elems[j];
+        elems[j] = temp;
+    }
+
+    /**
+     * Grows the array to at least twice its size and at least minCapacity.
+     */
+    private void grow(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError("MinMaxHeap cannot hold more than Integer.MAX_VALUE elements.");
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) minCapacity, 2L * elems.length));
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+        elems = Arrays.copyOf(elems, capacity);
+    }
+}
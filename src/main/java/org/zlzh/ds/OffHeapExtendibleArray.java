@@ -0,0 +1,405 @@
+/*
+ * File: OffHeapExtendibleArray.java
+ */
+package org.zlzh.ds;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+
+/************************************************************************
+ *<pre>
+ * An ExtendibleArray whose two buffers live outside the Java heap.
+ * Elements are stored as fixed-width records described by a RecordCodec,
+ * so the structure holds no Java object per element and the garbage
+ * collector never has to scan or copy its contents.  Values are decoded
+ * on every read; callers that want to avoid even that allocation can
+ * supply a codec that returns shared or cached instances.
+ *
+ * The growth scheme is exactly the one in ExtendibleArray: an old buffer
+ * and a new buffer twice its size, with one record migrated from the old
+ * buffer to the new one on every add.  See the comment at the top of
+ * ExtendibleArray for the details and the meaning of mShadow and mEnd.
+ * The difference is what happens to a buffer that is dropped: instead of
+ * waiting for the garbage collector to find an unreachable direct buffer,
+ * its native memory is released immediately, so the peak footprint is the
+ * old and new buffers and nothing else.
+ *
+ * A single direct ByteBuffer cannot exceed 2GB, so each buffer is split
+ * into pages of at most 2^30 bytes holding a power-of-two number of
+ * records.  Records never straddle a page, and locating one costs a shift
+ * and a mask.
+ *
+ * Native memory is freed when the array is closed.  An array that is
+ * never closed is eventually reclaimed by the garbage collector, like any
+ * direct buffer.  The array must not be used after close(), and, like
+ * ExtendibleArray, it is not thread-safe.
+ * </pre>
+ *
+ * @param T The type of elements being stored.
+ */
+public final class OffHeapExtendibleArray<T> extends AbstractList<T> implements Closeable {
+    /* The largest page we allocate, in bytes. */
+    private static final int MAX_PAGE_BYTES = 1 << 30;
+
+    /* The largest buffer we allocate, in records.  Doubling it again would
+     * overflow an int.
+     */
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * A buffer of fixed-width records split across direct ByteBuffers.  The
+     * capacity is always a power of two (or zero), as are the number of
+     * records per page.
+     */
+    private static final class Pages {
+        public final ByteBuffer[] mPages;
+        public final int mCapacity;
+        public final int mShift; // log2 of the records per page
+        public final int mMask;  // records per page - 1
+
+        /**
+         * Allocates native memory for the given number of records.
+         *
+         * @param capacity The number of records, zero or a power of two.
+         * @param width The width of a record in bytes.
+         */
+        public Pages(int capacity, int width) {
+            mCapacity = capacity;
+
+            int perPage = Math.max(1, Math.min(capacity, Integer.highestOneBit(MAX_PAGE_BYTES / width)));
+            mShift = Integer.numberOfTrailingZeros(perPage);
+            mMask = perPage - 1;
+
+            mPages = new ByteBuffer[capacity == 0 ? 0 : capacity / perPage];
+            for (int i = 0; i < mPages.length; ++i)
+                mPages[i] = ByteBuffer.allocateDirect(perPage * width).order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * Returns the page holding the record at the given index.
+         */
+        public ByteBuffer page(int index) {
+            return mPages[index >>> mShift];
+        }
+
+        /**
+         * Returns the byte offset, within its page, of the record at the
+         * given index.
+         */
+        public int offset(int index, int width) {
+            return (index & mMask) * width;
+        }
+
+        /**
+         * Releases the native memory of every page.
+         */
+        public void free() {
+            for (int i = 0; i < mPages.length; ++i) {
+                freeDirect(mPages[i]);
+                mPages[i] = null;
+            }
+        }
+    }
+
+    /* Hooks for releasing a direct buffer right away.  Unsafe.invokeCleaner
+     * exists from Java 9 on; where it is missing, dropped buffers are left
+     * for the garbage collector.
+     */
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (Exception e) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Releases the native memory behind a direct buffer, if the platform
+     * allows it.  The buffer must not be touched afterwards.
+     *
+     * @param buffer The buffer to release.
+     */
+    private static void freeDirect(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || buffer == null)
+            return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (Exception e) {
+            /* Leave it to the garbage collector. */
+        }
+    }
+
+    /* The layout of a record, and its width cached for the address math. */
+    private final RecordCodec<T> mCodec;
+    private final int mWidth;
+
+    /* The old and new buffers, laid out as in ExtendibleArray.  Both are
+     * null once the array has been closed.  The old buffer is also null
+     * from the moment it is promoted by a remove until a later remove
+     * first needs it, since an add at that point allocates a fresh new
+     * buffer and would release it unused.
+     */
+    private Pages mOld;
+    private Pages mNew;
+    private int mShadow = -1;
+    private int mEnd = +1;
+
+    /**
+     * Constructs a new, empty OffHeapExtendibleArray storing its elements
+     * in the layout described by the codec.
+     *
+     * @param codec The record layout of the elements.
+     * @throws IllegalArgumentException If the codec's width is not positive.
+     */
+    public OffHeapExtendibleArray(RecordCodec<T> codec) {
+        if (codec.width() <= 0)
+            throw new IllegalArgumentException("Record width must be positive: " + codec.width());
+        mCodec = codec;
+        mWidth = codec.width();
+        mNew = new Pages(1, mWidth);
+    }
+
+    /**
+     * Adds a new element to the end of the array, possibly allocating a
+     * new buffer if necessary.
+     *
+     * @param elem The element to add.
+     * @return true
+     * @throws IllegalStateException If the array has been closed.
+     * @throws OutOfMemoryError If the array already holds 2^30 - 1 elements.
+     */
+    @Override
+    public boolean add(T elem) {
+        ensureOpen();
+
+        /* Reallocate if the end pointer is past the end of the new buffer.
+         * The old buffer is fully migrated at this point, so it can be
+         * released on the spot.
+         */
+        if (mEnd == mNew.mCapacity) {
+            if (mNew.mCapacity == MAX_CAPACITY)
+                throw new OutOfMemoryError("OffHeapExtendibleArray cannot grow past " + (MAX_CAPACITY - 1) + " elements.");
+            if (mOld != null)
+                mOld.free();
+            mOld = mNew;
+            mNew = new Pages(mNew.mCapacity * 2, mWidth);
+            mShadow = mEnd - 1;
+        }
+
+        /* Write the element, then pull one record up from the old buffer. */
+        write(mNew, mEnd, elem);
+        copy(mOld, mShadow, mNew, mShadow, 1);
+
+        ++mEnd; --mShadow;
+        return true;
+    }
+
+    /**
+     * Returns the element at the specified position.
+     *
+     * @param index The index to query.
+     * @return The element at that index.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+
+        return read(index + 1 <= mShadow ? mOld : mNew, index + 1);
+    }
+
+    /**
+     * Returns the size of the array.
+     *
+     * @return The size of the array.
+     */
+    @Override
+    public int size() {
+        return mEnd - 1;
+    }
+
+    /**
+     * Overwrites the element at the specified position.
+     *
+     * @param index The index of the element to set.
+     * @param value The new value to write.
+     * @return The value of that element before the write.
+     * @throws IndexOutOfBoundsException If the index is invalid.
+     */
+    @Override
+    public T set(int index, T value) {
+        T originalValue = get(index);
+        write(index + 1 <= mShadow ? mOld : mNew, index + 1, value);
+        return originalValue;
+    }
+
+    /**
+     * Removes the element at the specified position.
+     *
+     * @param index The index of the element to remove.
+     * @return The value of the removed element.
+     * @throws IndexOutOfBoundsException If the index is invalid.
+     */
+    @Override
+    public T remove(int index) {
+        T result = get(index);
+
+        /* The same two cases as ExtendibleArray.remove. */
+        if (index + 1 > mShadow) { // In the new buffer
+            if (mOld == null)
+                mOld = new Pages(mNew.mCapacity / 2, mWidth);
+            copy(mNew, index + 2, mNew, index + 1, (mEnd - 1) - (index + 1));
+            copy(mNew, mShadow + 1, mOld, mShadow + 1, 1);
+            ++mShadow; --mEnd;
+        } else { // In the old buffer
+            copy(mOld, index + 2, mOld, index + 1, mShadow - (index + 1));
+            copy(mNew, mShadow + 1, mOld, mShadow, 2);
+            ++mShadow;
+            copy(mNew, mShadow + 2, mNew, mShadow + 1, mEnd - mShadow - 2);
+            --mEnd;
+        }
+
+        /* If the new buffer just emptied, release it and promote the old one.
+         * The next old buffer is allocated by the remove that first needs it.
+         */
+        if (mEnd == mShadow + 1) {
+            mNew.free();
+            mNew = mOld;
+            mOld = null;
+            mShadow = -1;
+            mEnd = mNew.mCapacity;
+        }
+
+        return result;
+    }
+
+    /**
+     * Inserts an element at the specified position.
+     *
+     * @param index The index before which to insert.
+     * @param elem The value of the element to insert.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public void add(int index, T elem) {
+        if (index < 0 || index > size())
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+
+        /* Append to do the balancing, then move the record into place. */
+        add(elem);
+
+        if (index + 1 > mShadow) { // New buffer
+            copy(mNew, index + 1, mNew, index + 2, (mEnd - 1) - (index + 1));
+            write(mNew, index + 1, elem);
+        } else { // Old buffer
+            copy(mNew, mShadow + 1, mNew, mShadow + 2, (mEnd - 1) - (mShadow + 1));
+            copy(mOld, index + 1, mOld, index + 2, (mShadow - (index + 1)) + 1);
+            write(mOld, index + 1, elem);
+            copy(mOld, mShadow + 1, mNew, mShadow + 1, 1);
+        }
+    }
+
+    /**
+     * Removes every element and releases both buffers, keeping the array
+     * usable.
+     */
+    @Override
+    public void clear() {
+        ensureOpen();
+        release();
+        mNew = new Pages(1, mWidth);
+    }
+
+    /**
+     * Releases the native memory held by this array.  The array is empty
+     * and unusable afterwards; calling close() again has no effect.
+     */
+    public void close() {
+        if (mNew != null)
+            release();
+    }
+
+    /**
+     * Frees both buffers and resets the pointers to an empty array.
+     */
+    private void release() {
+        if (mOld != null)
+            mOld.free();
+        mNew.free();
+        mOld = null;
+        mNew = null;
+        mShadow = -1;
+        mEnd = +1;
+    }
+
+    /**
+     * Throws an IllegalStateException if the array has been closed.
+     */
+    private void ensureOpen() {
+        if (mNew == null)
+            throw new IllegalStateException("OffHeapExtendibleArray has been closed.");
+    }
+
+    /**
+     * Decodes the record at the given raw position of a buffer.
+     */
+    private T read(Pages pages, int index) {
+        return mCodec.read(pages.page(index), pages.offset(index, mWidth));
+    }
+
+    /**
+     * Encodes a value into the given raw position of a buffer.
+     */
+    private void write(Pages pages, int index, T value) {
+        mCodec.write(pages.page(index), pages.offset(index, mWidth), value);
+    }
+
+    /**
+     * Copies count records between raw positions, like System.arraycopy.
+     * Overlapping ranges within the same buffer are handled correctly.
+     */
+    private void copy(Pages src, int srcIndex, Pages dst, int dstIndex, int count) {
+        if (count <= 0)
+            return;
+        if (src == dst && srcIndex < dstIndex) {
+            for (int i = count - 1; i >= 0; --i)
+                copyRecord(src, srcIndex + i, dst, dstIndex + i);
+        } else {
+            for (int i = 0; i < count; ++i)
+                copyRecord(src, srcIndex + i, dst, dstIndex + i);
+        }
+    }
+
+    /**
+     * Copies one record's bytes without decoding it.
+     */
+    private void copyRecord(Pages src, int srcIndex, Pages dst, int dstIndex) {
+        ByteBuffer from = src.page(srcIndex);
+        ByteBuffer to = dst.page(dstIndex);
+        int fromOffset = src.offset(srcIndex, mWidth);
+        int toOffset = dst.offset(dstIndex, mWidth);
+
+        int i = 0;
+        for (; i + 8 <= mWidth; i += 8)
+            to.putLong(toOffset + i, from.getLong(fromOffset + i));
+        for (; i < mWidth; ++i)
+            to.put(toOffset + i, from.get(fromOffset + i));
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * File: PersistentVList.java
+ */
+package org.zlzh.ds;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable, persistent list backed by a VList. Like VList, the elements
+ * live in a chain of blocks whose sizes grow geometrically, but a
+ * PersistentVList is never modified once created. Instead, plus() returns a
+ * new version of the list with one more element, sharing every existing
+ * block with the version it came from:
+ *
+ * <pre>
+ *
+ *   v3 = (B3, 2) ----+
+ *   v2 = (B3, 1) --+ |
+ *                  v v
+ *               +---+---+---+---+       +---+---+       +---+       +---+
+ *   B3:         | d | e |   |   | --}   | b | c | --}   | a | --}   | x | --} nil
+ *               +---+---+---+---+       +---+---+       +---+       +---+
+ *                                    B2 ^                 B1          B0
+ *   v1 = (B2, 2) -----------------------+
+ *
+ * </pre>
+ *
+ * A version is just a block and the number of that block's slots it uses.
+ * Appending to a version that uses every claimed slot of its block writes
+ * the next slot in place; this is invisible to every other version, since
+ * none of them reads past its own count. Appending to any other version
+ * (because the block is full, or because another version already claimed
+ * the next slot) starts a new block with as many slots as the version has
+ * elements, so that filling it doubles the list. The claim is a single
+ * compare-and-set, so plus() is O(1) amortized and safe to call from any
+ * number of threads on any versions.
+ * <p>
+ * Indexing walks back from the newest block, and since each block is as
+ * large as everything before it, a list built by appending takes O(log n)
+ * steps to reach any element (and O(1) expected steps for a uniformly chosen
+ * one, since about half the elements are in the newest block). Lists that
+ * branch heavily, appending to the same old version many times, leave
+ * blocks partly used, which costs memory and makes lookups slower.
+ * <p>
+ * All state reachable from a version is either final or written before the
+ * version is constructed, so the Java memory model's guarantees for final
+ * fields make a version safe to hand to other threads by any means,
+ * including a plain non-volatile field. Readers never lock or copy.
+ * Elements are held by reference; if they are mutable, their own
+ * publication is the caller's concern.
+ *
+ * @param T
+ *            The type of elements being stored.
+ */
+public final class PersistentVList<T> extends AbstractList<T> {
+  /**
+   * A block of elements shared between versions. Slots below mClaimed have
+   * been written by some version and never change again.
+   */
+  private static final class Block {
+    public final Object[] mElems;
+
+    /* The block before this one, the number of its slots that were in use
+     * by the version this block extends, and the list position of this
+     * block's first slot.
+     */
+    public final Block mPrev;
+    public final int mPrevCount;
+    public final int mBase;
+
+    /* The number of slots claimed by some version. Only grows. */
+    public final AtomicInteger mClaimed;
+
+    /**
+     * Constructs a new block holding a single element.
+     *
+     * @param capacity
+     *            The number of slots in the block.
+     * @param prev
+     *            The block this one follows, or null.
+     * @param prevCount
+     *            The number of slots of prev in use by the extended version.
+     * @param base
+     *            The list position of this block's first slot.
+     * @param first
+     *            The element to store in the first slot.
+     */
+    public Block(int capacity, Block prev, int prevCount, int base, Object first) {
+      mElems = new Object[capacity];
+      mElems[0] = first;
+      mPrev = prev;
+      mPrevCount = prevCount;
+      mBase = base;
+      mClaimed = new AtomicInteger(1);
+    }
+  }
+
+  /* The version with no elements. */
+  @SuppressWarnings("rawtypes")
+  private static final PersistentVList EMPTY = new PersistentVList(null, 0);
+
+  /* The newest block of this version, and how many of its slots we use. */
+  private final Block mBlock;
+  private final int mCount;
+
+  /**
+   * Constructs a version over the given block.
+   *
+   * @param block
+   *            The newest block, or null for the empty list.
+   * @param count
+   *            The number of slots of that block in use.
+   */
+  private PersistentVList(Block block, int count) {
+    mBlock = block;
+    mCount = count;
+  }
+
+  /**
+   * Returns the empty list.
+   *
+   * @return The empty PersistentVList.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> PersistentVList<T> empty() {
+    return (PersistentVList<T>) EMPTY;
+  }
+
+  /**
+   * Returns a new version of this list with the given element appended.
+   * This list is not changed.
+   *
+   * @param elem
+   *            The element to append.
+   * @return A list holding this list's elements followed by elem.
+   * @throws IllegalStateException
+   *             If the list already holds Integer.MAX_VALUE elements.
+   */
+  public PersistentVList<T> plus(T elem) {
+    if (mBlock == null)
+      return new PersistentVList<T>(new Block(1, null, 0, 0, elem), 1);
+    if (size() == Integer.MAX_VALUE)
+      throw new IllegalStateException("PersistentVList is full.");
+
+    /* If the next slot is free and nobody has claimed it, it is ours. */
+    if (mCount < mBlock.mElems.length
+        && mBlock.mClaimed.compareAndSet(mCount, mCount + 1)) {
+      mBlock.mElems[mCount] = elem;
+      return new PersistentVList<T>(mBlock, mCount + 1);
+    }
+
+    /* Otherwise, start a new block as large as the list so far. */
+    int capacity = Math.min(Integer.MAX_VALUE - 8, size());
+    return new PersistentVList<T>(new Block(capacity, mBlock, mCount, size(), elem), 1);
+  }
+
+  /**
+   * Returns a version of this list without its last element. This list is
+   * not changed, and the result shares all of its storage.
+   *
+   * @return A list holding all but the last of this list's elements.
+   * @throws NoSuchElementException
+   *             If the list is empty.
+   */
+  public PersistentVList<T> withoutLast() {
+    if (mBlock == null)
+      throw new NoSuchElementException("PersistentVList is empty.");
+    if (mCount > 1)
+      return new PersistentVList<T>(mBlock, mCount - 1);
+    if (mBlock.mPrev == null)
+      return empty();
+    return new PersistentVList<T>(mBlock.mPrev, mBlock.mPrevCount);
+  }
+
+  /**
+   * Returns the last element of the list.
+   *
+   * @return The last element.
+   * @throws NoSuchElementException
+   *             If the list is empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T last() {
+    if (mBlock == null)
+      throw new NoSuchElementException("PersistentVList is empty.");
+    return (T) mBlock.mElems[mCount - 1];
+  }
+
+  /**
+   * Returns the element at the specified position, walking back from the
+   * newest block until reaching the one that holds it.
+   *
+   * @param index
+   *            The index at which to look up the element.
+   * @return The element at that position.
+   * @throws IndexOutOfBoundsException
+   *             If the index is invalid.
+   */
+  @SuppressWarnings("unchecked")
+  @Override
+  public T get(int index) {
+    if (index >= size() || index < 0)
+      throw new IndexOutOfBoundsException("Position " + index + "; size "
+          + size());
+
+    Block curr = mBlock;
+    while (index < curr.mBase)
+      curr = curr.mPrev;
+    return (T) curr.mElems[index - curr.mBase];
+  }
+
+  /**
+   * Returns the number of elements in this version.
+   *
+   * @return The size of the list.
+   */
+  @Override
+  public int size() {
+    return mBlock == null ? 0 : mBlock.mBase + mCount;
+  }
+
+  /**
+   * Returns an iterator that walks the blocks in order rather than looking
+   * up each position from the newest block.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    return new PersistentVListIterator();
+  }
+
+  /**
+   * An iterator over one version. It records the version's chain of blocks
+   * oldest-first on construction, then walks them as arrays.
+   */
+  private final class PersistentVListIterator implements Iterator<T> {
+    /* The blocks, oldest first, and the position we are about to visit. */
+    private final Block[] mBlocks;
+    private int mBlockIndex;
+    private int mOffset;
+
+    /* The number of elements left to visit. */
+    private int mRemaining;
+
+    /**
+     * Constructs a new iterator over the enclosing version.
+     */
+    public PersistentVListIterator() {
+      int depth = 0;
+      for (Block curr = mBlock; curr != null; curr = curr.mPrev)
+        ++depth;
+
+      mBlocks = new Block[depth];
+      for (Block curr = mBlock; curr != null; curr = curr.mPrev)
+        mBlocks[--depth] = curr;
+
+      mRemaining = size();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return mRemaining != 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+
+      /* Move to the next block once we have used up the slots this version
+       * sees in the current one, which is where the next block starts.
+       */
+      if (mBlockIndex + 1 < mBlocks.length
+          && mBlocks[mBlockIndex].mBase + mOffset == mBlocks[mBlockIndex + 1].mBase) {
+        ++mBlockIndex;
+        mOffset = 0;
+      }
+
+      --mRemaining;
+      return (T) mBlocks[mBlockIndex].mElems[mOffset++];
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("PersistentVList is immutable.");
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * File: RecordCodec.java
+ */
+package org.zlzh.ds;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Describes how values of some type are laid out as fixed-width records in
+ * a ByteBuffer.  Used by OffHeapExtendibleArray, which stores nothing but
+ * these records and so keeps no Java object per element.
+ *
+ * Implementations must use absolute get/put calls only, and must read and
+ * write exactly width() bytes starting at the given offset.
+ *
+ * @param T The type of values being encoded.
+ */
+public interface RecordCodec<T> {
+    /**
+     * Returns the number of bytes occupied by one record.  This must be
+     * positive and must never change.
+     *
+     * @return The record width in bytes.
+     */
+    int width();
+
+    /**
+     * Encodes a value into the buffer.
+     *
+     * @param buffer The buffer to write to.
+     * @param offset The byte offset of the record within the buffer.
+     * @param value The value to encode.
+     */
+    void write(ByteBuffer buffer, int offset, T value);
+
+    /**
+     * Decodes a value from the buffer.
+     *
+     * @param buffer The buffer to read from.
+     * @param offset The byte offset of the record within the buffer.
+     * @return The decoded value.
+     */
+    T read(ByteBuffer buffer, int offset);
+
+    /** Eight-byte records holding a long.  Does not accept null. */
+    RecordCodec<Long> LONG = new RecordCodec<Long>() {
+        public int width() {
+            return 8;
+        }
+
+        public void write(ByteBuffer buffer, int offset, Long value) {
+            buffer.putLong(offset, value.longValue());
+        }
+
+        public Long read(ByteBuffer buffer, int offset) {
+            return Long.valueOf(buffer.getLong(offset));
+        }
+    };
+
+    /** Four-byte records holding an int.  Does not accept null. */
+    RecordCodec<Integer> INT = new RecordCodec<Integer>() {
+        public int width() {
+            return 4;
+        }
+
+        public void write(ByteBuffer buffer, int offset, Integer value) {
+            buffer.putInt(offset, value.intValue());
+        }
+
+        public Integer read(ByteBuffer buffer, int offset) {
+            return Integer.valueOf(buffer.getInt(offset));
+        }
+    };
+
+    /** Eight-byte records holding a double.  Does not accept null. */
+    RecordCodec<Double> DOUBLE = new RecordCodec<Double>() {
+        public int width() {
+            return 8;
+        }
+
+        public void write(ByteBuffer buffer, int offset, Double value) {
+            buffer.putDouble(offset, value.doubleValue());
+        }
+
+        public Double read(ByteBuffer buffer, int offset) {
+            return Double.valueOf(buffer.getDouble(offset));
+        }
+    };
+}
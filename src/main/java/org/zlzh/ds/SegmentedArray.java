@@ -0,0 +1,323 @@
+/*
+ * File: SegmentedArray.java
+ */
+package org.zlzh.ds;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/************************************************************************
+ *<pre>
+ * An implementation of the List interface backed by a directory of
+ * fixed-size chunks.  Every chunk holds the same power-of-two number of
+ * elements, so element i lives in chunk (i >>> bits) at offset
+ * (i & (chunkSize - 1)), and a lookup is a shift, a mask and two array
+ * reads with no search of any kind.
+ *
+ * Once a chunk is allocated it is never copied.  Growing the list only
+ * ever allocates one more chunk, and at worst copies the directory of
+ * chunk references, which is smaller than the data by a factor of the
+ * chunk size.  There is therefore no point at which two copies of the
+ * contents are alive at once, as happens with ArrayList and (for a
+ * while) with ExtendibleArray, and no add ever copies more than the
+ * directory.
+ *
+ * Because no single Java array has to hold the contents, the list is
+ * not limited to Integer.MAX_VALUE elements.  Positions and sizes are
+ * longs in get(long), set(long, T), remove(long) and longSize().  The
+ * List methods taking int indices still work for the first
+ * Integer.MAX_VALUE elements, and size() reports Integer.MAX_VALUE once
+ * the list grows past that, as the Collection contract asks.
+ *
+ * Adding or removing at the end is O(1).  Adding or removing in the
+ * middle shifts the elements after it, chunk by chunk, in O(n) time.
+ * When the list shrinks, one spare chunk is kept past the end so that
+ * alternating adds and removes at a chunk boundary do not reallocate.
+ * </pre>
+ *
+ * @param T The type of elements being stored.
+ */
+public final class SegmentedArray<T> extends AbstractList<T> {
+    /* The chunk size used by the no-argument constructor, as a power of two.
+     * 4096 references is a few pages, large enough that the directory stays
+     * tiny and small enough that the last chunk wastes little.
+     */
+    private static final int DEFAULT_CHUNK_BITS = 12;
+
+    /* The chunk size and its mask. */
+    private final int mBits;
+    private final int mMask;
+
+    /* The chunk directory.  Entries past the last chunk in use are null,
+     * except for at most one spare chunk.
+     */
+    private Object[][] mChunks = new Object[8][];
+
+    /* The number of elements. */
+    private long mSize = 0;
+
+    /**
+     * Constructs a new, empty SegmentedArray with chunks of 4096 elements.
+     */
+    public SegmentedArray() {
+        this(DEFAULT_CHUNK_BITS);
+    }
+
+    /**
+     * Constructs a new, empty SegmentedArray whose chunks each hold
+     * 2^chunkBits elements.
+     *
+     * @param chunkBits The base-two logarithm of the chunk size.
+     * @throws IllegalArgumentException If chunkBits is not in [0, 30].
+     */
+    public SegmentedArray(int chunkBits) {
+        if (chunkBits < 0 || chunkBits > 30)
+            throw new IllegalArgumentException("Chunk bits must be in [0, 30]: " + chunkBits);
+        mBits = chunkBits;
+        mMask = (1 << chunkBits) - 1;
+    }
+
+    /**
+     * Returns the number of elements in the SegmentedArray.
+     *
+     * @return The number of elements in the SegmentedArray.
+     */
+    public long longSize() {
+        return mSize;
+    }
+
+    /**
+     * Returns the size of the SegmentedArray, or Integer.MAX_VALUE if it
+     * holds more elements than that.
+     *
+     * @return The size of the SegmentedArray, capped at Integer.MAX_VALUE.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(mSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds a new element to the end of the SegmentedArray, allocating a new
+     * chunk if the last one is full.
+     *
+     * @param elem The element to add.
+     * @return true
+     * @throws OutOfMemoryError If the directory cannot grow any further.
+     */
+    @Override
+    public boolean add(T elem) {
+        chunkFor(mSize)[(int) mSize & mMask] = elem;
+        ++mSize;
+
+        /* By contract, must return true. */
+        return true;
+    }
+
+    /**
+     * Returns the element at the specified position.
+     *
+     * @param index The index to query.
+     * @return The element at that index.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public T get(int index) {
+        return get((long) index);
+    }
+
+    /**
+     * Returns the element at the specified position.
+     *
+     * @param index The index to query.
+     * @return The element at that index.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @SuppressWarnings("unchecked")
+    public T get(long index) {
+        checkIndex(index);
+        return (T) mChunks[(int) (index >>> mBits)][(int) index & mMask];
+    }
+
+    /**
+     * Overwrites the element at the specified position.
+     *
+     * @param index The index of the element to set.
+     * @param value The new value to write.
+     * @return The value of that element before the write.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public T set(int index, T value) {
+        return set((long) index, value);
+    }
+
+    /**
+     * Overwrites the element at the specified position.
+     *
+     * @param index The index of the element to set.
+     * @param value The new value to write.
+     * @return The value of that element before the write.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    public T set(long index, T value) {
+        T result = get(index);
+        mChunks[(int) (index >>> mBits)][(int) index & mMask] = value;
+        return result;
+    }
+
+    /**
+     * Inserts an element at the specified position, shifting the elements
+     * after it up by one.
+     *
+     * @param index The index before which to insert.
+     * @param elem The value of the element to insert.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public void add(int index, T elem) {
+        add((long) index, elem);
+    }
+
+    /**
+     * Inserts an element at the specified position, shifting the elements
+     * after it up by one.
+     *
+     * @param index The index before which to insert.
+     * @param elem The value of the element to insert.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    public void add(long index, T elem) {
+        if (index < 0 || index > mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+
+        /* Make room at the end, then shift [index, size) up one slot,
+         * starting from the last chunk so that each chunk can hand its last
+         * element on to the chunk after it.
+         */
+        chunkFor(mSize);
+        ++mSize;
+
+        int chunk = (int) ((mSize - 1) >>> mBits);
+        int first = (int) (index >>> mBits);
+        for (; chunk >= first; --chunk) {
+            Object[] elems = mChunks[chunk];
+            int from = (chunk == first) ? (int) index & mMask : 0;
+            int to = (int) Math.min(mSize - 1 - ((long) chunk << mBits), elems.length);
+            if (to == elems.length) {
+                mChunks[chunk + 1][0] = elems[elems.length - 1];
+                --to;
+            }
+            System.arraycopy(elems, from, elems, from + 1, to - from);
+        }
+        mChunks[first][(int) index & mMask] = elem;
+    }
+
+    /**
+     * Removes the element at the specified position, shifting the elements
+     * after it down by one.
+     *
+     * @param index The index of the element to remove.
+     * @return The value of the removed element.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    @Override
+    public T remove(int index) {
+        return remove((long) index);
+    }
+
+    /**
+     * Removes the element at the specified position, shifting the elements
+     * after it down by one.
+     *
+     * @param index The index of the element to remove.
+     * @return The value of the removed element.
+     * @throws IndexOutOfBoundsException If index is invalid.
+     */
+    public T remove(long index) {
+        T result = get(index);
+
+        /* Shift (index, size) down one slot, chunk by chunk, pulling the
+         * first element of each following chunk into the last slot of the
+         * one before it.
+         */
+        int chunk = (int) (index >>> mBits);
+        int slot = (int) index & mMask;
+        int last = (int) ((mSize - 1) >>> mBits);
+        for (; chunk < last; ++chunk, slot = 0) {
+            Object[] elems = mChunks[chunk];
+            System.arraycopy(elems, slot + 1, elems, slot, elems.length - slot - 1);
+            elems[elems.length - 1] = mChunks[chunk + 1][0];
+        }
+        Object[] elems = mChunks[last];
+        int used = (int) (mSize - ((long) last << mBits));
+        System.arraycopy(elems, slot + 1, elems, slot, used - slot - 1);
+        elems[used - 1] = null; // Place nice with the GC
+
+        --mSize;
+        trim();
+        return result;
+    }
+
+    /**
+     * Removes and returns the last element.
+     *
+     * @return The element that was last in the SegmentedArray.
+     * @throws IndexOutOfBoundsException If the SegmentedArray is empty.
+     */
+    public T removeLast() {
+        if (mSize == 0)
+            throw new IndexOutOfBoundsException("SegmentedArray is empty.");
+
+        T result = get(mSize - 1);
+        mChunks[(int) ((mSize - 1) >>> mBits)][(int) (mSize - 1) & mMask] = null;
+        --mSize;
+        trim();
+        return result;
+    }
+
+    /**
+     * Removes every element and releases every chunk.
+     */
+    @Override
+    public void clear() {
+        mChunks = new Object[8][];
+        mSize = 0;
+    }
+
+    /**
+     * Throws an IndexOutOfBoundsException if index does not name an element.
+     */
+    private void checkIndex(long index) {
+        if (index < 0 || index >= mSize)
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + mSize);
+    }
+
+    /**
+     * Returns the chunk that will hold the element at the given index,
+     * allocating it (and growing the directory) if need be.
+     */
+    private Object[] chunkFor(long index) {
+        long chunk = index >>> mBits;
+        if (chunk >= mChunks.length) {
+            if (chunk >= Integer.MAX_VALUE - 8)
+                throw new OutOfMemoryError("SegmentedArray cannot grow past " + mSize + " elements.");
+            mChunks = Arrays.copyOf(mChunks, (int) Math.min(Integer.MAX_VALUE - 8, 2L * mChunks.length));
+        }
+
+        Object[] result = mChunks[(int) chunk];
+        if (result == null)
+            result = mChunks[(int) chunk] = new Object[mMask + 1];
+        return result;
+    }
+
+    /**
+     * Releases chunks beyond the one receiving the next add and one spare
+     * after it.
+     */
+    private void trim() {
+        int spare = (int) (mSize >>> mBits) + 2;
+        if (spare < mChunks.length)
+            mChunks[spare] = null;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * File: SymmetricMinMaxHeap.java
+ */
+package org.zlzh.ds;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+/*********************************************************
+ * A double-ended priority queue implemented as a symmetric min-max
+ * heap (Arvind and Pandu Rangan, 1999).
+ *
+ * The elements form a complete binary tree whose root is empty and
+ * whose every other node holds one element.  Positions are numbered
+ * from 1 as in a classic heap, the root being 1, so the elements
+ * occupy positions 2 through size() + 1 and array slots 0 and 1 are
+ * never used.  The tree obeys three rules:
+ *
+ *   1. A left sibling is no larger than its right sibling.
+ *   2. Every node with a grandparent is no smaller than the left
+ *      child of that grandparent.
+ *   3. Every node with a grandparent is no larger than the right
+ *      child of that grandparent.
+ *
+ * Together they make the left child of every node the smallest
+ * element of that node's subtree (the node itself aside) and the
+ * right child the largest.  In particular the minimum is in
+ * position 2 and the maximum in position 3.
+ *
+ * An insertion places the new element at the end, orders it with
+ * its sibling, and moves it up through the grandparents' children
+ * while it falls outside their interval.  A removal from either end
+ * moves the last element into the hole and walks it down, at each
+ * level comparing the two candidate children and the sibling.  The
+ * work is much that of an interval heap in a different layout;
+ * elements are shifted into the hole rather than swapped, and there
+ * is no half-full last node to special-case.
+ *
+ * A good reference is Sahni, "Data Structures, Algorithms and
+ * Applications in Java", section on double-ended priority queues.
+ *
+ * @param T The type of elements being stored.
+ */
+public final class SymmetricMinMaxHeap<T extends Comparable<T>> implements DoubleEndedPriorityQueue<T> {
+    /* A Comparator for comparing elements in the heap. */
+    private final Comparator<? super T> comparator;
+
+    /* The tree, indexed by position.  Slots 0 and 1 are always empty. */
+    private Object[] elems = new Object[16];
+
+    /* A cache of the number of elements in the heap. */
+    private int numElems = 0;
+
+    /**
+     * Constructs a new SymmetricMinMaxHeap that is initially empty and
+     * orders its elements by their natural ordering.
+     */
+    public SymmetricMinMaxHeap() {
+        this(new Comparator<T>() {
+            @Override
+            public int compare(T one, T two) {
+                return one.compareTo(two);
+            }
+        });
+    }
+
+    /**
+     * Constructs a new SymmetricMinMaxHeap that is initially empty and uses
+     * the specified comparator.
+     *
+     * @param comparator The comparator to use in the heap ordering.
+     */
+    public SymmetricMinMaxHeap(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    @Override
+    public int size() {
+        return numElems;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numElems == 0;
+    }
+
+    @Override
+    public void add(T elem) {
+        if (elem == null)
+            throw new NullPointerException("SymmetricMinMaxHeap does not store null values.");
+
+        int pos = numElems + 2;
+        if (pos >= elems.length)
+            grow(pos + 1);
+        ++numElems;
+
+        /* Rule 1: a right child smaller than its sibling trades places. */
+        if (pos % 2 == 1 && less(elem, elems[pos - 1])) {
+            elems[pos] = elems[pos - 1];
+            --pos;
+        }
+
+        /* Rules 2 and 3: move up while outside the interval formed by the
+         * children of the grandparent.  Moving into either of them keeps
+         * rule 1, since the new element is beyond both.
+         */
+        while (pos >= 4) {
+            int low = 2 * (pos / 4);
+            if (less(elem, elems[low])) {
+                elems[pos] = elems[low];
+                pos = low;
+            } else if (less(elems[low + 1], elem)) {
+                elems[pos] = elems[low + 1];
+                pos = low + 1;
+            } else
+                break;
+        }
+        elems[pos] = elem;
+    }
+
+    @Override
+    public T min() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return elem(2);
+    }
+
+    @Override
+    public T max() {
+        if (isEmpty())
+            throw new NoSuchElementException("Empty heap.");
+        return elem(numElems == 1 ? 2 : 3);
+    }
+
+    @Override
+    public T dequeueMin() {
+        T result = min();
+
+        Object elem = removeLast();
+        if (numElems == 0)
+            return result;
+
+        /* Walk the last element down from the hole at position 2.  At each
+         * step it is first ordered with its right sibling; then the smaller
+         * of the left children of the node and of that sibling, which are
+         * the minima of the two subtrees, moves up if it is smaller still.
+         */
+        int last = numElems + 1;
+        int pos = 2;
+        while (true) {
+            if (pos + 1 <= last && less(elems[pos + 1], elem)) {
+                Object temp = elems[pos + 1];
+                elems[pos + 1] = elem;
+                elem = temp;
+            }
+
+            int child = 2 * pos;
+            if (child > last)
+                break;
+            if (child + 2 <= last && less(elems[child + 2], elems[child]))
+                child += 2;
+            if (!less(elems[child], elem))
+                break;
+
+            elems[pos] = elems[child];
+            pos = child;
+        }
+        elems[pos] = elem;
+        return result;
+    }
+
+    @Override
+    public T dequeueMax() {
+        T result = max();
+
+        Object elem = removeLast();
+        if (numElems <= 1)
+            return result;
+
+        /* The mirror image of dequeueMin(), from the hole at position 3.
+         * The maximum of a subtree is its root's right child, or its left
+         * child if that is the last position; a left child reached that
+         * way is a leaf, so the walk ends there.
+         */
+        int last = numElems + 1;
+        int pos = 3;
+        while (true) {
+            if (less(elem, elems[pos - 1])) {
+                Object temp = elems[pos - 1];
+                elems[pos - 1] = elem;
+                elem = temp;
+            }
+
+            int child = 2 * pos - 1 <= last ? 2 * pos - 1 : 2 * pos - 2;
+            if (child > last)
+                break;
+            int other = 2 * pos + 1 <= last ? 2 * pos + 1 : 2 * pos;
+            if (other <= last && less(elems[child], elems[other]))
+                child = other;
+            if (!less(elem, elems[child]))
+                break;
+
+            elems[pos] = elems[child];
+            pos = child;
+            if (pos % 2 == 0)
+                break;
+        }
+        elems[pos] = elem;
+        return result;
+    }
+
+    /**
+     * Removes the element in the last position and returns it.
+     */
+    private Object removeLast() {
+        int last = numElems + 1;
+        Object elem = elems[last];
+        elems[last] = null; // Place nice with the GC
+        --numElems;
+        return elem;
+    }
+
+    /**
+     * Returns the element in the given position.
+     */
+    @SuppressWarnings("unchecked")
+    private T elem(int pos) {
+        return (T) elems[pos];
+    }
+
+    /**
+     * Returns whether one element is smaller than another.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean less(Object one, Object two) {
+        return comparator.compare((T) one, (T) two) < 0;
+    }
+
+    /**
+     * Grows the array to at least twice its size and at least minCapacity.
+     */
+    private void grow(int minCapacity) {
+        if (minCapacity < 0)
+            throw new OutOfMemoryError("SymmetricMinMaxHeap cannot hold more than Integer.MAX_VALUE - 2 elements.");
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) minCapacity, 2L * elems.length));
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+        elems = Arrays.copyOf(elems, capacity);
+    }
+}
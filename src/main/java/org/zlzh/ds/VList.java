@@ -4,8 +4,12 @@
 package org.zlzh.ds;
 
 import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * An implementation of the List abstraction backed by a VList. The VList is
@@ -33,11 +37,12 @@ import java.util.NoSuchElementException;
  * 
  * Each column represents a linked list cell containing a fixed-size array. The
  * size of this array depends on which cell is being referenced. In particular,
- * the nth cell from the end has 2^n elements in it. In this manner, for a
- * uniformly-randomly chosen position, the expected time to look up that element
- * is O(1), though in the worst case it is O(log n). This random access is
- * significantly better than a linked list, though in the worst case is not as
- * good as a dynamic array.
+ * the nth cell from the end has 2^n elements in it. Because the sizes are fixed
+ * in this way, the cell holding any position, and the offset within it, can be
+ * computed directly from the position: position i is in the cell with 2^k
+ * elements, where k is the index of the highest one bit of i + 1. The list
+ * keeps a directory of its cells indexed by k, so random access is worst-case
+ * O(1), like a dynamic array, and allocates nothing.
  * <p>
  * Notice that in each array, elements grow up, with the lower-numbered indices
  * of the array holding elements in the array whose positions are higher. This
@@ -90,27 +95,19 @@ public final class VList<T> extends AbstractList<T> {
     }
   }
 
-  /**
-   * A utility struct containing information about where an element is in the
-   * VList. Methods that need to manipulate individual elements of the list
-   * use this struct to communicate where in the list to look for that
-   * element.
-   */
-  private static final class VListLocation<T> {
-    public final VListCell<T> mCell;
-    public final int mOffset;
-
-    public VListLocation(VListCell<T> cell, int offset) {
-      mCell = cell;
-      mOffset = offset;
-    }
-  }
-
   /* Pointer to the head of the VList, which contains the final elements of
    * the list.
    */
   private VListCell<T> mHead;
 
+  /* Directory of the cells, indexed by the base-two logarithm of their size.
+   * The tail is mCells[0] and the head is the last non-null entry. Since
+   * every cell but the head is full, the cell with 2^k elements holds
+   * exactly positions [2^k - 1, 2^(k+1) - 1) of the list.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private final VListCell<T>[] mCells = (VListCell<T>[]) new VListCell[31];
+
   /* Cached total number of elements in the array. */
   private int mSize;
 
@@ -124,8 +121,10 @@ public final class VList<T> extends AbstractList<T> {
   @Override
   public boolean add(T elem) {
     /* If no free space exists, add a new element to the list. */
-    if (mHead == null || mHead.mFreeSpace == 0)
+    if (mHead == null || mHead.mFreeSpace == 0) {
       mHead = new VListCell<T>(mHead == null? 1 : mHead.mElems.length * 2, mHead);
+      mCells[Integer.numberOfTrailingZeros(mHead.mElems.length)] = mHead;
+    }
 
     /* Prepend this element to the current cell. */
     mHead.mElems[(mHead.mFreeSpace--) - 1] = elem;
@@ -136,52 +135,50 @@ public final class VList<T> extends AbstractList<T> {
   }
 
   /**
-   * Given an absolute offset into the VList, returns an object describing
-   * where that object is in the VList.
+   * Returns the cell holding the element at the given position, which must
+   * be valid. The cell is the one whose size is the highest one bit of
+   * index + 1.
    * 
    * @param index
    *            The index into the VList.
-   * @return A VListLocation object holding information about where that
-   *         element can be found.
+   * @return The cell holding that element.
    */
-  private VListLocation<T> locateElement(int index) {
-    /* Bounds-check. */
+  private VListCell<T> cellOf(int index) {
+    return mCells[31 - Integer.numberOfLeadingZeros(index + 1)];
+  }
+
+  /**
+   * Returns the offset, within its cell, of the element at the given
+   * position. The cell with 2^k elements holds positions starting at 2^k - 1,
+   * stored from the top of its array downward, so the offset is
+   * 2^(k+1) - 2 - index. At k = 30 the doubling overflows, but the wrapped
+   * arithmetic still yields the right answer.
+   * 
+   * @param cell
+   *            The cell holding the element, as returned by cellOf.
+   * @param index
+   *            The index into the VList.
+   * @return The offset of that element in the cell's array.
+   */
+  private static int offsetOf(VListCell<?> cell, int index) {
+    return 2 * cell.mElems.length - 2 - index;
+  }
+
+  /**
+   * Throws an IndexOutOfBoundsException if the index is not a valid
+   * position.
+   * 
+   * @param index
+   *            The index to check.
+   */
+  private void checkIndex(int index) {
     if (index >= size() || index < 0)
       throw new IndexOutOfBoundsException("Position " + index + "; size "
           + size());
-
-    /* Because the list is stored with new elements in front and old
-     * elements in back, we'll invert the index so that 0 refers to the
-     * final element of the array and size() - 1 refers to the first
-     * element.
-     */
-    index = size() - 1 - index;
-
-    /* Scan across the cells, looking for the first one that can hold our
-     * entry. We do this by continuously skipping cells until we find one
-     * that can be sure to hold this element.
-     * 
-     * Note that each cell has mElems.length elements, of which mFreeSpace
-     * is used. This means that the total number of used elements in each
-     * cell is mElems.length - mFreeSpace.
-     */
-    VListCell<T> curr = mHead;
-    while (index >= curr.mElems.length - curr.mFreeSpace) {
-      /* Skip past all these elements. */
-      index -= curr.mElems.length - curr.mFreeSpace;
-      curr = curr.mNext;
-    }
-
-    /* We're now in the correct location for what we need to do. The element
-     * we want can be found by indexing the proper amount beyond the free
-     * space.
-     */
-    return new VListLocation<T>(curr, index + curr.mFreeSpace);
   }
 
   /**
-   * Scans for the proper location in the cell list for the element, then
-   * returns the element at that position.
+   * Looks up the element at the given position in its cell.
    * 
    * @param index
    *            The index at which to look up the element.
@@ -189,10 +186,9 @@ public final class VList<T> extends AbstractList<T> {
    */
   @Override
   public T get(int index) {
-    VListLocation<T> where = locateElement(index);
-
-    /* Return the element in the current position of this array. */
-    return where.mCell.mElems[where.mOffset];
+    checkIndex(index);
+    VListCell<T> cell = cellOf(index);
+    return cell.mElems[offsetOf(cell, index)];
   }
 
   /**
@@ -216,11 +212,13 @@ public final class VList<T> extends AbstractList<T> {
    */
   @Override
   public T set(int index, T value) {
-    VListLocation<T> where = locateElement(index);
+    checkIndex(index);
+    VListCell<T> cell = cellOf(index);
+    int offset = offsetOf(cell, index);
 
     /* Cache the element in the current position of this array. */
-    T result = where.mCell.mElems[where.mOffset];
-    where.mCell.mElems[where.mOffset] = value;
+    T result = cell.mElems[offset];
+    cell.mElems[offset] = value;
     return result;
   }
 
@@ -234,74 +232,184 @@ public final class VList<T> extends AbstractList<T> {
    */
   @Override
   public T remove(int index) {
-    VListLocation<T> where = locateElement(index);
+    checkIndex(index);
+    VListCell<T> cell = cellOf(index);
+    int offset = offsetOf(cell, index);
 
     /* Cache the value that will be removed. */
-    T result = where.mCell.mElems[where.mOffset];
+    T result = cell.mElems[offset];
 
     /* Invoke the helper to do most of the work. */
-    removeAtPosition(where);
+    removeAtPosition(cell, offset);
 
     return result;
   }
 
   /**
-   * Removes the element at the indicated VListLocation.
+   * Removes the element at the indicated offset of the indicated cell.
    * 
-   * @param where
-   *            The location at which the element should be removed.
+   * @param cell
+   *            The cell holding the element to remove.
+   * @param offset
+   *            The offset of that element in the cell's array.
    */
-  private void removeAtPosition(VListLocation<T> where) {
-    /* Scan backward across the blocks after this element, shuffling array
-     * elements down a position and copying the last element of the next
-     * block over to fill in the top.
-     * 
-     * The variable shuffleTargetPosition indicates the first element of the
-     * block that should be overwritten during the shuffle-down. In the
-     * first block, this is the position of the element that was
-     * overwritten. In all other blocks, it's the last element.
+  private void removeAtPosition(VListCell<T> cell, int offset) {
+    /* Recover the position of the element from its offset, slide everything
+     * after it down a position, and drop the last slot.
      */
-    VListCell<T> curr = where.mCell;
-    for (int shuffleTargetPosition = where.mOffset; curr != null; 
-         curr = curr.mPrev, shuffleTargetPosition = (curr == null? 0 : curr.mElems.length - 1)) {
-      /* Shuffle down each element in the current array on top of the
-       * target position. Note that in the final block, this may end up
-       * copying a whole bunch of null values down. This is more work than
-       * necessary, but is harmless and doesn't change the asymptotic
-       * runtime (since the last block has size O(n)).
-       */
-      for (int i = shuffleTargetPosition - 1; i >= 0; --i)
-        curr.mElems[i + 1] = curr.mElems[i];
+    int index = 2 * cell.mElems.length - 2 - offset;
+    moveRange(index + 1, index, mSize - index - 1);
+    truncate(mSize - 1);
+  }
 
-      /* Copy the last element of the next array to the top of this array,
-       * unless this is the first block (in which case there is no next
-       * array).
+  /**
+   * Removes the elements at positions [fromIndex, toIndex), sliding the
+   * elements after them down with one System.arraycopy per cell touched,
+   * then releasing any cells left empty. This takes O(n - fromIndex) time
+   * no matter how many elements are removed.
+   * 
+   * @param fromIndex
+   *            The index of the first element to remove.
+   * @param toIndex
+   *            The index after the last element to remove.
+   */
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    if (fromIndex >= toIndex)
+      return;
+
+    moveRange(toIndex, fromIndex, mSize - toIndex);
+    truncate(mSize - (toIndex - fromIndex));
+  }
+
+  /**
+   * Removes every element satisfying the predicate in a single pass. Runs of
+   * kept elements are slid down as a block with System.arraycopy, and the
+   * cells emptied at the end are released, so this takes O(n) time however
+   * many elements are removed.
+   * <p>
+   * If the predicate throws, the elements already removed stay removed and
+   * everything from the element being tested on is kept, so the list is
+   * left consistent.
+   * 
+   * @param filter
+   *            The predicate selecting the elements to remove.
+   * @return Whether any elements were removed.
+   */
+  @Override
+  public boolean removeIf(Predicate<? super T> filter) {
+    if (filter == null)
+      throw new NullPointerException();
+
+    /* The positions [runStart, index) are kept elements not yet moved, and
+     * dst is where the next kept element belongs.
+     */
+    int size = mSize;
+    int dst = 0;
+    int runStart = 0;
+    try {
+      for (int index = 0; index < size; ++index) {
+        VListCell<T> cell = cellOf(index);
+        if (filter.test(cell.mElems[offsetOf(cell, index)])) {
+          moveRange(runStart, dst, index - runStart);
+          dst += index - runStart;
+          runStart = index + 1;
+        }
+      }
+    } finally {
+      /* Keep everything from the end of the last removal on, including, if
+       * the predicate threw, the element it was looking at.
        */
-      if (curr.mPrev != null)
-        curr.mElems[0] = curr.mPrev.mElems[curr.mPrev.mElems.length - 1];
+      moveRange(runStart, dst, size - runStart);
+      dst += size - runStart;
+      if (dst != size)
+        truncate(dst);
     }
+    return dst != size;
+  }
 
-    /* The head just lost an element, so it has some more free space. Null
-     * out the lost element and increase the free space.
-     */
-    ++mHead.mFreeSpace;
-    mHead.mElems[mHead.mFreeSpace - 1] = null;
+  /**
+   * Removes every element, releasing all the cells at once.
+   */
+  @Override
+  public void clear() {
+    mHead = null;
+    mSize = 0;
+    Arrays.fill(mCells, null);
+  }
 
-    /* The whole list just lost an element. */
-    --mSize;
+  /**
+   * Copies the elements at positions [src, src + length) down to positions
+   * [dst, dst + length), where dst is at most src. Each step copies the
+   * longest run that stays within one cell on both sides, so this makes
+   * O(log n) calls to System.arraycopy.
+   * 
+   * @param src
+   *            The first position to copy from.
+   * @param dst
+   *            The first position to copy to.
+   * @param length
+   *            The number of elements to copy.
+   */
+  private void moveRange(int src, int dst, int length) {
+    if (src == dst)
+      return;
 
-    /* If the head is entirely free, remove it from the list. */
-    if (mHead.mFreeSpace == mHead.mElems.length) {
-      mHead = mHead.mNext;
+    while (length > 0) {
+      VListCell<T> from = cellOf(src);
+      VListCell<T> to = cellOf(dst);
 
-      /* If there is at least one block left, remove the previous block
-       * from the linked list.
+      /* The cell with 2^k elements ends before position 2^(k+1) - 1. As in
+       * offsetOf, the arithmetic may wrap at k = 30 but stays correct.
        */
-      if (mHead != null)
-        mHead.mPrev = null;
+      int run = Math.min(length, Math.min(2 * from.mElems.length - 1 - src,
+                                          2 * to.mElems.length - 1 - dst));
+
+      /* Positions run downward through each array, so the run occupies the
+       * slots starting at the offset of its last position.
+       */
+      System.arraycopy(from.mElems, offsetOf(from, src + run - 1),
+                       to.mElems, offsetOf(to, dst + run - 1), run);
+      src += run;
+      dst += run;
+      length -= run;
     }
   }
 
+  /**
+   * Shrinks the list to its first newSize elements. Cells beyond the one
+   * holding the new last element are dropped from the list and the
+   * directory, and the vacated slots of that cell are cleared so the
+   * garbage collector can reclaim the elements.
+   * 
+   * @param newSize
+   *            The new size, at most the current size.
+   */
+  private void truncate(int newSize) {
+    if (newSize == 0) {
+      clear();
+      return;
+    }
+
+    VListCell<T> last = cellOf(newSize - 1);
+    for (int k = Integer.numberOfTrailingZeros(last.mElems.length) + 1;
+         k < mCells.length && mCells[k] != null; ++k)
+      mCells[k] = null;
+
+    /* Positions past the new end sit below the new free space. Slots below
+     * the old free space of the head are already clear.
+     */
+    int freeSpace = last.mElems.length - (newSize - (last.mElems.length - 1));
+    int cleared = (last == mHead) ? last.mFreeSpace : 0;
+    if (freeSpace > cleared)
+      Arrays.fill(last.mElems, cleared, freeSpace, null);
+
+    last.mFreeSpace = freeSpace;
+    last.mPrev = null;
+    mHead = last;
+    mSize = newSize;
+  }
+
   /**
    * A custom iterator class that traverses the elements of this container in
    * an intelligent way. The normal iterator will call get repeatedly, which
@@ -328,16 +436,8 @@ public final class VList<T> extends AbstractList<T> {
      * containing VList.
      */
     public VListIterator() {
-      /* Scan to the tail using the "pointer chase" algorithm. When this
-       * terminates, prev will hold a pointer to the last element of the
-       * list.
-       */
-      VListCell<T> curr, prev;
-      for (curr = mHead, prev = null; curr != null; prev = curr, curr = curr.mNext)
-        ;
-
-      /* Set the current cell to the tail. */
-      mCurrCell = prev;
+      /* Start at the tail, which is the first entry of the directory. */
+      mCurrCell = mCells[0];
 
       /* If the tail isn't null, it must be a full list of size 1. Set the
        * current index appropriately.
@@ -419,7 +519,7 @@ public final class VList<T> extends AbstractList<T> {
          * next element to visit.
          */
         ++mCurrIndex;
-        removeAtPosition(new VListLocation<T>(mCurrCell, mCurrIndex));
+        removeAtPosition(mCurrCell, mCurrIndex);
       }
       /* Case 3. */
       else {
@@ -432,11 +532,119 @@ public final class VList<T> extends AbstractList<T> {
          */
         mCurrCell = mCurrCell.mNext;
         mCurrIndex = 0;
-        removeAtPosition(new VListLocation<T>(mCurrCell, mCurrIndex));
+        removeAtPosition(mCurrCell, mCurrIndex);
       }
     }
   }
 
+  /**
+   * Performs the action on every element in order, walking the cells'
+   * arrays directly rather than looking up each position.
+   * 
+   * @param action
+   *            The action to perform.
+   */
+  @Override
+  public void forEach(Consumer<? super T> action) {
+    spliterator().forEachRemaining(action);
+  }
+
+  /**
+   * Returns a spliterator that splits along cell boundaries, so that each
+   * half of a split is backed by whole arrays wherever possible. It is
+   * sized, and the sizes of its splits are exact.
+   * <p>
+   * Like the iterator, the spliterator does not detect modification of the
+   * list while it is in use.
+   */
+  @Override
+  public Spliterator<T> spliterator() {
+    return new VListSpliterator<T>(mCells, 0, mSize);
+  }
+
+  /**
+   * A spliterator over the positions [mIndex, mFence) of a VList, reading the
+   * cells through the directory.
+   */
+  private static final class VListSpliterator<T> implements Spliterator<T> {
+    private final VListCell<T>[] mCells;
+    private int mIndex;
+    private final int mFence;
+
+    public VListSpliterator(VListCell<T>[] cells, int index, int fence) {
+      mCells = cells;
+      mIndex = index;
+      mFence = fence;
+    }
+
+    /**
+     * Splits off a prefix of the range. If the range spans more than one
+     * cell, the split is at the start of the last cell it touches; since each
+     * cell is as large as all the ones before it, this roughly halves a
+     * range that starts at the front. Within a single cell, the split is at
+     * the middle.
+     */
+    @Override
+    public Spliterator<T> trySplit() {
+      int lo = mIndex;
+      int hi = mFence;
+      if (hi - lo < 2)
+        return null;
+
+      int mid = Integer.highestOneBit(hi) - 1;
+      if (mid <= lo)
+        mid = (lo + hi) >>> 1;
+
+      mIndex = mid;
+      return new VListSpliterator<T>(mCells, lo, mid);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+      if (action == null)
+        throw new NullPointerException();
+      if (mIndex >= mFence)
+        return false;
+
+      VListCell<T> cell = mCells[31 - Integer.numberOfLeadingZeros(mIndex + 1)];
+      action.accept(cell.mElems[offsetOf(cell, mIndex)]);
+      ++mIndex;
+      return true;
+    }
+
+    /**
+     * Visits the rest of the range cell by cell. Positions run downward
+     * through each cell's array.
+     */
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+      if (action == null)
+        throw new NullPointerException();
+
+      int index = mIndex;
+      mIndex = mFence;
+      while (index < mFence) {
+        VListCell<T> cell = mCells[31 - Integer.numberOfLeadingZeros(index + 1)];
+        T[] elems = cell.mElems;
+        int from = offsetOf(cell, index);
+        int to = Math.max(offsetOf(cell, mFence - 1), 0);
+        for (int i = from; i >= to; --i)
+          action.accept(elems[i]);
+        index += from - to + 1;
+      }
+    }
+
+    @Override
+    public long estimateSize() {
+      return mFence - mIndex;
+    }
+
+    @Override
+    public int characteristics() {
+      return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+    }
+  }
+
   /**
    * Returns a custom iterator rather than the default.
    */
@@ -5,31 +5,33 @@
 package org.zlzh.ds.tree;
 
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 
 /**
  * <p>Title:˫ṹȵ</p>
- * <p>Description:Breadth first tree traversal iterator.</p>
+ * <p>Description:Breadth first tree traversal iterator. The queue is an
+ * ArrayDeque and children are enqueued by index, so a step allocates
+ * nothing beyond the occasional growth of the deque.</p>
  * @author:  zenglizhi
  * @time:    2013-6-9
  * @version:  v1.0
  */
 public class BreadthFirstIterator<E> implements TraversalIterator<E> {
 
-	private final LinkedList<Tree<E>> queue;
+	private final ArrayDeque<Tree<E>> queue;
 	private Tree<E> lastNode;
 
 	public BreadthFirstIterator(Tree<E> node) {
-		this.queue = new LinkedList<Tree<E>>();
+		this.queue = new ArrayDeque<Tree<E>>();
 		queue.add(node);
 		this.lastNode = null;
 	}
 
 	public boolean hasNext() {
-		return (queue.size() > 0);
+		return !queue.isEmpty();
 	}
 
 	public Tree<E> next() {
@@ -37,8 +39,10 @@ public class BreadthFirstIterator<E> implements TraversalIterator<E> {
 			throw new NoSuchElementException("no more nodes!");
 		Tree<E> result = queue.removeFirst();
 		final List<Tree<E>> children = result.getChildren();
-		if (children != null)
-			queue.addAll(children);
+		if (children != null) {
+			for (int i = 0, n = children.size(); i < n; ++i)
+				queue.addLast(children.get(i));
+		}
 		lastNode = result;
 		return result;
 	}
@@ -62,7 +66,7 @@ public class BreadthFirstIterator<E> implements TraversalIterator<E> {
 			// off.
 			final List<Tree<E>> children = lastNode.getChildren();
 			if (children != null) {
-				for (@SuppressWarnings("unused")Tree<E> child : children)
+				for (int i = children.size(); i > 0; --i)
 					queue.removeLast();
 			}
 		}
@@ -0,0 +1,712 @@
+/*
+ * File: CompactTree.java
+ */
+package org.zlzh.ds.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * <p>Title: Compact tree stored as parallel arrays</p>
+ * <p>
+ * A tree whose nodes are not objects but int indices into a few parallel
+ * arrays: the parent, first child, last child and next sibling of each
+ * node, and an Object[] of payloads. The root is node 0 and NONE (-1)
+ * marks a missing link. A node costs about 20 bytes plus its payload,
+ * against several objects (the node, its ArrayList of children, the
+ * list's array and possibly a cached path) for a Tree.
+ * </p>
+ * <p>
+ * Nodes are only ever appended, with addChild(), so indices stay valid
+ * for the life of the tree. fromTree() numbers the nodes in breadth-first
+ * order, and toTree() builds the equivalent Tree again. The queries of
+ * Tree are available with node indices in place of nodes: depth(),
+ * getPath(), treesAtDepth(), gatherLeaves(), maxDepth(), numLeaves(), and
+ * iterators for each Tree.Traversal that produce node indices.
+ * </p>
+ * @param E The type of data stored in the nodes.
+ */
+public class CompactTree<E> {
+
+	/**
+	 * The index standing for a missing parent, child or sibling.
+	 */
+	public static final int NONE = -1;
+
+	/**
+	 * An iterator over node indices that, like TraversalIterator, can skip
+	 * the children of the node it returned last.
+	 */
+	public interface NodeIterator extends PrimitiveIterator.OfInt {
+		/**
+		 * Skip traversing into the last "next" node's children.
+		 */
+		public void skip();
+	}
+
+	private int[] parent;
+	private int[] firstChild;
+	private int[] lastChild;
+	private int[] nextSibling;
+	private Object[] data;
+
+	/**
+	 * The number of nodes.
+	 */
+	private int size;
+
+	/**
+	 * Create a tree holding only a root with the given data.
+	 */
+	public CompactTree(E rootData) {
+		this(rootData, 16);
+	}
+
+	/**
+	 * Create a tree holding only a root with the given data, with room for
+	 * the given number of nodes before the arrays have to grow.
+	 */
+	public CompactTree(E rootData, int initialCapacity) {
+		int capacity = Math.max(1, initialCapacity);
+		parent = new int[capacity];
+		firstChild = new int[capacity];
+		lastChild = new int[capacity];
+		nextSibling = new int[capacity];
+		data = new Object[capacity];
+		append(NONE, rootData);
+	}
+
+	/**
+	 * Copy a Tree into a new CompactTree. The nodes are numbered in
+	 * breadth-first order, so the given node becomes node 0 and the
+	 * children of each node get consecutive indices.
+	 */
+	public static <E> CompactTree<E> fromTree(Tree<E> root) {
+		List<Tree<E>> nodes = new ArrayList<Tree<E>>();
+		nodes.add(root);
+		for (int i = 0; i < nodes.size(); ++i) {
+			List<Tree<E>> children = nodes.get(i).getChildren();
+			if (children != null)
+				nodes.addAll(children);
+		}
+
+		CompactTree<E> result = new CompactTree<E>(root.getData(), nodes.size());
+		int next = 1;
+		for (int i = 0; next < nodes.size(); ++i) {
+			List<Tree<E>> children = nodes.get(i).getChildren();
+			if (children != null) {
+				for (int j = 0; j < children.size(); ++j, ++next)
+					result.addChild(i, nodes.get(next).getData());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Build a Tree equivalent to this one.
+	 */
+	public Tree<E> toTree() {
+		return toTree(0);
+	}
+
+	/**
+	 * Build a Tree equivalent to the subtree rooted at the given node. The
+	 * Trees still waiting for their children are queued in the same order
+	 * as the nodes of a breadth-first pass, so only that frontier is held.
+	 */
+	public Tree<E> toTree(int node) {
+		checkNode(node);
+		Tree<E> result = new Tree<E>(getData(node));
+		ArrayDeque<Tree<E>> pending = new ArrayDeque<Tree<E>>();
+		pending.add(result);
+		for (NodeIterator it = iterator(node, Tree.Traversal.BREADTH_FIRST); it.hasNext();) {
+			int n = it.nextInt();
+			Tree<E> tree = pending.poll();
+			for (int c = firstChild[n]; c != NONE; c = nextSibling[c]) {
+				Tree<E> child = new Tree<E>(getData(c));
+				tree.addChild(child);
+				pending.add(child);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Add a child at the end of the given node's children.
+	 * @return the index of the new node.
+	 */
+	public int addChild(int node, E childData) {
+		checkNode(node);
+		int child = append(node, childData);
+		if (lastChild[node] == NONE)
+			firstChild[node] = child;
+		else
+			nextSibling[lastChild[node]] = child;
+		lastChild[node] = child;
+		return child;
+	}
+
+	private int append(int parentNode, E nodeData) {
+		if (size == parent.length)
+			grow();
+		int node = size++;
+		parent[node] = parentNode;
+		firstChild[node] = NONE;
+		lastChild[node] = NONE;
+		nextSibling[node] = NONE;
+		data[node] = nodeData;
+		return node;
+	}
+
+	private void grow() {
+		if (size == Integer.MAX_VALUE - 8)
+			throw new OutOfMemoryError("CompactTree cannot hold more nodes.");
+		int capacity = (int) Math.min(Integer.MAX_VALUE - 8, 2L * size);
+		parent = Arrays.copyOf(parent, capacity);
+		firstChild = Arrays.copyOf(firstChild, capacity);
+		lastChild = Arrays.copyOf(lastChild, capacity);
+		nextSibling = Arrays.copyOf(nextSibling, capacity);
+		data = Arrays.copyOf(data, capacity);
+	}
+
+	/**
+	 * Shrink the arrays to the number of nodes.
+	 */
+	public void trimToSize() {
+		parent = Arrays.copyOf(parent, size);
+		firstChild = Arrays.copyOf(firstChild, size);
+		lastChild = Arrays.copyOf(lastChild, size);
+		nextSibling = Arrays.copyOf(nextSibling, size);
+		data = Arrays.copyOf(data, size);
+	}
+
+	private void checkNode(int node) {
+		if (node < 0 || node >= size)
+			throw new IndexOutOfBoundsException("Node " + node + ", size " + size);
+	}
+
+	/**
+	 * @return int the number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public E getData(int node) {
+		checkNode(node);
+		return (E) data[node];
+	}
+
+	public void setData(int node, E nodeData) {
+		checkNode(node);
+		data[node] = nodeData;
+	}
+
+	/**
+	 * @return int the parent of the node, or NONE for the root
+	 */
+	public int getParent(int node) {
+		checkNode(node);
+		return parent[node];
+	}
+
+	/**
+	 * @return int the first child of the node, or NONE for a leaf
+	 */
+	public int getFirstChild(int node) {
+		checkNode(node);
+		return firstChild[node];
+	}
+
+	/**
+	 * @return int the sibling following the node, or NONE for a last child
+	 */
+	public int getNextSibling(int node) {
+		checkNode(node);
+		return nextSibling[node];
+	}
+
+	public int numChildren(int node) {
+		checkNode(node);
+		int result = 0;
+		for (int c = firstChild[node]; c != NONE; c = nextSibling[c])
+			++result;
+		return result;
+	}
+
+	/**
+	 * @return int[] the children of the node in order
+	 */
+	public int[] getChildren(int node) {
+		int[] result = new int[numChildren(node)];
+		int i = 0;
+		for (int c = firstChild[node]; c != NONE; c = nextSibling[c])
+			result[i++] = c;
+		return result;
+	}
+
+	public boolean isLeaf(int node) {
+		checkNode(node);
+		return firstChild[node] == NONE;
+	}
+
+	public boolean isRoot(int node) {
+		checkNode(node);
+		return parent[node] == NONE;
+	}
+
+	/**
+	 * Get the depth of the node in the tree, where the root is at depth 0.
+	 */
+	public int depth(int node) {
+		checkNode(node);
+		int result = 0;
+		for (int p = parent[node]; p != NONE; p = parent[p])
+			++result;
+		return result;
+	}
+
+	/**
+	 * Get the path of nodes from the root to the given node.
+	 */
+	public int[] getPath(int node) {
+		int[] result = new int[depth(node) + 1];
+		for (int i = result.length - 1, p = node; i >= 0; --i, p = parent[p])
+			result[i] = p;
+		return result;
+	}
+
+	/**
+	 * Return all nodes at the given depth below the root, in order.
+	 */
+	public int[] treesAtDepth(int depth) {
+		return treesAtDepth(0, depth);
+	}
+
+	/**
+	 * Return all nodes at the given depth (0-based) from the given node,
+	 * where that node is depth 0, its children are depth 1, and so on.
+	 * <p>
+	 * @return the nodes at the specified depth (possibly empty, but not null).
+	 */
+	public int[] treesAtDepth(int node, int depth) {
+		checkNode(node);
+		if (depth < 0)
+			return new int[0];
+
+		int[] level = new int[] { node };
+		for (int d = 0; d < depth && level.length > 0; ++d)
+			level = nextLevel(level);
+		return level;
+	}
+
+	/**
+	 * Compute (1+) the maximum depth of nodes under the root (0-based).
+	 */
+	public int maxDepth() {
+		return maxDepth(0);
+	}
+
+	/**
+	 * Compute (1+) the maximum depth of nodes under the given node.
+	 * <p>
+	 * The depth of a node with no children is 1; etc.
+	 */
+	public int maxDepth(int node) {
+		checkNode(node);
+		int result = 0;
+		int[] level = new int[] { node };
+		while (level.length > 0) {
+			++result;
+			level = nextLevel(level);
+		}
+		return result;
+	}
+
+	/**
+	 * The children of all the given nodes, keeping left-to-right order.
+	 */
+	private int[] nextLevel(int[] level) {
+		int count = 0;
+		for (int n : level)
+			for (int c = firstChild[n]; c != NONE; c = nextSibling[c])
+				++count;
+		int[] next = new int[count];
+		count = 0;
+		for (int n : level)
+			for (int c = firstChild[n]; c != NONE; c = nextSibling[c])
+				next[count++] = c;
+		return next;
+	}
+
+	/**
+	 * Compute the number of leaf nodes under the root.
+	 */
+	public int numLeaves() {
+		return numLeaves(0);
+	}
+
+	/**
+	 * Compute the number of leaf nodes under the given node. A leaf counts
+	 * itself.
+	 */
+	public int numLeaves(int node) {
+		int result = 0;
+		for (NodeIterator it = iterator(node, Tree.Traversal.DEPTH_FIRST); it.hasNext();)
+			if (firstChild[it.nextInt()] == NONE)
+				++result;
+		return result;
+	}
+
+	/**
+	 * Gather the leaves under the root, from left to right.
+	 */
+	public int[] gatherLeaves() {
+		return gatherLeaves(0);
+	}
+
+	/**
+	 * Gather the leaves under the given node, from left to right.
+	 */
+	public int[] gatherLeaves(int node) {
+		int[] result = new int[numLeaves(node)];
+		int i = 0;
+		for (NodeIterator it = iterator(node, Tree.Traversal.DEPTH_FIRST); it.hasNext();) {
+			int n = it.nextInt();
+			if (firstChild[n] == NONE)
+				result[i++] = n;
+		}
+		return result;
+	}
+
+	/**
+	 * Get an iterator over the whole tree in the given order.
+	 */
+	public NodeIterator iterator(Tree.Traversal traversal) {
+		return iterator(0, traversal);
+	}
+
+	/**
+	 * Get an iterator over the subtree rooted at the given node in the given
+	 * order. The orders are those of Tree.iterator(Traversal).
+	 */
+	public NodeIterator iterator(int node, Tree.Traversal traversal) {
+		checkNode(node);
+		switch (traversal) {
+		case DEPTH_FIRST:
+			return new DepthFirst(node);
+		case REVERSE_DEPTH_FIRST:
+			return new ReverseDepthFirst(node);
+		case REVERSE_BREADTH_FIRST:
+			return new ReverseBreadthFirst(node);
+		default:
+			return new BreadthFirst(node);
+		}
+	}
+
+	/**
+	 * Breadth first order over an int queue. The queue is a ring buffer,
+	 * so it holds no more than the nodes waiting to be returned.
+	 */
+	private final class BreadthFirst implements NodeIterator {
+		private int[] queue = new int[16];
+		private int head = 0;
+		private int count = 0;
+		private int lastNode = NONE;
+
+		BreadthFirst(int node) {
+			enqueue(node);
+		}
+
+		public boolean hasNext() {
+			return count > 0;
+		}
+
+		public int nextInt() {
+			if (!hasNext())
+				throw new NoSuchElementException("no more nodes!");
+			int result = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			--count;
+			for (int c = firstChild[result]; c != NONE; c = nextSibling[c])
+				enqueue(c);
+			lastNode = result;
+			return result;
+		}
+
+		private void enqueue(int node) {
+			if (count == queue.length) {
+				// unroll the ring into a bigger array, head first.
+				int[] bigger = new int[2 * queue.length];
+				System.arraycopy(queue, head, bigger, 0, queue.length - head);
+				System.arraycopy(queue, 0, bigger, queue.length - head, head);
+				queue = bigger;
+				head = 0;
+			}
+			queue[(head + count++) & (queue.length - 1)] = node;
+		}
+
+		public void skip() {
+			// the children were just added to the end of the queue, so lop
+			// 'em off.
+			if (lastNode != NONE)
+				for (int c = firstChild[lastNode]; c != NONE; c = nextSibling[c])
+					--count;
+			lastNode = NONE;
+		}
+	}
+
+	/**
+	 * Depth first (pre-)order over an int stack. Only the first child of a
+	 * node is pushed; each node pushes its next sibling when it is popped,
+	 * so the stack holds at most one entry per level.
+	 */
+	private final class DepthFirst implements NodeIterator {
+		private final int start;
+		private int[] stack = new int[16];
+		private int top = 0;
+		private int lastNode = NONE;
+
+		DepthFirst(int node) {
+			start = node;
+			stack[top++] = node;
+		}
+
+		public boolean hasNext() {
+			return top > 0;
+		}
+
+		public int nextInt() {
+			if (!hasNext())
+				throw new NoSuchElementException("no more nodes!");
+			int result = stack[--top];
+			if (result != start && nextSibling[result] != NONE)
+				push(nextSibling[result]);
+			if (firstChild[result] != NONE)
+				push(firstChild[result]);
+			lastNode = result;
+			return result;
+		}
+
+		private void push(int node) {
+			if (top == stack.length)
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			stack[top++] = node;
+		}
+
+		public void skip() {
+			// the first child was just pushed on top, so lop it off.
+			if (lastNode != NONE && firstChild[lastNode] != NONE)
+				--top;
+			lastNode = NONE;
+		}
+	}
+
+	/**
+	 * The exact reverse of DepthFirst: each node after its subtree, and the
+	 * children right to left. A node is expanded when it comes to the top
+	 * of the stack: it goes back as ~node, to be returned once its subtree
+	 * is done, with its children above it from left to right. The stack
+	 * thus holds the path to the next node and the left siblings still to
+	 * come along it, never the whole order.
+	 */
+	private final class ReverseDepthFirst implements NodeIterator {
+		private int[] stack = new int[16];
+		private int top = 0;
+
+		ReverseDepthFirst(int node) {
+			stack[top++] = node;
+		}
+
+		public boolean hasNext() {
+			return top > 0;
+		}
+
+		public int nextInt() {
+			if (!hasNext())
+				throw new NoSuchElementException("no more nodes!");
+			int entry;
+			while ((entry = stack[--top]) >= 0) {
+				push(~entry);
+				for (int c = firstChild[entry]; c != NONE; c = nextSibling[c])
+					push(c);
+			}
+			return ~entry;
+		}
+
+		private void push(int node) {
+			if (top == stack.length)
+				stack = Arrays.copyOf(stack, 2 * stack.length);
+			stack[top++] = node;
+		}
+
+		/**
+		 * Skip the next node, as the reverse Tree iterators do.
+		 */
+		public void skip() {
+			if (hasNext())
+				nextInt();
+		}
+	}
+
+	/**
+	 * The nodes of one level, left to right.
+	 */
+	private static final class Level {
+		final int depth;
+		final int[] nodes;
+
+		Level(int depth, int[] nodes) {
+			this.depth = depth;
+			this.nodes = nodes;
+		}
+	}
+
+	/**
+	 * The exact reverse of BreadthFirst: the deepest level first, each level
+	 * right to left. As in ReverseBreadthFirstIterator, a first pass counts
+	 * the nodes on each level, and each level is rebuilt in turn from the
+	 * nearest stored level above it, storing levels half way down as
+	 * checkpoints while that would expand more nodes than the level holds.
+	 * The checkpoints are capped at CHECKPOINT_FACTOR times the width plus
+	 * the height, so memory is O(width + height) rather than O(n).
+	 */
+	final class ReverseBreadthFirst implements NodeIterator {
+		private final int start;
+		private final ArrayDeque<Level> checkpoints = new ArrayDeque<Level>();
+		private int stored;
+		private int budget;
+		private int[] counts;
+		private long[] above;
+		/**
+		 * The level being handed out, its depth and the index of the next
+		 * node on it.
+		 */
+		private int[] level;
+		private int depth;
+		private int next;
+
+		ReverseBreadthFirst(int node) {
+			start = node;
+		}
+
+		/**
+		 * Count the levels and set up the deepest one.
+		 */
+		private void begin() {
+			counts = levelCounts(start);
+			depth = counts.length - 1;
+
+			above = new long[counts.length];
+			int width = 0;
+			for (int i = 0; i < depth; ++i)
+				above[i + 1] = above[i] + counts[i];
+			for (int count : counts)
+				width = Math.max(width, count);
+			budget = (int) Math.min(Integer.MAX_VALUE,
+					(long) ReverseBreadthFirstIterator.CHECKPOINT_FACTOR * width + counts.length);
+
+			checkpoints.push(new Level(0, new int[] { start }));
+			stored = 1;
+			beginLevel();
+		}
+
+		/**
+		 * Rebuild the current level: drop the checkpoints below it, and
+		 * store levels closer to it while expanding from the nearest one
+		 * would pass more nodes above the level than on it.
+		 */
+		private void beginLevel() {
+			while (checkpoints.peek().depth > depth)
+				stored -= checkpoints.pop().nodes.length;
+			Level from = checkpoints.peek();
+			while (depth - from.depth >= 2 && above[depth] - above[from.depth] > counts[depth]) {
+				int middle = (from.depth + depth + 1) / 2;
+				if (stored + counts[middle] > budget)
+					break;
+				from = new Level(middle, descend(from, middle));
+				checkpoints.push(from);
+				stored += from.nodes.length;
+			}
+			level = descend(from, depth);
+			next = level.length - 1;
+		}
+
+		private int[] descend(Level from, int target) {
+			int[] result = from.nodes;
+			for (int d = from.depth; d < target; ++d)
+				result = nextLevel(result);
+			return result;
+		}
+
+		public boolean hasNext() {
+			if (level == null)
+				begin();
+			while (next < 0 && depth > 0) {
+				--depth;
+				beginLevel();
+			}
+			return next >= 0;
+		}
+
+		public int nextInt() {
+			if (!hasNext())
+				throw new NoSuchElementException("no more nodes!");
+			return level[next--];
+		}
+
+		/**
+		 * Skip the next node, as the reverse Tree iterators do.
+		 */
+		public void skip() {
+			if (hasNext())
+				--next;
+		}
+
+		/**
+		 * The number of nodes held in checkpoints, for tests.
+		 */
+		int storedNodes() {
+			return stored;
+		}
+
+		/**
+		 * The most nodes the checkpoints may hold, for tests.
+		 */
+		int checkpointBudget() {
+			return budget;
+		}
+	}
+
+	/**
+	 * Count the nodes on each level below the given node, walking the
+	 * parent and sibling links so that no stack is needed.
+	 * @return the counts, one per level from the node down.
+	 */
+	private int[] levelCounts(int node) {
+		int[] counts = new int[16];
+		int height = 0;
+		for (int n = node, d = 0;;) {
+			if (d == counts.length)
+				counts = Arrays.copyOf(counts, 2 * d);
+			++counts[d];
+			height = Math.max(height, d);
+			if (firstChild[n] != NONE) {
+				n = firstChild[n];
+				++d;
+				continue;
+			}
+			for (; n != node && nextSibling[n] == NONE; --d)
+				n = parent[n];
+			if (n == node)
+				break;
+			n = nextSibling[n];
+		}
+		return Arrays.copyOf(counts, height + 1);
+	}
+}
@@ -4,29 +4,31 @@
 package org.zlzh.ds.tree;
 
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
  * <p>Title:Depth first tree traversal iterator</p>
- * <p>Description:</p>
+ * <p>Description:The pending nodes are kept on an ArrayDeque. A node's
+ * children are pushed onto the front one at a time, last child first, so
+ * a step neither copies the child list nor allocates.</p>
  * @author:  zenglizhi
  * @time:    2013-6-9
  * @version:  v1.0
  */
 public class DepthFirstIterator<T> implements TraversalIterator<T> {
 
-	private final LinkedList<Tree<T>> queue;
+	private final ArrayDeque<Tree<T>> queue;
 	private Tree<T> lastNode;
 
 	public DepthFirstIterator(Tree<T> node) {
-		this.queue = new LinkedList<Tree<T>>();
+		this.queue = new ArrayDeque<Tree<T>>();
 		queue.add(node);
 	}
 
 	public boolean hasNext() {
-		return (queue.size() > 0);
+		return !queue.isEmpty();
 	}
 
 	public Tree<T> next() {
@@ -34,8 +36,10 @@ public class DepthFirstIterator<T> implements TraversalIterator<T> {
 			throw new NoSuchElementException("no more nodes!");
 		Tree<T> result = queue.removeFirst();
 		final List<Tree<T>> children = result.getChildren();
-		if (children != null)
-			queue.addAll(0, children);
+		if (children != null) {
+			for (int i = children.size() - 1; i >= 0; --i)
+				queue.addFirst(children.get(i));
+		}
 		lastNode = result;
 		return result;
 	}
@@ -59,7 +63,7 @@ public class DepthFirstIterator<T> implements TraversalIterator<T> {
 			// 'em off.
 			final List<Tree<T>> children = lastNode.getChildren();
 			if (children != null) {
-				for (@SuppressWarnings("unused") Tree<T> child : children)
+				for (int i = children.size(); i > 0; --i)
 					queue.removeFirst();
 			}
 		}
@@ -0,0 +1,412 @@
+/*
+ * File: ParallelTraversal.java
+ */
+package org.zlzh.ds.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * <p>Title: Fork/join traversal and aggregation over a Tree</p>
+ * <p>
+ * Runs an operation over every node of a tree on a ForkJoinPool. A task
+ * owns a subtree; it handles its own node and then its children in
+ * order, forking new tasks for child subtrees and walking the rest in
+ * place. Without metadata a tree carries no subtree sizes, so the split
+ * is driven by a budget of tasks instead, four per worker as the parallel
+ * streams aim for with spliterators of unknown size: a task shares its
+ * budget evenly among the children that have children of their own,
+ * forks those that get some, and a task left with a budget of one walks
+ * its whole subtree with no further overhead. When the tree has metadata
+ * enabled, the sizes are known, and subtrees smaller than a threshold are
+ * never given a task of their own. Chains of single children are
+ * followed in place, and tasks stop forking below a fixed nesting depth,
+ * so very deep trees do not overflow the stack.
+ * </p>
+ * <p>
+ * reduce() and collect() combine the partial results in depth-first
+ * (pre-)order, so an ordered collector sees the nodes in the order of
+ * DepthFirstIterator. forEach() and findAny() make no promise about
+ * order. The tree must not be changed while an operation runs.
+ * </p>
+ */
+public final class ParallelTraversal {
+
+	/**
+	 * Tasks to aim for per worker thread.
+	 */
+	private static final int TASKS_PER_THREAD = 4;
+
+	/**
+	 * With known sizes, the smallest subtree worth a task of its own.
+	 */
+	private static final int MIN_TASK_SIZE = 1 << 10;
+
+	/**
+	 * Do not fork below this many nested tasks.
+	 */
+	private static final int MAX_NESTING = 256;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * Create a traversal engine running on the common pool.
+	 */
+	public ParallelTraversal() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Create a traversal engine running on the given pool.
+	 */
+	public ParallelTraversal(ForkJoinPool pool) {
+		if (pool == null)
+			throw new NullPointerException("pool must not be null");
+		this.pool = pool;
+	}
+
+	/**
+	 * A mutable reduction over nodes that also sees each node's depth below
+	 * the root of the operation.
+	 */
+	private interface Fold<E, A> {
+		A create();
+
+		void accept(A container, Tree<E> node, int depth);
+
+		A combine(A left, A right);
+	}
+
+	/**
+	 * Perform the action on every node of the tree, in no particular order.
+	 */
+	public <E> void forEach(Tree<E> root, final Consumer<? super Tree<E>> action) {
+		run(root, new Fold<E, Object>() {
+			public Object create() {
+				return null;
+			}
+
+			public void accept(Object container, Tree<E> node, int depth) {
+				action.accept(node);
+			}
+
+			public Object combine(Object left, Object right) {
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Reduce the nodes of the tree, as Stream.reduce(identity, accumulator,
+	 * combiner) does. The identity must be an identity for the combiner,
+	 * and the combiner must be associative.
+	 */
+	public <E, R> R reduce(Tree<E> root, final R identity,
+			final BiFunction<R, ? super Tree<E>, R> accumulator, final BinaryOperator<R> combiner) {
+		Object[] result = run(root, new Fold<E, Object[]>() {
+			public Object[] create() {
+				return new Object[] { identity };
+			}
+
+			@SuppressWarnings("unchecked")
+			public void accept(Object[] container, Tree<E> node, int depth) {
+				container[0] = accumulator.apply((R) container[0], node);
+			}
+
+			@SuppressWarnings("unchecked")
+			public Object[] combine(Object[] left, Object[] right) {
+				left[0] = combiner.apply((R) left[0], (R) right[0]);
+				return left;
+			}
+		});
+		@SuppressWarnings("unchecked")
+		R value = (R) result[0];
+		return value;
+	}
+
+	/**
+	 * Collect the nodes of the tree, in depth-first order, with the given
+	 * collector.
+	 */
+	public <E, A, R> R collect(Tree<E> root, Collector<? super Tree<E>, A, R> collector) {
+		final Supplier<A> supplier = collector.supplier();
+		final BiConsumer<A, ? super Tree<E>> accumulator = collector.accumulator();
+		final BinaryOperator<A> combiner = collector.combiner();
+		Function<A, R> finisher = collector.finisher();
+		A container = run(root, new Fold<E, A>() {
+			public A create() {
+				return supplier.get();
+			}
+
+			public void accept(A container, Tree<E> node, int depth) {
+				accumulator.accept(container, node);
+			}
+
+			public A combine(A left, A right) {
+				return combiner.apply(left, right);
+			}
+		});
+		return finisher.apply(container);
+	}
+
+	/**
+	 * Find some node of the tree that matches the predicate, stopping all
+	 * tasks as soon as one is found.
+	 * @return a matching node, or null if there is none.
+	 */
+	public <E> Tree<E> findAny(Tree<E> root, final Predicate<? super Tree<E>> predicate) {
+		final AtomicReference<Tree<E>> found = new AtomicReference<Tree<E>>();
+		run(root, new Fold<E, Object>() {
+			public Object create() {
+				return null;
+			}
+
+			public void accept(Object container, Tree<E> node, int depth) {
+				if (found.get() == null && predicate.test(node))
+					found.compareAndSet(null, node);
+			}
+
+			public Object combine(Object left, Object right) {
+				return null;
+			}
+		}, found);
+		return found.get();
+	}
+
+	/**
+	 * Compute (1+) the maximum depth of nodes under the tree, as
+	 * Tree.maxDepth() does.
+	 */
+	public <E> int maxDepth(Tree<E> root) {
+		int[] result = run(root, new Fold<E, int[]>() {
+			public int[] create() {
+				return new int[1];
+			}
+
+			public void accept(int[] container, Tree<E> node, int depth) {
+				if (depth + 1 > container[0])
+					container[0] = depth + 1;
+			}
+
+			public int[] combine(int[] left, int[] right) {
+				left[0] = Math.max(left[0], right[0]);
+				return left;
+			}
+		});
+		return result[0];
+	}
+
+	/**
+	 * Gather the leaves of the tree from left to right, as
+	 * Tree.gatherLeaves() does.
+	 */
+	public <E> List<Tree<E>> gatherLeaves(Tree<E> root) {
+		return run(root, new NodeListFold<E>() {
+			boolean matches(Tree<E> node) {
+				return !node.hasChildren();
+			}
+		});
+	}
+
+	/**
+	 * Collect the nodes whose data equals the given data, in depth-first
+	 * order.
+	 * @return the matching nodes, or null if there are none, as
+	 * Tree.findNodes() does.
+	 */
+	public <E> List<Tree<E>> findNodes(Tree<E> root, final E data) {
+		List<Tree<E>> result = run(root, new NodeListFold<E>() {
+			boolean matches(Tree<E> node) {
+				final E nodeData = node.getData();
+				return nodeData == data || (nodeData != null && nodeData.equals(data));
+			}
+		});
+		return result.isEmpty() ? null : result;
+	}
+
+	/**
+	 * A fold gathering the nodes that pass a test into a list.
+	 */
+	private abstract static class NodeListFold<E> implements Fold<E, List<Tree<E>>> {
+		abstract boolean matches(Tree<E> node);
+
+		public List<Tree<E>> create() {
+			return new ArrayList<Tree<E>>();
+		}
+
+		public void accept(List<Tree<E>> container, Tree<E> node, int depth) {
+			if (matches(node))
+				container.add(node);
+		}
+
+		public List<Tree<E>> combine(List<Tree<E>> left, List<Tree<E>> right) {
+			left.addAll(right);
+			return left;
+		}
+	}
+
+	private <E, A> A run(Tree<E> root, Fold<E, A> fold) {
+		return run(root, fold, null);
+	}
+
+	private <E, A> A run(Tree<E> root, Fold<E, A> fold, AtomicReference<?> stop) {
+		final int budget = pool.getParallelism() * TASKS_PER_THREAD;
+		return pool.invoke(new FoldTask<E, A>(root, 0, 0, budget, fold, stop));
+	}
+
+	/**
+	 * Folds one subtree, forking tasks for child subtrees while its budget
+	 * allows. The partial results are kept in child order and combined
+	 * once every forked task is joined.
+	 */
+	private static final class FoldTask<E, A> extends RecursiveTask<A> {
+		private static final long serialVersionUID = 1L;
+
+		private final Tree<E> root;
+		private final int depth;
+		private final int nesting;
+		private final int budget;
+		private final Fold<E, A> fold;
+		private final AtomicReference<?> stop;
+		/** The stack of walk(), and the depth of each node on it. */
+		private ArrayDeque<Tree<E>> nodes;
+		private int[] depths;
+
+		FoldTask(Tree<E> root, int depth, int nesting, int budget, Fold<E, A> fold, AtomicReference<?> stop) {
+			this.root = root;
+			this.depth = depth;
+			this.nesting = nesting;
+			this.budget = budget;
+			this.fold = fold;
+			this.stop = stop;
+		}
+
+		private boolean stopped() {
+			return stop != null && stop.get() != null;
+		}
+
+		@Override
+		protected A compute() {
+			A current = fold.create();
+
+			// follow a chain of single children without forking.
+			Tree<E> node = root;
+			int level = depth;
+			fold.accept(current, node, level);
+			while (node.numChildren() == 1 && !stopped()) {
+				node = node.getChildren().get(0);
+				fold.accept(current, node, ++level);
+			}
+			if (!node.hasChildren() || stopped())
+				return current;
+			final List<Tree<E>> children = node.getChildren();
+			if (budget <= 1 || nesting >= MAX_NESTING) {
+				for (Tree<E> child : children)
+					walk(child, level + 1, current);
+				return current;
+			}
+
+			// share the budget among the children worth a task.
+			int forkable = 0;
+			for (Tree<E> child : children) {
+				if (worthATask(child))
+					++forkable;
+			}
+			final int share = budget / Math.max(forkable, 1);
+			int extra = budget % Math.max(forkable, 1);
+
+			// partial results and forked tasks, in child order.
+			List<Object> parts = null;
+			for (Tree<E> child : children) {
+				int childBudget = 0;
+				if (worthATask(child)) {
+					childBudget = share;
+					if (extra > 0) {
+						++childBudget;
+						--extra;
+					}
+				}
+				if (childBudget > 0) {
+					FoldTask<E, A> task = new FoldTask<E, A>(child, level + 1, nesting + 1, childBudget, fold, stop);
+					task.fork();
+					if (parts == null)
+						parts = new ArrayList<Object>();
+					parts.add(current);
+					parts.add(task);
+					current = fold.create();
+				} else if (child.hasChildren()) {
+					walk(child, level + 1, current);
+				} else {
+					fold.accept(current, child, level + 1);
+				}
+			}
+			if (parts == null)
+				return current;
+			parts.add(current);
+
+			// join in reverse order of forking, then combine in order.
+			for (int i = parts.size() - 1; i >= 0; --i) {
+				if (parts.get(i) instanceof FoldTask)
+					parts.set(i, ((FoldTask<?, ?>) parts.get(i)).join());
+			}
+			@SuppressWarnings("unchecked")
+			A result = (A) parts.get(0);
+			for (int i = 1; i < parts.size(); ++i) {
+				@SuppressWarnings("unchecked")
+				A part = (A) parts.get(i);
+				result = fold.combine(result, part);
+			}
+			return result;
+		}
+
+		private static boolean worthATask(Tree<?> subtree) {
+			if (subtree.hasMetadata())
+				return subtree.subtreeSize() >= MIN_TASK_SIZE;
+			return subtree.hasChildren();
+		}
+
+		/**
+		 * Fold a whole subtree in this thread, in depth-first order. The
+		 * stack is kept for the other children this task walks.
+		 */
+		private void walk(Tree<E> subtree, int subtreeDepth, A container) {
+			if (nodes == null) {
+				nodes = new ArrayDeque<Tree<E>>();
+				depths = new int[16];
+			}
+			nodes.push(subtree);
+			depths[0] = subtreeDepth;
+			while (!nodes.isEmpty()) {
+				if (stopped()) {
+					nodes.clear();
+					return;
+				}
+				Tree<E> node = nodes.pop();
+				int nodeDepth = depths[nodes.size()];
+				fold.accept(container, node, nodeDepth);
+				final List<Tree<E>> children = node.getChildren();
+				if (children != null) {
+					for (int i = children.size() - 1; i >= 0; --i) {
+						if (nodes.size() == depths.length)
+							depths = Arrays.copyOf(depths, 2 * depths.length);
+						depths[nodes.size()] = nodeDepth + 1;
+						nodes.push(children.get(i));
+					}
+				}
+			}
+		}
+	}
+}
@@ -4,43 +4,271 @@
 package org.zlzh.ds.tree;
 
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 
 /**
  * Reverse breadth first tree traversal iterator.
  * Traverse last children first, and from leaf to root
+ * <p>
+ * The nodes come out in exactly the reverse of BreadthFirstIterator's
+ * order: the deepest level first, each level from right to left. The
+ * iterator keeps a level index and, for each level, walks the tree from
+ * the top down to that level only, right to left, handing out the nodes
+ * it finds there. Memory is proportional to the height of the tree.
+ * The price is time: the upper levels are walked again for every level
+ * below them. That adds little for bushy trees, where most nodes are
+ * near the bottom, but would be quadratic for tall, thin ones.
+ * </p>
+ * <p>
+ * So a first pass counts the nodes on each level, and where a walk would
+ * visit more nodes above its level than it hands out, the iterator first
+ * stores a level half way down as a checkpoint and walks on from there,
+ * halving again as needed. Checkpoints are dropped once the levels below
+ * them are done. The stored nodes are capped at CHECKPOINT_FACTOR times
+ * the width plus the height of the tree; past that the walks just start
+ * from the nearest checkpoint. Memory is thus O(width + height), and
+ * time O(n log height) unless the cap is reached. Nothing is walked until
+ * the first call to hasNext() or next().
+ * </p>
  * @author:  zenglizhi
  * @time:    2013-6-9
  * @version:  v1.0
  */
 public class ReverseBreadthFirstIterator<T> implements TraversalIterator<T> {
 
-	private final LinkedList<Tree<T>> stack;
+	/**
+	 * How many levels as wide as the widest one, beyond the height, the
+	 * checkpoints may hold in all.
+	 */
+	static final int CHECKPOINT_FACTOR = 4;
+
+	/**
+	 * The nodes of one level, right to left.
+	 */
+	private static final class Level<T> {
+		final int depth;
+		final ArrayList<Tree<T>> nodes;
+
+		Level(int depth, ArrayList<Tree<T>> nodes) {
+			this.depth = depth;
+			this.nodes = nodes;
+		}
+	}
+
+	private final Tree<T> root;
+	/**
+	 * The path of the current walk, deepest node first, and for each node
+	 * on it the number of its children not yet descended into.
+	 */
+	private final ArrayDeque<Tree<T>> stack;
+	private int[] childIndex;
+	/**
+	 * The levels stored so far, deepest first, and their total size.
+	 */
+	private final ArrayDeque<Level<T>> checkpoints;
+	private int stored;
+	private int budget;
+	/**
+	 * The nodes on each level, and the nodes above each level, once the
+	 * walk has started.
+	 */
+	private int[] counts;
+	private long[] above;
+	/**
+	 * The level being handed out, and the checkpoint its walk starts from
+	 * with the index of the next node there to descend into.
+	 */
+	private boolean started;
+	private int depth;
+	private Level<T> base;
+	private int nextBase;
+	/**
+	 * The next node to hand out, once found.
+	 */
+	private Tree<T> pending;
 	private Tree<T> lastNode;
 
 	public ReverseBreadthFirstIterator(Tree<T> node) {
-		this.stack = new LinkedList<Tree<T>>();
-		for (BreadthFirstIterator<T> i = new BreadthFirstIterator<T>(node); i
-				.hasNext();) {
-			final Tree<T> tree = i.next();
-			stack.addFirst(tree);
-		}
+		this.root = node;
+		this.stack = new ArrayDeque<Tree<T>>();
+		this.childIndex = new int[16];
+		this.checkpoints = new ArrayDeque<Level<T>>();
+		this.started = false;
 		this.lastNode = null;
 	}
 
+	private void push(Tree<T> node) {
+		int level = stack.size();
+		if (level == childIndex.length)
+			childIndex = Arrays.copyOf(childIndex, 2 * level);
+		childIndex[level] = node.numChildren();
+		stack.push(node);
+	}
+
+	/**
+	 * Walk the whole tree once, counting the nodes on each level.
+	 * @return the counts, one per level from the root down.
+	 */
+	private int[] levelCounts() {
+		int[] counts = new int[16];
+		int height = 0;
+		push(root);
+		while (!stack.isEmpty()) {
+			int level = stack.size() - 1;
+			if (childIndex[level] == stack.peek().numChildren()) {
+				// first time at this node
+				if (level == counts.length)
+					counts = Arrays.copyOf(counts, 2 * level);
+				++counts[level];
+				height = Math.max(height, level);
+			}
+			if (childIndex[level] > 0) {
+				final List<Tree<T>> children = stack.peek().getChildren();
+				push(children.get(--childIndex[level]));
+			} else {
+				stack.pop();
+			}
+		}
+		return Arrays.copyOf(counts, height + 1);
+	}
+
+	/**
+	 * Count the levels and set the walk up for the deepest one.
+	 */
+	private void start() {
+		started = true;
+		counts = levelCounts();
+		depth = counts.length - 1;
+
+		above = new long[counts.length];
+		int width = 0;
+		for (int i = 0; i < depth; ++i)
+			above[i + 1] = above[i] + counts[i];
+		for (int count : counts)
+			width = Math.max(width, count);
+		budget = (int) Math.min(Integer.MAX_VALUE, (long) CHECKPOINT_FACTOR * width + counts.length);
+
+		ArrayList<Tree<T>> top = new ArrayList<Tree<T>>(1);
+		top.add(root);
+		checkpoints.push(new Level<T>(0, top));
+		stored = 1;
+		beginLevel();
+	}
+
+	/**
+	 * Set the walk up for the current level: drop the checkpoints below it,
+	 * and store levels closer to it while walking from the nearest one would
+	 * visit more nodes above the level than on it.
+	 */
+	private void beginLevel() {
+		while (checkpoints.peek().depth > depth)
+			stored -= checkpoints.pop().nodes.size();
+		Level<T> from = checkpoints.peek();
+		while (depth - from.depth >= 2 && above[depth] - above[from.depth] > counts[depth]) {
+			int middle = (from.depth + depth + 1) / 2;
+			if (stored + counts[middle] > budget)
+				break;
+			ArrayList<Tree<T>> nodes = new ArrayList<Tree<T>>(counts[middle]);
+			startWalk(from);
+			for (Tree<T> node; (node = walk(middle)) != null;)
+				nodes.add(node);
+			from = new Level<T>(middle, nodes);
+			checkpoints.push(from);
+			stored += nodes.size();
+		}
+		startWalk(from);
+	}
+
+	private void startWalk(Level<T> from) {
+		base = from;
+		nextBase = 0;
+		stack.clear();
+	}
+
+	/**
+	 * Continue the walk down from the base checkpoint to the next node on a
+	 * level, right to left.
+	 * @return the node, or null when the level is done.
+	 */
+	private Tree<T> walk(int target) {
+		while (true) {
+			if (stack.isEmpty()) {
+				if (nextBase == base.nodes.size())
+					return null;
+				final Tree<T> node = base.nodes.get(nextBase++);
+				if (base.depth == target)
+					return node;
+				push(node);
+			}
+			int top = stack.size() - 1;
+			if (childIndex[top] > 0) {
+				// nodes on the level itself are handed out straight from
+				// their parent, without being pushed.
+				final List<Tree<T>> children = stack.peek().getChildren();
+				final Tree<T> child = children.get(--childIndex[top]);
+				if (base.depth + top + 1 == target)
+					return child;
+				push(child);
+			} else {
+				stack.pop();
+			}
+		}
+	}
+
+	/**
+	 * Continue to the next node on the current level, moving up a level
+	 * whenever one is exhausted.
+	 * @return the node, or null when every level is done.
+	 */
+	private Tree<T> findNext() {
+		if (!started)
+			start();
+		while (depth >= 0) {
+			final Tree<T> node = walk(depth);
+			if (node != null)
+				return node;
+			if (--depth >= 0)
+				beginLevel();
+		}
+		return null;
+	}
+
+	/**
+	 * The number of nodes held in checkpoints, for tests.
+	 */
+	int storedNodes() {
+		return stored;
+	}
+
+	/**
+	 * The most nodes the checkpoints may hold, for tests.
+	 */
+	int checkpointBudget() {
+		return budget;
+	}
+
 	public boolean hasNext() {
-		return (stack.size() > 0);
+		if (pending == null)
+			pending = findNext();
+		return pending != null;
 	}
 
 	public Tree<T> next() {
+		Tree<T> result = advance();
+		lastNode = result;
+		return result;
+	}
+
+	private Tree<T> advance() {
 		if (!hasNext())
 			throw new NoSuchElementException("no more nodes!");
-		// Grab the first element in the stack, which is the last element in the
-		// tree
-		Tree<T> result = stack.removeFirst();
-		lastNode = result;
+		Tree<T> result = pending;
+		pending = null;
 		return result;
 	}
 
@@ -49,6 +277,8 @@ public class ReverseBreadthFirstIterator<T> implements TraversalIterator<T> {
 	 */
 	public void remove() {
 		if (lastNode != null) {
+			// the node's left siblings keep their positions, so the walk
+			// is not disturbed.
 			lastNode.prune(true, true);
 			skip();
 		}
@@ -62,6 +292,6 @@ public class ReverseBreadthFirstIterator<T> implements TraversalIterator<T> {
 		// todo: I'm not sure how exactly I want to implement this
 		// eventually...for now, this behavior doesn't make sense in
 		// a reverse tree traversal, so I'll do it as described above
-		stack.removeFirst();
+		advance();
 	}
 }
@@ -3,50 +3,86 @@
 package org.zlzh.ds.tree;
 
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
  * <p>Title:ReverseDepthFirstIterator</p>
- * <p>Description: Depth first tree traversal iterator.</p>
+ * <p>Description: Reverse depth first tree traversal iterator.
+ * The nodes come out in exactly the reverse of DepthFirstIterator's
+ * order, which is a post-order walk that visits children from right to
+ * left. The walk is lazy: the iterator keeps only the path from the
+ * starting node down to the next node, with a child cursor per level,
+ * so memory is proportional to the height of the tree.</p>
  * @author:  zenglizhi
  * @time:    2013-6-9
  * @version:  v1.0
  */
 public class ReverseDepthFirstIterator<T> implements TraversalIterator<T> {
 
-	private final LinkedList<Tree<T>> stack;
+	/**
+	 * The path being walked, deepest node first.
+	 */
+	private final ArrayDeque<Tree<T>> stack;
+	/**
+	 * For each node on the path, counting from the starting node, the
+	 * number of its children not yet descended into. They are taken from
+	 * the right.
+	 */
+	private int[] childIndex;
 	private Tree<T> lastNode;
 
 	public ReverseDepthFirstIterator(Tree<T> node) {
-		this.stack = new LinkedList<Tree<T>>();
-		for (DepthFirstIterator<T> i = new DepthFirstIterator<T>(node); i
-				.hasNext();) {
-			final Tree<T> tree = i.next();
-			stack.addFirst(tree);
-		}
+		this.stack = new ArrayDeque<Tree<T>>();
+		this.childIndex = new int[16];
+		push(node);
 		this.lastNode = null;
 	}
 
+	private void push(Tree<T> node) {
+		int level = stack.size();
+		if (level == childIndex.length)
+			childIndex = Arrays.copyOf(childIndex, 2 * level);
+		childIndex[level] = node.numChildren();
+		stack.push(node);
+	}
+
 	public boolean hasNext() {
-		return (stack.size() > 0);
+		return !stack.isEmpty();
 	}
 
 	public Tree<T> next() {
-		if (!hasNext())
-			throw new NoSuchElementException("no more nodes!");
-		// Grab the first element in the stack, which is the last element in the
-		// tree
-		Tree<T> result = stack.removeFirst();
+		Tree<T> result = advance();
 		lastNode = result;
 		return result;
 	}
 
+	/**
+	 * Descend along the rightmost children not yet visited, then hand out
+	 * the node at the bottom: all of its children have been handed out
+	 * already.
+	 */
+	private Tree<T> advance() {
+		if (!hasNext())
+			throw new NoSuchElementException("no more nodes!");
+		int level = stack.size() - 1;
+		while (childIndex[level] > 0) {
+			final List<Tree<T>> children = stack.peek().getChildren();
+			push(children.get(--childIndex[level]));
+			++level;
+		}
+		return stack.pop();
+	}
+
 	/**
 	 * Prune the current iterator node from the tree.
 	 */
 	public void remove() {
 		if (lastNode != null) {
+			// the node's left siblings keep their positions, so the walk
+			// is not disturbed.
 			lastNode.prune(true, true);
 			skip();
 		}
@@ -60,6 +96,6 @@ public class ReverseDepthFirstIterator<T> implements TraversalIterator<T> {
 		// TODO: I'm not sure how exactly I want to implement this
 		// eventually...for now, this behavior doesn't make sense in
 		// a reverse tree traversal, so I'll do it as described above
-		stack.removeFirst();
+		advance();
 	}
 }
@@ -8,6 +8,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.zlzh.util.Escaper;
 import org.zlzh.util.IObjectAdapter;
@@ -50,6 +52,28 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	 */
 	private LinkedList<Tree<E>> _path;
 
+	/**
+	 * Cached subtree size, height, depth and leaf count, or null when the
+	 * tree does not keep them.
+	 * @see #enableMetadata()
+	 */
+	private Metadata metadata;
+
+	/**
+	 * The values kept on each node of a tree with metadata enabled.
+	 */
+	private static final class Metadata implements Serializable {
+		private static final long serialVersionUID = 1L;
+		/** The number of nodes in the subtree, this one included. */
+		int size = 1;
+		/** (1+) the maximum depth of nodes in the subtree, as maxDepth(). */
+		int height = 1;
+		/** The depth in the tree, where the root is at depth 0. */
+		int depth;
+		/** The number of leaves in the subtree, 1 for a leaf. */
+		int leaves = 1;
+	}
+
 	public Tree(E data) {
 		this.data = data;
 		children = null;
@@ -103,6 +127,8 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	 * Get the depth of this node in its tree, where the root is at depth 0.
 	 */
 	public int depth() {
+		if (metadata != null)
+			return metadata.depth;
 		int result = 0;
 		Tree<E> p = parent;
 		while (p != null) {
@@ -274,7 +300,9 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 		} else if (depth > 0) {
 			if (children != null) {
 				for (Tree<E> child : children) {
-					result.addAll(child.treesAtDepth(depth - 1));
+					// skip subtrees known to be too shallow.
+					if (child.metadata == null || child.metadata.height >= depth)
+						result.addAll(child.treesAtDepth(depth - 1));
 				}
 			}
 		}
@@ -287,6 +315,8 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	 * The depth of a tree with no children is 1; etc.
 	 */
 	public int maxDepth() {
+		if (metadata != null)
+			return metadata.height;
 		int depth = 1;
 		if (children != null) {
 			int maxChildDepth = 0;
@@ -307,17 +337,30 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	 * If this tree is a leaf itself(has no children) the number of leaves is 1
 	 */
 	public int numLeaves() {
-		int leaves = 1;
-		if (null == children) {
-			int childLeafCount = 0;
-			for (Tree<E> child : children) {
-				childLeafCount += child.numLeaves();
-			}
-			return childLeafCount;
+		if (metadata != null)
+			return metadata.leaves;
+		if (!hasChildren())
+			return 1;
+		int leaves = 0;
+		for (Tree<E> child : children) {
+			leaves += child.numLeaves();
 		}
 		return leaves;
 	}
 
+	/**
+	 * Count the nodes in this tree, including this node.
+	 */
+	public int subtreeSize() {
+		if (metadata != null)
+			return metadata.size;
+		int result = 0;
+		for (Iterator<Tree<E>> it = depthFirstIterator(); it.hasNext(); it.next()) {
+			++result;
+		}
+		return result;
+	}
+
 	public Tree<E> addChild(E childData) {
 		Tree<E> result = new Tree<E>(childData);
 		addChild(result);
@@ -330,6 +373,155 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 		}
 		children.add(child);
 		child.parent = this;
+		if (metadata != null) {
+			if (child.metadata == null)
+				child.computeMetadata(metadata.depth + 1);
+			else
+				child.restampDepth(metadata.depth + 1);
+			// this node stops counting as a leaf once it has a child.
+			final int leaves = child.metadata.leaves - (children.size() == 1 ? 1 : 0);
+			grown(child.metadata.size, leaves, child.metadata.height);
+		} else if (child.metadata != null) {
+			child.dropMetadata();
+		}
+	}
+
+	/**
+	 * Cache the subtree size, height, depth and leaf count on every node of
+	 * this node's tree, so that subtreeSize(), maxDepth(), depth() and
+	 * numLeaves() answer in O(1) and treesAtDepth() skips shallow subtrees.
+	 * <p>
+	 * Enabling costs one pass over the tree. After that addChild(), prune(),
+	 * moveChildrenTo(), pruneChildren() and clear() keep the values up to
+	 * date along the path to the root: O(height) to add a node and
+	 * O(height * fan-out) at worst to remove one, plus a pass over any
+	 * subtree whose depth changes. A node added to the tree gets metadata
+	 * too, and a node added to a tree without it loses its own. Changes made
+	 * through the list returned by getChildren() are not seen, nor are
+	 * changes below a node that pruneChildren() or prune() has left
+	 * half-attached to its parent.
+	 * <p>
+	 * Note that prune(boolean, boolean) finds the node in its parent's
+	 * children with equals(), which compares data and children rather than
+	 * identity. If an earlier sibling is equal to the node, that sibling is
+	 * taken out of the list instead, while the node itself stays in it: the
+	 * sizes and leaf counts still add up, the two subtrees being alike, but
+	 * the depths of both are then wrong. Give siblings distinct data, or
+	 * disable metadata around such prunes.
+	 */
+	public void enableMetadata() {
+		final Tree<E> root = getRoot();
+		if (root.metadata == null)
+			root.computeMetadata(0);
+	}
+
+	/**
+	 * Drop the cached metadata from every node of this node's tree.
+	 */
+	public void disableMetadata() {
+		getRoot().dropMetadata();
+	}
+
+	/**
+	 * Determine whether this node's tree keeps cached metadata.
+	 * @see #enableMetadata()
+	 */
+	public boolean hasMetadata() {
+		return metadata != null;
+	}
+
+	/**
+	 * Compute the metadata of every node under this one, which is at the
+	 * given depth: depths going down in breadth-first order, then the rest
+	 * going back up, so deep trees need no recursion.
+	 */
+	private void computeMetadata(int depth) {
+		final List<Tree<E>> nodes = new ArrayList<Tree<E>>();
+		metadata = new Metadata();
+		metadata.depth = depth;
+		nodes.add(this);
+		for (int i = 0; i < nodes.size(); ++i) {
+			final Tree<E> node = nodes.get(i);
+			if (node.children != null) {
+				for (Tree<E> child : node.children) {
+					child.metadata = new Metadata();
+					child.metadata.depth = node.metadata.depth + 1;
+					nodes.add(child);
+				}
+			}
+		}
+		for (int i = nodes.size() - 1; i >= 0; --i) {
+			final Tree<E> node = nodes.get(i);
+			if (node.hasChildren()) {
+				final Metadata m = node.metadata;
+				m.leaves = 0;
+				for (Tree<E> child : node.children) {
+					m.size += child.metadata.size;
+					m.leaves += child.metadata.leaves;
+					if (child.metadata.height + 1 > m.height)
+						m.height = child.metadata.height + 1;
+				}
+			}
+		}
+	}
+
+	private void dropMetadata() {
+		for (Iterator<Tree<E>> it = depthFirstIterator(); it.hasNext();) {
+			it.next().metadata = null;
+		}
+	}
+
+	/**
+	 * Shift the depths under this node after it moved to the given depth.
+	 */
+	private void restampDepth(int depth) {
+		final int delta = depth - metadata.depth;
+		if (delta != 0) {
+			for (Iterator<Tree<E>> it = depthFirstIterator(); it.hasNext();) {
+				it.next().metadata.depth += delta;
+			}
+		}
+	}
+
+	/**
+	 * Account for subtrees added under this node, up to the root: size and
+	 * leaves grow by the given amounts, and the height to fit a child of the
+	 * given height.
+	 */
+	private void grown(int size, int leaves, int childHeight) {
+		for (Tree<E> node = this; node != null; node = node.parent) {
+			final Metadata m = node.metadata;
+			m.size += size;
+			m.leaves += leaves;
+			if (childHeight + 1 > m.height)
+				m.height = childHeight + 1;
+			childHeight = m.height;
+		}
+	}
+
+	/**
+	 * Account for subtrees removed from under this node, up to the root:
+	 * size and leaves shrink by the given amounts, and heights are computed
+	 * again from the children until one comes out unchanged.
+	 */
+	private void shrunk(int size, int leaves) {
+		boolean heightChanged = true;
+		for (Tree<E> node = this; node != null; node = node.parent) {
+			final Metadata m = node.metadata;
+			m.size -= size;
+			m.leaves -= leaves;
+			if (heightChanged) {
+				int height = 1;
+				if (node.children != null) {
+					for (Tree<E> child : node.children) {
+						if (child.metadata.height + 1 > height)
+							height = child.metadata.height + 1;
+					}
+				}
+				heightChanged = height != m.height;
+				m.height = height;
+			}
+		}
 	}
 
 	/**
@@ -374,6 +566,23 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	public TraversalIterator<E> depthFirstIterator(){
 		return  new DepthFirstIterator<E>(this);
 	}
+
+	/**
+	 * A sequential stream of the nodes under this node, in depth-first
+	 * order.
+	 */
+	public Stream<Tree<E>> stream() {
+		return StreamSupport.stream(new TreeSpliterator<E>(this), false);
+	}
+
+	/**
+	 * A parallel stream of the nodes under this node, in depth-first order.
+	 * It splits between sibling subtrees; see ParallelTraversal for
+	 * operations that run on a ForkJoinPool directly.
+	 */
+	public Stream<Tree<E>> parallelStream() {
+		return StreamSupport.stream(new TreeSpliterator<E>(this), true);
+	}
 	/**
 	 * Get a TraversalIterator<T>, which is an Iterator<Tree<T>>, starting from
 	 * this node.
@@ -441,19 +650,32 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	 */
 	public void prune() {
 		this.parent = null;
+		if (metadata != null)
+			restampDepth(0);
 	}
 
 	/**
 	 * Prune this node from its tree as specified.
+	 * <p>
+	 * The node is removed from its parent's children by equals(), so an
+	 * equal sibling before it is removed in its place.
 	 */
 	public void prune(boolean disconnectParent, boolean disconnectAsChild) {
 		if (disconnectAsChild && parent != null && parent.children != null) {
-			parent.children.remove(this);
+			final boolean removed = parent.children.remove(this);
 			if (parent.children.size() == 0)
 				parent.children = null;
+			if (removed && parent.metadata != null && metadata != null) {
+				// the parent counts as a leaf again once it has no children.
+				final int leaves = metadata.leaves - (parent.children == null ? 1 : 0);
+				parent.shrunk(metadata.size, leaves);
+			}
 		}
-		if (disconnectParent)
+		if (disconnectParent) {
 			this.parent = null;
+			if (metadata != null)
+				restampDepth(0);
+		}
 	}
 
 	/**
@@ -462,6 +684,16 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	public void moveChildrenTo(Tree<E> newParent) {
 		if (this.children != null && this.children.size() > 0) {
 			final List<Tree<E>> children = new ArrayList<Tree<E>>(this.children);
+			if (metadata != null) {
+				// take them all off at once rather than one removal each.
+				this.children = null;
+				shrunk(metadata.size - 1, metadata.leaves - 1);
+				for (Tree<E> child : children) {
+					child.parent = null;
+					newParent.addChild(child);
+				}
+				return;
+			}
 			for (Tree<E> child : children) {
 				child.prune(true, true);
 				newParent.addChild(child);
@@ -481,6 +713,8 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 		// don't worry about cleaning up back-references in children to this as
 		// parent?
 		this.children = null;
+		if (metadata != null && result != null && !result.isEmpty())
+			shrunk(metadata.size - 1, metadata.leaves - 1);
 		return result;
 	}
 	
@@ -489,8 +723,11 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 	 */
 	public void clear(){
 		if(null != children){
+			final boolean hadChildren = !children.isEmpty();
 			children.clear();
 			children = null;
+			if (metadata != null && hadChildren)
+				shrunk(metadata.size - 1, metadata.leaves - 1);
 		}
 	}
 
@@ -639,7 +876,7 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
     /**
      * Returns a shallow copy of this <tt>Tree</tt> instance.  (The
      * elements themselves are not copied.)
-     * The parent and path are not copied. 
+     * The parent, path and metadata are not copied. 
      * @return a clone of this <tt>Tree</tt> instance
      */
     @SuppressWarnings("unchecked")
@@ -654,6 +891,7 @@ public class Tree<E> implements Iterable<Tree<E>>,Cloneable,Serializable{
 		}
 		t.parent = null;
 		t._path = null;
+		t.metadata = null;
 	    if(null != children){
 	    	t.children = null;
 		    for (Tree<E> tree : children) {
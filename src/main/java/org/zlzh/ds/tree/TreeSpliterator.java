@@ -0,0 +1,133 @@
+/*
+ * File: TreeSpliterator.java
+ */
+package org.zlzh.ds.tree;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * <p>Title: Subtree-splitting spliterator over a Tree</p>
+ * <p>
+ * Produces the nodes of a tree in depth-first (pre-)order. What is left to
+ * produce is kept as a run of single nodes followed by a run of whole
+ * subtrees, in order; trySplit() hands the single nodes and the first half
+ * of the subtrees to the new spliterator. When only one subtree is left,
+ * its root joins the single nodes and its children become the subtrees,
+ * so a split cuts between sibling subtrees and only ever walks down a
+ * chain of single children. A split that gathers MAX_SINGLES nodes that
+ * way hands off just those, and the next split carries on down the chain;
+ * a spliterator holding nothing but single nodes does not split.
+ * </p>
+ * <p>
+ * A tree with metadata enabled knows its subtree sizes, and the
+ * spliterator is then SIZED and SUBSIZED. Otherwise the estimate starts
+ * unknown (Long.MAX_VALUE) and is halved on every split, as for the JDK's
+ * spliterators of unknown size; that bounds how finely a parallel stream
+ * splits the tree.
+ * </p>
+ */
+class TreeSpliterator<E> implements Spliterator<Tree<E>> {
+
+	/**
+	 * The most single nodes trySplit() gathers going down a chain.
+	 */
+	static final int MAX_SINGLES = 1 << 10;
+
+	/**
+	 * The nodes left to produce: the first singles of them on their own,
+	 * the rest as whole subtrees.
+	 */
+	private final ArrayDeque<Tree<E>> items;
+	private int singles;
+	/** Whether the estimate is the exact number of nodes left. */
+	private final boolean sized;
+	private long estimate;
+
+	TreeSpliterator(Tree<E> root) {
+		this(new ArrayDeque<Tree<E>>(), 0, root.hasMetadata(),
+				root.hasMetadata() ? root.subtreeSize() : Long.MAX_VALUE);
+		items.add(root);
+	}
+
+	private TreeSpliterator(ArrayDeque<Tree<E>> items, int singles, boolean sized, long estimate) {
+		this.items = items;
+		this.singles = singles;
+		this.sized = sized;
+		this.estimate = estimate;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Tree<E>> action) {
+		if (items.isEmpty())
+			return false;
+		Tree<E> node = items.pollFirst();
+		if (singles > 0) {
+			--singles;
+		} else {
+			final List<Tree<E>> children = node.getChildren();
+			if (children != null) {
+				for (int i = children.size() - 1; i >= 0; --i)
+					items.addFirst(children.get(i));
+			}
+		}
+		if (sized)
+			--estimate;
+		action.accept(node);
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Tree<E>> action) {
+		while (tryAdvance(action))
+			;
+	}
+
+	@Override
+	public Spliterator<Tree<E>> trySplit() {
+		// open up a lone subtree, and any chain of single children below it.
+		while (items.size() - singles == 1) {
+			final List<Tree<E>> children = items.peekLast().getChildren();
+			if (children == null || children.isEmpty() || singles >= MAX_SINGLES)
+				break;
+			++singles;
+			items.addAll(children);
+		}
+		// hand the singles off alone only if a subtree is left to go on with;
+		// otherwise the new spliterator would be this one over again.
+		final int count = (items.size() - singles) / 2;
+		if (count == 0 && (singles < MAX_SINGLES || items.size() == singles))
+			return null;
+		ArrayDeque<Tree<E>> prefix = new ArrayDeque<Tree<E>>(singles + count);
+		long prefixSize = singles;
+		for (int i = 0; i < singles; ++i)
+			prefix.add(items.pollFirst());
+		for (int i = 0; i < count; ++i) {
+			Tree<E> subtree = items.pollFirst();
+			if (sized)
+				prefixSize += subtree.subtreeSize();
+			prefix.add(subtree);
+		}
+		if (sized) {
+			estimate -= prefixSize;
+		} else {
+			estimate >>>= 1;
+			prefixSize = estimate;
+		}
+		TreeSpliterator<E> result = new TreeSpliterator<E>(prefix, singles, sized, prefixSize);
+		singles = 0;
+		return result;
+	}
+
+	@Override
+	public long estimateSize() {
+		return estimate;
+	}
+
+	@Override
+	public int characteristics() {
+		return sized ? ORDERED | NONNULL | SIZED | SUBSIZED : ORDERED | NONNULL;
+	}
+}
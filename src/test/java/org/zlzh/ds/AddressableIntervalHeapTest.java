@@ -0,0 +1,304 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of AddressableIntervalHeap against a list of the live handles and
+ * the keys they should hold.  Entries are changed and removed through
+ * their handles, so a handle that lost track of its slot shows up as the
+ * wrong entry being moved or removed.
+ */
+public class AddressableIntervalHeapTest extends TestCase {
+    /* The reference model: every live handle, with its key at the same index. */
+    private List<AddressableIntervalHeap.Handle<Integer>> handles;
+    private List<Integer> keys;
+    private AddressableIntervalHeap<Integer> heap;
+    private Random random;
+
+    @Override
+    protected void setUp() {
+        handles = new ArrayList<AddressableIntervalHeap.Handle<Integer>>();
+        keys = new ArrayList<Integer>();
+        heap = new AddressableIntervalHeap<Integer>();
+        random = new Random(20141);
+    }
+
+    private Integer randomKey() {
+        return Integer.valueOf(random.nextInt(1000));
+    }
+
+    private void add(Integer key) {
+        AddressableIntervalHeap.Handle<Integer> handle = heap.add(key);
+        assertTrue(handle.isInHeap());
+        assertEquals(key, handle.getKey());
+        handles.add(handle);
+        keys.add(key);
+    }
+
+    private void fill(int count) {
+        for (int i = 0; i < count; ++i)
+            add(randomKey());
+    }
+
+    /* Forgets the entry at the given model index, which has left the heap. */
+    private void modelRemove(int index) {
+        AddressableIntervalHeap.Handle<Integer> handle = handles.get(index);
+        assertFalse(handle.isInHeap());
+        int last = handles.size() - 1;
+        handles.set(index, handles.get(last));
+        keys.set(index, keys.get(last));
+        handles.remove(last);
+        keys.remove(last);
+    }
+
+    /* Checks the size, both ends, and the key of every live handle. */
+    private void check() {
+        assertEquals(keys.size(), heap.size());
+        assertEquals(keys.isEmpty(), heap.isEmpty());
+        for (int i = 0; i < handles.size(); ++i) {
+            assertTrue(handles.get(i).isInHeap());
+            assertEquals(keys.get(i), handles.get(i).getKey());
+        }
+        if (!keys.isEmpty()) {
+            assertEquals(Collections.min(keys), heap.min());
+            assertEquals(Collections.max(keys), heap.max());
+            assertTrue(handles.contains(heap.minHandle()));
+            assertTrue(handles.contains(heap.maxHandle()));
+            assertEquals(heap.min(), heap.minHandle().getKey());
+            assertEquals(heap.max(), heap.maxHandle().getKey());
+        }
+    }
+
+    /* Removes every entry through its handle, in random order. */
+    private void drainByHandle() {
+        while (!handles.isEmpty()) {
+            int index = random.nextInt(handles.size());
+            heap.remove(handles.get(index));
+            modelRemove(index);
+            check();
+        }
+    }
+
+    public void testRandomOperationsAgainstModel() {
+        for (int step = 0; step < 20000; ++step) {
+            int op = random.nextInt(7);
+            if (op < 3 || handles.isEmpty()) {
+                add(randomKey());
+            } else if (op == 3) {
+                int index = random.nextInt(handles.size());
+                Integer key = randomKey();
+                heap.updateKey(handles.get(index), key);
+                keys.set(index, key);
+            } else if (op == 4) {
+                int index = random.nextInt(handles.size());
+                heap.remove(handles.get(index));
+                modelRemove(index);
+            } else if (op == 5) {
+                AddressableIntervalHeap.Handle<Integer> handle = heap.minHandle();
+                assertEquals(Collections.min(keys), heap.dequeueMin());
+                modelRemove(handles.indexOf(handle));
+            } else {
+                AddressableIntervalHeap.Handle<Integer> handle = heap.maxHandle();
+                assertEquals(Collections.max(keys), heap.dequeueMax());
+                modelRemove(handles.indexOf(handle));
+            }
+            check();
+        }
+        drainByHandle();
+    }
+
+    public void testUpdateKeyBothWays() {
+        fill(200);
+        for (int step = 0; step < 2000; ++step) {
+            int index = random.nextInt(handles.size());
+            int old = keys.get(index).intValue();
+            Integer key = Integer.valueOf(random.nextBoolean() ? old - random.nextInt(300) : old + random.nextInt(300));
+            heap.updateKey(handles.get(index), key);
+            keys.set(index, key);
+            check();
+        }
+        drainByHandle();
+    }
+
+    public void testUpdateKeyToNewExtremes() {
+        fill(100);
+        for (int step = 0; step < 500; ++step) {
+            int index = random.nextInt(handles.size());
+            Integer key = Integer.valueOf(random.nextBoolean() ? -step - 1 : 1000 + step);
+            heap.updateKey(handles.get(index), key);
+            keys.set(index, key);
+            check();
+            assertSame(handles.get(index), key.intValue() < 0 ? heap.minHandle() : heap.maxHandle());
+        }
+    }
+
+    public void testUpdateKeyToSameKey() {
+        fill(50);
+        for (int i = 0; i < handles.size(); ++i) {
+            heap.updateKey(handles.get(i), keys.get(i));
+            check();
+        }
+    }
+
+    public void testRemoveEveryPositionOnSmallHeaps() {
+        for (int size = 1; size <= 12; ++size) {
+            for (int victim = 0; victim < size; ++victim) {
+                setUp();
+                fill(size);
+                heap.remove(handles.get(victim));
+                modelRemove(victim);
+                check();
+                drainByHandle();
+            }
+        }
+    }
+
+    public void testRemoveLastAddedAndLastSlot() {
+        fill(31);
+        for (int i = 0; i < 10; ++i) {
+            int index = handles.size() - 1;
+            heap.remove(handles.get(index));
+            modelRemove(index);
+            check();
+            add(randomKey());
+            check();
+        }
+    }
+
+    public void testDequeueInvalidatesHandle() {
+        fill(20);
+        AddressableIntervalHeap.Handle<Integer> min = heap.minHandle();
+        AddressableIntervalHeap.Handle<Integer> max = heap.maxHandle();
+        heap.dequeueMin();
+        heap.dequeueMax();
+        assertFalse(min.isInHeap());
+        assertFalse(max.isInHeap());
+        assertEquals(18, heap.size());
+        try {
+            heap.remove(min);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            heap.updateKey(max, Integer.valueOf(5));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(18, heap.size());
+    }
+
+    public void testRejectsForeignAndStaleHandles() {
+        fill(10);
+        AddressableIntervalHeap<Integer> other = new AddressableIntervalHeap<Integer>();
+        AddressableIntervalHeap.Handle<Integer> foreign = other.add(Integer.valueOf(1));
+        try {
+            heap.remove(foreign);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            heap.updateKey(foreign, Integer.valueOf(2));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertTrue(foreign.isInHeap());
+        assertEquals(1, other.size());
+
+        heap.remove(handles.get(3));
+        AddressableIntervalHeap.Handle<Integer> stale = handles.get(3);
+        modelRemove(3);
+        try {
+            heap.remove(stale);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        check();
+    }
+
+    public void testRejectsNullKeys() {
+        fill(5);
+        try {
+            heap.add(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        try {
+            heap.updateKey(handles.get(0), null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        check();
+    }
+
+    public void testClearInvalidatesHandles() {
+        fill(100);
+        List<AddressableIntervalHeap.Handle<Integer>> old = new ArrayList<AddressableIntervalHeap.Handle<Integer>>(handles);
+        heap.clear();
+        assertEquals(0, heap.size());
+        assertTrue(heap.isEmpty());
+        for (AddressableIntervalHeap.Handle<Integer> handle : old) {
+            assertFalse(handle.isInHeap());
+            try {
+                heap.remove(handle);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        handles.clear();
+        keys.clear();
+        fill(50);
+        check();
+        drainByHandle();
+    }
+
+    public void testEmptyHeap() {
+        check();
+        try {
+            heap.min();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.maxHandle();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.dequeueMin();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.dequeueMax();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+    }
+
+    public void testComparatorOrdering() {
+        heap = new AddressableIntervalHeap<Integer>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer one, Integer two) {
+                return two.compareTo(one);
+            }
+        });
+        fill(100);
+        assertEquals(Collections.max(keys), heap.min());
+        assertEquals(Collections.min(keys), heap.max());
+        for (int step = 0; step < 500; ++step) {
+            int index = random.nextInt(handles.size());
+            Integer key = randomKey();
+            heap.updateKey(handles.get(index), key);
+            keys.set(index, key);
+            assertEquals(Collections.max(keys), heap.min());
+            assertEquals(Collections.min(keys), heap.max());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.zlzh.ds.BoundedIntervalHeap.Mode;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of BoundedIntervalHeap.  LARGEST and SMALLEST are checked against
+ * sorting the whole stream, and MIDDLE against a sorted list that is
+ * trimmed from alternating ends the way the documentation describes.
+ * Rejected offers must be counted as trims just like evictions.
+ */
+public class BoundedIntervalHeapTest extends TestCase {
+
+    /** Drains the heap from the low end. */
+    private static List<Integer> drain(BoundedIntervalHeap<Integer> heap) {
+        List<Integer> result = new ArrayList<Integer>();
+        while (!heap.isEmpty())
+            result.add(heap.dequeueMin());
+        return result;
+    }
+
+    private static List<Integer> randomStream(Random random, int length, int range) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < length; ++i)
+            result.add(Integer.valueOf(random.nextInt(range)));
+        return result;
+    }
+
+    public void testLargestMatchesSorting() {
+        Random random = new Random(20142);
+        for (int capacity = 1; capacity <= 40; capacity += 3) {
+            for (int range : new int[] { 5, 1000000 }) {
+                List<Integer> stream = randomStream(random, 500, range);
+                BoundedIntervalHeap<Integer> heap = new BoundedIntervalHeap<Integer>(capacity, Mode.LARGEST);
+                for (Integer elem : stream)
+                    heap.offer(elem);
+                assertEquals(capacity, heap.size());
+                assertEquals(stream.size() - capacity, heap.trimmedLow());
+                assertEquals(0, heap.trimmedHigh());
+
+                List<Integer> sorted = new ArrayList<Integer>(stream);
+                Collections.sort(sorted);
+                assertEquals(sorted.subList(sorted.size() - capacity, sorted.size()), drain(heap));
+            }
+        }
+    }
+
+    public void testSmallestMatchesSorting() {
+        Random random = new Random(20143);
+        for (int capacity = 1; capacity <= 40; capacity += 3) {
+            for (int range : new int[] { 5, 1000000 }) {
+                List<Integer> stream = randomStream(random, 500, range);
+                BoundedIntervalHeap<Integer> heap = new BoundedIntervalHeap<Integer>(capacity, Mode.SMALLEST);
+                for (Integer elem : stream)
+                    heap.offer(elem);
+                assertEquals(capacity, heap.size());
+                assertEquals(0, heap.trimmedLow());
+                assertEquals(stream.size() - capacity, heap.trimmedHigh());
+
+                List<Integer> sorted = new ArrayList<Integer>(stream);
+                Collections.sort(sorted);
+                assertEquals(sorted.subList(0, capacity), drain(heap));
+            }
+        }
+    }
+
+    public void testEveryModeAgainstModel() {
+        Random random = new Random(20144);
+        for (Mode mode : Mode.values()) {
+            for (int capacity = 1; capacity <= 20; ++capacity) {
+                BoundedIntervalHeap<Integer> heap = new BoundedIntervalHeap<Integer>(capacity, mode);
+                List<Integer> model = new ArrayList<Integer>();
+                long low = 0;
+                long high = 0;
+                for (int step = 0; step < 300; ++step) {
+                    Integer elem = Integer.valueOf(random.nextInt(50));
+                    boolean expected = true;
+                    if (model.size() == capacity) {
+                        // MIDDLE trims the low end first, then alternates.
+                        boolean fromLow = mode == Mode.LARGEST
+                                || (mode == Mode.MIDDLE && low <= high);
+                        if (fromLow) {
+                            ++low;
+                            expected = elem.compareTo(model.get(0)) > 0;
+                            if (expected)
+                                model.remove(0);
+                        } else {
+                            ++high;
+                            expected = elem.compareTo(model.get(model.size() - 1)) < 0;
+                            if (expected)
+                                model.remove(model.size() - 1);
+                        }
+                    }
+                    if (expected) {
+                        int index = Collections.binarySearch(model, elem);
+                        model.add(index < 0 ? -index - 1 : index, elem);
+                    }
+
+                    assertEquals(mode + " step " + step, expected, heap.offer(elem));
+                    assertEquals(model.size(), heap.size());
+                    assertEquals(model.get(0), heap.min());
+                    assertEquals(model.get(model.size() - 1), heap.max());
+                    assertEquals(low, heap.trimmedLow());
+                    assertEquals(high, heap.trimmedHigh());
+                    if (mode == Mode.MIDDLE)
+                        assertTrue(low - high == 0 || low - high == 1);
+                }
+                assertEquals(model, drain(heap));
+            }
+        }
+    }
+
+    public void testMiddleAlternatesTrims() {
+        // 1..9 in an order whose extremes arrive evenly keeps the middle band.
+        BoundedIntervalHeap<Integer> heap = new BoundedIntervalHeap<Integer>(3, Mode.MIDDLE);
+        int[] stream = { 5, 4, 6, 1, 9, 3, 7, 2, 8 };
+        for (int elem : stream)
+            heap.offer(Integer.valueOf(elem));
+        assertEquals(3, heap.trimmedLow());
+        assertEquals(3, heap.trimmedHigh());
+        assertEquals(Integer.valueOf(4), heap.min());
+        assertEquals(Integer.valueOf(6), heap.max());
+    }
+
+    public void testRejectedOffersAreTrims() {
+        BoundedIntervalHeap<Integer> largest = new BoundedIntervalHeap<Integer>(3, Mode.LARGEST);
+        for (int i = 10; i < 13; ++i)
+            assertTrue(largest.offer(Integer.valueOf(i)));
+        // neither smaller nor equal elements get in, but both are trimmed.
+        assertFalse(largest.offer(Integer.valueOf(1)));
+        assertFalse(largest.offer(Integer.valueOf(10)));
+        assertEquals(2, largest.trimmedLow());
+        assertEquals(0, largest.trimmedHigh());
+        assertEquals(Integer.valueOf(10), largest.min());
+        assertTrue(largest.offer(Integer.valueOf(20)));
+        assertEquals(3, largest.trimmedLow());
+        assertEquals(Integer.valueOf(11), largest.min());
+
+        BoundedIntervalHeap<Integer> smallest = new BoundedIntervalHeap<Integer>(2, Mode.SMALLEST);
+        smallest.offer(Integer.valueOf(5));
+        smallest.offer(Integer.valueOf(6));
+        assertFalse(smallest.offer(Integer.valueOf(6)));
+        assertFalse(smallest.offer(Integer.valueOf(100)));
+        assertEquals(0, smallest.trimmedLow());
+        assertEquals(2, smallest.trimmedHigh());
+
+        // a rejection still takes its turn in MIDDLE.
+        BoundedIntervalHeap<Integer> middle = new BoundedIntervalHeap<Integer>(2, Mode.MIDDLE);
+        middle.offer(Integer.valueOf(5));
+        middle.offer(Integer.valueOf(6));
+        assertFalse(middle.offer(Integer.valueOf(0)));
+        assertEquals(1, middle.trimmedLow());
+        assertFalse(middle.offer(Integer.valueOf(9)));
+        assertEquals(1, middle.trimmedHigh());
+        assertTrue(middle.offer(Integer.valueOf(7)));
+        assertEquals(2, middle.trimmedLow());
+        assertEquals(Integer.valueOf(6), middle.min());
+        assertEquals(Integer.valueOf(7), middle.max());
+
+        // dequeuing frees a place and is not a trim.
+        assertEquals(Integer.valueOf(6), middle.dequeueMin());
+        assertTrue(middle.offer(Integer.valueOf(1)));
+        assertEquals(2, middle.trimmedLow());
+        assertEquals(1, middle.trimmedHigh());
+    }
+
+    public void testBadArguments() {
+        try {
+            new BoundedIntervalHeap<Integer>(0, Mode.LARGEST);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new BoundedIntervalHeap<Integer>(1, null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        BoundedIntervalHeap<Integer> heap = new BoundedIntervalHeap<Integer>(1, Mode.MIDDLE);
+        assertEquals(1, heap.capacity());
+        assertEquals(Mode.MIDDLE, heap.getMode());
+        try {
+            heap.offer(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        try {
+            heap.min();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of ConcurrentIntervalHeap.  Removals are relaxed, so the tests
+ * check that every element comes out exactly once, that the ends are
+ * exact when one thread is working alone, and that blocked removals are
+ * woken by insertions.
+ */
+public class ConcurrentIntervalHeapTest extends TestCase {
+    private ConcurrentIntervalHeap<Integer> heap;
+
+    @Override
+    protected void setUp() {
+        heap = new ConcurrentIntervalHeap<Integer>(8);
+    }
+
+    public void testEmptyQueue() throws InterruptedException {
+        assertEquals(0, heap.size());
+        assertTrue(heap.isEmpty());
+        assertNull(heap.pollMin());
+        assertNull(heap.pollMax());
+        assertNull(heap.pollMin(1, TimeUnit.MILLISECONDS));
+        assertNull(heap.pollMax(0, TimeUnit.MILLISECONDS));
+        try {
+            heap.dequeueMin();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.max();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.add(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    public void testEveryElementComesOutOnce() {
+        List<Integer> added = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; ++i) {
+            Integer elem = Integer.valueOf((i * 7919) % 1000);
+            heap.add(elem);
+            added.add(elem);
+            assertEquals(i + 1, heap.size());
+        }
+        assertEquals(Integer.valueOf(0), heap.min());
+        assertEquals(Integer.valueOf(999), heap.max());
+
+        List<Integer> removed = new ArrayList<Integer>();
+        for (int i = 0; !heap.isEmpty(); ++i)
+            removed.add(i % 2 == 0 ? heap.dequeueMin() : heap.pollMax());
+        assertNull(heap.pollMin());
+        Collections.sort(added);
+        Collections.sort(removed);
+        assertEquals(added, removed);
+    }
+
+    public void testRemovalsFavourTheirEnd() {
+        for (int i = 0; i < 4000; ++i)
+            heap.add(Integer.valueOf(i));
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < 200; ++i) {
+            low += heap.dequeueMin().intValue();
+            high += heap.dequeueMax().intValue();
+        }
+        // exact removals would average 100 and 3900.
+        assertTrue("low average " + low / 200, low / 200 < 1000);
+        assertTrue("high average " + high / 200, high / 200 > 3000);
+    }
+
+    public void testTakeWaitsForAnInsertion() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(2);
+        final List<Integer> taken = Collections.synchronizedList(new ArrayList<Integer>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 2; ++i) {
+            final boolean fromMin = i == 0;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        taken.add(fromMin ? heap.takeMin() : heap.takeMax());
+                    } catch (InterruptedException e) {
+                        // fall through; the assertions below fail.
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+        Thread.sleep(50);
+        assertTrue(taken.isEmpty());
+
+        heap.add(Integer.valueOf(1));
+        heap.add(Integer.valueOf(2));
+        for (Thread thread : threads)
+            thread.join(10000);
+        assertEquals(2, taken.size());
+        assertTrue(heap.isEmpty());
+    }
+
+    public void testTimedPollGetsALateInsertion() throws InterruptedException {
+        Thread adder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                heap.add(Integer.valueOf(42));
+            }
+        };
+        adder.start();
+        assertEquals(Integer.valueOf(42), heap.pollMax(10, TimeUnit.SECONDS));
+        adder.join();
+    }
+
+    public void testTakeIsInterruptible() throws InterruptedException {
+        final AtomicInteger outcome = new AtomicInteger();
+        Thread taker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    heap.takeMin();
+                    outcome.set(1);
+                } catch (InterruptedException e) {
+                    outcome.set(2);
+                }
+            }
+        };
+        taker.start();
+        Thread.sleep(20);
+        taker.interrupt();
+        taker.join(10000);
+        assertEquals(2, outcome.get());
+        heap.add(Integer.valueOf(5));
+        assertEquals(Integer.valueOf(5), heap.pollMin());
+    }
+
+    public void testProducersAndConsumers() throws InterruptedException {
+        final int producers = 3;
+        final int consumers = 3;
+        final int perProducer = 20000;
+        final AtomicInteger takenSum = new AtomicInteger();
+        final AtomicInteger takenCount = new AtomicInteger();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; ++p) {
+            final int base = p * perProducer;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; ++i)
+                        heap.add(Integer.valueOf(base + i));
+                }
+            });
+        }
+        for (int c = 0; c < consumers; ++c) {
+            final int which = c;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perProducer; ++i) {
+                            Integer elem;
+                            if (which == 0)
+                                elem = heap.takeMin();
+                            else if (which == 1)
+                                elem = heap.takeMax();
+                            else
+                                while ((elem = heap.pollMin()) == null)
+                                    Thread.yield();
+                            takenSum.addAndGet(elem.intValue());
+                            takenCount.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        // fall through; the count below is short.
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join(60000);
+
+        int total = producers * perProducer;
+        assertEquals(total, takenCount.get());
+        assertEquals(total / 2 * (total - 1), takenSum.get());
+        assertTrue(heap.isEmpty());
+        assertNull(heap.pollMin());
+    }
+}
@@ -0,0 +1,151 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the DoubleEndedPriorityQueue implementations, IntervalHeap,
+ * MinMaxHeap and SymmetricMinMaxHeap, against a sorted list holding the
+ * same elements.  Keys are drawn from a small range so that ties are
+ * common.
+ */
+public class DoubleEndedPriorityQueueTest extends TestCase {
+
+    private static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+        public int compare(Integer one, Integer two) {
+            return one.compareTo(two);
+        }
+    };
+
+    private static List<DoubleEndedPriorityQueue<Integer>> newQueues() {
+        List<DoubleEndedPriorityQueue<Integer>> result = new ArrayList<DoubleEndedPriorityQueue<Integer>>();
+        result.add(new IntervalHeap<Integer>());
+        result.add(new MinMaxHeap<Integer>());
+        result.add(new SymmetricMinMaxHeap<Integer>());
+        return result;
+    }
+
+    private static List<DoubleEndedPriorityQueue<Integer>> newReversedQueues() {
+        Comparator<Integer> reversed = Collections.reverseOrder();
+        List<DoubleEndedPriorityQueue<Integer>> result = new ArrayList<DoubleEndedPriorityQueue<Integer>>();
+        result.add(new IntervalHeap<Integer>(reversed));
+        result.add(new MinMaxHeap<Integer>(reversed));
+        result.add(new SymmetricMinMaxHeap<Integer>(reversed));
+        return result;
+    }
+
+    /* The model is kept sorted in the queue's order. */
+    private static void insert(List<Integer> model, Integer elem, Comparator<Integer> comparator) {
+        int index = Collections.binarySearch(model, elem, comparator);
+        model.add(index < 0 ? -index - 1 : index, elem);
+    }
+
+    private static void check(List<Integer> model, DoubleEndedPriorityQueue<Integer> queue) {
+        String name = queue.getClass().getSimpleName();
+        assertEquals(name, model.size(), queue.size());
+        assertEquals(name, model.isEmpty(), queue.isEmpty());
+        if (!model.isEmpty()) {
+            assertEquals(name, model.get(0), queue.min());
+            assertEquals(name, model.get(model.size() - 1), queue.max());
+        }
+    }
+
+    private static void runRandomOperations(DoubleEndedPriorityQueue<Integer> queue,
+                                            Comparator<Integer> comparator, Random random,
+                                            int steps, int range) {
+        String name = queue.getClass().getSimpleName();
+        List<Integer> model = new ArrayList<Integer>();
+        for (int step = 0; step < steps; ++step) {
+            int op = random.nextInt(10);
+            if (op < 5 || model.isEmpty()) {
+                Integer elem = Integer.valueOf(random.nextInt(range));
+                queue.add(elem);
+                insert(model, elem, comparator);
+            } else if (op < 8) {
+                assertEquals(name, model.remove(0), queue.dequeueMin());
+            } else {
+                assertEquals(name, model.remove(model.size() - 1), queue.dequeueMax());
+            }
+            check(model, queue);
+        }
+
+        // drain from alternating ends.
+        for (int i = 0; !model.isEmpty(); ++i) {
+            if (i % 2 == 0)
+                assertEquals(name, model.remove(0), queue.dequeueMin());
+            else
+                assertEquals(name, model.remove(model.size() - 1), queue.dequeueMax());
+            check(model, queue);
+        }
+    }
+
+    public void testRandomOperationsAgainstSortedModel() {
+        Random random = new Random(20135);
+        for (int round = 0; round < 20; ++round) {
+            for (DoubleEndedPriorityQueue<Integer> queue : newQueues())
+                runRandomOperations(queue, NATURAL, random, 2000, round % 2 == 0 ? 10 : 100000);
+        }
+    }
+
+    public void testComparatorOrder() {
+        Random random = new Random(20136);
+        Comparator<Integer> reversed = Collections.reverseOrder();
+        for (DoubleEndedPriorityQueue<Integer> queue : newReversedQueues())
+            runRandomOperations(queue, reversed, random, 5000, 50);
+    }
+
+    public void testSortedAndReverseSortedInput() {
+        for (DoubleEndedPriorityQueue<Integer> queue : newQueues()) {
+            List<Integer> model = new ArrayList<Integer>();
+            for (int i = 0; i < 300; ++i) {
+                queue.add(Integer.valueOf(i));
+                queue.add(Integer.valueOf(1000 - i));
+                insert(model, Integer.valueOf(i), NATURAL);
+                insert(model, Integer.valueOf(1000 - i), NATURAL);
+                check(model, queue);
+            }
+            while (!model.isEmpty()) {
+                assertEquals(model.remove(model.size() - 1), queue.dequeueMax());
+                check(model, queue);
+            }
+        }
+    }
+
+    public void testEmptyQueue() {
+        for (DoubleEndedPriorityQueue<Integer> queue : newQueues()) {
+            String name = queue.getClass().getSimpleName();
+            assertTrue(name, queue.isEmpty());
+            try {
+                queue.min();
+                fail(name);
+            } catch (NoSuchElementException expected) {
+            }
+            try {
+                queue.dequeueMax();
+                fail(name);
+            } catch (NoSuchElementException expected) {
+            }
+
+            queue.add(Integer.valueOf(7));
+            assertEquals(name, Integer.valueOf(7), queue.min());
+            assertEquals(name, Integer.valueOf(7), queue.max());
+            assertEquals(name, Integer.valueOf(7), queue.dequeueMax());
+            try {
+                queue.dequeueMin();
+                fail(name);
+            } catch (NoSuchElementException expected) {
+            }
+            try {
+                queue.add(null);
+                fail(name);
+            } catch (NullPointerException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.zlzh.ds.ExtendibleArray.GrowthPolicy;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of ExtendibleArray against an ArrayList holding the same elements,
+ * for every growth policy.  Insertions and removals are tried at every
+ * position for every small size, so that they land in the old array, the
+ * new array and on the boundary between them, or in every chunk.
+ */
+public class ExtendibleArrayTest extends TestCase {
+    /* The reference model. */
+    private List<Integer> model;
+    private ExtendibleArray<Integer> array;
+    private GrowthPolicy policy;
+    private Random random;
+
+    @Override
+    protected void setUp() {
+        random = new Random(20133);
+    }
+
+    /** Start over, empty, with the given policy. */
+    private void start(GrowthPolicy growthPolicy) {
+        policy = growthPolicy;
+        model = new ArrayList<Integer>();
+        array = new ExtendibleArray<Integer>(policy);
+        assertEquals(policy, array.getGrowthPolicy());
+    }
+
+    private void check() {
+        assertEquals(model.size(), array.size());
+        for (int i = 0; i < model.size(); ++i)
+            assertEquals("index " + i, model.get(i), array.get(i));
+        assertEquals(model, new ArrayList<Integer>(array));
+        final List<Integer> seen = new ArrayList<Integer>();
+        array.forEach(new Consumer<Integer>() {
+            public void accept(Integer elem) {
+                seen.add(elem);
+            }
+        });
+        assertEquals(model, seen);
+        assertTrue(policy + " overhead " + array.overhead(), array.overhead() >= 0);
+    }
+
+    /** Start over with the given number of appended elements. */
+    private void fill(int size) {
+        start(policy);
+        for (int i = 0; i < size; ++i) {
+            model.add(Integer.valueOf(i));
+            array.add(Integer.valueOf(i));
+        }
+    }
+
+    public void testInsertAtEveryPosition() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            for (int size = 0; size <= 70; ++size) {
+                for (int index = 0; index <= size; ++index) {
+                    fill(size);
+                    model.add(index, Integer.valueOf(-1));
+                    array.add(index, Integer.valueOf(-1));
+                    check();
+                }
+            }
+        }
+    }
+
+    public void testInsertAtFrontMiddleAndEnd() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            for (int step = 0; step < 600; ++step) {
+                int size = model.size();
+                int index = step % 3 == 0 ? 0 : step % 3 == 1 ? size / 2 : size;
+                model.add(index, Integer.valueOf(step));
+                array.add(index, Integer.valueOf(step));
+                check();
+            }
+        }
+    }
+
+    public void testRemoveAtEveryPosition() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            for (int size = 1; size <= 70; ++size) {
+                for (int index = 0; index < size; ++index) {
+                    fill(size);
+                    assertEquals(model.remove(index), array.remove(index));
+                    check();
+                }
+            }
+        }
+    }
+
+    public void testShrinkAndRegrow() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            fill(300);
+            while (!model.isEmpty()) {
+                int index = random.nextInt(model.size());
+                assertEquals(model.remove(index), array.remove(index));
+                assertEquals(model.size(), array.size());
+            }
+            check();
+            for (int i = 0; i < 100; ++i) {
+                model.add(0, Integer.valueOf(i));
+                array.add(0, Integer.valueOf(i));
+            }
+            check();
+        }
+    }
+
+    public void testRandomOperationsAgainstModel() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            for (int step = 0; step < 20000; ++step) {
+                int op = random.nextInt(8);
+                if (op < 3 || model.isEmpty()) {
+                    Integer value = Integer.valueOf(random.nextInt());
+                    model.add(value);
+                    array.add(value);
+                } else if (op < 5) {
+                    int index = random.nextInt(model.size() + 1);
+                    Integer value = Integer.valueOf(random.nextInt());
+                    model.add(index, value);
+                    array.add(index, value);
+                } else if (op < 7) {
+                    int index = random.nextInt(model.size());
+                    assertEquals(model.remove(index), array.remove(index));
+                } else {
+                    int index = random.nextInt(model.size());
+                    Integer value = Integer.valueOf(random.nextInt());
+                    assertEquals(model.set(index, value), array.set(index, value));
+                }
+                if (step % 100 == 0)
+                    check();
+            }
+            check();
+        }
+    }
+
+    public void testAddAllFromArray() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            Integer[] source = new Integer[500];
+            for (int i = 0; i < source.length; ++i)
+                source[i] = Integer.valueOf(i);
+            while (model.size() < 3000) {
+                int offset = random.nextInt(source.length + 1);
+                int length = random.nextInt(source.length - offset + 1);
+                array.addAll(source, offset, length);
+                model.addAll(Arrays.asList(source).subList(offset, offset + length));
+                check();
+                // keep the bulk adds from always starting on a fresh array.
+                if (random.nextBoolean()) {
+                    int index = random.nextInt(model.size() + 1);
+                    model.add(index, Integer.valueOf(-1));
+                    array.add(index, Integer.valueOf(-1));
+                }
+            }
+
+            List<Integer> more = Arrays.asList(source).subList(10, 20);
+            assertTrue(array.addAll(more));
+            model.addAll(more);
+            assertTrue(array.addAll(17, more));
+            model.addAll(17, more);
+            assertFalse(array.addAll(new ArrayList<Integer>()));
+            check();
+
+            try {
+                array.addAll(source, 400, 101);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                array.addAll(source, -1, 1);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            check();
+        }
+    }
+
+    public void testOverheadIsBounded() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            // the dummy slot, the first array, or the chunk directory.
+            long empty = array.overhead();
+            assertTrue(policy + " empty overhead " + empty, empty > 0 && empty <= 31);
+            for (int size = 1; size <= 5000; ++size) {
+                array.add(Integer.valueOf(size));
+                long overhead = array.overhead();
+                long bound = policy == GrowthPolicy.DEAMORTIZED ? 2L * size + 2 : size + 31;
+                assertTrue(policy + " overhead " + overhead + " at " + size,
+                           overhead >= 0 && overhead <= bound);
+            }
+            while (!array.isEmpty())
+                array.remove(array.size() - 1);
+            // like ArrayList, the amortized policy keeps its array.
+            if (policy != GrowthPolicy.AMORTIZED)
+                assertTrue(policy + " overhead " + array.overhead() + " once empty",
+                           array.overhead() <= 64);
+        }
+    }
+
+    public void testBadIndices() {
+        for (GrowthPolicy growthPolicy : GrowthPolicy.values()) {
+            start(growthPolicy);
+            fill(5);
+            try {
+                array.get(5);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                array.set(-1, Integer.valueOf(0));
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                array.remove(5);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                array.add(6, Integer.valueOf(0));
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            check();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of IntervalHeap against a sorted list holding the same elements.
+ * Keys are drawn from a small range so that ties are common.
+ */
+public class IntervalHeapTest extends TestCase {
+    /* The reference model: the heap's elements in ascending order. */
+    private List<Integer> model;
+    private IntervalHeap<Integer> heap;
+    private Random random;
+
+    @Override
+    protected void setUp() {
+        model = new ArrayList<Integer>();
+        heap = new IntervalHeap<Integer>();
+        random = new Random(20131);
+    }
+
+    private Integer randomKey() {
+        return Integer.valueOf(random.nextInt(1000));
+    }
+
+    private void modelAdd(Integer key) {
+        int pos = Collections.binarySearch(model, key);
+        model.add(pos < 0 ? -pos - 1 : pos, key);
+    }
+
+    private List<Integer> randomKeys(int count) {
+        List<Integer> keys = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; ++i)
+            keys.add(randomKey());
+        return keys;
+    }
+
+    /* Checks the cheap queries after every step. */
+    private void checkEnds() {
+        assertEquals(model.size(), heap.size());
+        assertEquals(model.isEmpty(), heap.isEmpty());
+        if (!model.isEmpty()) {
+            assertEquals(model.get(0), heap.min());
+            assertEquals(model.get(model.size() - 1), heap.max());
+        }
+    }
+
+    /* Checks the whole contents, through every kind of view. */
+    private void checkContents() {
+        checkEnds();
+        assertEquals(model, sorted(heap.iterator()));
+        assertEquals(model, Arrays.asList(heap.toSortedArray()));
+        assertEquals(model, list(heap.sortedIterator()));
+
+        List<Integer> descending = new ArrayList<Integer>(model);
+        Collections.reverse(descending);
+        assertEquals(descending, list(heap.descendingIterator()));
+
+        List<Object> array = new ArrayList<Object>(Arrays.asList(heap.toArray()));
+        Collections.sort(array, new Comparator<Object>() {
+            @Override
+            public int compare(Object one, Object two) {
+                return ((Integer) one).compareTo((Integer) two);
+            }
+        });
+        assertEquals(model, array);
+        assertEquals(model.size(), heap.stream().count());
+        assertEquals(model.size(), heap.parallelStream().count());
+    }
+
+    private static List<Integer> list(Iterator<Integer> it) {
+        List<Integer> result = new ArrayList<Integer>();
+        while (it.hasNext())
+            result.add(it.next());
+        return result;
+    }
+
+    private static List<Integer> sorted(Iterator<Integer> it) {
+        List<Integer> result = list(it);
+        Collections.sort(result);
+        return result;
+    }
+
+    private void fill(int count) {
+        for (int i = 0; i < count; ++i) {
+            Integer key = randomKey();
+            heap.add(key);
+            modelAdd(key);
+        }
+    }
+
+    public void testAddAndDequeueAgainstModel() {
+        for (int step = 0; step < 20000; ++step) {
+            int op = random.nextInt(6);
+            if (op < 3 || model.isEmpty()) {
+                Integer key = randomKey();
+                heap.add(key);
+                modelAdd(key);
+            } else if (op == 3) {
+                assertEquals(model.remove(0), heap.dequeueMin());
+            } else if (op == 4) {
+                assertEquals(model.remove(model.size() - 1), heap.dequeueMax());
+            } else {
+                Integer key = randomKey();
+                if (random.nextBoolean()) {
+                    assertEquals(model.remove(0), heap.replaceMin(key));
+                } else {
+                    assertEquals(model.remove(model.size() - 1), heap.replaceMax(key));
+                }
+                modelAdd(key);
+            }
+            checkEnds();
+            if (step % 500 == 0)
+                checkContents();
+        }
+        checkContents();
+        while (!model.isEmpty()) {
+            assertEquals(model.remove(0), heap.dequeueMin());
+            checkEnds();
+        }
+    }
+
+    public void testReplaceOnTinyHeaps() {
+        for (int size = 1; size <= 5; ++size) {
+            for (int trial = 0; trial < 200; ++trial) {
+                setUpHeap(size);
+                Integer key = randomKey();
+                if (random.nextBoolean())
+                    assertEquals(model.remove(0), heap.replaceMin(key));
+                else
+                    assertEquals(model.remove(model.size() - 1), heap.replaceMax(key));
+                modelAdd(key);
+                checkContents();
+            }
+        }
+    }
+
+    private void setUpHeap(int size) {
+        model = new ArrayList<Integer>();
+        heap = new IntervalHeap<Integer>();
+        fill(size);
+    }
+
+    public void testAddAllSmallAndLargeBatches() {
+        for (int round = 0; round < 50; ++round) {
+            /* Batches both smaller and larger than the heap, so both the
+             * one-at-a-time and the rebuild paths are taken.
+             */
+            List<Integer> batch = randomKeys(random.nextInt(Math.min(2 * heap.size(), 2000) + 3));
+            heap.addAll(batch);
+            for (Integer key : batch)
+                modelAdd(key);
+            checkContents();
+            int drop = model.size() / 2 + random.nextInt(model.size() / 2 + 1);
+            for (int i = 0; i < drop; ++i)
+                assertEquals(model.remove(0), heap.dequeueMin());
+        }
+    }
+
+    public void testConstructFromCollection() {
+        for (int size = 0; size < 40; ++size) {
+            List<Integer> keys = randomKeys(size);
+            heap = new IntervalHeap<Integer>(keys);
+            model = new ArrayList<Integer>(keys);
+            Collections.sort(model);
+            checkContents();
+        }
+    }
+
+    public void testAddAllRejectsNullWithoutChange() {
+        fill(10);
+        try {
+            heap.addAll(Arrays.asList(Integer.valueOf(1), null));
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        checkContents();
+    }
+
+    public void testBatchDequeueToCollection() {
+        for (int round = 0; round < 200; ++round) {
+            setUpHeap(random.nextInt(300));
+            int k = random.nextInt(model.size() + 5);
+            List<Integer> dest = new ArrayList<Integer>();
+            boolean fromMin = random.nextBoolean();
+            int removed = fromMin ? heap.dequeueMin(k, dest) : heap.dequeueMax(k, dest);
+
+            assertEquals(Math.min(k, model.size()), removed);
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int i = 0; i < removed; ++i)
+                expected.add(fromMin ? model.remove(0) : model.remove(model.size() - 1));
+            assertEquals(expected, dest);
+            checkContents();
+        }
+    }
+
+    public void testBatchDequeueToArray() {
+        for (int round = 0; round < 200; ++round) {
+            setUpHeap(random.nextInt(300));
+            int k = random.nextInt(model.size() + 1);
+            Integer[] dest = new Integer[k + 4];
+            boolean fromMin = random.nextBoolean();
+            int removed = fromMin ? heap.dequeueMin(k, dest, 2) : heap.dequeueMax(k, dest, 2);
+
+            assertEquals(k, removed);
+            assertNull(dest[0]);
+            assertNull(dest[k + 2]);
+            for (int i = 0; i < k; ++i)
+                assertEquals(fromMin ? model.remove(0) : model.remove(model.size() - 1), dest[i + 2]);
+            checkContents();
+        }
+    }
+
+    public void testBatchDequeueBadArguments() {
+        fill(10);
+        try {
+            heap.dequeueMin(-1, new ArrayList<Integer>());
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            heap.dequeueMax(5, new Integer[6], 2);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        checkContents();
+    }
+
+    public void testDrainTo() {
+        fill(500);
+        List<Integer> dest = new ArrayList<Integer>();
+        assertEquals(500, heap.drainTo(dest));
+        assertEquals(model, dest);
+        model.clear();
+        checkContents();
+        fill(20);
+        checkContents();
+    }
+
+    public void testMeldAgainstModel() {
+        for (int round = 0; round < 200; ++round) {
+            IntervalHeap<Integer> other = new IntervalHeap<Integer>();
+            List<Integer> keys = randomKeys(random.nextInt(Math.min(3 * heap.size(), 3000) + 10));
+            for (Integer key : keys) {
+                other.add(key);
+                modelAdd(key);
+            }
+            heap.meld(other);
+            assertTrue(other.isEmpty());
+            assertEquals(0, other.toArray().length);
+            checkContents();
+
+            /* The emptied heap is still usable. */
+            other.add(Integer.valueOf(7));
+            assertEquals(Integer.valueOf(7), other.min());
+
+            int drop = model.size() / 2 + random.nextInt(model.size() / 2 + 1);
+            for (int i = 0; i < drop; ++i)
+                assertEquals(model.remove(model.size() - 1), heap.dequeueMax());
+        }
+    }
+
+    public void testMeldWithDifferentOrdering() {
+        IntervalHeap<Integer> reversed = new IntervalHeap<Integer>(Collections.<Integer>reverseOrder());
+        for (Integer key : randomKeys(300)) {
+            reversed.add(key);
+            modelAdd(key);
+        }
+        fill(100);
+        heap.meld(reversed);
+        checkContents();
+    }
+
+    public void testMeldRankRange() {
+        for (int round = 0; round < 300; ++round) {
+            IntervalHeap<Integer> other = new IntervalHeap<Integer>();
+            List<Integer> otherModel = randomKeys(random.nextInt(200));
+            for (Integer key : otherModel)
+                other.add(key);
+            Collections.sort(otherModel);
+            fill(random.nextInt(100));
+
+            int from = random.nextInt(otherModel.size() + 1);
+            int to = from + random.nextInt(otherModel.size() - from + 1);
+            heap.meld(other, from, to);
+
+            List<Integer> moved = otherModel.subList(from, to);
+            for (Integer key : moved)
+                modelAdd(key);
+            moved.clear();
+            checkContents();
+            assertEquals(otherModel, Arrays.asList(other.toSortedArray()));
+            assertEquals(otherModel, list(other.sortedIterator()));
+            model.clear();
+            heap = new IntervalHeap<Integer>();
+        }
+    }
+
+    public void testMeldRejectsSelfAndBadRanks() {
+        fill(10);
+        try {
+            heap.meld(heap);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        IntervalHeap<Integer> other = new IntervalHeap<Integer>();
+        other.add(Integer.valueOf(1));
+        try {
+            heap.meld(other, 0, 2);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        checkContents();
+    }
+
+    public void testComparatorOrdering() {
+        heap = new IntervalHeap<Integer>(Collections.<Integer>reverseOrder());
+        List<Integer> keys = randomKeys(1000);
+        for (Integer key : keys)
+            heap.add(key);
+        Collections.sort(keys, Collections.<Integer>reverseOrder());
+        assertEquals(keys.get(0), heap.min());
+        assertEquals(keys, list(heap.sortedIterator()));
+        List<Integer> dest = new ArrayList<Integer>();
+        heap.dequeueMin(10, dest);
+        assertEquals(keys.subList(0, 10), dest);
+    }
+
+    public void testSortedIteratorStopsEarly() {
+        fill(1000);
+        Iterator<Integer> it = heap.sortedIterator();
+        for (int i = 0; i < 10; ++i)
+            assertEquals(model.get(i), it.next());
+        checkContents();
+    }
+
+    public void testEmptyHeap() {
+        checkContents();
+        try {
+            heap.min();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.dequeueMax();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            heap.replaceMin(Integer.valueOf(1));
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        assertFalse(heap.sortedIterator().hasNext());
+        assertEquals(0, heap.dequeueMin(3, new ArrayList<Integer>()));
+    }
+
+    public void testRejectsNull() {
+        try {
+            heap.add(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        fill(3);
+        try {
+            heap.replaceMax(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        checkContents();
+    }
+
+    public void testIteratorsAreFailFast() {
+        fill(50);
+        Iterator<Integer> it = heap.iterator();
+        Iterator<Integer> sorted = heap.sortedIterator();
+        it.next();
+        sorted.next();
+        heap.add(Integer.valueOf(3));
+        try {
+            it.next();
+            fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+        try {
+            sorted.next();
+            fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+        try {
+            heap.forEach(new Consumer<Integer>() {
+                @Override
+                public void accept(Integer key) {
+                    heap.add(key);
+                }
+            });
+            fail();
+        } catch (ConcurrentModificationException expected) {
+        }
+    }
+}
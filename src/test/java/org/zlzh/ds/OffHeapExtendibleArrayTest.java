@@ -0,0 +1,181 @@
+package org.zlzh.ds;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of OffHeapExtendibleArray against an ArrayList holding the same
+ * elements.  Most of the interest is at the sizes where a buffer is
+ * allocated, released or promoted.
+ */
+public class OffHeapExtendibleArrayTest extends TestCase {
+    /* The reference model. */
+    private List<Long> model;
+    private OffHeapExtendibleArray<Long> array;
+    private Random random;
+
+    @Override
+    protected void setUp() {
+        model = new ArrayList<Long>();
+        array = new OffHeapExtendibleArray<Long>(RecordCodec.LONG);
+        random = new Random(20132);
+    }
+
+    @Override
+    protected void tearDown() {
+        array.close();
+    }
+
+    private Long randomValue() {
+        return Long.valueOf(random.nextLong());
+    }
+
+    private void check() {
+        assertEquals(model.size(), array.size());
+        for (int i = 0; i < model.size(); ++i)
+            assertEquals(model.get(i), array.get(i));
+    }
+
+    private void append(int count) {
+        for (int i = 0; i < count; ++i) {
+            Long value = randomValue();
+            array.add(value);
+            model.add(value);
+        }
+    }
+
+    public void testAppendAndRemoveLast() {
+        for (int size = 1; size <= 300; ++size) {
+            append(1);
+            assertEquals(model.get(size - 1), array.get(size - 1));
+        }
+        check();
+        while (!model.isEmpty()) {
+            assertEquals(model.remove(model.size() - 1), array.remove(array.size() - 1));
+            assertEquals(model.size(), array.size());
+        }
+        check();
+    }
+
+    public void testOscillateAtEveryBoundary() {
+        for (int size = 1; size <= 129; ++size) {
+            append(1);
+            for (int round = 0; round < 3; ++round) {
+                // shrink past the boundary below, then grow back past it.
+                int drop = Math.min(model.size(), 1 + random.nextInt(3));
+                for (int i = 0; i < drop; ++i) {
+                    int index = random.nextInt(model.size());
+                    assertEquals(model.remove(index), array.remove(index));
+                }
+                check();
+                append(drop);
+                check();
+            }
+        }
+    }
+
+    public void testRemoveFromFrontAfterPromotion() {
+        append(64);
+        // the first remove promotes the old buffer, every later one works in it.
+        while (!model.isEmpty()) {
+            assertEquals(model.remove(0), array.remove(0));
+            check();
+        }
+        append(40);
+        check();
+    }
+
+    public void testRandomOperationsAgainstModel() {
+        for (int step = 0; step < 20000; ++step) {
+            int op = random.nextInt(8);
+            if (op < 3 || model.isEmpty()) {
+                append(1);
+            } else if (op < 5) {
+                int index = random.nextInt(model.size() + 1);
+                Long value = randomValue();
+                array.add(index, value);
+                model.add(index, value);
+            } else if (op < 7) {
+                int index = random.nextInt(model.size());
+                assertEquals(model.remove(index), array.remove(index));
+            } else {
+                int index = random.nextInt(model.size());
+                Long value = randomValue();
+                assertEquals(model.set(index, value), array.set(index, value));
+            }
+            if (step % 100 == 0)
+                check();
+        }
+        check();
+    }
+
+    public void testBadIndices() {
+        append(5);
+        try {
+            array.get(5);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.get(-1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.remove(5);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.add(7, Long.valueOf(1));
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        check();
+    }
+
+    public void testClearAndClose() {
+        append(100);
+        array.clear();
+        model.clear();
+        check();
+        append(33);
+        check();
+
+        array.close();
+        array.close();
+        try {
+            array.add(Long.valueOf(1));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            array.clear();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testRejectsBadWidth() {
+        try {
+            new OffHeapExtendibleArray<Long>(new RecordCodec<Long>() {
+                public int width() {
+                    return 0;
+                }
+
+                public void write(ByteBuffer buffer, int offset, Long value) {
+                }
+
+                public Long read(ByteBuffer buffer, int offset) {
+                    return null;
+                }
+            });
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
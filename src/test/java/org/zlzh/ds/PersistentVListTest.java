@@ -0,0 +1,229 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of PersistentVList.  Every version is kept alongside a list model
+ * of what it should hold, and versions are checked long after others have
+ * branched from the same parents, so that a slot claimed by one version
+ * showing up in another would be caught.
+ */
+public class PersistentVListTest extends TestCase {
+
+    /**
+     * Check get(), last(), the iterator and withoutLast() of a version
+     * against its model.
+     */
+    private static void check(List<Integer> model, PersistentVList<Integer> list) {
+        assertEquals(model.size(), list.size());
+        for (int i = 0; i < model.size(); ++i)
+            assertEquals("index " + i, model.get(i), list.get(i));
+        Iterator<Integer> it = list.iterator();
+        for (int i = 0; i < model.size(); ++i) {
+            assertTrue(it.hasNext());
+            assertEquals("index " + i, model.get(i), it.next());
+        }
+        assertFalse(it.hasNext());
+        if (!model.isEmpty()) {
+            assertEquals(model.get(model.size() - 1), list.last());
+            PersistentVList<Integer> shorter = list.withoutLast();
+            assertEquals(model.size() - 1, shorter.size());
+            for (int i = 0; i < shorter.size(); ++i)
+                assertEquals("index " + i, model.get(i), shorter.get(i));
+            assertEquals(model.subList(0, model.size() - 1), new ArrayList<Integer>(shorter));
+        }
+    }
+
+    private static List<Integer> plus(List<Integer> model, int elem) {
+        List<Integer> result = new ArrayList<Integer>(model);
+        result.add(Integer.valueOf(elem));
+        return result;
+    }
+
+    public void testAppendAndShrink() {
+        PersistentVList<Integer> list = PersistentVList.empty();
+        List<Integer> model = new ArrayList<Integer>();
+        List<PersistentVList<Integer>> versions = new ArrayList<PersistentVList<Integer>>();
+        for (int i = 0; i < 300; ++i) {
+            versions.add(list);
+            list = list.plus(Integer.valueOf(i));
+            model.add(Integer.valueOf(i));
+            check(model, list);
+        }
+        // every older version still holds its prefix.
+        for (int i = 0; i < versions.size(); ++i)
+            check(model.subList(0, i), versions.get(i));
+        while (!model.isEmpty()) {
+            list = list.withoutLast();
+            model.remove(model.size() - 1);
+            check(model, list);
+        }
+        assertSame(PersistentVList.empty(), list);
+    }
+
+    public void testSiblingsFromOneParent() {
+        // parents of every size up to 40: some end a full block, some do not.
+        PersistentVList<Integer> parent = PersistentVList.empty();
+        List<Integer> parentModel = new ArrayList<Integer>();
+        for (int size = 0; size <= 40; ++size) {
+            List<PersistentVList<Integer>> children = new ArrayList<PersistentVList<Integer>>();
+            for (int k = 0; k < 5; ++k)
+                children.add(parent.plus(Integer.valueOf(1000 + k)));
+            // grow each child a little, so later siblings write their own blocks.
+            List<PersistentVList<Integer>> grandchildren = new ArrayList<PersistentVList<Integer>>();
+            for (int k = 0; k < 5; ++k)
+                grandchildren.add(children.get(k).plus(Integer.valueOf(2000 + k)).plus(Integer.valueOf(3000 + k)));
+            for (int k = 0; k < 5; ++k) {
+                List<Integer> childModel = plus(parentModel, 1000 + k);
+                check(childModel, children.get(k));
+                check(plus(plus(childModel, 2000 + k), 3000 + k), grandchildren.get(k));
+            }
+            check(parentModel, parent);
+
+            parent = parent.plus(Integer.valueOf(size));
+            parentModel = plus(parentModel, size);
+        }
+    }
+
+    public void testBranchFromShortenedVersion() {
+        PersistentVList<Integer> list = PersistentVList.empty();
+        List<Integer> model = new ArrayList<Integer>();
+        for (int i = 0; i < 16; ++i) {
+            list = list.plus(Integer.valueOf(i));
+            model.add(Integer.valueOf(i));
+        }
+        // slot 15 is claimed, so appending to the 15-element version branches.
+        PersistentVList<Integer> shorter = list.withoutLast();
+        PersistentVList<Integer> branch = shorter.plus(Integer.valueOf(-1));
+        check(model, list);
+        check(plus(model.subList(0, 15), -1), branch);
+        check(model.subList(0, 15), shorter);
+    }
+
+    public void testRandomVersionTree() {
+        Random random = new Random(20137);
+        List<PersistentVList<Integer>> versions = new ArrayList<PersistentVList<Integer>>();
+        List<List<Integer>> models = new ArrayList<List<Integer>>();
+        versions.add(PersistentVList.<Integer>empty());
+        models.add(new ArrayList<Integer>());
+        for (int step = 0; step < 3000; ++step) {
+            // favour recent versions, so that some lists grow long.
+            int from = random.nextBoolean() ? 0 : Math.max(0, versions.size() - 5);
+            int pick = from + random.nextInt(versions.size() - from);
+            PersistentVList<Integer> version = versions.get(pick);
+            List<Integer> model = models.get(pick);
+            if (random.nextInt(5) == 0 && !model.isEmpty()) {
+                versions.add(version.withoutLast());
+                models.add(model.subList(0, model.size() - 1));
+            } else {
+                versions.add(version.plus(Integer.valueOf(step)));
+                models.add(plus(model, step));
+            }
+        }
+        for (int i = 0; i < versions.size(); ++i)
+            check(models.get(i), versions.get(i));
+    }
+
+    public void testConcurrentBranching() throws InterruptedException {
+        final int threads = 4;
+        final int rounds = 200;
+
+        // shared parents of several sizes, which every thread appends to.
+        final List<PersistentVList<Integer>> parents = new ArrayList<PersistentVList<Integer>>();
+        PersistentVList<Integer> list = PersistentVList.empty();
+        for (int i = 0; i < 64; ++i) {
+            parents.add(list);
+            list = list.plus(Integer.valueOf(i));
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<List<PersistentVList<Integer>>> results = new ArrayList<List<PersistentVList<Integer>>>();
+        final Throwable[] failure = new Throwable[1];
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; ++t) {
+            final int id = t;
+            final List<PersistentVList<Integer>> mine = new ArrayList<PersistentVList<Integer>>();
+            results.add(mine);
+            Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int round = 0; round < rounds; ++round) {
+                            PersistentVList<Integer> version = parents.get(round % parents.size());
+                            for (int k = 0; k < 8; ++k)
+                                version = version.plus(Integer.valueOf(id * 1000000 + round * 10 + k));
+                            mine.add(version);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join(60000);
+        synchronized (failure) {
+            if (failure[0] != null)
+                throw new AssertionError(failure[0]);
+        }
+
+        for (int t = 0; t < threads; ++t) {
+            List<PersistentVList<Integer>> mine = results.get(t);
+            assertEquals(rounds, mine.size());
+            for (int round = 0; round < rounds; ++round) {
+                int parentSize = round % parents.size();
+                List<Integer> model = new ArrayList<Integer>();
+                for (int i = 0; i < parentSize; ++i)
+                    model.add(Integer.valueOf(i));
+                for (int k = 0; k < 8; ++k)
+                    model.add(Integer.valueOf(t * 1000000 + round * 10 + k));
+                check(model, mine.get(round));
+            }
+        }
+        for (int i = 0; i < parents.size(); ++i) {
+            List<Integer> model = new ArrayList<Integer>();
+            for (int j = 0; j < i; ++j)
+                model.add(Integer.valueOf(j));
+            check(model, parents.get(i));
+        }
+    }
+
+    public void testEmptyList() {
+        PersistentVList<Integer> list = PersistentVList.empty();
+        assertTrue(list.isEmpty());
+        assertFalse(list.iterator().hasNext());
+        try {
+            list.withoutLast();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            list.last();
+            fail();
+        } catch (NoSuchElementException expected) {
+        }
+        try {
+            list.get(0);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            list.plus(Integer.valueOf(1)).iterator().remove();
+            fail();
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
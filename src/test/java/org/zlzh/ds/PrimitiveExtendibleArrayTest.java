@@ -0,0 +1,223 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of IntExtendibleArray, LongExtendibleArray and DoubleExtendibleArray
+ * against an ArrayList of longs.  The three classes are ports of one
+ * another, so each test runs on all of them through a small adapter.
+ */
+public class PrimitiveExtendibleArrayTest extends TestCase {
+    /**
+     * The operations common to the three arrays, on long values.
+     */
+    private interface Adapter {
+        void add(long value);
+        void add(int index, long value);
+        long get(int index);
+        long set(int index, long value);
+        long remove(int index);
+        int size();
+        void clear();
+        long[] toArray();
+        List<? extends Number> asList();
+    }
+
+    private static Adapter newInts() {
+        final IntExtendibleArray array = new IntExtendibleArray();
+        return new Adapter() {
+            public void add(long value) { array.add((int) value); }
+            public void add(int index, long value) { array.add(index, (int) value); }
+            public long get(int index) { return array.get(index); }
+            public long set(int index, long value) { return array.set(index, (int) value); }
+            public long remove(int index) { return array.remove(index); }
+            public int size() { return array.size(); }
+            public void clear() { array.clear(); }
+            public List<Integer> asList() { return array.asList(); }
+
+            public long[] toArray() {
+                int[] values = array.toArray();
+                long[] result = new long[values.length];
+                for (int i = 0; i < values.length; ++i)
+                    result[i] = values[i];
+                return result;
+            }
+        };
+    }
+
+    private static Adapter newLongs() {
+        final LongExtendibleArray array = new LongExtendibleArray();
+        return new Adapter() {
+            public void add(long value) { array.add(value); }
+            public void add(int index, long value) { array.add(index, value); }
+            public long get(int index) { return array.get(index); }
+            public long set(int index, long value) { return array.set(index, value); }
+            public long remove(int index) { return array.remove(index); }
+            public int size() { return array.size(); }
+            public void clear() { array.clear(); }
+            public long[] toArray() { return array.toArray(); }
+            public List<Long> asList() { return array.asList(); }
+        };
+    }
+
+    private static Adapter newDoubles() {
+        final DoubleExtendibleArray array = new DoubleExtendibleArray();
+        return new Adapter() {
+            public void add(long value) { array.add(value); }
+            public void add(int index, long value) { array.add(index, value); }
+            public long get(int index) { return (long) array.get(index); }
+            public long set(int index, long value) { return (long) array.set(index, value); }
+            public long remove(int index) { return (long) array.remove(index); }
+            public int size() { return array.size(); }
+            public void clear() { array.clear(); }
+            public List<Double> asList() { return array.asList(); }
+
+            public long[] toArray() {
+                double[] values = array.toArray();
+                long[] result = new long[values.length];
+                for (int i = 0; i < values.length; ++i)
+                    result[i] = (long) values[i];
+                return result;
+            }
+        };
+    }
+
+    private static Adapter[] newArrays() {
+        return new Adapter[] { newInts(), newLongs(), newDoubles() };
+    }
+
+    private static void check(List<Long> model, Adapter array) {
+        assertEquals(model.size(), array.size());
+        long[] values = array.toArray();
+        assertEquals(model.size(), values.length);
+        for (int i = 0; i < model.size(); ++i) {
+            assertEquals("index " + i, model.get(i).longValue(), array.get(i));
+            assertEquals("index " + i, model.get(i).longValue(), values[i]);
+        }
+    }
+
+    private static List<Long> fill(Adapter array, int size) {
+        List<Long> model = new ArrayList<Long>();
+        for (int i = 0; i < size; ++i) {
+            model.add(Long.valueOf(i));
+            array.add(i);
+        }
+        return model;
+    }
+
+    public void testInsertAtEveryPosition() {
+        for (int size = 0; size <= 70; ++size) {
+            for (int index = 0; index <= size; ++index) {
+                for (Adapter array : newArrays()) {
+                    List<Long> model = fill(array, size);
+                    model.add(index, Long.valueOf(-1));
+                    array.add(index, -1);
+                    check(model, array);
+                }
+            }
+        }
+    }
+
+    public void testRemoveAtEveryPosition() {
+        for (int size = 1; size <= 70; ++size) {
+            for (int index = 0; index < size; ++index) {
+                for (Adapter array : newArrays()) {
+                    List<Long> model = fill(array, size);
+                    assertEquals(model.remove(index).longValue(), array.remove(index));
+                    check(model, array);
+                }
+            }
+        }
+    }
+
+    public void testRandomOperationsAgainstModel() {
+        for (Adapter array : newArrays()) {
+            Random random = new Random(20134);
+            List<Long> model = new ArrayList<Long>();
+            for (int step = 0; step < 20000; ++step) {
+                int op = random.nextInt(8);
+                long value = random.nextInt(1 << 20);
+                if (op < 3 || model.isEmpty()) {
+                    model.add(Long.valueOf(value));
+                    array.add(value);
+                } else if (op < 5) {
+                    int index = random.nextInt(model.size() + 1);
+                    model.add(index, Long.valueOf(value));
+                    array.add(index, value);
+                } else if (op < 7) {
+                    int index = random.nextInt(model.size());
+                    assertEquals(model.remove(index).longValue(), array.remove(index));
+                } else {
+                    int index = random.nextInt(model.size());
+                    assertEquals(model.set(index, Long.valueOf(value)).longValue(), array.set(index, value));
+                }
+                if (step % 100 == 0)
+                    check(model, array);
+            }
+            check(model, array);
+            array.clear();
+            model.clear();
+            check(model, array);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testListViewWritesThrough() {
+        for (Adapter array : newArrays()) {
+            List<Long> model = fill(array, 40);
+            List<Number> view = (List<Number>) array.asList();
+            Number one = view.get(1);
+
+            // the view's values are boxed in the array's own type.
+            view.set(3, box(one, 300));
+            model.set(3, Long.valueOf(300));
+            view.add(0, box(one, -5));
+            model.add(0, Long.valueOf(-5));
+            view.add(view.size(), box(one, 99));
+            model.add(Long.valueOf(99));
+            assertEquals(20, view.remove(21).longValue());
+            model.remove(21);
+            check(model, array);
+
+            array.set(7, 1234);
+            assertEquals(1234, view.get(7).longValue());
+            assertEquals(model.size(), view.size());
+
+            view.clear();
+            assertEquals(0, array.size());
+        }
+    }
+
+    private static Number box(Number like, long value) {
+        if (like instanceof Integer)
+            return Integer.valueOf((int) value);
+        if (like instanceof Long)
+            return Long.valueOf(value);
+        return Double.valueOf(value);
+    }
+
+    public void testBadIndices() {
+        for (Adapter array : newArrays()) {
+            fill(array, 5);
+            try {
+                array.get(5);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                array.remove(-1);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+            try {
+                array.add(6, 0);
+                fail();
+            } catch (IndexOutOfBoundsException expected) {
+            }
+        }
+    }
+}
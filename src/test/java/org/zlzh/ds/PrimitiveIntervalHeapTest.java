@@ -0,0 +1,283 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of LongIntervalHeap and DoubleIntervalHeap against a sorted list of
+ * (key, payload) pairs.  The two classes are ports of one another, so each
+ * test runs on both through a small adapter.  Keys are drawn from a small
+ * range so that ties are common; among equal keys the heap may return any
+ * payload, but it must be one that was added with that key.
+ */
+public class PrimitiveIntervalHeapTest extends TestCase {
+    /**
+     * The operations common to the two heaps, on long keys.
+     */
+    private interface Adapter {
+        void add(long key);
+        void add(long key, long payload);
+        long min();
+        long max();
+        long minPayload();
+        long maxPayload();
+        long dequeueMin();
+        long dequeueMax();
+        int size();
+        boolean hasPayloads();
+        void clear();
+    }
+
+    private static Adapter newLongs(boolean withPayloads) {
+        final LongIntervalHeap heap = new LongIntervalHeap(withPayloads);
+        return new Adapter() {
+            public void add(long key) { heap.add(key); }
+            public void add(long key, long payload) { heap.add(key, payload); }
+            public long min() { return heap.min(); }
+            public long max() { return heap.max(); }
+            public long minPayload() { return heap.minPayload(); }
+            public long maxPayload() { return heap.maxPayload(); }
+            public long dequeueMin() { return heap.dequeueMin(); }
+            public long dequeueMax() { return heap.dequeueMax(); }
+            public int size() { return heap.size(); }
+            public boolean hasPayloads() { return heap.hasPayloads(); }
+            public void clear() { heap.clear(); }
+            public String toString() { return "LongIntervalHeap"; }
+        };
+    }
+
+    private static Adapter newDoubles(boolean withPayloads) {
+        final DoubleIntervalHeap heap = new DoubleIntervalHeap(withPayloads);
+        return new Adapter() {
+            public void add(long key) { heap.add(key); }
+            public void add(long key, long payload) { heap.add(key, payload); }
+            public long min() { return (long) heap.min(); }
+            public long max() { return (long) heap.max(); }
+            public long minPayload() { return heap.minPayload(); }
+            public long maxPayload() { return heap.maxPayload(); }
+            public long dequeueMin() { return (long) heap.dequeueMin(); }
+            public long dequeueMax() { return (long) heap.dequeueMax(); }
+            public int size() { return heap.size(); }
+            public boolean hasPayloads() { return heap.hasPayloads(); }
+            public void clear() { heap.clear(); }
+            public String toString() { return "DoubleIntervalHeap"; }
+        };
+    }
+
+    private static List<Adapter> newHeaps(boolean withPayloads) {
+        List<Adapter> result = new ArrayList<Adapter>();
+        result.add(newLongs(withPayloads));
+        result.add(newDoubles(withPayloads));
+        return result;
+    }
+
+    /* The model holds {key, payload} pairs sorted by key. */
+    private static void insert(List<long[]> model, long key, long payload) {
+        int index = model.size();
+        while (index > 0 && model.get(index - 1)[0] > key)
+            --index;
+        model.add(index, new long[] { key, payload });
+    }
+
+    /**
+     * Removes the pair with the given key and payload from the model,
+     * failing if there is none.
+     */
+    private static void removePair(List<long[]> model, long key, long payload) {
+        for (int i = 0; i < model.size(); ++i) {
+            if (model.get(i)[0] == key && model.get(i)[1] == payload) {
+                model.remove(i);
+                return;
+            }
+        }
+        fail("no pair (" + key + ", " + payload + ")");
+    }
+
+    private static void check(List<long[]> model, Adapter heap) {
+        assertEquals(heap.toString(), model.size(), heap.size());
+        if (model.isEmpty())
+            return;
+        long min = model.get(0)[0];
+        long max = model.get(model.size() - 1)[0];
+        assertEquals(heap.toString(), min, heap.min());
+        assertEquals(heap.toString(), max, heap.max());
+    }
+
+    private static void dequeueMin(List<long[]> model, Adapter heap) {
+        long payload = heap.hasPayloads() ? heap.minPayload() : 0;
+        long key = heap.dequeueMin();
+        assertEquals(heap.toString(), model.get(0)[0], key);
+        removePair(model, key, payload);
+    }
+
+    private static void dequeueMax(List<long[]> model, Adapter heap) {
+        long payload = heap.hasPayloads() ? heap.maxPayload() : 0;
+        long key = heap.dequeueMax();
+        assertEquals(heap.toString(), model.get(model.size() - 1)[0], key);
+        removePair(model, key, payload);
+    }
+
+    private static void runRandomOperations(Adapter heap, Random random, int steps, int range) {
+        List<long[]> model = new ArrayList<long[]>();
+        for (int step = 0; step < steps; ++step) {
+            int op = random.nextInt(10);
+            if (op < 5 || model.isEmpty()) {
+                long key = random.nextInt(range) - range / 2;
+                long payload = heap.hasPayloads() ? step : 0;
+                heap.add(key, payload);
+                insert(model, key, payload);
+            } else if (op < 8) {
+                dequeueMin(model, heap);
+            } else {
+                dequeueMax(model, heap);
+            }
+            check(model, heap);
+        }
+
+        // drain from alternating ends.
+        for (int i = 0; !model.isEmpty(); ++i) {
+            if (i % 2 == 0)
+                dequeueMin(model, heap);
+            else
+                dequeueMax(model, heap);
+            check(model, heap);
+        }
+    }
+
+    public void testRandomOperationsWithPayloads() {
+        Random random = new Random(20140);
+        for (int round = 0; round < 10; ++round) {
+            for (Adapter heap : newHeaps(true))
+                runRandomOperations(heap, random, 3000, round % 2 == 0 ? 10 : 1000000);
+        }
+    }
+
+    public void testRandomOperationsWithoutPayloads() {
+        Random random = new Random(20141);
+        for (int round = 0; round < 10; ++round) {
+            for (Adapter heap : newHeaps(false))
+                runRandomOperations(heap, random, 3000, round % 2 == 0 ? 10 : 1000000);
+        }
+    }
+
+    public void testDequeueOrder() {
+        for (Adapter heap : newHeaps(true)) {
+            // every key once, in a scrambled order, with payload -key.
+            for (int i = 0; i < 1000; ++i) {
+                long key = (i * 389) % 1000;
+                heap.add(key, -key);
+            }
+            for (int i = 0; i < 500; ++i) {
+                assertEquals(heap.toString(), -i, heap.minPayload());
+                assertEquals(heap.toString(), i, heap.dequeueMin());
+                assertEquals(heap.toString(), -(999 - i), heap.maxPayload());
+                assertEquals(heap.toString(), 999 - i, heap.dequeueMax());
+            }
+            assertEquals(heap.toString(), 0, heap.size());
+
+            // clear() forgets everything, and the heap is usable afterwards.
+            heap.add(5, 50);
+            heap.add(3, 30);
+            heap.clear();
+            assertEquals(heap.toString(), 0, heap.size());
+            heap.add(7, 70);
+            assertEquals(heap.toString(), 70, heap.minPayload());
+            assertEquals(heap.toString(), 70, heap.maxPayload());
+        }
+    }
+
+    public void testPayloadsDefaultToZero() {
+        for (Adapter heap : newHeaps(true)) {
+            heap.add(4);
+            heap.add(9, 90);
+            assertEquals(heap.toString(), 0, heap.minPayload());
+            assertEquals(heap.toString(), 90, heap.maxPayload());
+        }
+    }
+
+    public void testNonzeroPayloadWithoutPayloads() {
+        for (Adapter heap : newHeaps(false)) {
+            assertFalse(heap.toString(), heap.hasPayloads());
+            heap.add(1, 0);
+            try {
+                heap.add(2, 5);
+                fail(heap.toString());
+            } catch (IllegalStateException expected) {
+            }
+            // the rejected key was not added.
+            assertEquals(heap.toString(), 1, heap.size());
+            assertEquals(heap.toString(), 1, heap.max());
+            try {
+                heap.minPayload();
+                fail(heap.toString());
+            } catch (IllegalStateException expected) {
+            }
+            try {
+                heap.maxPayload();
+                fail(heap.toString());
+            } catch (IllegalStateException expected) {
+            }
+        }
+    }
+
+    public void testDoubleHeapRejectsNaN() {
+        DoubleIntervalHeap heap = new DoubleIntervalHeap(true);
+        heap.add(1.5, 1);
+        try {
+            heap.add(Double.NaN);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            heap.add(Double.NaN, 2);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(1, heap.size());
+
+        // the infinities are ordinary keys.
+        heap.add(Double.POSITIVE_INFINITY, 3);
+        heap.add(Double.NEGATIVE_INFINITY, 4);
+        heap.add(-2.25, 5);
+        assertEquals(Double.NEGATIVE_INFINITY, heap.min(), 0.0);
+        assertEquals(4, heap.minPayload());
+        assertEquals(Double.POSITIVE_INFINITY, heap.max(), 0.0);
+        assertEquals(3, heap.maxPayload());
+        assertEquals(Double.NEGATIVE_INFINITY, heap.dequeueMin(), 0.0);
+        assertEquals(5, heap.minPayload());
+        assertEquals(-2.25, heap.dequeueMin(), 0.0);
+        assertEquals(1, heap.minPayload());
+        assertEquals(1.5, heap.dequeueMin(), 0.0);
+        assertEquals(Double.POSITIVE_INFINITY, heap.dequeueMin(), 0.0);
+        assertTrue(heap.isEmpty());
+    }
+
+    public void testEmptyHeap() {
+        for (Adapter heap : newHeaps(true)) {
+            try {
+                heap.min();
+                fail(heap.toString());
+            } catch (NoSuchElementException expected) {
+            }
+            try {
+                heap.maxPayload();
+                fail(heap.toString());
+            } catch (NoSuchElementException expected) {
+            }
+            try {
+                heap.dequeueMin();
+                fail(heap.toString());
+            } catch (NoSuchElementException expected) {
+            }
+            try {
+                heap.dequeueMax();
+                fail(heap.toString());
+            } catch (NoSuchElementException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package org.zlzh.ds;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of SegmentedArray against an ArrayList holding the same elements.
+ * Chunks are kept tiny so that insertions and removals cross many chunk
+ * boundaries, and the chunk directory is inspected to see that chunks are
+ * handed back as the list shrinks.
+ */
+public class SegmentedArrayTest extends TestCase {
+    /* The reference model. */
+    private List<Integer> model;
+    private SegmentedArray<Integer> array;
+    private int chunkBits;
+    private Random random;
+
+    @Override
+    protected void setUp() {
+        random = new Random(20139);
+    }
+
+    /** Start over, empty, with chunks of 2^bits elements. */
+    private void start(int bits) {
+        chunkBits = bits;
+        model = new ArrayList<Integer>();
+        array = new SegmentedArray<Integer>(bits);
+    }
+
+    /** Start over with the given number of appended elements. */
+    private void fill(int size) {
+        start(chunkBits);
+        for (int i = 0; i < size; ++i) {
+            model.add(Integer.valueOf(i));
+            array.add(Integer.valueOf(i));
+        }
+    }
+
+    private static Object[][] chunks(SegmentedArray<?> array) throws Exception {
+        Field field = SegmentedArray.class.getDeclaredField("mChunks");
+        field.setAccessible(true);
+        return (Object[][]) field.get(array);
+    }
+
+    private void check() throws Exception {
+        assertEquals(model.size(), array.size());
+        assertEquals(model.size(), array.longSize());
+        for (int i = 0; i < model.size(); ++i) {
+            assertEquals("index " + i, model.get(i), array.get(i));
+            assertEquals("index " + i, model.get(i), array.get((long) i));
+        }
+        assertEquals(model, new ArrayList<Integer>(array));
+
+        // past the chunk taking the next add, at most one spare is kept.
+        Object[][] chunks = chunks(array);
+        int next = model.size() >>> chunkBits;
+        for (int chunk = next + 2; chunk < chunks.length; ++chunk)
+            assertNull("chunk " + chunk + " at size " + model.size(), chunks[chunk]);
+        for (int chunk = 0; chunk < next; ++chunk)
+            assertNotNull("chunk " + chunk + " at size " + model.size(), chunks[chunk]);
+    }
+
+    public void testInsertAtEveryPosition() throws Exception {
+        for (int bits = 0; bits <= 3; ++bits) {
+            start(bits);
+            for (int size = 0; size <= 40; ++size) {
+                for (int index = 0; index <= size; ++index) {
+                    fill(size);
+                    model.add(index, Integer.valueOf(-1));
+                    array.add(index, Integer.valueOf(-1));
+                    check();
+                    fill(size);
+                    model.add(index, Integer.valueOf(-1));
+                    array.add((long) index, Integer.valueOf(-1));
+                    check();
+                }
+            }
+        }
+    }
+
+    public void testRemoveAtEveryPosition() throws Exception {
+        for (int bits = 0; bits <= 3; ++bits) {
+            start(bits);
+            for (int size = 1; size <= 40; ++size) {
+                for (int index = 0; index < size; ++index) {
+                    fill(size);
+                    assertEquals(model.remove(index), array.remove(index));
+                    check();
+                    fill(size);
+                    assertEquals(model.remove(index), array.remove((long) index));
+                    check();
+                }
+            }
+        }
+    }
+
+    public void testSetWithLongIndices() throws Exception {
+        start(2);
+        fill(50);
+        for (int i = 0; i < model.size(); ++i) {
+            Integer value = Integer.valueOf(-i);
+            if (i % 2 == 0)
+                assertEquals(model.set(i, value), array.set((long) i, value));
+            else
+                assertEquals(model.set(i, value), array.set(i, value));
+        }
+        check();
+    }
+
+    public void testShrinkingReleasesChunks() throws Exception {
+        start(2);
+        fill(200);
+        int allocated = 0;
+        for (Object[] chunk : chunks(array)) {
+            if (chunk != null)
+                ++allocated;
+        }
+        assertEquals(50, allocated);
+
+        // from the end, then from the middle, checking the directory each step.
+        while (model.size() > 100) {
+            assertEquals(model.remove(model.size() - 1), array.removeLast());
+            check();
+        }
+        while (!model.isEmpty()) {
+            int index = model.size() / 2;
+            assertEquals(model.remove(index), array.remove(index));
+            check();
+        }
+
+        // a single add at a boundary reuses the spare chunk.
+        fill(8);
+        array.add(Integer.valueOf(8));
+        array.removeLast();
+        Object[] spare = chunks(array)[2];
+        assertNotNull(spare);
+        array.add(Integer.valueOf(8));
+        model.add(Integer.valueOf(8));
+        assertSame(spare, chunks(array)[2]);
+        check();
+
+        array.clear();
+        model.clear();
+        check();
+        for (Object[] chunk : chunks(array))
+            assertNull(chunk);
+    }
+
+    public void testRandomOperationsAgainstModel() throws Exception {
+        for (int bits = 0; bits <= 4; bits += 2) {
+            start(bits);
+            for (int step = 0; step < 10000; ++step) {
+                int op = random.nextInt(10);
+                if (op < 4 || model.isEmpty()) {
+                    Integer value = Integer.valueOf(random.nextInt());
+                    model.add(value);
+                    array.add(value);
+                } else if (op < 6) {
+                    int index = random.nextInt(model.size() + 1);
+                    Integer value = Integer.valueOf(random.nextInt());
+                    model.add(index, value);
+                    array.add((long) index, value);
+                } else if (op < 8) {
+                    int index = random.nextInt(model.size());
+                    assertEquals(model.remove(index), array.remove((long) index));
+                } else if (op < 9) {
+                    assertEquals(model.remove(model.size() - 1), array.removeLast());
+                } else {
+                    int index = random.nextInt(model.size());
+                    Integer value = Integer.valueOf(random.nextInt());
+                    assertEquals(model.set(index, value), array.set((long) index, value));
+                }
+                if (step % 100 == 0)
+                    check();
+            }
+            check();
+        }
+    }
+
+    public void testSizeIsCapped() throws Exception {
+        // a list that large will not fit here, so fake its size.
+        start(0);
+        fill(3);
+        Field field = SegmentedArray.class.getDeclaredField("mSize");
+        field.setAccessible(true);
+        long huge = Integer.MAX_VALUE + 5L;
+        field.setLong(array, huge);
+        assertEquals(Integer.MAX_VALUE, array.size());
+        assertEquals(huge, array.longSize());
+        assertFalse(array.isEmpty());
+        field.setLong(array, Integer.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, array.size());
+        field.setLong(array, 3);
+        assertEquals(3, array.size());
+        check();
+    }
+
+    public void testBadIndices() throws Exception {
+        start(1);
+        fill(5);
+        try {
+            array.get(5L);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.get(-1L);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.set(Integer.MAX_VALUE + 1L, Integer.valueOf(0));
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.remove(5L);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            array.add(6L, Integer.valueOf(0));
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        check();
+
+        fill(0);
+        try {
+            array.removeLast();
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            new SegmentedArray<Integer>(31);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new SegmentedArray<Integer>(-1);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.zlzh.ds;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of VList against an ArrayList holding the same elements.  Sizes
+ * are chosen around the powers of two where cells begin and end, since
+ * that is where the directory arithmetic and the bulk moves can go wrong.
+ */
+public class VListTest extends TestCase {
+    /* The reference model. */
+    private List<Integer> model;
+    private VList<Integer> list;
+    private Random random;
+
+    @Override
+    protected void setUp() {
+        model = new ArrayList<Integer>();
+        list = new VList<Integer>();
+        random = new Random(20138);
+    }
+
+    private void check() {
+        assertEquals(model.size(), list.size());
+        for (int i = 0; i < model.size(); ++i)
+            assertEquals("index " + i, model.get(i), list.get(i));
+        assertEquals(model, new ArrayList<Integer>(list));
+        final List<Integer> seen = new ArrayList<Integer>();
+        list.forEach(new Consumer<Integer>() {
+            public void accept(Integer elem) {
+                seen.add(elem);
+            }
+        });
+        assertEquals(model, seen);
+    }
+
+    /** Start over with the given number of appended elements. */
+    private void fill(int size) {
+        model = new ArrayList<Integer>();
+        list = new VList<Integer>();
+        for (int i = 0; i < size; ++i) {
+            model.add(Integer.valueOf(i));
+            list.add(Integer.valueOf(i));
+        }
+    }
+
+    public void testGetAndSetAcrossCells() {
+        for (int size = 1; size <= 4100; ++size) {
+            model.add(Integer.valueOf(size));
+            list.add(Integer.valueOf(size));
+            // the first and last positions of the newest cell.
+            int start = Integer.highestOneBit(size) - 1;
+            assertEquals(model.get(start), list.get(start));
+            assertEquals(model.get(size - 1), list.get(size - 1));
+        }
+        check();
+        for (int i = 0; i < model.size(); i += 1 + random.nextInt(7)) {
+            Integer value = Integer.valueOf(-i);
+            assertEquals(model.set(i, value), list.set(i, value));
+        }
+        check();
+        try {
+            list.get(model.size());
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        try {
+            list.set(-1, Integer.valueOf(0));
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    public void testRemoveAtEveryPosition() {
+        for (int size = 1; size <= 40; ++size) {
+            for (int index = 0; index < size; ++index) {
+                fill(size);
+                assertEquals(model.remove(index), list.remove(index));
+                check();
+                // the dropped cells must be recreated on the way back up.
+                for (int i = 0; i < 5; ++i) {
+                    model.add(Integer.valueOf(-i));
+                    list.add(Integer.valueOf(-i));
+                }
+                check();
+            }
+        }
+    }
+
+    public void testRemoveRange() {
+        for (int size = 0; size <= 40; ++size) {
+            for (int from = 0; from <= size; ++from) {
+                for (int to = from; to <= size; to += 1 + (to % 3)) {
+                    fill(size);
+                    model.subList(from, to).clear();
+                    list.subList(from, to).clear();
+                    check();
+                    model.add(Integer.valueOf(-1));
+                    list.add(Integer.valueOf(-1));
+                    check();
+                }
+            }
+        }
+    }
+
+    public void testRemoveIf() {
+        for (int size = 0; size <= 300; size += 1 + size / 8) {
+            for (int modulus = 1; modulus <= 4; ++modulus) {
+                fill(size);
+                final int m = modulus;
+                Predicate<Integer> filter = new Predicate<Integer>() {
+                    public boolean test(Integer elem) {
+                        return elem.intValue() % m == 0;
+                    }
+                };
+                assertEquals(model.removeIf(filter), list.removeIf(filter));
+                check();
+            }
+        }
+
+        fill(100);
+        Predicate<Integer> none = new Predicate<Integer>() {
+            public boolean test(Integer elem) {
+                return elem.intValue() < 0;
+            }
+        };
+        assertFalse(list.removeIf(none));
+        check();
+    }
+
+    public void testRemoveIfWithThrowingPredicate() {
+        for (final int failAt : new int[] { 0, 1, 7, 8, 63, 64, 99 }) {
+            fill(100);
+            Predicate<Integer> filter = new Predicate<Integer>() {
+                public boolean test(Integer elem) {
+                    if (elem.intValue() == failAt)
+                        throw new IllegalStateException("boom");
+                    return elem.intValue() % 3 == 0;
+                }
+            };
+            try {
+                list.removeIf(filter);
+                fail();
+            } catch (IllegalStateException expected) {
+            }
+
+            // removals before the failure stick; the rest is kept.
+            List<Integer> expected = new ArrayList<Integer>();
+            for (Integer elem : model) {
+                if (elem.intValue() >= failAt || elem.intValue() % 3 != 0)
+                    expected.add(elem);
+            }
+            model = expected;
+            check();
+            model.add(Integer.valueOf(-1));
+            list.add(Integer.valueOf(-1));
+            check();
+        }
+    }
+
+    public void testClear() {
+        fill(1000);
+        list.clear();
+        model.clear();
+        check();
+        for (int i = 0; i < 70; ++i) {
+            model.add(Integer.valueOf(i));
+            list.add(Integer.valueOf(i));
+        }
+        check();
+    }
+
+    public void testIteratorRemove() {
+        fill(200);
+        Iterator<Integer> it = list.iterator();
+        Iterator<Integer> expected = model.iterator();
+        while (expected.hasNext()) {
+            assertTrue(it.hasNext());
+            Integer elem = it.next();
+            assertEquals(expected.next(), elem);
+            if (elem.intValue() % 5 != 1) {
+                it.remove();
+                expected.remove();
+            }
+        }
+        assertFalse(it.hasNext());
+        check();
+    }
+
+    public void testRandomOperationsAgainstModel() {
+        for (int step = 0; step < 20000; ++step) {
+            int op = random.nextInt(10);
+            if (op < 5 || model.isEmpty()) {
+                Integer value = Integer.valueOf(random.nextInt());
+                model.add(value);
+                list.add(value);
+            } else if (op < 8) {
+                int index = random.nextInt(model.size());
+                assertEquals(model.remove(index), list.remove(index));
+            } else if (op < 9) {
+                int index = random.nextInt(model.size());
+                Integer value = Integer.valueOf(random.nextInt());
+                assertEquals(model.set(index, value), list.set(index, value));
+            } else {
+                int from = random.nextInt(model.size());
+                int to = from + random.nextInt(Math.min(20, model.size() - from) + 1);
+                model.subList(from, to).clear();
+                list.subList(from, to).clear();
+            }
+            if (step % 100 == 0)
+                check();
+        }
+        check();
+    }
+
+    /**
+     * Split every piece until it refuses, checking the first split of each
+     * range, then drain the pieces in order.
+     */
+    private static void splitFully(Spliterator<Integer> split, int lo, int hi, final List<Integer> out) {
+        assertEquals(hi - lo, split.estimateSize());
+        Spliterator<Integer> prefix = split.trySplit();
+        if (prefix == null) {
+            assertTrue("range " + lo + ".." + hi, hi - lo < 2);
+            split.forEachRemaining(new Consumer<Integer>() {
+                public void accept(Integer elem) {
+                    out.add(elem);
+                }
+            });
+            return;
+        }
+
+        // at the start of the cell holding the last position, unless that
+        // is the start of the range; then in the middle.
+        int mid = Integer.highestOneBit(hi) - 1;
+        if (mid <= lo)
+            mid = (lo + hi) >>> 1;
+        assertEquals(mid - lo, prefix.estimateSize());
+        assertEquals(hi - mid, split.estimateSize());
+        splitFully(prefix, lo, mid, out);
+        splitFully(split, mid, hi, out);
+    }
+
+    public void testSpliteratorSplitsAtCells() {
+        for (int size = 0; size <= 300; size += 1 + size / 16) {
+            fill(size);
+            Spliterator<Integer> split = list.spliterator();
+            assertTrue(split.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+            List<Integer> out = new ArrayList<Integer>();
+            splitFully(split, 0, size, out);
+            assertEquals(model, out);
+        }
+
+        // the suffix of the first split is exactly the newest cell.
+        fill(100);
+        Spliterator<Integer> suffix = list.spliterator();
+        Spliterator<Integer> prefix = suffix.trySplit();
+        assertEquals(63, prefix.estimateSize());
+        assertEquals(37, suffix.estimateSize());
+
+        // tryAdvance walks the same order.
+        final List<Integer> out = new ArrayList<Integer>();
+        Consumer<Integer> collect = new Consumer<Integer>() {
+            public void accept(Integer elem) {
+                out.add(elem);
+            }
+        };
+        Spliterator<Integer> split = list.spliterator();
+        while (split.tryAdvance(collect))
+            ;
+        assertEquals(model, out);
+    }
+
+    public void testParallelStream() {
+        fill(100000);
+        assertEquals(model, list.parallelStream().collect(Collectors.<Integer>toList()));
+    }
+}
@@ -0,0 +1,128 @@
+package org.zlzh.ds.tree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of CompactTree: every traversal must give the same order as the
+ * matching Tree iterator, with and without skips, from the root or from
+ * any node, and toTree() must copy just the subtree asked for.
+ */
+public class CompactTreeTest extends TestCase {
+
+	/**
+	 * A random tree whose nodes hold their own indices.
+	 */
+	private static CompactTree<Integer> randomTree(Random random, int size) {
+		final CompactTree<Integer> tree = new CompactTree<Integer>(Integer.valueOf(0));
+		for (int i = 1; i < size; ++i) {
+			// favour recent nodes now and then, to grow tall branches.
+			final int from = random.nextBoolean() ? 0 : Math.max(0, i - 3);
+			tree.addChild(from + random.nextInt(i - from), Integer.valueOf(i));
+		}
+		return tree;
+	}
+
+	/**
+	 * Run both iterators side by side, skipping at the same random points.
+	 */
+	private static void checkOrder(CompactTree<Integer> tree, int node, Tree.Traversal traversal,
+			Random random, boolean skips) {
+		final TraversalIterator<Integer> expected = tree.toTree(node).iterator(traversal);
+		final CompactTree.NodeIterator actual = tree.iterator(node, traversal);
+		int i = 0;
+		while (expected.hasNext()) {
+			assertTrue(traversal + " node " + i, actual.hasNext());
+			assertEquals(traversal + " node " + i, expected.next().getData().intValue(), actual.nextInt());
+			if (skips && random.nextInt(4) == 0 && expected.hasNext()) {
+				expected.skip();
+				actual.skip();
+			}
+			++i;
+		}
+		assertFalse(traversal.toString(), actual.hasNext());
+		try {
+			actual.nextInt();
+			fail();
+		} catch (NoSuchElementException expectedException) {
+		}
+	}
+
+	public void testOrdersMatchTree() {
+		final Random random = new Random(2013);
+		for (int round = 0; round < 50; ++round) {
+			final CompactTree<Integer> tree = randomTree(random, 1 + random.nextInt(300));
+			final int node = random.nextInt(tree.size());
+			for (Tree.Traversal traversal : Tree.Traversal.values()) {
+				checkOrder(tree, 0, traversal, random, false);
+				checkOrder(tree, node, traversal, random, false);
+			}
+		}
+	}
+
+	public void testSkipsMatchTree() {
+		final Random random = new Random(6);
+		for (int round = 0; round < 50; ++round) {
+			final CompactTree<Integer> tree = randomTree(random, 1 + random.nextInt(300));
+			for (Tree.Traversal traversal : Tree.Traversal.values())
+				checkOrder(tree, random.nextInt(tree.size()), traversal, random, true);
+		}
+	}
+
+	public void testTallAndWideTrees() {
+		final CompactTree<Integer> chain = new CompactTree<Integer>(Integer.valueOf(0));
+		for (int i = 1; i < 20000; ++i)
+			chain.addChild(i - 1, Integer.valueOf(i));
+		final CompactTree<Integer> star = new CompactTree<Integer>(Integer.valueOf(0));
+		for (int i = 1; i < 20000; ++i)
+			star.addChild(0, Integer.valueOf(i));
+		final Random random = new Random(1);
+		for (Tree.Traversal traversal : Tree.Traversal.values()) {
+			checkOrder(star, 0, traversal, random, false);
+			checkOrder(chain, 19000, traversal, random, false);
+		}
+
+		// a reversed breadth-first pass over a chain keeps a few levels only.
+		@SuppressWarnings("unchecked")
+		final CompactTree<Integer>.ReverseBreadthFirst it =
+				(CompactTree<Integer>.ReverseBreadthFirst) chain.iterator(Tree.Traversal.REVERSE_BREADTH_FIRST);
+		int peak = 0;
+		for (int expected = chain.size() - 1; expected >= 0; --expected) {
+			assertEquals(expected, it.nextInt());
+			assertTrue(it.storedNodes() <= it.checkpointBudget());
+			peak = Math.max(peak, it.storedNodes());
+		}
+		assertFalse(it.hasNext());
+		assertTrue("peak " + peak, peak <= 40);
+	}
+
+	public void testToTreeCopiesTheSubtree() {
+		final Random random = new Random(77);
+		final CompactTree<Integer> tree = randomTree(random, 500);
+		for (int round = 0; round < 50; ++round) {
+			final int node = random.nextInt(tree.size());
+			final Tree<Integer> copy = tree.toTree(node);
+			assertTrue(copy.isRoot());
+			assertEquals(tree.numLeaves(node), copy.numLeaves());
+			assertEquals(tree.maxDepth(node), copy.maxDepth());
+
+			// walk both in depth-first order, comparing children.
+			final List<Integer> nodes = new ArrayList<Integer>();
+			for (CompactTree.NodeIterator it = tree.iterator(node, Tree.Traversal.DEPTH_FIRST); it.hasNext();)
+				nodes.add(Integer.valueOf(it.nextInt()));
+			int i = 0;
+			for (Iterator<Tree<Integer>> it = copy.iterator(Tree.Traversal.DEPTH_FIRST); it.hasNext(); ++i) {
+				final Tree<Integer> copied = it.next();
+				final int n = nodes.get(i).intValue();
+				assertEquals(tree.getData(n), copied.getData());
+				assertEquals(tree.numChildren(n), copied.numChildren());
+			}
+			assertEquals(nodes.size(), i);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package org.zlzh.ds.tree;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of ParallelTraversal against the sequential Tree methods, on a
+ * pool of several workers, for bushy trees and long chains, with and
+ * without metadata.
+ */
+public class ParallelTraversalTest extends TestCase {
+
+	private ForkJoinPool pool;
+	private ParallelTraversal traversal;
+
+	@Override
+	protected void setUp() {
+		pool = new ForkJoinPool(4);
+		traversal = new ParallelTraversal(pool);
+	}
+
+	@Override
+	protected void tearDown() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * A random tree of the given size whose nodes hold small numbers, so
+	 * that data repeats.
+	 */
+	private static Tree<Integer> randomTree(Random random, int size) {
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>(size);
+		nodes.add(new Tree<Integer>(Integer.valueOf(0)));
+		for (int i = 1; i < size; ++i) {
+			// favour recent nodes now and then, to grow tall branches.
+			final int from = random.nextBoolean() ? 0 : Math.max(0, i - 3);
+			final Tree<Integer> parent = nodes.get(from + random.nextInt(i - from));
+			nodes.add(parent.addChild(Integer.valueOf(i % 13)));
+		}
+		return nodes.get(0);
+	}
+
+	/** A chain of single children, with a few leaves hanging off the end. */
+	private static Tree<Integer> chain(int length) {
+		final Tree<Integer> root = new Tree<Integer>(Integer.valueOf(0));
+		Tree<Integer> node = root;
+		for (int i = 1; i < length; ++i)
+			node = node.addChild(Integer.valueOf(i % 13));
+		for (int i = 0; i < 3; ++i)
+			node.addChild(Integer.valueOf(-1));
+		return root;
+	}
+
+	private static List<Tree<Integer>> depthFirst(Tree<Integer> root) {
+		final List<Tree<Integer>> result = new ArrayList<Tree<Integer>>();
+		for (Iterator<Tree<Integer>> it = root.depthFirstIterator(); it.hasNext();)
+			result.add(it.next());
+		return result;
+	}
+
+	private static void assertSameNodes(List<Tree<Integer>> expected, List<Tree<Integer>> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i)
+			assertSame("node " + i, expected.get(i), actual.get(i));
+	}
+
+	/**
+	 * Run every operation on the tree and check it against the sequential
+	 * methods; then again with metadata.
+	 */
+	private void checkAll(Tree<Integer> root) {
+		checkOperations(root);
+		root.enableMetadata();
+		checkOperations(root);
+		root.disableMetadata();
+	}
+
+	private void checkOperations(Tree<Integer> root) {
+		final List<Tree<Integer>> expected = depthFirst(root);
+
+		// forEach: every node exactly once.
+		final Map<Tree<Integer>, Integer> seen = new IdentityHashMap<Tree<Integer>, Integer>();
+		traversal.forEach(root, new Consumer<Tree<Integer>>() {
+			public void accept(Tree<Integer> node) {
+				synchronized (seen) {
+					assertNull(seen.put(node, Integer.valueOf(1)));
+				}
+			}
+		});
+		assertEquals(expected.size(), seen.size());
+		for (Tree<Integer> node : expected)
+			assertTrue(seen.containsKey(node));
+
+		// reduce: a sum, and a count.
+		long sum = 0;
+		for (Tree<Integer> node : expected)
+			sum += node.getData().intValue();
+		assertEquals(Long.valueOf(sum), traversal.reduce(root, Long.valueOf(0),
+				new BiFunction<Long, Tree<Integer>, Long>() {
+					public Long apply(Long partial, Tree<Integer> node) {
+						return Long.valueOf(partial.longValue() + node.getData().intValue());
+					}
+				}, new BinaryOperator<Long>() {
+					public Long apply(Long left, Long right) {
+						return Long.valueOf(left.longValue() + right.longValue());
+					}
+				}));
+
+		// collect: depth-first order.
+		assertSameNodes(expected, traversal.collect(root, Collectors.<Tree<Integer>>toList()));
+
+		assertEquals(root.maxDepth(), traversal.maxDepth(root));
+		assertSameNodes(root.gatherLeaves(), traversal.gatherLeaves(root));
+		for (int data = -1; data < 13; ++data)
+			assertEquals(root.findNodes(Integer.valueOf(data), Tree.Traversal.DEPTH_FIRST),
+					traversal.findNodes(root, Integer.valueOf(data)));
+		assertNull(traversal.findNodes(root, Integer.valueOf(99)));
+
+		// findAny: some matching node, or none.
+		final Tree<Integer> any = traversal.findAny(root, new Predicate<Tree<Integer>>() {
+			public boolean test(Tree<Integer> node) {
+				return node.getData().intValue() == 7;
+			}
+		});
+		if (root.findNodes(Integer.valueOf(7), Tree.Traversal.DEPTH_FIRST) == null) {
+			assertNull(any);
+		} else {
+			assertNotNull(any);
+			assertEquals(7, any.getData().intValue());
+		}
+		assertNull(traversal.findAny(root, new Predicate<Tree<Integer>>() {
+			public boolean test(Tree<Integer> node) {
+				return node.getData().intValue() == 99;
+			}
+		}));
+	}
+
+	public void testBushyTrees() {
+		final Random random = new Random(2024);
+		for (int round = 0; round < 10; ++round)
+			checkAll(randomTree(random, 1 + random.nextInt(20000)));
+	}
+
+	public void testSmallTrees() {
+		final Random random = new Random(5);
+		checkAll(new Tree<Integer>(Integer.valueOf(7)));
+		for (int round = 0; round < 50; ++round)
+			checkAll(randomTree(random, 1 + random.nextInt(40)));
+	}
+
+	public void testChains() {
+		checkAll(chain(3000));
+
+		// deeper than the nesting limit, with subtrees hanging off the chain.
+		final Tree<Integer> root = chain(2000);
+		final Random random = new Random(9);
+		Tree<Integer> node = root;
+		for (int i = 0; i < 1000; ++i) {
+			node.addChild(randomTree(random, 50));
+			node = node.getChildren().get(0);
+		}
+		checkAll(root);
+	}
+
+	public void testFindAnyStopsEarly() {
+		final Tree<Integer> root = chain(100000);
+		final AtomicInteger tested = new AtomicInteger();
+		final Tree<Integer> found = traversal.findAny(root, new Predicate<Tree<Integer>>() {
+			public boolean test(Tree<Integer> node) {
+				tested.incrementAndGet();
+				return node.depth() == 10;
+			}
+		});
+		assertEquals(10, found.depth());
+		assertTrue("tested " + tested.get(), tested.get() < 100);
+
+		final Random random = new Random(3);
+		final Tree<Integer> bushy = randomTree(random, 50000);
+		tested.set(0);
+		assertSame(bushy, traversal.findAny(bushy, new Predicate<Tree<Integer>>() {
+			public boolean test(Tree<Integer> node) {
+				tested.incrementAndGet();
+				return node.isRoot();
+			}
+		}));
+		assertTrue("tested " + tested.get(), tested.get() < 1000);
+	}
+
+	public void testRejectsNullPool() {
+		try {
+			new ParallelTraversal(null);
+			fail();
+		} catch (NullPointerException expected) {
+		}
+	}
+}
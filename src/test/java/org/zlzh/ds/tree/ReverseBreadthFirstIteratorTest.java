@@ -0,0 +1,149 @@
+package org.zlzh.ds.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of ReverseBreadthFirstIterator: the order must be the exact reverse
+ * of BreadthFirstIterator's, and the checkpoints must stay within their
+ * budget however the tree is shaped.
+ */
+public class ReverseBreadthFirstIteratorTest extends TestCase {
+
+	private int nextId;
+
+	@Override
+	protected void setUp() {
+		nextId = 0;
+	}
+
+	private Tree<Integer> node() {
+		return new Tree<Integer>(Integer.valueOf(nextId++));
+	}
+
+	private Tree<Integer> chain(Tree<Integer> top, int length) {
+		Tree<Integer> last = top;
+		for (int i = 0; i < length; ++i)
+			last = last.addChild(Integer.valueOf(nextId++));
+		return last;
+	}
+
+	/** A root with the given number of chains of the given length below it. */
+	private Tree<Integer> comb(int teeth, int length) {
+		final Tree<Integer> root = node();
+		for (int i = 0; i < teeth; ++i)
+			chain(root, length);
+		return root;
+	}
+
+	private Tree<Integer> randomTree(Random random, int size) {
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		nodes.add(node());
+		for (int i = 1; i < size; ++i) {
+			// favour recent nodes now and then, to grow tall branches.
+			final int from = random.nextBoolean() ? 0 : Math.max(0, nodes.size() - 3);
+			final Tree<Integer> parent = nodes.get(from + random.nextInt(nodes.size() - from));
+			nodes.add(parent.addChild(Integer.valueOf(nextId++)));
+		}
+		return nodes.get(0);
+	}
+
+	private static List<Tree<Integer>> reverseBreadthFirst(Tree<Integer> root) {
+		final List<Tree<Integer>> result = new ArrayList<Tree<Integer>>();
+		for (Iterator<Tree<Integer>> it = new BreadthFirstIterator<Integer>(root); it.hasNext();)
+			result.add(it.next());
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Check the order against a reversed breadth-first pass, and the
+	 * checkpoints against their budget after every node.
+	 * @return the most nodes the checkpoints held at once.
+	 */
+	private static int check(Tree<Integer> root) {
+		final List<Tree<Integer>> expected = reverseBreadthFirst(root);
+		final ReverseBreadthFirstIterator<Integer> it = new ReverseBreadthFirstIterator<Integer>(root);
+		int peak = 0;
+		for (int i = 0; i < expected.size(); ++i) {
+			assertTrue("node " + i, it.hasNext());
+			assertSame("node " + i, expected.get(i), it.next());
+			assertTrue(it.storedNodes() <= it.checkpointBudget());
+			peak = Math.max(peak, it.storedNodes());
+		}
+		assertFalse(it.hasNext());
+		try {
+			it.next();
+			fail();
+		} catch (NoSuchElementException expected2) {
+		}
+		return peak;
+	}
+
+	public void testSingleNode() {
+		assertEquals(1, check(node()));
+	}
+
+	public void testBushyTreeNeedsNoCheckpoints() {
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		for (int i = 0; i < (1 << 12) - 1; ++i) {
+			nodes.add(node());
+			if (i > 0)
+				nodes.get((i - 1) / 2).addChild(nodes.get(i));
+		}
+		assertEquals(1, check(nodes.get(0)));
+	}
+
+	public void testLongChain() {
+		final Tree<Integer> root = node();
+		chain(root, 100000);
+		// one node per level, a logarithmic number of levels.
+		assertTrue(check(root) <= 40);
+	}
+
+	public void testTallWideComb() {
+		final Tree<Integer> root = comb(1000, 100);
+		final int peak = check(root);
+		final ReverseBreadthFirstIterator<Integer> it = new ReverseBreadthFirstIterator<Integer>(root);
+		it.hasNext();
+		assertEquals(ReverseBreadthFirstIterator.CHECKPOINT_FACTOR * 1000 + 101, it.checkpointBudget());
+		assertTrue("peak of " + peak, peak <= it.checkpointBudget());
+		assertTrue(peak > 1000);
+	}
+
+	public void testChainBelowBushyTop() {
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		for (int i = 0; i < (1 << 8) - 1; ++i) {
+			nodes.add(node());
+			if (i > 0)
+				nodes.get((i - 1) / 2).addChild(nodes.get(i));
+		}
+		chain(nodes.get(nodes.size() - 1), 5000);
+		chain(nodes.get(nodes.size() / 2), 3000);
+		check(nodes.get(0));
+	}
+
+	public void testRandomShapes() {
+		final Random random = new Random(20136);
+		for (int round = 0; round < 200; ++round)
+			check(randomTree(random, 1 + random.nextInt(400)));
+	}
+
+	public void testSkipDropsNextNode() {
+		final Tree<Integer> root = comb(3, 10);
+		final List<Tree<Integer>> expected = reverseBreadthFirst(root);
+		final ReverseBreadthFirstIterator<Integer> it = new ReverseBreadthFirstIterator<Integer>(root);
+		for (int i = 0; i < expected.size(); i += 2) {
+			assertSame(expected.get(i), it.next());
+			if (i + 1 < expected.size())
+				it.skip();
+		}
+		assertFalse(it.hasNext());
+	}
+}
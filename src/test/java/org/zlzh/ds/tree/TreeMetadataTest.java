@@ -0,0 +1,333 @@
+package org.zlzh.ds.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of the cached metadata of Tree: after every change the cached
+ * subtree size, height, leaf count and depth of each node must match a
+ * fresh count. Nodes carry distinct data, so prune() always finds the
+ * right node.
+ */
+public class TreeMetadataTest extends TestCase {
+
+	private int nextId;
+	private Random random;
+
+	@Override
+	protected void setUp() {
+		nextId = 0;
+		random = new Random(2013);
+	}
+
+	private Tree<Integer> node() {
+		return new Tree<Integer>(Integer.valueOf(nextId++));
+	}
+
+	private Tree<Integer> randomTree(int size) {
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		nodes.add(node());
+		for (int i = 1; i < size; ++i)
+			nodes.add(nodes.get(random.nextInt(nodes.size())).addChild(Integer.valueOf(nextId++)));
+		return nodes.get(0);
+	}
+
+	/** The nodes under root, found through the children lists. */
+	private static List<Tree<Integer>> nodes(Tree<Integer> root) {
+		final List<Tree<Integer>> result = new ArrayList<Tree<Integer>>();
+		final Deque<Tree<Integer>> stack = new ArrayDeque<Tree<Integer>>();
+		stack.push(root);
+		while (!stack.isEmpty()) {
+			final Tree<Integer> node = stack.pop();
+			result.add(node);
+			if (node.getChildren() != null) {
+				for (Tree<Integer> child : node.getChildren())
+					stack.push(child);
+			}
+		}
+		return result;
+	}
+
+	private static int countSize(Tree<Integer> node) {
+		int result = 1;
+		if (node.getChildren() != null) {
+			for (Tree<Integer> child : node.getChildren())
+				result += countSize(child);
+		}
+		return result;
+	}
+
+	private static int countHeight(Tree<Integer> node) {
+		int result = 1;
+		if (node.getChildren() != null) {
+			for (Tree<Integer> child : node.getChildren())
+				result = Math.max(result, countHeight(child) + 1);
+		}
+		return result;
+	}
+
+	private static int countLeaves(Tree<Integer> node) {
+		if (!node.hasChildren())
+			return 1;
+		int result = 0;
+		for (Tree<Integer> child : node.getChildren())
+			result += countLeaves(child);
+		return result;
+	}
+
+	private static int countDepth(Tree<Integer> node) {
+		int result = 0;
+		for (Tree<Integer> p = node.getParent(); p != null; p = p.getParent())
+			++result;
+		return result;
+	}
+
+	/** Check every node under root against a fresh count. */
+	private static void verify(String what, Tree<Integer> root) {
+		for (Tree<Integer> node : nodes(root)) {
+			final String where = what + " at " + node.getData();
+			assertTrue(where, node.hasMetadata());
+			assertEquals(where, countSize(node), node.subtreeSize());
+			assertEquals(where, countHeight(node), node.maxDepth());
+			assertEquals(where, countLeaves(node), node.numLeaves());
+			assertEquals(where, countDepth(node), node.depth());
+		}
+		final int height = countHeight(root);
+		for (int depth = 0; depth <= height; ++depth) {
+			int expected = 0;
+			for (Tree<Integer> node : nodes(root)) {
+				if (countDepth(node) - countDepth(root) == depth)
+					++expected;
+			}
+			assertEquals(what + " at depth " + depth, expected, root.treesAtDepth(depth).size());
+		}
+	}
+
+	private static void assertNoMetadata(Tree<Integer> root) {
+		for (Tree<Integer> node : nodes(root))
+			assertFalse(node.hasMetadata());
+	}
+
+	public void testNumLeavesWithoutMetadata() {
+		final Tree<Integer> root = node();
+		assertEquals(1, root.numLeaves());
+		root.addChild(node());
+		final Tree<Integer> inner = root.addChild(Integer.valueOf(nextId++));
+		inner.addChild(node());
+		inner.addChild(node());
+		assertFalse(root.hasMetadata());
+		assertEquals(3, root.numLeaves());
+		assertEquals(2, inner.numLeaves());
+		assertEquals(5, root.subtreeSize());
+
+		final Tree<Integer> tree = randomTree(200);
+		for (Tree<Integer> node : nodes(tree))
+			assertEquals(countLeaves(node), node.numLeaves());
+	}
+
+	public void testEnableAndDisable() {
+		final Tree<Integer> root = randomTree(300);
+		final Tree<Integer> some = nodes(root).get(150);
+		some.enableMetadata();
+		verify("enable", root);
+
+		root.disableMetadata();
+		assertNoMetadata(root);
+		for (Tree<Integer> node : nodes(root)) {
+			assertEquals(countSize(node), node.subtreeSize());
+			assertEquals(countDepth(node), node.depth());
+		}
+	}
+
+	public void testAddChild() {
+		final Tree<Integer> root = randomTree(50);
+		root.enableMetadata();
+		for (int i = 0; i < 100; ++i) {
+			final List<Tree<Integer>> all = nodes(root);
+			final Tree<Integer> parent = all.get(random.nextInt(all.size()));
+			if (random.nextBoolean())
+				parent.addChild(node());
+			else
+				parent.addChild(randomTree(1 + random.nextInt(10)));
+			verify("addChild", root);
+		}
+	}
+
+	public void testAddChildWithMetadataFromAnotherTree() {
+		final Tree<Integer> root = randomTree(40);
+		root.enableMetadata();
+		final Tree<Integer> other = randomTree(30);
+		other.enableMetadata();
+		final Tree<Integer> deep = nodes(root).get(39);
+		deep.addChild(other);
+		verify("graft", root);
+	}
+
+	public void testAddToTreeWithoutMetadataDropsIt() {
+		final Tree<Integer> child = randomTree(20);
+		child.enableMetadata();
+		final Tree<Integer> root = node();
+		root.addChild(child);
+		assertNoMetadata(root);
+		assertEquals(21, root.subtreeSize());
+		assertEquals(1, child.depth());
+	}
+
+	public void testPruneDisconnecting() {
+		final Tree<Integer> root = randomTree(200);
+		root.enableMetadata();
+		for (int i = 0; i < 50; ++i) {
+			final List<Tree<Integer>> all = nodes(root);
+			if (all.size() < 2)
+				break;
+			final Tree<Integer> victim = all.get(1 + random.nextInt(all.size() - 1));
+			victim.prune(true, true);
+			verify("prune", root);
+			verify("pruned subtree", victim);
+		}
+	}
+
+	public void testPruneParentOnly() {
+		final Tree<Integer> root = randomTree(100);
+		root.enableMetadata();
+		final Tree<Integer> victim = root.getChildren().get(0);
+		victim.prune();
+		assertNull(victim.getParent());
+		verify("pruned subtree", victim);
+	}
+
+	public void testMoveSubtree() {
+		final Tree<Integer> root = randomTree(200);
+		root.enableMetadata();
+		for (int i = 0; i < 100; ++i) {
+			final List<Tree<Integer>> all = nodes(root);
+			final Tree<Integer> moved = all.get(1 + random.nextInt(all.size() - 1));
+			final Tree<Integer> target = all.get(random.nextInt(all.size()));
+			if (target == moved || moved.isAncestor(target))
+				continue;
+			moved.prune(true, true);
+			target.addChild(moved);
+			verify("move", root);
+		}
+	}
+
+	public void testMoveChildrenTo() {
+		final Tree<Integer> root = randomTree(200);
+		root.enableMetadata();
+		for (int i = 0; i < 100; ++i) {
+			final List<Tree<Integer>> all = nodes(root);
+			final Tree<Integer> from = all.get(random.nextInt(all.size()));
+			final Tree<Integer> to = all.get(random.nextInt(all.size()));
+			if (to == from || from.isAncestor(to))
+				continue;
+			from.moveChildrenTo(to);
+			assertFalse(from.hasChildren());
+			verify("moveChildrenTo", root);
+		}
+	}
+
+	public void testMoveChildrenToTreeWithoutMetadata() {
+		final Tree<Integer> root = randomTree(100);
+		root.enableMetadata();
+		final Tree<Integer> other = node();
+		root.getChildren().get(0).moveChildrenTo(other);
+		verify("moveChildrenTo", root);
+		assertNoMetadata(other);
+	}
+
+	public void testPruneChildren() {
+		final Tree<Integer> root = randomTree(200);
+		root.enableMetadata();
+		for (int i = 0; i < 20; ++i) {
+			final List<Tree<Integer>> all = nodes(root);
+			final Tree<Integer> node = all.get(random.nextInt(all.size()));
+			final List<Tree<Integer>> pruned = node.pruneChildren();
+			verify("pruneChildren", root);
+			if (pruned != null) {
+				for (Tree<Integer> child : pruned) {
+					child.prune();
+					verify("pruned child", child);
+				}
+			}
+			node.addChild(node());
+			verify("addChild after pruneChildren", root);
+		}
+	}
+
+	public void testClear() {
+		final Tree<Integer> root = randomTree(200);
+		root.enableMetadata();
+		for (int i = 0; i < 20; ++i) {
+			final List<Tree<Integer>> all = nodes(root);
+			final Tree<Integer> node = all.get(random.nextInt(all.size()));
+			node.clear();
+			verify("clear", root);
+			node.addChild(randomTree(5));
+			verify("addChild after clear", root);
+		}
+	}
+
+	public void testRandomChanges() {
+		for (int round = 0; round < 50; ++round) {
+			final Tree<Integer> root = randomTree(1 + random.nextInt(60));
+			root.enableMetadata();
+			for (int step = 0; step < 40; ++step) {
+				final List<Tree<Integer>> all = nodes(root);
+				final Tree<Integer> x = all.get(random.nextInt(all.size()));
+				final Tree<Integer> y = all.get(random.nextInt(all.size()));
+				switch (random.nextInt(5)) {
+				case 0:
+					x.addChild(randomTree(1 + random.nextInt(4)));
+					break;
+				case 1:
+					if (x != root)
+						x.prune(true, true);
+					break;
+				case 2:
+					if (x != root && y != x && !x.isAncestor(y)) {
+						x.prune(true, true);
+						y.addChild(x);
+					}
+					break;
+				case 3:
+					if (y != x && !x.isAncestor(y))
+						x.moveChildrenTo(y);
+					break;
+				default:
+					x.clear();
+				}
+				verify("step " + step, root);
+			}
+		}
+	}
+
+	public void testCloneDoesNotCopyMetadata() {
+		final Tree<Integer> root = randomTree(50);
+		root.enableMetadata();
+		@SuppressWarnings("unchecked")
+		final Tree<Integer> copy = (Tree<Integer>) root.clone();
+		assertNoMetadata(copy);
+		assertEquals(50, copy.subtreeSize());
+		verify("original", root);
+	}
+
+	public void testDeepChainNeedsNoRecursion() {
+		final Tree<Integer> root = node();
+		Tree<Integer> last = root;
+		for (int i = 0; i < 200000; ++i)
+			last = last.addChild(Integer.valueOf(nextId++));
+		root.enableMetadata();
+		assertEquals(200001, root.maxDepth());
+		assertEquals(200001, root.subtreeSize());
+		assertEquals(1, root.numLeaves());
+		assertEquals(200000, last.depth());
+		last.addChild(node());
+		assertEquals(200002, root.maxDepth());
+		assertEquals(200001, last.depth() + 1);
+	}
+}
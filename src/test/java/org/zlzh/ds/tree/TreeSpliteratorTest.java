@@ -0,0 +1,197 @@
+package org.zlzh.ds.tree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests of TreeSpliterator: encounter order, and how evenly it splits.
+ */
+public class TreeSpliteratorTest extends TestCase {
+
+	/** A complete binary tree of 2^levels - 1 nodes. */
+	private static Tree<Integer> completeBinaryTree(int levels) {
+		final int size = (1 << levels) - 1;
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>(size);
+		for (int i = 0; i < size; ++i) {
+			nodes.add(new Tree<Integer>(Integer.valueOf(i)));
+			if (i > 0)
+				nodes.get((i - 1) / 2).addChild(nodes.get(i));
+		}
+		return nodes.get(0);
+	}
+
+	private static List<Tree<Integer>> depthFirst(Tree<Integer> root) {
+		final List<Tree<Integer>> result = new ArrayList<Tree<Integer>>();
+		for (Iterator<Tree<Integer>> it = root.depthFirstIterator(); it.hasNext();)
+			result.add(it.next());
+		return result;
+	}
+
+	/**
+	 * Split recursively to the given depth, then drain the pieces in order,
+	 * recording the size of each.
+	 */
+	private static void splitAndDrain(Spliterator<Tree<Integer>> split, int depth,
+			final List<Tree<Integer>> nodes, List<Integer> chunks) {
+		if (depth > 0) {
+			Spliterator<Tree<Integer>> prefix = split.trySplit();
+			if (prefix != null) {
+				splitAndDrain(prefix, depth - 1, nodes, chunks);
+				splitAndDrain(split, depth - 1, nodes, chunks);
+				return;
+			}
+		}
+		final int before = nodes.size();
+		split.forEachRemaining(new Consumer<Tree<Integer>>() {
+			public void accept(Tree<Integer> node) {
+				nodes.add(node);
+			}
+		});
+		chunks.add(Integer.valueOf(nodes.size() - before));
+	}
+
+	private static void assertSameNodes(List<Tree<Integer>> expected, List<Tree<Integer>> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i)
+			assertSame("node " + i, expected.get(i), actual.get(i));
+	}
+
+	private void checkBalancedSplits(boolean metadata) {
+		final Tree<Integer> root = completeBinaryTree(16);
+		if (metadata)
+			root.enableMetadata();
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		final List<Integer> chunks = new ArrayList<Integer>();
+		splitAndDrain(new TreeSpliterator<Integer>(root), 12, nodes, chunks);
+
+		assertSameNodes(depthFirst(root), nodes);
+		assertEquals(1 << 12, chunks.size());
+		for (Integer chunk : chunks)
+			assertTrue("chunk of " + chunk, chunk.intValue() <= 2 * (nodes.size() >> 12) + 16);
+	}
+
+	public void testSplitsBalancedTreeEvenly() {
+		checkBalancedSplits(false);
+	}
+
+	public void testSplitsBalancedTreeEvenlyWithMetadata() {
+		checkBalancedSplits(true);
+	}
+
+	public void testSizedEstimatesAreExact() {
+		final Tree<Integer> root = completeBinaryTree(10);
+		root.addChild(Integer.valueOf(-1)).addChild(Integer.valueOf(-2));
+		root.enableMetadata();
+		final Spliterator<Tree<Integer>> rest = new TreeSpliterator<Integer>(root);
+		assertTrue(rest.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+		assertEquals(root.subtreeSize(), rest.estimateSize());
+
+		final List<Spliterator<Tree<Integer>>> pieces = new ArrayList<Spliterator<Tree<Integer>>>();
+		for (Spliterator<Tree<Integer>> prefix; (prefix = rest.trySplit()) != null;)
+			pieces.add(prefix);
+		pieces.add(rest);
+		long total = 0;
+		for (Spliterator<Tree<Integer>> piece : pieces) {
+			final long estimate = piece.estimateSize();
+			final int[] count = new int[1];
+			piece.forEachRemaining(new Consumer<Tree<Integer>>() {
+				public void accept(Tree<Integer> node) {
+					++count[0];
+				}
+			});
+			assertEquals(estimate, count[0]);
+			total += estimate;
+		}
+		assertEquals(root.subtreeSize(), total);
+	}
+
+	public void testLongChainStaysInOrder() {
+		final Tree<Integer> root = new Tree<Integer>(Integer.valueOf(0));
+		Tree<Integer> node = root;
+		for (int i = 1; i < 3 * TreeSpliterator.MAX_SINGLES; ++i)
+			node = node.addChild(Integer.valueOf(i));
+		node.addChild(Integer.valueOf(-1));
+		node.addChild(Integer.valueOf(-2));
+
+		// each split takes at most MAX_SINGLES nodes off the chain.
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		final List<Integer> chunks = new ArrayList<Integer>();
+		splitAndDrain(new TreeSpliterator<Integer>(root), 8, nodes, chunks);
+		assertSameNodes(depthFirst(root), nodes);
+		assertTrue(chunks.size() >= 4);
+		for (Integer chunk : chunks)
+			assertTrue("chunk of " + chunk, chunk.intValue() <= TreeSpliterator.MAX_SINGLES + 1);
+	}
+
+	/**
+	 * Split every piece until it refuses, then drain the pieces in order.
+	 */
+	private static void splitFully(Spliterator<Tree<Integer>> split, List<Tree<Integer>> nodes,
+			List<Integer> chunks) {
+		final Spliterator<Tree<Integer>> prefix = split.trySplit();
+		if (prefix != null) {
+			splitFully(prefix, nodes, chunks);
+			splitFully(split, nodes, chunks);
+		} else {
+			splitAndDrain(split, 0, nodes, chunks);
+		}
+	}
+
+	private static Tree<Integer> chain(int length) {
+		final Tree<Integer> root = new Tree<Integer>(Integer.valueOf(0));
+		Tree<Integer> node = root;
+		for (int i = 1; i < length; ++i)
+			node = node.addChild(Integer.valueOf(i));
+		return root;
+	}
+
+	private void checkSplitsToExhaustion(Tree<Integer> root, boolean metadata) {
+		if (metadata)
+			root.enableMetadata();
+		final List<Tree<Integer>> nodes = new ArrayList<Tree<Integer>>();
+		final List<Integer> chunks = new ArrayList<Integer>();
+		splitFully(new TreeSpliterator<Integer>(root), nodes, chunks);
+		assertSameNodes(depthFirst(root), nodes);
+		// every split hands off at least one node and leaves at least one.
+		for (Integer chunk : chunks)
+			assertTrue("empty chunk", chunk.intValue() > 0);
+	}
+
+	public void testSplitsToExhaustion() {
+		checkSplitsToExhaustion(chain(3 * TreeSpliterator.MAX_SINGLES + 5), false);
+		checkSplitsToExhaustion(chain(3 * TreeSpliterator.MAX_SINGLES + 5), true);
+		checkSplitsToExhaustion(chain(TreeSpliterator.MAX_SINGLES), true);
+		checkSplitsToExhaustion(completeBinaryTree(10), false);
+		checkSplitsToExhaustion(completeBinaryTree(10), true);
+	}
+
+	public void testParallelStreamOverLongChainWithMetadata() {
+		final Tree<Integer> root = chain(2 * TreeSpliterator.MAX_SINGLES - 48);
+		root.enableMetadata();
+		assertEquals(root.subtreeSize(), root.parallelStream().count());
+		assertSameNodes(depthFirst(root),
+				root.parallelStream().collect(Collectors.<Tree<Integer>>toList()));
+	}
+
+	public void testSingleNode() {
+		final Tree<Integer> root = new Tree<Integer>(Integer.valueOf(0));
+		final TreeSpliterator<Integer> split = new TreeSpliterator<Integer>(root);
+		assertNull(split.trySplit());
+		assertEquals(1, root.stream().count());
+	}
+
+	public void testParallelStreamKeepsOrder() {
+		final Tree<Integer> root = completeBinaryTree(14);
+		assertSameNodes(depthFirst(root),
+				root.parallelStream().collect(Collectors.<Tree<Integer>>toList()));
+		root.enableMetadata();
+		assertSameNodes(depthFirst(root),
+				root.parallelStream().collect(Collectors.<Tree<Integer>>toList()));
+	}
+}